@@ -4,4 +4,19 @@ package exceptions;
  * Base class for custom exceptions related to the transportation network.
  */
 public class TransportException extends Exception {
+    /**
+     * Creates a new exception with no detail message.
+     */
+    public TransportException() {
+        super();
+    }
+
+    /**
+     * Creates a new exception with the given detail message.
+     *
+     * @param message A description of the problem.
+     */
+    public TransportException(String message) {
+        super(message);
+    }
 }
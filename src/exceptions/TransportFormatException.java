@@ -5,4 +5,20 @@ package exceptions;
  * incorrectly.
  */
 public class TransportFormatException extends TransportException {
+    /**
+     * Creates a new exception with no detail message.
+     */
+    public TransportFormatException() {
+        super();
+    }
+
+    /**
+     * Creates a new exception with the given detail message, which should
+     * describe what is wrong with the format.
+     *
+     * @param message A description of the formatting problem.
+     */
+    public TransportFormatException(String message) {
+        super(message);
+    }
 }
@@ -0,0 +1,846 @@
+package network;
+
+import exceptions.NoNameException;
+import exceptions.TransportException;
+import exceptions.TransportFormatException;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.FerryRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.RoutingEntry;
+import stops.RoutingTable;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Ferry;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes networks in a compact binary format, which is smaller than
+ * the text format of {@link Network#save(String)} and can be loaded without
+ * parsing any numbers from text.
+ *
+ * <p>A file in the format consists of:
+ * <ol>
+ *     <li>The magic bytes "PTNB" followed by a single version byte.</li>
+ *     <li>The string table: the number of strings, then each string as its
+ *     length in bytes followed by its UTF-8 bytes. Stop names, route names,
+ *     bus registration numbers and ferry types are stored only here, and
+ *     are referred to elsewhere by their index in the table.</li>
+ *     <li>The stops: the number of stops, then for each stop the index of
+ *     its name and its x and y coordinates.</li>
+ *     <li>The routes: the number of routes, then for each route its type,
+ *     the index of its name, its number, its number of stops, and the index
+ *     (into the stops) of each of its stops.</li>
+ *     <li>The vehicles: the number of vehicles, then a record for each
+ *     vehicle of its type, id, capacity, the index (into the routes) of its
+ *     route, and its extra part (the carriage count of a train, or the index
+ *     of the registration number or ferry type string).</li>
+ * </ol>
+ *
+ * <p>Types are written as a single byte. Counts and indexes are written as
+ * unsigned variable length integers (7 bits per byte, least significant group
+ * first, with the high bit set on every byte but the last), and all other
+ * integers as zigzag-encoded variable length integers, so that small negative
+ * values are also short.
+ *
+ * <p>Routes refer to their stops, and vehicles to their routes, by position
+ * rather than by name or number. Where a route's stop is not one of the
+ * network's stops, the first of the network's stops with the same name is
+ * used instead (as would happen when saving and loading the text format),
+ * and similarly for a vehicle's route and route number. If there is no such
+ * stop or route, or a route or vehicle is not a train, bus or ferry, the file
+ * is still written, but cannot be loaded.
+ *
+ * <p>A checkpoint file (see {@link #saveCheckpoint(Network, String)}) starts
+ * with the magic bytes "PTNC" instead, and after the vehicles also holds the
+ * runtime state of the network:
+ * <ol>
+ *     <li>For each stop, its neighbours (as a count and the index of each
+ *     neighbour) and its routing table entries (as a count and the index of
+ *     the destination, the index of the next stop, and the cost of each
+ *     entry, other than the stop's entry for itself).</li>
+ *     <li>For each stop, its waiting passengers (as a count, and for each
+ *     passenger its record and the stop it is routed to), and the vehicles
+ *     at the stop (as a count and the index of each vehicle).</li>
+ *     <li>For each vehicle, its position along its route and the passengers
+ *     on board (as a count and the record of each passenger).</li>
+ * </ol>
+ *
+ * <p>A passenger record is its type, the index of its name in the string
+ * table, its destination, and for a concession passenger its concession id.
+ * An optional stop, such as a destination or the stop a passenger is routed
+ * to, is written as 0 if there is no stop, or as one more than the index of
+ * the stop otherwise. Routes in a checkpoint are restored with
+ * {@link Route#addStopUnlinked(Stop)}, so routing tables are restored as they
+ * were saved rather than recomputed.
+ *
+ * <p>The whole file may also be compressed with gzip (see
+ * {@link NetworkFiles}).
+ */
+class BinaryNetworkFormat {
+    // the bytes every file in the format starts with
+    private static final byte[] MAGIC = {'P', 'T', 'N', 'B'};
+
+    // the bytes every checkpoint file starts with
+    private static final byte[] CHECKPOINT_MAGIC = {'P', 'T', 'N', 'C'};
+
+    // the version of the format written by this class
+    private static final int VERSION = 1;
+
+    // the codes of each type of route and vehicle
+    private static final int TRAIN = 0;
+    private static final int BUS = 1;
+    private static final int FERRY = 2;
+    private static final int UNKNOWN = 0xff;
+
+    // the codes of each type of passenger
+    private static final int PASSENGER = 0;
+    private static final int CONCESSION = 1;
+
+    // the fewest bytes a vehicle record can take
+    private static final int VEHICLE_RECORD_SIZE = 5;
+
+    // the fewest bytes a routing table entry can take
+    private static final int ENTRY_RECORD_SIZE = 3;
+
+    // the fewest bytes a passenger record can take
+    private static final int PASSENGER_RECORD_SIZE = 3;
+
+    /*
+     * BinaryNetworkFormat only has static helper methods, and should not be
+     * instantiated.
+     */
+    private BinaryNetworkFormat() {
+    }
+
+    /**
+     * Writes the given network to the file indicated by the given filename.
+     *
+     * @param network The network to write.
+     * @param filename The name of the file to write the network to.
+     * @throws IOException If any IO exceptions occur whilst writing to the
+     *         file.
+     */
+    static void save(Network network, String filename) throws IOException {
+        save(network, filename, false);
+    }
+
+    /**
+     * Writes the given network to the file indicated by the given filename,
+     * together with its runtime state: the neighbours and routing tables of
+     * its stops, the passengers waiting at each stop and where they are
+     * routed to, and the position of each vehicle, the stop it is at, and the
+     * passengers on board.
+     *
+     * @param network The network to write.
+     * @param filename The name of the file to write the checkpoint to.
+     * @throws IOException If any IO exceptions occur whilst writing to the
+     *         file.
+     */
+    static void saveCheckpoint(Network network, String filename)
+            throws IOException {
+        save(network, filename, true);
+    }
+
+    /**
+     * Returns the checkpoint of the given network (see
+     * {@link #saveCheckpoint(Network, String)}) as bytes, without writing a
+     * file.
+     *
+     * @param network The network to checkpoint.
+     * @return The contents of the checkpoint file of the network, which is
+     *          not compressed.
+     */
+    static byte[] checkpoint(Network network) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            write(network, out, true);
+        } catch (IOException e) {
+            // writing to memory never fails
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /*
+     * Writes the given network, and its runtime state if checkpoint is true,
+     * to the given file.
+     */
+    private static void save(Network network, String filename,
+                             boolean checkpoint) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                NetworkFiles.openOutput(filename,
+                        NetworkFiles.compressedName(filename)))) {
+            write(network, out, checkpoint);
+        }
+    }
+
+    /*
+     * Writes the given network, and its runtime state if checkpoint is true.
+     */
+    private static void write(Network network, DataOutputStream out,
+                              boolean checkpoint) throws IOException {
+        List<Stop> stops = network.getStops();
+        List<Route> routes = network.getRoutes();
+        List<PublicTransport> vehicles = network.getVehicles();
+
+        StringTable strings = new StringTable();
+        for (Stop stop : stops) {
+            strings.add(stop.getName());
+        }
+        for (Route route : routes) {
+            strings.add(route.getName());
+        }
+        for (PublicTransport vehicle : vehicles) {
+            String extra = extraString(vehicle);
+            if (extra != null) {
+                strings.add(extra);
+            }
+        }
+        if (checkpoint) {
+            for (Stop stop : stops) {
+                for (Passenger passenger : stop.getWaitingPassengers()) {
+                    strings.add(passenger.getName());
+                }
+            }
+            for (PublicTransport vehicle : vehicles) {
+                for (Passenger passenger : vehicle.getPassengers()) {
+                    strings.add(passenger.getName());
+                }
+            }
+        }
+
+        out.write(checkpoint ? CHECKPOINT_MAGIC : MAGIC);
+        out.writeByte(VERSION);
+
+        writeVarint(out, strings.list.size());
+        for (String string : strings.list) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(out, stops.size());
+        for (Stop stop : stops) {
+            writeVarint(out, strings.indexOf(stop.getName()));
+            writeVarint(out, zigzag(stop.getX()));
+            writeVarint(out, zigzag(stop.getY()));
+        }
+
+        Map<Stop, Integer> stopIndexes = new IdentityHashMap<>();
+        Map<String, Integer> stopNames = new HashMap<>();
+        for (int i = 0; i < stops.size(); i++) {
+            stopIndexes.putIfAbsent(stops.get(i), i);
+            stopNames.putIfAbsent(stops.get(i).getName(), i);
+        }
+        writeVarint(out, routes.size());
+        for (Route route : routes) {
+            out.writeByte(typeCode(route.getType()));
+            writeVarint(out, strings.indexOf(route.getName()));
+            writeVarint(out, zigzag(route.getRouteNumber()));
+            List<Stop> routeStops = route.getStopsOnRoute();
+            writeVarint(out, routeStops.size());
+            for (Stop stop : routeStops) {
+                writeVarint(out, indexOf(stop, stop.getName(),
+                        stopIndexes, stopNames, stops.size()));
+            }
+        }
+
+        Map<Route, Integer> routeIndexes = new IdentityHashMap<>();
+        Map<Integer, Integer> routeNumbers = new HashMap<>();
+        for (int i = 0; i < routes.size(); i++) {
+            routeIndexes.putIfAbsent(routes.get(i), i);
+            routeNumbers.putIfAbsent(routes.get(i).getRouteNumber(), i);
+        }
+        writeVarint(out, vehicles.size());
+        for (PublicTransport vehicle : vehicles) {
+            Route route = vehicle.getRoute();
+            String extra = extraString(vehicle);
+            out.writeByte(vehicleCode(vehicle));
+            writeVarint(out, zigzag(vehicle.getId()));
+            writeVarint(out, zigzag(vehicle.getCapacity()));
+            writeVarint(out, indexOf(route, route.getRouteNumber(),
+                    routeIndexes, routeNumbers, routes.size()));
+            writeVarint(out, vehicle instanceof Train
+                    ? zigzag(((Train) vehicle).getCarriageCount())
+                    : extra == null ? strings.list.size()
+                    : strings.indexOf(extra));
+        }
+
+        if (checkpoint) {
+            Map<PublicTransport, Integer> vehicleIndexes =
+                    new IdentityHashMap<>();
+            for (int i = 0; i < vehicles.size(); i++) {
+                vehicleIndexes.putIfAbsent(vehicles.get(i), i);
+            }
+            new StateWriter(out, strings, stopIndexes, stopNames,
+                    stops.size()).write(stops, vehicles, vehicleIndexes);
+        }
+    }
+
+    /**
+     * Reads the network in the file indicated by the given filename.
+     *
+     * @param filename The name of the file to read the network from.
+     * @return The network described by the file.
+     * @throws IOException If any IO exceptions occur whilst reading from the
+     *         file.
+     * @throws TransportFormatException If the file is not in the binary
+     *         format, is of an unsupported version, is truncated or has extra
+     *         bytes at the end, or describes an invalid network (for example,
+     *         a vehicle on an empty route).
+     */
+    static Network load(String filename)
+            throws IOException, TransportFormatException {
+        return load(filename, false);
+    }
+
+    /**
+     * Reads the network and its runtime state from the checkpoint file
+     * indicated by the given filename (see
+     * {@link #saveCheckpoint(Network, String)}).
+     *
+     * <p>The neighbours and routing tables of the stops are restored as they
+     * were saved, so no routing is recomputed, and each waiting passenger is
+     * routed to the stop it was routed to when the checkpoint was saved.
+     *
+     * @param filename The name of the file to read the checkpoint from.
+     * @return The network described by the file, in the saved state.
+     * @throws IOException If any IO exceptions occur whilst reading from the
+     *         file.
+     * @throws TransportFormatException If the file is not a checkpoint, is of
+     *         an unsupported version, is truncated or has extra bytes at the
+     *         end, or describes an invalid network or state (for example, a
+     *         vehicle with more passengers than its capacity).
+     */
+    static Network loadCheckpoint(String filename)
+            throws IOException, TransportFormatException {
+        return load(filename, true);
+    }
+
+    /*
+     * Reads a network, and its runtime state if checkpoint is true.
+     */
+    private static Network load(String filename, boolean checkpoint)
+            throws IOException, TransportFormatException {
+        return read(ByteBuffer.wrap(readAllBytes(filename)), checkpoint);
+    }
+
+    /**
+     * Reads the network and its runtime state from the given checkpoint, as
+     * returned by {@link #checkpoint(Network)}.
+     *
+     * @param checkpoint The contents of a checkpoint file, not compressed.
+     * @return The network described by the checkpoint, in the saved state.
+     * @throws TransportFormatException If the bytes are not a valid
+     *         checkpoint (see {@link #loadCheckpoint(String)}).
+     */
+    static Network loadCheckpoint(byte[] checkpoint)
+            throws TransportFormatException {
+        return read(ByteBuffer.wrap(checkpoint), true);
+    }
+
+    /*
+     * Reads a network, and its runtime state if checkpoint is true, from the
+     * given bytes.
+     */
+    private static Network read(ByteBuffer in, boolean checkpoint)
+            throws TransportFormatException {
+        try {
+            for (byte magic : checkpoint ? CHECKPOINT_MAGIC : MAGIC) {
+                if (in.get() != magic) {
+                    throw new TransportFormatException(checkpoint
+                            ? "bad checkpoint magic" : "bad magic");
+                }
+            }
+            if (in.get() != VERSION) {
+                throw new TransportFormatException("unsupported version");
+            }
+
+            String[] strings = new String[readCount(in, 1)];
+            for (int i = 0; i < strings.length; i++) {
+                int length = readCount(in, 1);
+                strings[i] = new String(in.array(), in.position(), length,
+                        StandardCharsets.UTF_8);
+                in.position(in.position() + length);
+            }
+
+            List<Stop> stops = new ArrayList<>();
+            for (int i = readCount(in, 3); i > 0; i--) {
+                String name = strings[readIndex(in, strings.length)];
+                int x = unzigzag(readVarint(in));
+                int y = unzigzag(readVarint(in));
+                stops.add(new Stop(name, x, y));
+            }
+
+            List<Route> routes = new ArrayList<>();
+            for (int i = readCount(in, 4); i > 0; i--) {
+                int type = in.get() & 0xff;
+                String name = strings[readIndex(in, strings.length)];
+                Route route = routeFromCode(type, name,
+                        unzigzag(readVarint(in)));
+                for (int j = readCount(in, 1); j > 0; j--) {
+                    Stop stop = stops.get(readIndex(in, stops.size()));
+                    if (checkpoint) {
+                        route.addStopUnlinked(stop);
+                    } else {
+                        route.addStop(stop);
+                    }
+                }
+                routes.add(route);
+            }
+
+            List<PublicTransport> vehicles = new ArrayList<>();
+            for (int i = readCount(in, VEHICLE_RECORD_SIZE); i > 0; i--) {
+                int type = in.get() & 0xff;
+                int id = unzigzag(readVarint(in));
+                int capacity = unzigzag(readVarint(in));
+                Route route = routes.get(readIndex(in, routes.size()));
+                PublicTransport vehicle = vehicleFromCode(type, id, capacity,
+                        route, readVarint(in), strings);
+                route.addTransport(vehicle);
+                vehicles.add(vehicle);
+            }
+
+            if (checkpoint) {
+                readState(in, strings, stops, vehicles);
+            }
+
+            // there should be nothing after the vehicles (or the state)
+            if (in.hasRemaining()) {
+                throw new TransportFormatException("trailing bytes");
+            }
+            return new Network(stops, routes, vehicles);
+
+        } catch (TransportFormatException e) {
+            throw e;
+        } catch (BufferUnderflowException e) {
+            throw new TransportFormatException("data is truncated");
+        } catch (IndexOutOfBoundsException | NoNameException
+                | TransportException e) {
+            throw new TransportFormatException("data is inconsistent");
+        }
+    }
+
+    /*
+     * Reads the runtime state of a checkpoint into the given stops and
+     * vehicles, in the order written by StateWriter.
+     */
+    private static void readState(ByteBuffer in, String[] strings,
+                                  List<Stop> stops,
+                                  List<PublicTransport> vehicles)
+            throws TransportException {
+        for (Stop stop : stops) {
+            for (int i = readCount(in, 1); i > 0; i--) {
+                stop.restoreNeighbouringStop(
+                        stops.get(readIndex(in, stops.size())));
+            }
+            RoutingTable table = stop.getRoutingTable();
+            for (int i = readCount(in, ENTRY_RECORD_SIZE); i > 0; i--) {
+                Stop destination = stops.get(readIndex(in, stops.size()));
+                Stop next = stops.get(readIndex(in, stops.size()));
+                long cost = readVarint(in);
+                if (cost > Integer.MAX_VALUE
+                        || !table.addOrUpdateEntry(destination, (int) cost,
+                        next)) {
+                    throw new TransportFormatException(
+                            "invalid routing table entry");
+                }
+            }
+        }
+
+        for (Stop stop : stops) {
+            for (int i = readCount(in, PASSENGER_RECORD_SIZE + 1); i > 0;
+                    i--) {
+                Passenger passenger = readPassenger(in, strings, stops);
+                stop.addPassenger(passenger, readStop(in, stops));
+            }
+            // vehicles arrive before their passengers are restored, so no
+            // passengers are unloaded
+            for (int i = readCount(in, 1); i > 0; i--) {
+                stop.transportArrive(
+                        vehicles.get(readIndex(in, vehicles.size())));
+            }
+        }
+
+        for (PublicTransport vehicle : vehicles) {
+            int position = unzigzag(readVarint(in));
+            vehicle.travelToPosition(position);
+            if (vehicle.getPosition() != position) {
+                throw new TransportFormatException(
+                        "vehicle position out of range");
+            }
+            for (int i = readCount(in, PASSENGER_RECORD_SIZE); i > 0; i--) {
+                vehicle.addPassenger(readPassenger(in, strings, stops));
+            }
+        }
+    }
+
+    /*
+     * Reads a passenger record: its type, name, destination, and concession
+     * id if it is a concession passenger.
+     */
+    private static Passenger readPassenger(ByteBuffer in, String[] strings,
+                                           List<Stop> stops)
+            throws TransportFormatException {
+        int type = in.get() & 0xff;
+        String name = strings[readIndex(in, strings.length)];
+        Stop destination = readStop(in, stops);
+        switch (type) {
+            case PASSENGER:
+                return new Passenger(name, destination);
+            case CONCESSION:
+                return new ConcessionPassenger(name, destination,
+                        unzigzag(readVarint(in)));
+            default:
+                throw new TransportFormatException(
+                        "unknown passenger type " + type);
+        }
+    }
+
+    /*
+     * Reads an optional stop, written as 0 for no stop or one more than the
+     * index of the stop.
+     */
+    private static Stop readStop(ByteBuffer in, List<Stop> stops)
+            throws TransportFormatException {
+        int index = readIndex(in, stops.size() + 1);
+        return index == 0 ? null : stops.get(index - 1);
+    }
+
+    /*
+     * Reads the whole of the file indicated by the given filename,
+     * decompressing it if it is compressed.
+     */
+    private static byte[] readAllBytes(String filename) throws IOException {
+        if (!NetworkFiles.isCompressed(filename)) {
+            return Files.readAllBytes(Paths.get(filename));
+        }
+        try (InputStream in = NetworkFiles.openInput(filename)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        }
+    }
+
+    /*
+     * Returns a route of the type with the given code (e.g. a TrainRoute if
+     * the code is TRAIN), with the given name and number.
+     *
+     * Throws a TransportFormatException if the code is not valid.
+     */
+    private static Route routeFromCode(int type, String name, int number)
+            throws TransportFormatException {
+        switch (type) {
+            case TRAIN:
+                return new TrainRoute(name, number);
+            case BUS:
+                return new BusRoute(name, number);
+            case FERRY:
+                return new FerryRoute(name, number);
+            default:
+                throw new TransportFormatException(
+                        "unknown route type " + type);
+        }
+    }
+
+    /*
+     * Returns a vehicle of the type with the given code (e.g. a Train if the
+     * code is TRAIN), with the given id, capacity, and route, and the given
+     * extra part (a carriage count, or an index into the string table).
+     *
+     * Throws a TransportFormatException if the code is not valid.
+     */
+    private static PublicTransport vehicleFromCode(int type, int id,
+            int capacity, Route route, long extra, String[] strings)
+            throws TransportFormatException {
+        switch (type) {
+            case TRAIN:
+                return new Train(id, capacity, route, unzigzag(extra));
+            case BUS:
+                return new Bus(id, capacity, route,
+                        strings[checkIndex(extra, strings.length)]);
+            case FERRY:
+                return new Ferry(id, capacity, route,
+                        strings[checkIndex(extra, strings.length)]);
+            default:
+                throw new TransportFormatException(
+                        "unknown vehicle type " + type);
+        }
+    }
+
+    /*
+     * Returns the string table entry for the extra part of the given vehicle,
+     * or null if the vehicle's extra part is not a string.
+     */
+    private static String extraString(PublicTransport vehicle) {
+        if (vehicle instanceof Bus) {
+            return ((Bus) vehicle).getRegistrationNumber();
+        }
+        if (vehicle instanceof Ferry) {
+            return ((Ferry) vehicle).getFerryType();
+        }
+        return null;
+    }
+
+    private static int typeCode(String type) {
+        switch (type == null ? "" : type) {
+            case "train":
+                return TRAIN;
+            case "bus":
+                return BUS;
+            case "ferry":
+                return FERRY;
+            default:
+                return UNKNOWN;
+        }
+    }
+
+    private static int vehicleCode(PublicTransport vehicle) {
+        if (vehicle instanceof Train) {
+            return TRAIN;
+        }
+        if (vehicle instanceof Bus) {
+            return BUS;
+        }
+        if (vehicle instanceof Ferry) {
+            return FERRY;
+        }
+        return UNKNOWN;
+    }
+
+    /*
+     * Returns the index of the given item, or failing that of the first item
+     * with the same key, or the number of items (an invalid index) if there
+     * is no such item.
+     */
+    private static <T, K> int indexOf(T item, K key, Map<T, Integer> indexes,
+                                      Map<K, Integer> keys, int count) {
+        Integer index = indexes.get(item);
+        if (index == null) {
+            index = keys.get(key);
+        }
+        return index == null ? count : index;
+    }
+
+    /*
+     * Maps signed integers to unsigned ones so that values near zero are
+     * small (0 -> 0, -1 -> 1, 1 -> 2, -2 -> 3, ...).
+     */
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xffffffffL;
+    }
+
+    private static int unzigzag(long value) {
+        int bits = (int) value;
+        return (bits >>> 1) ^ -(bits & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, long value)
+            throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int) (value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /*
+     * Reads an unsigned variable length integer of at most 32 bits.
+     */
+    private static long readVarint(ByteBuffer in)
+            throws TransportFormatException {
+        long value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte next = in.get();
+            value |= (long) (next & 0x7f) << shift;
+            if (next >= 0) {
+                if (value > 0xffffffffL) {
+                    throw new TransportFormatException(
+                            "integer out of range");
+                }
+                return value;
+            }
+        }
+        throw new TransportFormatException("integer too long");
+    }
+
+    /*
+     * Reads the number of items in a section, each of which takes at least
+     * the given number of bytes, checking there are enough bytes remaining.
+     */
+    private static int readCount(ByteBuffer in, int minimumSize)
+            throws TransportFormatException {
+        long count = readVarint(in);
+        if (count * minimumSize > in.remaining()) {
+            throw new TransportFormatException("count " + count
+                    + " exceeds the bytes remaining");
+        }
+        return (int) count;
+    }
+
+    private static int readIndex(ByteBuffer in, int count)
+            throws TransportFormatException {
+        return checkIndex(readVarint(in), count);
+    }
+
+    private static int checkIndex(long index, int count)
+            throws TransportFormatException {
+        if (index >= count) {
+            throw new TransportFormatException("index " + index
+                    + " out of range");
+        }
+        return (int) index;
+    }
+
+    /*
+     * Writes the runtime state of a network's stops and vehicles, referring
+     * to stops by their index as the rest of the file does.
+     */
+    private static class StateWriter {
+        private final DataOutputStream out;
+        private final StringTable strings;
+        private final Map<Stop, Integer> stopIndexes;
+        private final Map<String, Integer> stopNames;
+        private final int stopCount;
+
+        StateWriter(DataOutputStream out, StringTable strings,
+                    Map<Stop, Integer> stopIndexes,
+                    Map<String, Integer> stopNames, int stopCount) {
+            this.out = out;
+            this.strings = strings;
+            this.stopIndexes = stopIndexes;
+            this.stopNames = stopNames;
+            this.stopCount = stopCount;
+        }
+
+        void write(List<Stop> stops, List<PublicTransport> vehicles,
+                   Map<PublicTransport, Integer> vehicleIndexes)
+                throws IOException {
+            for (Stop stop : stops) {
+                List<Stop> neighbours = stop.getNeighbours();
+                writeVarint(out, neighbours.size());
+                for (Stop neighbour : neighbours) {
+                    writeVarint(out, indexOf(neighbour));
+                }
+
+                // entries are written in order of destination, so the same
+                // state is always written the same way
+                Map<Stop, RoutingEntry> entries =
+                        stop.getRoutingTable().getEntries();
+                entries.remove(stop);
+                long[] records = new long[entries.size()];
+                RoutingEntry[] values = new RoutingEntry[entries.size()];
+                int count = 0;
+                for (Map.Entry<Stop, RoutingEntry> entry
+                        : entries.entrySet()) {
+                    values[count] = entry.getValue();
+                    records[count] = (long) indexOf(entry.getKey()) << 32
+                            | count;
+                    count++;
+                }
+                Arrays.sort(records);
+                writeVarint(out, count);
+                for (long record : records) {
+                    RoutingEntry entry = values[(int) record];
+                    writeVarint(out, record >>> 32);
+                    writeVarint(out, indexOf(entry.getNext()));
+                    writeVarint(out, entry.getCost());
+                }
+            }
+
+            for (Stop stop : stops) {
+                List<Passenger> waiting = stop.getWaitingPassengers();
+                writeVarint(out, waiting.size());
+                for (Passenger passenger : waiting) {
+                    writePassenger(passenger);
+                    writeStop(stop.getRoutedStop(passenger));
+                }
+
+                List<PublicTransport> atStop = stop.getVehicles();
+                int[] indexes = new int[atStop.size()];
+                for (int i = 0; i < indexes.length; i++) {
+                    Integer index = vehicleIndexes.get(atStop.get(i));
+                    indexes[i] = index == null ? vehicles.size() : index;
+                }
+                Arrays.sort(indexes);
+                writeVarint(out, indexes.length);
+                for (int index : indexes) {
+                    writeVarint(out, index);
+                }
+            }
+
+            for (PublicTransport vehicle : vehicles) {
+                writeVarint(out, zigzag(vehicle.getPosition()));
+                List<Passenger> onBoard = vehicle.getPassengers();
+                writeVarint(out, onBoard.size());
+                for (Passenger passenger : onBoard) {
+                    writePassenger(passenger);
+                }
+            }
+        }
+
+        private void writePassenger(Passenger passenger) throws IOException {
+            boolean concession = passenger instanceof ConcessionPassenger;
+            out.writeByte(concession ? CONCESSION
+                    : passenger.getClass() == Passenger.class ? PASSENGER
+                    : UNKNOWN);
+            writeVarint(out, strings.indexOf(passenger.getName()));
+            writeStop(passenger.getDestination());
+            if (concession) {
+                writeVarint(out, zigzag(
+                        ((ConcessionPassenger) passenger).getConcessionId()));
+            }
+        }
+
+        private void writeStop(Stop stop) throws IOException {
+            writeVarint(out, stop == null ? 0 : indexOf(stop) + 1);
+        }
+
+        private int indexOf(Stop stop) {
+            return BinaryNetworkFormat.indexOf(stop, stop.getName(),
+                    stopIndexes, stopNames, stopCount);
+        }
+    }
+
+    /*
+     * The strings used by a network, each with its index in the table.
+     */
+    private static class StringTable {
+        private final List<String> list = new ArrayList<>();
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        void add(String string) {
+            if (indexes.putIfAbsent(string, list.size()) == null) {
+                list.add(string);
+            }
+        }
+
+        int indexOf(String string) {
+            return indexes.get(string);
+        }
+    }
+}
@@ -0,0 +1,396 @@
+package network;
+
+import exceptions.TransportException;
+import exceptions.TransportFormatException;
+import routes.Route;
+import stops.Stop;
+import utilities.Parsing;
+import vehicles.PublicTransport;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Loads a network file by mapping it into memory and decoding its stops and
+ * vehicles in parallel.
+ *
+ * <p>The file is read in phases, as each section refers to the one before
+ * it: the line boundaries are found (in parallel chunks of the file), the
+ * stops are decoded (in parallel chunks of lines), the routes are decoded in
+ * order (as adding stops to routes updates the stops), and finally the
+ * vehicles are decoded (in parallel chunks of lines) and then added to their
+ * routes in order.
+ *
+ * <p>The file is decoded using the platform's default character set (as by
+ * {@link java.io.FileReader}), which must be ASCII-compatible. Lines which
+ * contain only ASCII characters are decoded directly from the mapped file.
+ */
+class MappedNetworkLoader {
+    // the fewest lines decoded by a single parallel task
+    private static final int MIN_LINES_PER_TASK = 1024;
+
+    // the fewest bytes scanned for line ends by a single parallel task
+    private static final int MIN_BYTES_PER_TASK = 1 << 20;
+
+    // the number of tasks per processor, to balance uneven chunks
+    private static final int TASKS_PER_PROCESSOR = 4;
+
+    // the mapped contents of the file
+    private final ByteBuffer buffer;
+
+    // the character set used for lines which are not plain ASCII
+    private final Charset charset;
+
+    // the index of the first byte of each line
+    private int[] lineStarts;
+
+    // the index of the byte after the last character of each line
+    private int[] lineEnds;
+
+    /*
+     * Creates a loader for the given mapped file contents.
+     */
+    private MappedNetworkLoader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.charset = Charset.defaultCharset();
+    }
+
+    /**
+     * Loads the network in the file indicated by the given filename.
+     *
+     * @param filename The name of the file to load the network from.
+     * @return The network described by the file.
+     * @throws IOException If any IO exceptions occur whilst mapping the file,
+     *         if the file is too large to be mapped, or if the filename is
+     *         null.
+     * @throws TransportFormatException If the file is incorrectly formatted
+     *         (see {@link Network#Network(String)}).
+     */
+    static Network load(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        if (NetworkFiles.isCompressed(filename)) {
+            // compressed lines cannot be found in place
+            return new Network(filename);
+        }
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to map: " + filename);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        return new MappedNetworkLoader(buffer).decode();
+    }
+
+    /*
+     * Decodes the network from the mapped file.
+     */
+    private Network decode() throws TransportFormatException {
+        findLines();
+        int line = 0;
+
+        int stopCount = count(line++, "stop");
+        Stop[] stops = new Stop[Math.max(0, stopCount)];
+        checkLines(line, stops.length);
+        decodeParallel(line, stops.length,
+                (text, index) -> stops[index] = Stop.decode(text));
+        line += stops.length;
+
+        Map<String, Stop> stopsByName = new HashMap<>();
+        for (Stop stop : stops) {
+            stopsByName.putIfAbsent(stop.getName(), stop);
+        }
+
+        int routeCount = count(line++, "route");
+        Route[] routes = new Route[Math.max(0, routeCount)];
+        checkLines(line, routes.length);
+        Map<Integer, Route> routesByNumber = new HashMap<>();
+        Line text = new Line();
+        for (int i = 0; i < routes.length; i++) {
+            try {
+                routes[i] = Route.decodeIndexed(text(line, text),
+                        stopsByName);
+            } catch (TransportFormatException e) {
+                throw atLine(line, e);
+            }
+            routesByNumber.putIfAbsent(routes[i].getRouteNumber(), routes[i]);
+            line++;
+        }
+
+        int vehicleCount = count(line++, "vehicle");
+        PublicTransport[] vehicles =
+                new PublicTransport[Math.max(0, vehicleCount)];
+        checkLines(line, vehicles.length);
+        decodeParallel(line, vehicles.length, (vehicleText, index) ->
+                vehicles[index] = PublicTransport.decodeDetached(vehicleText,
+                        routesByNumber));
+        line += vehicles.length;
+
+        // add the vehicles to their routes in the order they appear
+        for (int i = 0; i < vehicles.length; i++) {
+            try {
+                vehicles[i].getRoute().addTransport(vehicles[i]);
+            } catch (TransportException e) {
+                throw atLine(line - vehicles.length + i,
+                        new TransportFormatException("vehicle's route "
+                                + vehicles[i].getRoute().getRouteNumber()
+                                + " has no stops"));
+            }
+        }
+
+        // there should be no extra lines in the file
+        if (line != lineStarts.length) {
+            throw atLine(line, new TransportFormatException(
+                    "extra line after the last vehicle"));
+        }
+
+        return new Network(new ArrayList<>(Arrays.asList(stops)),
+                new ArrayList<>(Arrays.asList(routes)),
+                new ArrayList<>(Arrays.asList(vehicles)));
+    }
+
+    /*
+     * Finds the start and end of each line in the file, treating '\n', '\r'
+     * and "\r\n" as line terminators (as BufferedReader.readLine() does).
+     */
+    private void findLines() {
+        int size = buffer.limit();
+        int tasks = taskCount(size, MIN_BYTES_PER_TASK);
+        int[][] terminators = new int[tasks][];
+        IntStream.range(0, tasks).parallel().forEach(task ->
+                terminators[task] = findTerminators(
+                        (int) ((long) size * task / tasks),
+                        (int) ((long) size * (task + 1) / tasks)));
+
+        int total = 0;
+        for (int[] chunk : terminators) {
+            total += chunk[0];
+        }
+
+        // a final line need not be terminated
+        int lastEnd = 0;
+        if (total > 0) {
+            int[] last = null;
+            for (int[] chunk : terminators) {
+                if (chunk[0] > 0) {
+                    last = chunk;
+                }
+            }
+            lastEnd = afterTerminator(last[last[0]]);
+        }
+        int lines = lastEnd < size ? total + 1 : total;
+
+        lineStarts = new int[lines];
+        lineEnds = new int[lines];
+        int line = 0;
+        int start = 0;
+        for (int[] chunk : terminators) {
+            for (int i = 1; i <= chunk[0]; i++) {
+                lineStarts[line] = start;
+                lineEnds[line++] = chunk[i];
+                start = afterTerminator(chunk[i]);
+            }
+        }
+        if (line < lines) {
+            lineStarts[line] = start;
+            lineEnds[line] = size;
+        }
+    }
+
+    /*
+     * Returns the positions of the line terminators starting in
+     * buffer[from, to), preceded by the number of terminators found.
+     */
+    private int[] findTerminators(int from, int to) {
+        int[] found = new int[16];
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            byte value = buffer.get(i);
+            boolean terminator = value == '\r' || (value == '\n'
+                    && (i == 0 || buffer.get(i - 1) != '\r'));
+            if (terminator) {
+                if (++count == found.length) {
+                    found = Arrays.copyOf(found, found.length * 2);
+                }
+                found[count] = i;
+            }
+        }
+        found[0] = count;
+        return found;
+    }
+
+    /*
+     * Returns the position after the line terminator at the given position.
+     */
+    private int afterTerminator(int position) {
+        if (buffer.get(position) == '\r' && position + 1 < buffer.limit()
+                && buffer.get(position + 1) == '\n') {
+            return position + 2;
+        }
+        return position + 1;
+    }
+
+    /*
+     * Parses the given line as the number of items in a section.
+     */
+    private int count(int line, String kind)
+            throws TransportFormatException {
+        checkLines(line, 1);
+        Line text = text(line, new Line());
+        try {
+            return Parsing.parseInt(text, 0, text.length());
+        } catch (NumberFormatException e) {
+            throw atLine(line, new TransportFormatException(kind
+                    + " count is not an integer"));
+        }
+    }
+
+    /*
+     * Checks that the file has the given number of lines from the given line.
+     */
+    private void checkLines(int from, int count)
+            throws TransportFormatException {
+        if ((long) from + count > lineStarts.length) {
+            throw atLine(lineStarts.length - 1, new TransportFormatException(
+                    "file ends after this line, but more lines were expected"));
+        }
+    }
+
+    /*
+     * Returns an exception like the given one, but which also gives the
+     * (1-based) number of the line with the given (0-based) index.
+     */
+    private static TransportFormatException atLine(int line,
+            TransportFormatException e) {
+        return new TransportFormatException("line " + (line + 1) + ": "
+                + e.getMessage());
+    }
+
+    /*
+     * Decodes lines [from, from + count) in parallel chunks, passing each line
+     * and its index within the section to the given decoder.
+     */
+    private void decodeParallel(int from, int count, LineDecoder decoder)
+            throws TransportFormatException {
+        int tasks = taskCount(count, MIN_LINES_PER_TASK);
+        TransportFormatException[] failures =
+                new TransportFormatException[tasks];
+        IntStream.range(0, tasks).parallel().forEach(task -> {
+            Line text = new Line();
+            int start = (int) ((long) count * task / tasks);
+            int end = (int) ((long) count * (task + 1) / tasks);
+            int i = start;
+            try {
+                for (; i < end; i++) {
+                    decoder.decode(text(from + i, text), i);
+                }
+            } catch (TransportFormatException e) {
+                failures[task] = atLine(from + i, e);
+            }
+        });
+
+        // report the first failure in the file, as read() would
+        for (TransportFormatException failure : failures) {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /*
+     * Returns the number of parallel tasks to split the given amount of work
+     * into, given the least amount of work worth giving a task.
+     */
+    private static int taskCount(int work, int minimumPerTask) {
+        int tasks = Runtime.getRuntime().availableProcessors()
+                * TASKS_PER_PROCESSOR;
+        return Math.max(1, Math.min(tasks, work / minimumPerTask));
+    }
+
+    /*
+     * Points the given line at the text of the line with the given index,
+     * decoding it first if it is not plain ASCII.
+     */
+    private Line text(int line, Line text) {
+        int start = lineStarts[line];
+        int end = lineEnds[line];
+        text.string = null;
+        text.start = start;
+        text.end = end;
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) < 0) {
+                text.string = new String(bytes(start, end), charset);
+                break;
+            }
+        }
+        return text;
+    }
+
+    private byte[] bytes(int from, int to) {
+        byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; i++) {
+            bytes[i - from] = buffer.get(i);
+        }
+        return bytes;
+    }
+
+    /*
+     * Decodes a line of a section, storing the result at the given index.
+     */
+    private interface LineDecoder {
+        void decode(CharSequence line, int index)
+                throws TransportFormatException;
+    }
+
+    /*
+     * The text of a single line, either read directly from the mapped file
+     * (if it is plain ASCII) or decoded into a string. Lines are reused from
+     * one line to the next, as the decoders do not keep them.
+     */
+    private class Line implements CharSequence {
+        private String string;
+        private int start;
+        private int end;
+
+        @Override
+        public int length() {
+            return string != null ? string.length() : end - start;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return string != null ? string.charAt(index)
+                    : (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            if (string != null) {
+                return string.substring(from, to);
+            }
+            return new String(bytes(start + from, start + to),
+                    StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length()).toString();
+        }
+    }
+}
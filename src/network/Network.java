@@ -4,14 +4,15 @@ import exceptions.DuplicateStopException;
 import exceptions.TransportFormatException;
 import routes.Route;
 import stops.Stop;
+import utilities.Fingerprint;
 import utilities.Writeable;
 import vehicles.PublicTransport;
 
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.NoSuchElementException;
+import java.util.Map;
 
 /**
  * Represents the transportation network, and manages all of the various
@@ -21,6 +22,9 @@ public class Network {
     // standardises newline characters
     private static final String NEWLINE = System.lineSeparator();
 
+    // the most items space is reserved for ahead of reading a section
+    private static final int MAX_INITIAL_CAPACITY = 1 << 16;
+
     // all the stops in the network
     private List<Stop> stops;
 
@@ -30,6 +34,19 @@ public class Network {
     // all the routes in the network
     private List<Route> routes;
 
+    // the locations of all the stops in the network
+    private SpatialIndex locations;
+
+    // the names of all the stops in the network
+    private StopNameIndex names;
+
+    // records the changes made to the network, or null if not recording
+    private NetworkJournal journal;
+
+    // the fingerprints of the stops and of the vehicles, in order
+    private Fingerprint stopsFingerprint;
+    private Fingerprint vehiclesFingerprint;
+
     /**
      * Creates a new empty Network with no stops, vehicles, or routes.
      */
@@ -37,6 +54,30 @@ public class Network {
         this.stops = new ArrayList<>();
         this.vehicles = new ArrayList<>();
         this.routes = new ArrayList<>();
+        this.locations = new SpatialIndex();
+        this.names = new StopNameIndex();
+        this.stopsFingerprint = new Fingerprint();
+        this.vehiclesFingerprint = new Fingerprint();
+    }
+
+    /*
+     * Creates a new Network with the given (already linked) stops, routes,
+     * and vehicles, as decoded by a loader other than read().
+     */
+    Network(List<Stop> stops, List<Route> routes,
+            List<PublicTransport> vehicles) {
+        this();
+        this.stops = stops;
+        this.routes = routes;
+        this.vehicles = vehicles;
+        locations.addAll(stops);
+        for (Stop stop : stops) {
+            names.add(stop);
+            stopsFingerprint.add(Fingerprint.of(stop));
+        }
+        for (PublicTransport vehicle : vehicles) {
+            vehiclesFingerprint.add(Fingerprint.of(vehicle));
+        }
     }
 
     /**
@@ -85,6 +126,9 @@ public class Network {
      * <p>The Network object created should have the stops, routes, and vehicles
      * contained in the given file.
      *
+     * <p>If the file starts with the gzip magic bytes, it is decompressed as
+     * it is read, so a compressed network file can be loaded directly.
+     *
      * @param filename The name of the file to load the network from.
      * @throws IOException If any IO exceptions occur whilst trying to read from
      *         the file, or if the filename is null.
@@ -115,52 +159,226 @@ public class Network {
             throw new IOException();
         }
 
-        // create a file reader
-        BufferedReader reader = new BufferedReader(new FileReader(filename));
-        List<String> lines = new ArrayList<>();
-        String line;
+        try (BufferedReader reader = NetworkFiles.openReader(filename)) {
+            read(reader);
+        }
+    }
+
+    /**
+     * Creates a new Network from information read from the given reader, in
+     * the format described in the {@link #Network(String)} constructor.
+     *
+     * <p>Each line is decoded as soon as it has been read, so the lines of the
+     * file are never all held in memory at once, and an exception is thrown
+     * as soon as an incorrectly formatted line is encountered. The reader is
+     * not closed by this method.
+     *
+     * @param reader The reader to load the network from.
+     * @return The network described by the contents of the reader.
+     * @throws IOException If any IO exceptions occur whilst reading, or if the
+     *         reader is null.
+     * @throws TransportFormatException If the contents of the reader are
+     *         incorrectly formatted (see {@link #Network(String)}).
+     */
+    public static Network load(Reader reader)
+            throws IOException, TransportFormatException {
+        if (reader == null) {
+            throw new IOException();
+        }
+        Network network = new Network();
+        network.read(reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader));
+        return network;
+    }
+
+    /**
+     * Creates a new Network from the file indicated by the given filename, in
+     * the format described in the {@link #Network(String)} constructor, by
+     * mapping the file into memory and decoding it across several threads.
+     *
+     * <p>The network created is the same as the one created by
+     * {@link #Network(String)} for the same file. This is faster for very
+     * large files, where the stops and vehicles are decoded in parallel, but
+     * the whole file is examined before any line is decoded, and files larger
+     * than 2GB cannot be mapped. A compressed file cannot be mapped, and is
+     * instead loaded as by {@link #Network(String)}.
+     *
+     * @param filename The name of the file to load the network from.
+     * @return The network described by the file.
+     * @throws IOException If any IO exceptions occur whilst trying to map the
+     *         file, if the file is too large to be mapped, or if the filename
+     *         is null.
+     * @throws TransportFormatException If the file is incorrectly formatted
+     *         (see {@link #Network(String)}).
+     */
+    public static Network loadMapped(String filename)
+            throws IOException, TransportFormatException {
+        return MappedNetworkLoader.load(filename);
+    }
+
+    /**
+     * Creates a new Network from the file indicated by the given filename,
+     * which should have been written by {@link #saveBinary(String)}. If the
+     * file is compressed with gzip, it is decompressed as it is read.
+     *
+     * @param filename The name of the file to load the network from.
+     * @return The network described by the file.
+     * @throws IOException If any IO exceptions occur whilst trying to read from
+     *         the file, or if the filename is null.
+     * @throws TransportFormatException If the file is not a binary network
+     *         file, is of an unsupported version, is truncated, or describes
+     *         an invalid network.
+     */
+    public static Network loadBinary(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        return BinaryNetworkFormat.load(filename);
+    }
+
+    /**
+     * Creates a new Network, in the state it was in when it was saved, from
+     * the checkpoint file indicated by the given filename (see
+     * {@link #saveCheckpoint(String)}). If the file is compressed with gzip,
+     * it is decompressed as it is read.
+     *
+     * <p>The routing tables of the stops are restored as they were saved
+     * rather than recomputed, so a large network is restored much faster than
+     * it is loaded from a network file, and each waiting passenger is routed
+     * to the same stop as when the checkpoint was saved. The restored network
+     * shares nothing with the saved one, so restoring the same checkpoint more
+     * than once gives independent copies of the network.
+     *
+     * @param filename The name of the file to restore the network from.
+     * @return The network described by the file, in its saved state.
+     * @throws IOException If any IO exceptions occur whilst trying to read from
+     *         the file, or if the filename is null.
+     * @throws TransportFormatException If the file is not a checkpoint file,
+     *         is of an unsupported version, is truncated, or describes an
+     *         invalid network or state.
+     */
+    public static Network loadCheckpoint(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        return BinaryNetworkFormat.loadCheckpoint(filename);
+    }
 
-        // while the end of file has not been reached.
-        while ((line = reader.readLine()) != null) {
-            lines.add(line);
+    /**
+     * Creates a new Network, in the state it was in when it was saved, from
+     * the given checkpoint (see {@link #checkpoint()}).
+     *
+     * <p>This restores a network as {@link #loadCheckpoint(String)} does, but
+     * from bytes held in memory, so the same checkpoint can be restored many
+     * times without reading a file.
+     *
+     * @param checkpoint The checkpoint to restore the network from.
+     * @return The network described by the checkpoint, in its saved state.
+     * @throws TransportFormatException If the checkpoint is null or is not a
+     *         valid checkpoint (see {@link #loadCheckpoint(String)}).
+     */
+    public static Network loadCheckpoint(byte[] checkpoint)
+            throws TransportFormatException {
+        if (checkpoint == null) {
+            throw new TransportFormatException("checkpoint is null");
         }
-        reader.close();
-        Iterator<String> elements = lines.iterator();
+        return BinaryNetworkFormat.loadCheckpoint(checkpoint);
+    }
 
+    /*
+     * Reads the stops, routes, and vehicles of this network from the given
+     * reader, decoding each line as it is read.
+     */
+    private void read(BufferedReader input)
+            throws IOException, TransportFormatException {
+        LineNumberReader reader = new LineNumberReader(input);
         try {
-            // read the stops
-            stops = new ArrayList<>();
-            int stopCount = Integer.parseInt(elements.next().trim());
+            // read the stops, indexing the first stop with each name
+            int stopCount = readCount(reader, "stop");
+            stops = new ArrayList<>(initialCapacity(stopCount));
+            Map<String, Stop> stopsByName =
+                    new HashMap<>(initialCapacity(stopCount));
             for (int i = 0; i < stopCount; i++) {
-                String stop = elements.next();
-                stops.add(Stop.decode(stop));
+                Stop stop = Stop.decode(readLine(reader));
+                stops.add(stop);
+                stopsByName.putIfAbsent(stop.getName(), stop);
+                names.add(stop);
+                stopsFingerprint.add(Fingerprint.of(stop));
             }
+            locations.addAll(stops);
 
-            // read the routes
-            routes = new ArrayList<>();
-            int routeCount = Integer.parseInt(elements.next().trim());
+            // read the routes, indexing the first route with each number
+            int routeCount = readCount(reader, "route");
+            routes = new ArrayList<>(initialCapacity(routeCount));
+            Map<Integer, Route> routesByNumber =
+                    new HashMap<>(initialCapacity(routeCount));
             for (int i = 0; i < routeCount; i++) {
-                String route = elements.next();
-                routes.add(Route.decode(route, stops));
+                Route route = Route.decodeIndexed(readLine(reader),
+                        stopsByName);
+                routes.add(route);
+                routesByNumber.putIfAbsent(route.getRouteNumber(), route);
             }
 
             // read the public transport
-            vehicles = new ArrayList<>();
-            int vehicleCount = Integer.parseInt(elements.next().trim());
+            int vehicleCount = readCount(reader, "vehicle");
+            vehicles = new ArrayList<>(initialCapacity(vehicleCount));
             for (int i = 0; i < vehicleCount; i++) {
-                String vehicle = elements.next();
-                vehicles.add(PublicTransport.decode(vehicle, routes));
+                PublicTransport vehicle = PublicTransport.decodeIndexed(
+                        readLine(reader), routesByNumber);
+                vehicles.add(vehicle);
+                vehiclesFingerprint.add(Fingerprint.of(vehicle));
             }
 
             // there should be no extra lines in the file
-            if (elements.hasNext()) {
-                throw new TransportFormatException();
+            if (reader.readLine() != null) {
+                throw new TransportFormatException(
+                        "extra line after the last vehicle");
             }
-        } catch (NoSuchElementException | NumberFormatException e) {
-            throw new TransportFormatException();
+        } catch (TransportFormatException e) {
+            // say where the problem is
+            throw new TransportFormatException("line "
+                    + reader.getLineNumber() + ": " + e.getMessage());
         }
     }
 
+    /*
+     * Reads the next line from the given reader, throwing a
+     * TransportFormatException if the end of the input has been reached.
+     */
+    private static String readLine(BufferedReader reader)
+            throws IOException, TransportFormatException {
+        String line = reader.readLine();
+        if (line == null) {
+            throw new TransportFormatException(
+                    "file ends after this line, but more lines were expected");
+        }
+        return line;
+    }
+
+    /*
+     * Reads the next line from the given reader as the number of items of the
+     * given kind in a section of the file.
+     */
+    private static int readCount(BufferedReader reader, String kind)
+            throws IOException, TransportFormatException {
+        try {
+            return Integer.parseInt(readLine(reader).trim());
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException(kind
+                    + " count is not an integer");
+        }
+    }
+
+    /*
+     * Returns the capacity to reserve for a section with the given count,
+     * which is limited so that an incorrect count cannot exhaust memory.
+     */
+    private static int initialCapacity(int count) {
+        return Math.max(0, Math.min(count, MAX_INITIAL_CAPACITY));
+    }
+
     /**
      * Adds the given stop to the transportation network.
      * If the given stop is null, it should not be added to the network.
@@ -182,6 +400,12 @@ public class Network {
             }
         }
         stops.add(stop);
+        locations.add(stop);
+        names.add(stop);
+        stopsFingerprint.add(Fingerprint.of(stop));
+        if (journal != null) {
+            journal.stopAdded(stop);
+        }
     }
 
     /**
@@ -211,6 +435,14 @@ public class Network {
             }
         }
         this.stops.addAll(stops);
+        locations.addAll(stops);
+        for (Stop stop : stops) {
+            names.add(stop);
+            stopsFingerprint.add(Fingerprint.of(stop));
+            if (journal != null) {
+                journal.stopAdded(stop);
+            }
+        }
     }
 
     /**
@@ -225,6 +457,92 @@ public class Network {
         return new ArrayList<>(stops);
     }
 
+    /**
+     * Returns the stops in this network whose names start with the given
+     * prefix, ignoring case.
+     *
+     * <p>Stops are returned in alphabetical order of their names, with stops
+     * of the same name in the order in which they were added to the network.
+     * If the given prefix is null, an empty list is returned.
+     *
+     * @param prefix The start of the stop names to find.
+     * @param limit The maximum number of stops to return.
+     * @return Up to limit stops whose names start with the prefix.
+     */
+    public List<Stop> findStopsByPrefix(String prefix, int limit) {
+        return names.withPrefix(prefix, limit);
+    }
+
+    /**
+     * Returns the stops in this network nearest to the given point.
+     *
+     * <p>Distance is measured as Manhattan distance (see
+     * {@link Stop#distanceTo(Stop)}). Stops at the same distance from the
+     * point are returned in the order in which they were added to the
+     * network.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param count The maximum number of stops to return.
+     * @return Up to count stops, ordered from nearest to furthest.
+     */
+    public List<Stop> nearestStops(int x, int y, int count) {
+        return locations.nearest(x, y, count, null);
+    }
+
+    /**
+     * Returns the stops in this network nearest to the given point which are
+     * on a route of the given type.
+     *
+     * <p>Should meet the specification of {@link #nearestStops(int, int, int)},
+     * considering only the stops which have at least one route whose
+     * {@link Route#getType()} is the given type.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param count The maximum number of stops to return.
+     * @param routeType The type of route (e.g. "bus") the stops must be on.
+     * @return Up to count stops, ordered from nearest to furthest.
+     */
+    public List<Stop> nearestStops(int x, int y, int count, String routeType) {
+        return locations.nearest(x, y, count, routeType);
+    }
+
+    /**
+     * Returns all the stops in this network within the given Manhattan
+     * distance of the given point.
+     *
+     * <p>Stops are returned ordered from nearest to furthest, with stops at the
+     * same distance in the order in which they were added to the network.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param distance The maximum distance from the point (inclusive).
+     * @return The stops within the distance of the point.
+     */
+    public List<Stop> stopsWithin(int x, int y, int distance) {
+        return locations.within(x, y, distance, null);
+    }
+
+    /**
+     * Returns all the stops in this network within the given Manhattan
+     * distance of the given point which are on a route of the given type.
+     *
+     * <p>Should meet the specification of {@link #stopsWithin(int, int, int)},
+     * considering only the stops which have at least one route whose
+     * {@link Route#getType()} is the given type.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param distance The maximum distance from the point (inclusive).
+     * @param routeType The type of route (e.g. "bus") the stops must be on.
+     * @return The stops within the distance of the point.
+     */
+    public List<Stop> stopsWithin(int x, int y, int distance,
+                                  String routeType) {
+        return locations.within(x, y, distance, routeType);
+    }
+
     /**
      * Adds the given route to the network.
      *
@@ -235,6 +553,42 @@ public class Network {
     public void addRoute(Route route) {
         if (route != null) {
             routes.add(route);
+            if (journal != null) {
+                journal.routeAdded(route);
+            }
+        }
+    }
+
+    /**
+     * Adds the given stop to the end of the given route, which should be one
+     * of the routes in this network, using {@link Route#addStop(Stop)}.
+     *
+     * <p>Stops should be added to the network's routes with this method
+     * (rather than by calling {@link Route#addStop(Stop)} directly) so that
+     * the change can be recorded in the network's journal, if it has one.
+     *
+     * <p>If the given route or stop is null, or the route is not in this
+     * network, nothing should happen.
+     *
+     * @param route The route to add the stop to.
+     * @param stop The stop to add to the route.
+     */
+    public void addStopToRoute(Route route, Stop stop) {
+        if (route == null || stop == null) {
+            return;
+        }
+        int index = -1;
+        for (int i = 0; i < routes.size() && index < 0; i++) {
+            if (routes.get(i) == route) {
+                index = i;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        route.addStop(stop);
+        if (journal != null) {
+            journal.stopAddedToRoute(index, stop);
         }
     }
 
@@ -260,9 +614,31 @@ public class Network {
     public void addVehicle(PublicTransport vehicle) {
         if (vehicle != null) {
             vehicles.add(vehicle);
+            vehiclesFingerprint.add(Fingerprint.of(vehicle));
+            if (journal != null) {
+                journal.vehicleAdded(vehicle);
+            }
         }
     }
 
+    /**
+     * Sets the journal which changes to this network are recorded in.
+     *
+     * <p>From then on, each stop, route, and vehicle added to the network,
+     * and each stop added to a route with
+     * {@link #addStopToRoute(Route, Stop)}, is appended to the journal. If
+     * the given journal is null, changes are no longer recorded.
+     *
+     * <p>Recording a change throws an {@link java.io.UncheckedIOException} if
+     * it cannot be written to the journal (after the change has been made to
+     * the network).
+     *
+     * @param journal The journal to record changes in, or null.
+     */
+    public void setJournal(NetworkJournal journal) {
+        this.journal = journal;
+    }
+
     /**
      * Gets all the vehicles in this transportation network.
      *
@@ -276,6 +652,111 @@ public class Network {
         return new ArrayList<>(vehicles);
     }
 
+    /**
+     * Returns a hash of the contents of this network: its stops, its routes
+     * (including the stops on each route), and its vehicles, each in order.
+     *
+     * <p>Networks with the same encoded representation (see
+     * {@link #save(String)}) have the same fingerprint, and a network whose
+     * contents differ in any way, including in order, almost certainly has a
+     * different fingerprint. The fingerprint of a network is the same as the
+     * fingerprint of a file it has been saved to (see
+     * {@link #fingerprint(String)}), so a file can be checked against a
+     * network without loading the file.
+     *
+     * <p>The fingerprints of the stops and vehicles are kept up to date as
+     * they are added, as is the fingerprint of each route (see
+     * {@link Route#fingerprint()}), so this takes time proportional to the
+     * number of routes only.
+     *
+     * @return The fingerprint of this network.
+     */
+    public long fingerprint() {
+        Fingerprint routesFingerprint = new Fingerprint();
+        for (Route route : routes) {
+            routesFingerprint.add(route.fingerprint());
+        }
+        return combine(stops.size(), stopsFingerprint.value(), routes.size(),
+                routesFingerprint.value(), vehicles.size(),
+                vehiclesFingerprint.value());
+    }
+
+    /**
+     * Returns the fingerprint of the network in the file indicated by the
+     * given filename, without decoding the network.
+     *
+     * <p>For a file written by {@link #save(String)}, this is the same as the
+     * fingerprint of the saved network (see {@link #fingerprint()}). Other
+     * valid files whose lines are written differently (for example, with
+     * leading zeros in numbers) may have a different fingerprint to the
+     * network loaded from them, but the fingerprint of a file only changes if
+     * the contents of the file change.
+     *
+     * <p>Only the counts at the start of each section are decoded, and the
+     * lines are not stored, so this takes time proportional to the size of
+     * the file and builds no routing tables. A compressed file is
+     * decompressed as it is read, and has the same fingerprint as the
+     * uncompressed file.
+     *
+     * @param filename The name of the file to fingerprint.
+     * @return The fingerprint of the network in the file.
+     * @throws IOException If any IO exceptions occur whilst trying to read from
+     *         the file, or if the filename is null.
+     * @throws TransportFormatException If a section count is not an integer,
+     *         or the file has fewer or more lines than its counts give.
+     */
+    public static long fingerprint(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        try (LineNumberReader reader =
+                     new LineNumberReader(NetworkFiles.openReader(filename))) {
+            try {
+                int stopCount = readCount(reader, "stop");
+                long stopsFingerprint = fingerprintLines(reader, stopCount);
+                int routeCount = readCount(reader, "route");
+                long routesFingerprint = fingerprintLines(reader, routeCount);
+                int vehicleCount = readCount(reader, "vehicle");
+                long vehiclesFingerprint =
+                        fingerprintLines(reader, vehicleCount);
+                if (reader.readLine() != null) {
+                    throw new TransportFormatException(
+                            "extra line after the last vehicle");
+                }
+                return combine(stopCount, stopsFingerprint, routeCount,
+                        routesFingerprint, vehicleCount, vehiclesFingerprint);
+            } catch (TransportFormatException e) {
+                throw new TransportFormatException("line "
+                        + reader.getLineNumber() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Returns the combined fingerprint of the given number of lines read from
+     * the given reader, where each line is fingerprinted as the component it
+     * encodes would be.
+     */
+    private static long fingerprintLines(BufferedReader reader, int count)
+            throws IOException, TransportFormatException {
+        Fingerprint fingerprint = new Fingerprint();
+        for (int i = 0; i < count; i++) {
+            fingerprint.add(Fingerprint.of(readLine(reader)));
+        }
+        return fingerprint.value();
+    }
+
+    /*
+     * Combines the sizes and fingerprints of the three sections of a network
+     * into the fingerprint of the whole network.
+     */
+    private static long combine(int stopCount, long stops, int routeCount,
+                                long routes, int vehicleCount, long vehicles) {
+        return new Fingerprint().add(stopCount).add(stops).add(routeCount)
+                .add(routes).add(vehicleCount).add(vehicles).value();
+    }
+
     /**
      * Saves this network to the file indicated by the given filename.
      *
@@ -288,43 +769,131 @@ public class Network {
      *
      * <p>If the given filename is null, the method should do nothing.
      *
+     * <p>If the filename ends with ".gz", the file is compressed with gzip as
+     * it is written.
+     *
      * @param filename The name of the file to save the network to.
      * @throws IOException If there are any IO errors whilst writing to the
      * file.
      */
     public void save(String filename) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter(filename));
-        writer.write(this.encode());
-        writer.close();
+        save(filename, NetworkFiles.compressedName(filename));
     }
 
     /*
-     * Encodes the given list into a String of the format:
-     * {size}
-     * {toString}
-     * {toString}
-     * ...
-     * {toString}
-     *
-     * where {size} is the size of the list and {toString} is a call to the
-     * toString method of each item in the list.
+     * Saves this network to the file indicated by the given filename, as
+     * described in save(String), compressing it if requested whatever the
+     * filename.
      */
-    private String encodeComponent(List<? extends Writeable> toEncode) {
-        StringBuilder builder = new StringBuilder();
+    void save(String filename, boolean compress) throws IOException {
+        try (BufferedWriter writer =
+                     NetworkFiles.openWriter(filename, compress)) {
+            writeComponent(writer, stops);
+            writeComponent(writer, routes);
+            writeComponent(writer, vehicles);
+        }
+    }
 
-        builder.append(toEncode.size()).append(NEWLINE);
-        for (Writeable component : toEncode) {
-            builder.append(component.encode()).append(NEWLINE);
+    /**
+     * Saves this network to the file indicated by the given filename, in a
+     * compact binary format rather than the text format used by
+     * {@link #save(String)}.
+     *
+     * <p>The file is smaller and much faster to load than the text format, but
+     * is not human readable. It can be loaded with
+     * {@link #loadBinary(String)}. If the filename ends with ".gz", the file
+     * is also compressed with gzip.
+     *
+     * @param filename The name of the file to save the network to.
+     * @throws IOException If there are any IO errors whilst writing to the
+     *         file, or if the filename is null.
+     */
+    public void saveBinary(String filename) throws IOException {
+        if (filename == null) {
+            throw new IOException();
         }
+        BinaryNetworkFormat.save(this, filename);
+    }
+
+    /**
+     * Returns the checkpoint of this network and its runtime state as bytes,
+     * in the format written by {@link #saveCheckpoint(String)} (without
+     * compression). It can be restored with {@link #loadCheckpoint(byte[])}.
+     *
+     * @return The checkpoint of this network.
+     */
+    public byte[] checkpoint() {
+        return BinaryNetworkFormat.checkpoint(this);
+    }
+
+    /**
+     * Returns a copy of this network in its current state, which shares no
+     * stops, routes, vehicles or passengers with this network, so that the
+     * copy can be changed (for example, simulated) independently.
+     *
+     * <p>This is the same as restoring the checkpoint of this network (see
+     * {@link #checkpoint()}), so no routing is recomputed. To make many
+     * copies, it is faster to take the checkpoint once and restore it for
+     * each copy.
+     *
+     * @return An independent copy of this network.
+     * @throws TransportFormatException If this network cannot be restored
+     *         from a checkpoint (see {@link #saveCheckpoint(String)}).
+     */
+    public Network copy() throws TransportFormatException {
+        return loadCheckpoint(checkpoint());
+    }
 
-        return builder.toString();
+    /**
+     * Saves this network and its runtime state to the file indicated by the
+     * given filename, so that it can be restored exactly with
+     * {@link #loadCheckpoint(String)}.
+     *
+     * <p>As well as everything saved by {@link #saveBinary(String)}, a
+     * checkpoint holds the neighbours and routing table of each stop, the
+     * passengers waiting at each stop and the stop each is routed to, the
+     * vehicles at each stop, and the position along its route of each vehicle
+     * and the passengers on board it. If the filename ends with ".gz", the
+     * file is also compressed with gzip. The state of a simulation of the
+     * network (its time and the next event of each vehicle) is not part of
+     * the network, and is checkpointed separately (see
+     * {@link simulation.Simulation#checkpoint()}).
+     *
+     * <p>Stops, routes and vehicles are referred to by their position in the
+     * network's lists, so the state of stops and vehicles which are not part
+     * of this network (such as a passenger's destination in another network)
+     * cannot be saved; the file is still written, but cannot be loaded.
+     *
+     * @param filename The name of the file to save the checkpoint to.
+     * @throws IOException If there are any IO errors whilst writing to the
+     *         file, or if the filename is null.
+     */
+    public void saveCheckpoint(String filename) throws IOException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        BinaryNetworkFormat.saveCheckpoint(this, filename);
     }
 
     /*
-     * Encodes the component of this network as a string.
+     * Writes the given list to the given writer in the format:
+     * {size}
+     * {encode}
+     * {encode}
+     * ...
+     * {encode}
+     *
+     * where {size} is the size of the list and {encode} is the encoded
+     * representation of each item in the list, written directly to the
+     * writer rather than built as a string first.
      */
-    private String encode() {
-        return encodeComponent(stops) + encodeComponent(routes) +
-                encodeComponent(vehicles);
+    private static void writeComponent(Writer writer,
+            List<? extends Writeable> toWrite) throws IOException {
+        writer.write(String.valueOf(toWrite.size()));
+        writer.write(NEWLINE);
+        for (Writeable component : toWrite) {
+            component.encodeTo(writer);
+            writer.write(NEWLINE);
+        }
     }
 }
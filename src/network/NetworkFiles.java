@@ -0,0 +1,159 @@
+package network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Opens network files for reading and writing, compressing and decompressing
+ * them with gzip where needed.
+ *
+ * <p>A file being read is decompressed if it starts with the gzip magic
+ * bytes, whatever its name. A file being written is compressed if its name
+ * ends with {@link #GZIP_SUFFIX}. Compressed files are decompressed and
+ * compressed as they are streamed, so neither an uncompressed copy of the
+ * file nor the whole of its contents is ever held.
+ */
+final class NetworkFiles {
+    /**
+     * The filename suffix of files which are written compressed.
+     */
+    static final String GZIP_SUFFIX = ".gz";
+
+    // the size of the buffers used when compressing and decompressing
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /*
+     * NetworkFiles only has static helper methods, and should not be
+     * instantiated.
+     */
+    private NetworkFiles() {
+    }
+
+    /**
+     * Opens the file indicated by the given filename for reading its bytes,
+     * decompressing them if the file is compressed.
+     *
+     * @param filename The name of the file to open.
+     * @return A buffered stream of the (decompressed) contents of the file.
+     * @throws IOException If the file cannot be opened, or if it starts with
+     *         the gzip magic bytes but has an invalid gzip header.
+     */
+    static InputStream openInput(String filename) throws IOException {
+        InputStream in = new BufferedInputStream(
+                new FileInputStream(filename), BUFFER_SIZE);
+        try {
+            if (startsWithGzipMagic(in)) {
+                return new BufferedInputStream(
+                        new GZIPInputStream(in, BUFFER_SIZE), BUFFER_SIZE);
+            }
+            return in;
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the file indicated by the given filename for reading its lines,
+     * decompressing it if it is compressed. Characters are decoded with the
+     * platform's default charset, as by {@link java.io.FileReader}.
+     *
+     * @param filename The name of the file to open.
+     * @return A reader of the (decompressed) contents of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    static BufferedReader openReader(String filename) throws IOException {
+        return new BufferedReader(new InputStreamReader(openInput(filename),
+                Charset.defaultCharset()));
+    }
+
+    /**
+     * Returns true if the file indicated by the given filename starts with the
+     * gzip magic bytes.
+     *
+     * @param filename The name of the file to check.
+     * @return True if the file is compressed.
+     * @throws IOException If the file cannot be read.
+     */
+    static boolean isCompressed(String filename) throws IOException {
+        try (InputStream in = new BufferedInputStream(
+                new FileInputStream(filename), 2)) {
+            return startsWithGzipMagic(in);
+        }
+    }
+
+    /**
+     * Returns true if files with the given name are written compressed.
+     *
+     * @param filename The name of the file to be written.
+     * @return True if the filename ends with {@link #GZIP_SUFFIX}.
+     */
+    static boolean compressedName(String filename) {
+        return filename.endsWith(GZIP_SUFFIX);
+    }
+
+    /**
+     * Opens the file indicated by the given filename for writing bytes,
+     * compressing them if requested.
+     *
+     * @param filename The name of the file to write.
+     * @param compress Whether the file should be compressed.
+     * @return A buffered stream which writes to the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    static OutputStream openOutput(String filename, boolean compress)
+            throws IOException {
+        OutputStream out = new FileOutputStream(filename);
+        if (compress) {
+            try {
+                out = new GZIPOutputStream(out, BUFFER_SIZE);
+            } catch (IOException e) {
+                out.close();
+                throw e;
+            }
+        }
+        return new BufferedOutputStream(out, BUFFER_SIZE);
+    }
+
+    /**
+     * Opens the file indicated by the given filename for writing lines,
+     * compressing it if requested. Characters are encoded with the platform's
+     * default charset, as by {@link java.io.FileWriter}.
+     *
+     * @param filename The name of the file to write.
+     * @param compress Whether the file should be compressed.
+     * @return A writer which writes to the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    static BufferedWriter openWriter(String filename, boolean compress)
+            throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(
+                openOutput(filename, compress), Charset.defaultCharset()));
+    }
+
+    /*
+     * Returns true if the next two bytes of the given stream are the gzip
+     * magic bytes, leaving the stream where it was.
+     */
+    private static boolean startsWithGzipMagic(InputStream in)
+            throws IOException {
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        return first == (GZIPInputStream.GZIP_MAGIC & 0xff)
+                && second == (GZIPInputStream.GZIP_MAGIC >>> 8);
+    }
+}
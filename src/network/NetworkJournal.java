@@ -0,0 +1,344 @@
+package network;
+
+import exceptions.DuplicateStopException;
+import exceptions.TransportFormatException;
+import routes.Route;
+import stops.Stop;
+import utilities.Parsing;
+import vehicles.PublicTransport;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of the changes made to a network since it was last
+ * saved, so that each change to a network costs only the writing of a single
+ * line, rather than saving the whole network again.
+ *
+ * <p>A journal is kept alongside a snapshot of the network (a file written by
+ * {@link Network#save(String)}). The network is restored by loading the
+ * snapshot and then replaying the journal over it (see {@link #recover()}),
+ * and the journal is folded back into the snapshot by
+ * {@link #compact(Network)}.
+ *
+ * <p>The first line of the journal is 'G:{fingerprint}', where {fingerprint}
+ * is the fingerprint of the snapshot the journal applies to (see
+ * {@link Network#fingerprint()}). Each following line records a single
+ * change, as one of:
+ * <ul>
+ *     <li>'S:{stop}' - a stop was added, where {stop} is the encoded stop
+ *     (see {@link Stop#encode()}).</li>
+ *     <li>'R:{route}' - a route was added, where {route} is the encoded route
+ *     (see {@link Route#encode()}).</li>
+ *     <li>'V:{vehicle}' - a vehicle was added, where {vehicle} is the encoded
+ *     vehicle (see {@link PublicTransport#encode()}).</li>
+ *     <li>'A:{index}:{name}' - the first stop in the network with the name
+ *     {name} was added to the end of the route at position {index} in the
+ *     network's list of routes.</li>
+ * </ul>
+ *
+ * <p>Lines are replayed as the corresponding lines of a network file would be
+ * decoded (see {@link Network#Network(String)}), so stops on routes, and the
+ * routes of vehicles, are found by name and by number respectively.
+ *
+ * <p>Each change is written to the journal file as soon as it is recorded. If
+ * the program stops part way through writing a line, that incomplete last
+ * line is ignored (and removed) when the journal is next recovered. If the
+ * program stops part way through compacting the journal, after the snapshot
+ * has been replaced but before the journal has been emptied, the journal's
+ * fingerprint no longer matches the snapshot, which already includes its
+ * changes, so the journal is discarded rather than replayed again.
+ */
+public class NetworkJournal implements Closeable {
+    // standardises newline characters
+    private static final String NEWLINE = System.lineSeparator();
+
+    // the file the full network is saved to when the journal is compacted
+    private Path snapshot;
+
+    // the file the changes to the network are appended to
+    private Path journal;
+
+    // appends changes to the journal file, or null until recover() is called
+    private Writer writer;
+
+    /**
+     * Creates a new journal for the network saved in the given snapshot file,
+     * with changes recorded in the given journal file.
+     *
+     * <p>Neither file is read or written until {@link #recover()} is called.
+     *
+     * @param snapshotFilename The name of the file the network is saved to.
+     * @param journalFilename The name of the file changes are appended to.
+     * @throws IOException If either filename is null.
+     */
+    public NetworkJournal(String snapshotFilename, String journalFilename)
+            throws IOException {
+        if (snapshotFilename == null || journalFilename == null) {
+            throw new IOException();
+        }
+        this.snapshot = Paths.get(snapshotFilename);
+        this.journal = Paths.get(journalFilename);
+    }
+
+    /**
+     * Restores the network from the snapshot and the journal, and starts
+     * recording the changes made to it in the journal.
+     *
+     * <p>The snapshot is loaded (or an empty network is created if there is
+     * no snapshot file yet), and then each complete line in the journal is
+     * replayed over it. If the last line of the journal is incomplete, it is
+     * removed from the journal file. A journal which does not apply to the
+     * snapshot (its fingerprint is not the snapshot's) was written before the
+     * snapshot was last replaced, so its changes are already in the snapshot
+     * and it is emptied instead. The returned network records any further
+     * changes made to it in this journal.
+     *
+     * @return The network as it was after the last change in the journal.
+     * @throws IOException If any IO exceptions occur whilst reading the
+     *         snapshot or the journal, or whilst opening the journal for
+     *         writing.
+     * @throws TransportFormatException If the snapshot is incorrectly
+     *         formatted (see {@link Network#Network(String)}), the journal
+     *         does not start with its fingerprint line, or a complete line of
+     *         the journal is incorrectly formatted or cannot be applied to the
+     *         network.
+     */
+    public Network recover() throws IOException, TransportFormatException {
+        Network network = Files.exists(snapshot)
+                ? new Network(snapshot.toString()) : new Network();
+        long generation = network.fingerprint();
+
+        boolean applies = false;
+        if (Files.exists(journal)) {
+            byte[] bytes = Files.readAllBytes(journal);
+            int complete = bytes.length;
+            while (complete > 0 && bytes[complete - 1] != '\n') {
+                complete--;
+            }
+            BufferedReader reader = new BufferedReader(new StringReader(
+                    new String(bytes, 0, complete, Charset.defaultCharset())));
+            String header = reader.readLine();
+            if (header != null) {
+                if (!header.startsWith("G:")) {
+                    throw new TransportFormatException(
+                            "journal has no fingerprint line");
+                }
+                applies = header.equals("G:" + generation);
+            }
+            if (applies) {
+                replay(network, reader);
+
+                // drop a torn last line, so the next change starts a new line
+                if (complete < bytes.length) {
+                    try (FileChannel channel = FileChannel.open(journal,
+                            StandardOpenOption.WRITE)) {
+                        channel.truncate(complete);
+                    }
+                }
+            }
+        }
+
+        open(applies, generation);
+        network.setJournal(this);
+        return network;
+    }
+
+    /**
+     * Saves the given network to the snapshot file, and then empties the
+     * journal.
+     *
+     * <p>The snapshot is first written to a temporary file, which then
+     * replaces the snapshot file, so that there is always a complete snapshot.
+     * The emptied journal starts with the new snapshot's fingerprint, so if
+     * the journal is not emptied (the program stops just after the snapshot
+     * is replaced), its changes are not applied to the new snapshot again.
+     * The given network should be the one this journal is recording the
+     * changes of.
+     *
+     * @param network The network to save.
+     * @throws IOException If any IO exceptions occur whilst saving the network
+     *         or emptying the journal, or if the network is null.
+     */
+    public void compact(Network network) throws IOException {
+        if (network == null) {
+            throw new IOException();
+        }
+        Path temporary = snapshot.resolveSibling(snapshot.getFileName()
+                + ".tmp");
+        network.save(temporary.toString(),
+                NetworkFiles.compressedName(snapshot.toString()));
+        Files.move(temporary, snapshot, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        close();
+        open(false, network.fingerprint());
+    }
+
+    /**
+     * Closes the journal file. Any further changes recorded in the journal
+     * will fail, until the journal is recovered again.
+     *
+     * @throws IOException If any IO exceptions occur whilst closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /*
+     * Opens the journal file for writing, either keeping any changes already
+     * in it, or discarding them and starting the journal of the snapshot with
+     * the given fingerprint.
+     */
+    private void open(boolean append, long generation) throws IOException {
+        writer = new FileWriter(journal.toFile(), append);
+        if (!append) {
+            writer.write("G:" + generation + NEWLINE);
+            writer.flush();
+        }
+    }
+
+    /*
+     * Records that the given stop was added to the network.
+     */
+    void stopAdded(Stop stop) {
+        record('S', stop::encodeTo);
+    }
+
+    /*
+     * Records that the given route was added to the network.
+     */
+    void routeAdded(Route route) {
+        record('R', route::encodeTo);
+    }
+
+    /*
+     * Records that the given vehicle was added to the network.
+     */
+    void vehicleAdded(PublicTransport vehicle) {
+        record('V', vehicle::encodeTo);
+    }
+
+    /*
+     * Records that the given stop was added to the route at the given
+     * position in the network's list of routes.
+     */
+    void stopAddedToRoute(int routeIndex, Stop stop) {
+        record('A', out -> out.append(String.valueOf(routeIndex))
+                .append(':').append(stop.getName()));
+    }
+
+    /*
+     * Appends a single line of the given kind to the journal, and flushes it
+     * to the file. IO errors are rethrown unchecked, as the network's methods
+     * which make the changes do not throw IOException.
+     */
+    private void record(char kind, Entry entry) {
+        if (writer == null) {
+            throw new UncheckedIOException(new IOException(
+                    "Journal is not open: " + journal));
+        }
+        try {
+            writer.append(kind).append(':');
+            entry.writeTo(writer);
+            writer.write(NEWLINE);
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /*
+     * Applies each line read from the given journal contents to the network.
+     */
+    private static void replay(Network network, BufferedReader reader)
+            throws IOException, TransportFormatException {
+        Map<String, Stop> stopsByName = Route.indexStops(network.getStops());
+        List<Route> routes = network.getRoutes();
+        Map<Integer, Route> routesByNumber =
+                PublicTransport.indexRoutes(routes);
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.length() < 2 || line.charAt(1) != ':') {
+                throw new TransportFormatException();
+            }
+            String change = line.substring(2);
+            switch (line.charAt(0)) {
+                case 'S':
+                    Stop stop = Stop.decode(change);
+                    try {
+                        network.addStop(stop);
+                    } catch (DuplicateStopException e) {
+                        throw new TransportFormatException();
+                    }
+                    stopsByName.putIfAbsent(stop.getName(), stop);
+                    break;
+                case 'R':
+                    Route route = Route.decodeIndexed(change, stopsByName);
+                    network.addRoute(route);
+                    routes.add(route);
+                    routesByNumber.putIfAbsent(route.getRouteNumber(), route);
+                    break;
+                case 'V':
+                    network.addVehicle(PublicTransport.decodeIndexed(change,
+                            routesByNumber));
+                    break;
+                case 'A':
+                    replayStopAddedToRoute(network, change, routes,
+                            stopsByName);
+                    break;
+                default:
+                    throw new TransportFormatException();
+            }
+        }
+    }
+
+    /*
+     * Applies an 'A:{index}:{name}' line (given without the 'A:') to the
+     * network, whose routes are given in order.
+     */
+    private static void replayStopAddedToRoute(Network network,
+            String change, List<Route> routes, Map<String, Stop> stopsByName)
+            throws TransportFormatException {
+        int indexEnd = Parsing.indexOf(change, ':', 0, change.length());
+        if (indexEnd == change.length()) {
+            throw new TransportFormatException();
+        }
+        Stop stop = stopsByName.get(change.substring(indexEnd + 1));
+        try {
+            int index = Parsing.parseInt(change, 0, indexEnd);
+            if (index < 0 || index >= routes.size() || stop == null) {
+                throw new TransportFormatException();
+            }
+            network.addStopToRoute(routes.get(index), stop);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException();
+        }
+    }
+
+    /*
+     * Writes the part of a journal line describing a change.
+     */
+    private interface Entry {
+        void writeTo(Appendable out) throws IOException;
+    }
+}
@@ -0,0 +1,294 @@
+package network;
+
+import exceptions.TransportFormatException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Keeps a network loaded from a file up to date with that file, so that a new
+ * network file can be picked up without restarting.
+ *
+ * <p>Readers get the current network with {@link #getNetwork()}. When the file
+ * changes, a complete new network (including the routing tables of its stops)
+ * is loaded in the background, and only once it has loaded successfully does
+ * it replace the current network. Until then, and if the new file cannot be
+ * loaded, readers keep getting the previous network. The replacement is
+ * atomic: a reader gets either the old network or the new one, never a
+ * network part way through loading.
+ *
+ * <p>Networks given to readers should be treated as read only, as a network
+ * which has been replaced is not updated further.
+ *
+ * <p>Once a file is loaded, the fingerprint of the network loaded from it
+ * (see {@link Network#fingerprint()}) is compared with that of the current
+ * network. If they are the same, the current network (with its routing
+ * tables) is kept, so rewriting a file with the same contents does not
+ * replace the network readers have. The file is streamed once for each
+ * reload, and the fingerprint is taken from the network actually loaded, so
+ * a file which changes part way through a reload is never remembered by the
+ * fingerprint of other contents.
+ *
+ * <p>The file is watched once {@link #start()} is called, and can also be
+ * reloaded at any time with {@link #reload()}. The outcome and duration of
+ * each reload is reported to the reloader's {@link Listener}, if any.
+ */
+public class NetworkReloader implements Closeable {
+    // the file the network is loaded from
+    private Path file;
+
+    // the network readers are currently given
+    private AtomicReference<Network> current;
+
+    // the fingerprint of the current network
+    private volatile long fingerprint;
+
+    // loads new networks one at a time, in the background
+    private ExecutorService loader;
+
+    // held whilst a reload is in progress, so reloads replace the network in
+    // the order they started
+    private final Object reloading = new Object();
+
+    // true if a reload has been requested but has not yet started
+    private AtomicBoolean pending;
+
+    // watches the file's directory, or null until start() is called
+    private WatchService watcher;
+
+    // told about the outcome of each reload, or null
+    private volatile Listener listener;
+
+    /**
+     * Receives the outcome of each attempt to reload the network.
+     *
+     * <p>Methods are called on the thread which loaded the network, which is
+     * a background thread for reloads caused by the file changing.
+     */
+    public interface Listener {
+        /**
+         * Called after a new network has replaced the previous one.
+         *
+         * @param network The new network.
+         * @param nanos How long the new network took to load, in nanoseconds.
+         */
+        void reloaded(Network network, long nanos);
+
+        /**
+         * Called when a new network could not be loaded, in which case the
+         * previous network is kept.
+         *
+         * @param cause Why the network could not be loaded.
+         * @param nanos How long was spent trying to load the network, in
+         *              nanoseconds.
+         */
+        void reloadFailed(Exception cause, long nanos);
+
+        /**
+         * Called when the network loaded from the file has the same
+         * fingerprint as the current network, in which case the current
+         * network is kept.
+         *
+         * @param network The current network.
+         * @param nanos How long the file took to load and fingerprint, in
+         *              nanoseconds.
+         */
+        default void unchanged(Network network, long nanos) {
+        }
+    }
+
+    /**
+     * Creates a new reloader for the network file with the given filename,
+     * loading the network from it straight away.
+     *
+     * <p>The file is not watched for changes until {@link #start()} is called.
+     *
+     * @param filename The name of the file to load the network from.
+     * @throws IOException If any IO exceptions occur whilst trying to read from
+     *         the file, or if the filename is null.
+     * @throws TransportFormatException If the file is incorrectly formatted
+     *         (see {@link Network#Network(String)}).
+     */
+    public NetworkReloader(String filename)
+            throws IOException, TransportFormatException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        this.file = Paths.get(filename).toAbsolutePath();
+        Network network = new Network(filename);
+        this.fingerprint = network.fingerprint();
+        this.current = new AtomicReference<>(network);
+        this.pending = new AtomicBoolean();
+        this.loader = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "network-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the most recently loaded network.
+     *
+     * @return The current network.
+     */
+    public Network getNetwork() {
+        return current.get();
+    }
+
+    /**
+     * Sets the listener told about the outcome of each reload, replacing any
+     * previous listener. If the given listener is null, reloads are no longer
+     * reported.
+     *
+     * @param listener The listener to report reloads to, or null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts watching the file, so that the network is reloaded in the
+     * background whenever the file is created, modified, or replaced.
+     *
+     * <p>Several changes made to the file in quick succession cause at most
+     * one reload to wait behind the reload in progress. Calling this method
+     * again once the file is being watched has no effect.
+     *
+     * @throws IOException If the file's directory cannot be watched.
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watcher = FileSystems.getDefault().newWatchService();
+        file.getParent().register(watcher,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+
+        WatchService service = watcher;
+        Thread thread = new Thread(() -> watch(service),
+                "network-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the network from the file again, replacing the current network if
+     * the file loads successfully, unless the fingerprint of the network
+     * loaded has not changed.
+     *
+     * <p>The network is loaded on the calling thread, waiting for any reload
+     * already in progress to finish first, and the outcome is reported to the
+     * listener as well as returned.
+     *
+     * @return True if the network was replaced or the file was unchanged, or
+     *         false if the file could not be loaded and the previous network
+     *         was kept.
+     */
+    public boolean reload() {
+        synchronized (reloading) {
+            long start = System.nanoTime();
+            Network network;
+            long loaded;
+            try {
+                network = new Network(file.toString());
+                loaded = network.fingerprint();
+            } catch (IOException | TransportFormatException
+                    | RuntimeException e) {
+                Listener listener = this.listener;
+                if (listener != null) {
+                    listener.reloadFailed(e, System.nanoTime() - start);
+                }
+                return false;
+            }
+            if (loaded == fingerprint) {
+                Listener listener = this.listener;
+                if (listener != null) {
+                    listener.unchanged(current.get(),
+                            System.nanoTime() - start);
+                }
+                return true;
+            }
+            current.set(network);
+            fingerprint = loaded;
+            Listener listener = this.listener;
+            if (listener != null) {
+                listener.reloaded(network, System.nanoTime() - start);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Stops watching the file and stops any background reload which has not
+     * yet started. The current network is still available afterwards.
+     *
+     * @throws IOException If any IO exceptions occur whilst closing the watch
+     *         service.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        loader.shutdownNow();
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /*
+     * Waits for changes to the file's directory until the watch service is
+     * closed, requesting a reload whenever the file itself changes.
+     */
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    Object context = event.context();
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(context)) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    requestReload();
+                }
+                if (!key.reset()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // the reloader was closed
+        }
+    }
+
+    /*
+     * Queues a background reload, unless one is already waiting to start.
+     */
+    private void requestReload() {
+        if (pending.compareAndSet(false, true)) {
+            try {
+                loader.execute(() -> {
+                    pending.set(false);
+                    reload();
+                });
+            } catch (RejectedExecutionException e) {
+                // the reloader was closed
+            }
+        }
+    }
+}
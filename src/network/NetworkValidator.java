@@ -0,0 +1,224 @@
+package network;
+
+import exceptions.TransportFormatException;
+import network.ValidationError.Section;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks network files for problems, reporting every problem found rather
+ * than only the first.
+ *
+ * <p>The file is read once, line by line, and each line is decoded as it
+ * would be by {@link Network#Network(String)}, so a file has no errors if
+ * and only if it can be loaded. Routes are decoded without linking their
+ * stops (see {@link Route#decodeUnlinked(CharSequence, Map)}), so no routing
+ * tables are built, and the time taken is linear in the size of the file.
+ *
+ * <p>Where the counts at the start of each section are wrong, the sections
+ * are instead found by their count lines: a line in the stops or routes
+ * section which contains neither ':' nor ',' (and so cannot be a stop or a
+ * route) is taken to be the count line of the next section. A negative count
+ * is read as 0, as it is when the file is loaded. Each line after an error
+ * is still checked, but an error may cause errors in later lines (for
+ * example, a route with an invalid stop cannot be used by vehicles).
+ */
+public class NetworkValidator {
+    // the number of items the current section's count line gave (0 if it
+    // was negative), or -1 if the count line was invalid, and the count as
+    // it was given
+    private int expected;
+    private int given;
+
+    // the number of items found in the current section so far
+    private int found;
+
+    // the section currently being read, or null before the first count line
+    private Section section;
+
+    // the number of the current section's count line
+    private int countLine;
+
+    // the errors found so far
+    private List<ValidationError> errors;
+
+    // the first stop with each name, and the first route with each number
+    private Map<String, Stop> stopsByName;
+    private Map<Integer, Route> routesByNumber;
+
+    /*
+     * Creates a validator for a single file.
+     */
+    private NetworkValidator() {
+        this.errors = new ArrayList<>();
+        this.stopsByName = new HashMap<>();
+        this.routesByNumber = new HashMap<>();
+    }
+
+    /**
+     * Checks the network file indicated by the given filename.
+     *
+     * @param filename The name of the file to check.
+     * @return Every error found in the file, in order of line number (an
+     *          empty list if the file is valid).
+     * @throws IOException If any IO exceptions occur whilst trying to read from
+     *         the file, or if the filename is null.
+     */
+    public static List<ValidationError> validate(String filename)
+            throws IOException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        try (BufferedReader reader = NetworkFiles.openReader(filename)) {
+            return validate(reader);
+        }
+    }
+
+    /**
+     * Checks the network read from the given reader, in the format described
+     * in the {@link Network#Network(String)} constructor. The reader is not
+     * closed by this method.
+     *
+     * @param reader The reader to check the network from.
+     * @return Every error found, in order of line number (an empty list if
+     *          the network is valid).
+     * @throws IOException If any IO exceptions occur whilst reading, or if the
+     *         reader is null.
+     */
+    public static List<ValidationError> validate(Reader reader)
+            throws IOException {
+        if (reader == null) {
+            throw new IOException();
+        }
+        BufferedReader lines = reader instanceof BufferedReader
+                ? (BufferedReader) reader : new BufferedReader(reader);
+
+        NetworkValidator validator = new NetworkValidator();
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null) {
+            validator.check(++lineNumber, line);
+        }
+        validator.finish(lineNumber);
+
+        // count errors are only found at the end of their section
+        validator.errors.sort(
+                Comparator.comparingInt(ValidationError::getLineNumber));
+        return validator.errors;
+    }
+
+    /*
+     * Checks a single line of the file.
+     */
+    private void check(int lineNumber, String line) {
+        if (section == null) {
+            startSection(Section.STOPS, lineNumber, line);
+        } else if (section != Section.VEHICLES && isCountLine(line)) {
+            endSection();
+            startSection(section == Section.STOPS ? Section.ROUTES
+                    : Section.VEHICLES, lineNumber, line);
+        } else if (section == Section.VEHICLES && found == expected) {
+            error(lineNumber, "extra line after the last vehicle");
+        } else {
+            found++;
+            try {
+                decode(line);
+            } catch (TransportFormatException e) {
+                error(lineNumber, e.getMessage());
+            }
+        }
+    }
+
+    /*
+     * Checks that the file contained every section, once the last line has
+     * been read.
+     */
+    private void finish(int lastLine) {
+        if (section == null) {
+            errors.add(new ValidationError(1, Section.STOPS,
+                    "file is empty"));
+            return;
+        }
+        endSection();
+        if (section != Section.VEHICLES) {
+            error(lastLine, "file ends before the "
+                    + (section == Section.STOPS ? "route" : "vehicle")
+                    + " count");
+        }
+    }
+
+    /*
+     * Starts the given section, whose count is given by the given line.
+     */
+    private void startSection(Section next, int lineNumber, String line) {
+        section = next;
+        countLine = lineNumber;
+        found = 0;
+        try {
+            given = Integer.parseInt(line.trim());
+            // a negative count is read as no items, as it is when loading
+            expected = Math.max(0, given);
+        } catch (NumberFormatException e) {
+            error(lineNumber, kind() + " count is not an integer");
+            expected = -1;
+        }
+    }
+
+    /*
+     * Checks that the current section had as many items as its count gave.
+     */
+    private void endSection() {
+        if (expected >= 0 && found != expected) {
+            error(countLine, kind() + " count is " + given
+                    + ", but there are " + found + " " + kind() + "s");
+        }
+    }
+
+    /*
+     * Decodes the given line as an item of the current section, remembering
+     * stops and routes for the lines which follow.
+     */
+    private void decode(String line) throws TransportFormatException {
+        switch (section) {
+            case STOPS:
+                Stop stop = Stop.decode(line);
+                stopsByName.putIfAbsent(stop.getName(), stop);
+                break;
+            case ROUTES:
+                Route route = Route.decodeUnlinked(line, stopsByName);
+                routesByNumber.putIfAbsent(route.getRouteNumber(), route);
+                break;
+            default:
+                PublicTransport.decodeIndexed(line, routesByNumber);
+                break;
+        }
+    }
+
+    /*
+     * Returns true if the given line cannot be a stop or route, and so should
+     * be the count line of the next section.
+     */
+    private static boolean isCountLine(String line) {
+        return !line.trim().isEmpty() && line.indexOf(':') < 0
+                && line.indexOf(',') < 0;
+    }
+
+    private String kind() {
+        return section == Section.STOPS ? "stop"
+                : section == Section.ROUTES ? "route" : "vehicle";
+    }
+
+    private void error(int lineNumber, String reason) {
+        errors.add(new ValidationError(lineNumber, section, reason));
+    }
+}
@@ -0,0 +1,395 @@
+package network;
+
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An index over the locations of stops, used to find the stops nearest to a
+ * point, or within a given distance of a point, without having to consider
+ * every stop in the network.
+ *
+ * <p>Distances are Manhattan distances, as calculated by
+ * {@link Stop#distanceTo(Stop)}. Stops at the same distance are returned in
+ * the order in which they were added to the index.
+ *
+ * <p>The stops are held in balanced k-d trees, whose sizes are distinct
+ * powers of two (as in the binary representation of the number of stops).
+ * Adding a stop merges the trees it carries into, as in adding one to a
+ * binary number, so each stop is rebuilt into a larger tree at most a
+ * logarithmic number of times, and a query searches at most a logarithmic
+ * number of trees. Queries do not modify the index.
+ */
+public class SpatialIndex {
+    // all the stops in the index, in the order they were added
+    private List<Stop> stops;
+
+    // the trees, by level: the tree at level i is null or holds 2^i indexes
+    // into stops, arranged as an implicit k-d tree where the median of each
+    // range is the node splitting that range (on x at even depths and on y
+    // at odd depths)
+    private List<int[]> trees;
+
+    /**
+     * Creates a new empty index.
+     */
+    public SpatialIndex() {
+        this.stops = new ArrayList<>();
+        this.trees = new ArrayList<>();
+    }
+
+    /**
+     * Adds the given stop to the index.
+     *
+     * <p>If the given stop is null, it should not be added to the index.
+     *
+     * @param stop The stop to add.
+     */
+    public void add(Stop stop) {
+        if (stop == null) {
+            return;
+        }
+        stops.add(stop);
+        insert(stops.size() - 1);
+    }
+
+    /**
+     * Adds all of the given stops to the index, in order.
+     *
+     * <p>This is equivalent to adding each stop with {@link #add(Stop)}, but
+     * when at least as many stops are added as are already in the index, the
+     * trees are rebuilt only once, so it is much faster when adding many
+     * stops at once (for example, when loading a network). Null stops should
+     * not be added to the index.
+     *
+     * @param toAdd The stops to add.
+     */
+    public void addAll(List<Stop> toAdd) {
+        int before = stops.size();
+        for (Stop stop : toAdd) {
+            if (stop != null) {
+                stops.add(stop);
+            }
+        }
+
+        if (stops.size() - before >= before) {
+            rebuild();
+        } else {
+            for (int i = before; i < stops.size(); i++) {
+                insert(i);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of stops in the index.
+     *
+     * @return The number of stops in the index.
+     */
+    public int size() {
+        return stops.size();
+    }
+
+    /**
+     * Returns the stops nearest to the given point, closest first.
+     *
+     * <p>If the routeType is not null, only stops which are on at least one
+     * route of that type (as given by {@link Route#getType()}) are
+     * considered.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param count The maximum number of stops to return.
+     * @param routeType The type of route the stops must be on, or null to
+     *                  consider all stops.
+     * @return Up to count stops, ordered by distance from the point.
+     */
+    public List<Stop> nearest(int x, int y, int count, String routeType) {
+        if (count <= 0) {
+            return new ArrayList<>();
+        }
+        Nearest nearest = new Nearest(x, y, Math.min(count, stops.size()),
+                routeType);
+        // the largest tree is searched first, as it is likely to find the
+        // nearest stops and so let the other trees be skipped
+        for (int level = trees.size() - 1; level >= 0; level--) {
+            int[] tree = trees.get(level);
+            if (tree != null) {
+                nearest.search(tree, 0, tree.length, 0);
+            }
+        }
+        return nearest.result();
+    }
+
+    /**
+     * Returns all of the stops within the given distance of the given point,
+     * closest first.
+     *
+     * <p>If the routeType is not null, only stops which are on at least one
+     * route of that type (as given by {@link Route#getType()}) are
+     * considered.
+     *
+     * @param x The x-coordinate of the point.
+     * @param y The y-coordinate of the point.
+     * @param distance The maximum Manhattan distance from the point.
+     * @param routeType The type of route the stops must be on, or null to
+     *                  consider all stops.
+     * @return The stops within the distance, ordered by distance from the
+     *          point.
+     */
+    public List<Stop> within(int x, int y, int distance, String routeType) {
+        List<long[]> found = new ArrayList<>();
+        if (distance >= 0) {
+            for (int[] tree : trees) {
+                if (tree != null) {
+                    collect(tree, 0, tree.length, 0, x, y, distance,
+                            routeType, found);
+                }
+            }
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0])
+                : Long.compare(a[1], b[1]));
+
+        List<Stop> result = new ArrayList<>(found.size());
+        for (long[] entry : found) {
+            result.add(stops.get((int) entry[1]));
+        }
+        return result;
+    }
+
+    /*
+     * Adds the stops within the given distance of (x, y) in the subtree over
+     * tree[from, to) to the found list, as {distance, index} pairs.
+     */
+    private void collect(int[] tree, int from, int to, int depth, int x,
+                         int y, int distance, String routeType,
+                         List<long[]> found) {
+        if (from >= to) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int index = tree[mid];
+
+        long d = distance(index, x, y);
+        if (d <= distance && accepts(index, routeType)) {
+            found.add(new long[] {d, index});
+        }
+
+        // the left subtree holds coordinates no greater than the split, and
+        // the right subtree coordinates no less than it
+        long split = axisDifference(index, x, y, depth);
+        if (split <= distance) {
+            collect(tree, from, mid, depth + 1, x, y, distance, routeType,
+                    found);
+        }
+        if (split >= -distance) {
+            collect(tree, mid + 1, to, depth + 1, x, y, distance, routeType,
+                    found);
+        }
+    }
+
+    /*
+     * Adds the stop at the given index into stops to the trees, merging it
+     * with the trees of each level from the lowest until a level is empty,
+     * and building the merged tree at that level.
+     */
+    private void insert(int index) {
+        int[] carry = {index};
+        int level = 0;
+        while (level < trees.size() && trees.get(level) != null) {
+            int[] tree = trees.get(level);
+            int[] merged = Arrays.copyOf(tree, tree.length + carry.length);
+            System.arraycopy(carry, 0, merged, tree.length, carry.length);
+            carry = merged;
+            trees.set(level, null);
+            level++;
+        }
+        build(carry, 0, carry.length, 0);
+        if (level == trees.size()) {
+            trees.add(carry);
+        } else {
+            trees.set(level, carry);
+        }
+    }
+
+    /*
+     * Rebuilds the trees over all of the stops in the index, with one tree
+     * for each bit set in the number of stops.
+     */
+    private void rebuild() {
+        trees.clear();
+        int start = 0;
+        for (int level = 0; (stops.size() >>> level) != 0; level++) {
+            trees.add(null);
+        }
+        for (int level = trees.size() - 1; level >= 0; level--) {
+            if ((stops.size() & (1 << level)) != 0) {
+                int[] nodes = new int[1 << level];
+                for (int i = 0; i < nodes.length; i++) {
+                    nodes[i] = start + i;
+                }
+                start += nodes.length;
+                build(nodes, 0, nodes.length, 0);
+                trees.set(level, nodes);
+            }
+        }
+    }
+
+    /*
+     * Arranges nodes[from, to) so the median on the axis for the given depth
+     * is in the middle, with smaller coordinates before it and larger ones
+     * after, then does the same for both halves.
+     */
+    private void build(int[] nodes, int from, int to, int depth) {
+        if (to - from <= 1) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        select(nodes, from, to - 1, mid, depth % 2 == 0);
+        build(nodes, from, mid, depth + 1);
+        build(nodes, mid + 1, to, depth + 1);
+    }
+
+    /*
+     * Partially sorts nodes[left, right] by coordinate so that the node which
+     * belongs at position k is placed there (quickselect).
+     */
+    private void select(int[] nodes, int left, int right, int k,
+                        boolean onX) {
+        while (left < right) {
+            int pivot = coordinate(nodes[(left + right) >>> 1], onX);
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coordinate(nodes[i], onX) < pivot) {
+                    i++;
+                }
+                while (coordinate(nodes[j], onX) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = nodes[i];
+                    nodes[i++] = nodes[j];
+                    nodes[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private int coordinate(int index, boolean onX) {
+        Stop stop = stops.get(index);
+        return onX ? stop.getX() : stop.getY();
+    }
+
+    /*
+     * Returns the signed difference between the query point and the given
+     * node on the axis the node splits at the given depth.
+     */
+    private long axisDifference(int index, int x, int y, int depth) {
+        Stop stop = stops.get(index);
+        return depth % 2 == 0 ? (long) x - stop.getX()
+                : (long) y - stop.getY();
+    }
+
+    private long distance(int index, int x, int y) {
+        Stop stop = stops.get(index);
+        return Math.abs((long) x - stop.getX())
+                + Math.abs((long) y - stop.getY());
+    }
+
+    private boolean accepts(int index, String routeType) {
+        return routeType == null
+                || stops.get(index).isOnRouteOfType(routeType);
+    }
+
+    /*
+     * The state of a single nearest-stops query, keeping the best stops found
+     * so far sorted by distance and then by the order they were added.
+     */
+    private class Nearest {
+        private final int x;
+        private final int y;
+        private final String routeType;
+        private final long[] distances;
+        private final int[] indexes;
+        private int found;
+
+        Nearest(int x, int y, int count, String routeType) {
+            this.x = x;
+            this.y = y;
+            this.routeType = routeType;
+            this.distances = new long[count];
+            this.indexes = new int[count];
+        }
+
+        void search(int[] tree, int from, int to, int depth) {
+            if (from >= to || indexes.length == 0) {
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            int index = tree[mid];
+            offer(index);
+
+            long split = axisDifference(index, x, y, depth);
+            if (split < 0) {
+                search(tree, from, mid, depth + 1);
+                if (couldImprove(-split)) {
+                    search(tree, mid + 1, to, depth + 1);
+                }
+            } else {
+                search(tree, mid + 1, to, depth + 1);
+                if (couldImprove(split)) {
+                    search(tree, from, mid, depth + 1);
+                }
+            }
+        }
+
+        boolean couldImprove(long bound) {
+            return found < indexes.length || bound <= distances[found - 1];
+        }
+
+        void offer(int index) {
+            if (indexes.length == 0) {
+                return;
+            }
+            long d = distance(index, x, y);
+            if (found == indexes.length && !before(d, index, found - 1)) {
+                return;
+            }
+            if (!accepts(index, routeType)) {
+                return;
+            }
+            int position = found < indexes.length ? found++ : found - 1;
+            while (position > 0 && before(d, index, position - 1)) {
+                distances[position] = distances[position - 1];
+                indexes[position] = indexes[position - 1];
+                position--;
+            }
+            distances[position] = d;
+            indexes[position] = index;
+        }
+
+        boolean before(long d, int index, int position) {
+            return d < distances[position]
+                    || (d == distances[position] && index < indexes[position]);
+        }
+
+        List<Stop> result() {
+            List<Stop> result = new ArrayList<>(found);
+            for (int index : Arrays.copyOf(indexes, found)) {
+                result.add(stops.get(index));
+            }
+            return result;
+        }
+    }
+}
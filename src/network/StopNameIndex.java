@@ -0,0 +1,82 @@
+package network;
+
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * An index over the names of stops, used to find the stops whose names start
+ * with a given prefix (for example, to suggest stops as a name is typed).
+ *
+ * <p>Matching ignores case. Matching stops are returned in alphabetical order
+ * of their names, and stops with the same name in the order in which they
+ * were added to the index.
+ */
+public class StopNameIndex {
+    // the stops in the index, keyed by their name in lower case
+    private NavigableMap<String, List<Stop>> stops;
+
+    /**
+     * Creates a new empty index.
+     */
+    public StopNameIndex() {
+        this.stops = new TreeMap<>();
+    }
+
+    /**
+     * Adds the given stop to the index.
+     *
+     * <p>If the given stop is null, it should not be added to the index.
+     *
+     * @param stop The stop to add.
+     */
+    public void add(Stop stop) {
+        if (stop == null) {
+            return;
+        }
+        stops.computeIfAbsent(key(stop.getName()), name -> new ArrayList<>(1))
+                .add(stop);
+    }
+
+    /**
+     * Returns the stops whose names start with the given prefix, ignoring
+     * case.
+     *
+     * <p>If the given prefix is null, an empty list should be returned. If
+     * the given prefix is empty, every stop matches it.
+     *
+     * @param prefix The start of the stop names to find.
+     * @param limit The maximum number of stops to return.
+     * @return Up to limit stops whose names start with the prefix.
+     */
+    public List<Stop> withPrefix(String prefix, int limit) {
+        List<Stop> matches = new ArrayList<>();
+        if (prefix == null || limit <= 0) {
+            return matches;
+        }
+
+        String start = key(prefix);
+        for (Map.Entry<String, List<Stop>> entry
+                : stops.tailMap(start, true).entrySet()) {
+            if (!entry.getKey().startsWith(start)) {
+                break;
+            }
+            for (Stop stop : entry.getValue()) {
+                matches.add(stop);
+                if (matches.size() == limit) {
+                    return matches;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private static String key(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+}
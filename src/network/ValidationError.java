@@ -0,0 +1,86 @@
+package network;
+
+import java.util.Locale;
+
+/**
+ * A single problem found in a network file by {@link NetworkValidator}.
+ */
+public class ValidationError {
+    /**
+     * The sections of a network file, as described in
+     * {@link Network#Network(String)}. Each section starts with the line
+     * giving its number of items.
+     */
+    public enum Section {
+        STOPS, ROUTES, VEHICLES
+    }
+
+    // the number of the line with the problem, starting from 1
+    private int lineNumber;
+
+    // the section of the file the line is in
+    private Section section;
+
+    // a description of the problem
+    private String reason;
+
+    /**
+     * Creates a new error for the given line of a network file.
+     *
+     * @param lineNumber The number of the line with the problem, starting
+     *                   from 1.
+     * @param section The section of the file the line is in.
+     * @param reason A description of the problem.
+     */
+    public ValidationError(int lineNumber, Section section, String reason) {
+        this.lineNumber = lineNumber;
+        this.section = section;
+        this.reason = reason;
+    }
+
+    /**
+     * Returns the number of the line with the problem, where the first line
+     * of the file is line 1.
+     *
+     * @return The line number of the problem.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the section of the file the problem is in.
+     *
+     * @return The section of the problem.
+     */
+    public Section getSection() {
+        return section;
+    }
+
+    /**
+     * Returns a description of the problem.
+     *
+     * @return The reason the line is invalid.
+     */
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * Creates a string representation of the error in the format:
+     *
+     * <p>'line {lineNumber} ({section}): {reason}'
+     *
+     * <p>without the surrounding quotes, where {section} is the section in
+     * lower case. For example:
+     *
+     * <p>line 3 (stops): stop x-coordinate is not an integer
+     *
+     * @return A string representation of the error.
+     */
+    @Override
+    public String toString() {
+        return "line " + lineNumber + " ("
+                + section.name().toLowerCase(Locale.ROOT) + "): " + reason;
+    }
+}
@@ -52,6 +52,15 @@ public class ConcessionPassenger extends Passenger {
         }
     }
 
+    /**
+     * Returns the identifying number of this passenger's concession card.
+     *
+     * @return The concession id, or -1 if the concession has expired.
+     */
+    public int getConcessionId() {
+        return concessionId;
+    }
+
     /**
      * Returns true if and only if the stored concessionId is valid.
      *
@@ -4,11 +4,18 @@ import exceptions.EmptyRouteException;
 import exceptions.IncompatibleTypeException;
 import exceptions.TransportFormatException;
 import stops.Stop;
+import utilities.Fingerprint;
+import utilities.Parsing;
 import utilities.Writeable;
 import vehicles.PublicTransport;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Represents a route in the transportation network.
@@ -17,6 +24,9 @@ import java.util.List;
  * vehicles can follow.
  */
 public abstract class Route implements Writeable {
+    // the number of stops space is initially reserved for
+    private static final int INITIAL_CAPACITY = 8;
+
     // the name of the route
     private String name;
 
@@ -29,6 +39,17 @@ public abstract class Route implements Writeable {
     // the stops which make up the route
     private List<Stop> route;
 
+    // the first position of each stop on the route, keyed by identity
+    private Map<Stop, Integer> positions;
+
+    // the distance travelled along the route from the start stop to the stop
+    // at each position (only the first stopCount() entries are used)
+    private long[] distances;
+
+    // the fingerprint of the route's encoded representation, kept up to date
+    // as stops are added, or null until it is first needed
+    private Fingerprint fingerprint;
+
     /**
      * Creates a new Route with the given name and number.
      *
@@ -50,6 +71,8 @@ public abstract class Route implements Writeable {
         this.routeNumber = routeNumber;
         this.vehicles = new ArrayList<>();
         this.route = new ArrayList<>();
+        this.positions = new IdentityHashMap<>();
+        this.distances = new long[INITIAL_CAPACITY];
     }
 
     /**
@@ -85,6 +108,84 @@ public abstract class Route implements Writeable {
         return new ArrayList<>(route);
     }
 
+    /**
+     * Returns the number of stops on this route.
+     *
+     * <p>A stop which appears on the route more than once is counted once for
+     * each time it appears.
+     *
+     * @return The number of stops making up the route.
+     */
+    public int stopCount() {
+        return route.size();
+    }
+
+    /**
+     * Returns the stop at the given position on this route, where the first
+     * stop added to the route is at position 0.
+     *
+     * @param position The position of the stop on the route.
+     * @return The stop at the given position, or null if there is no stop at
+     *          that position.
+     */
+    public Stop getStop(int position) {
+        if (position < 0 || position >= route.size()) {
+            return null;
+        }
+        return route.get(position);
+    }
+
+    /**
+     * Returns the first position at which the given stop appears on this
+     * route (see {@link #getStop(int)}).
+     *
+     * <p>Stops are matched by identity rather than by
+     * {@link Stop#equals(Object)}, so this takes constant time.
+     *
+     * @param stop The stop to find on the route.
+     * @return The position of the stop on the route, or -1 if the stop is
+     *          null or is not on the route.
+     */
+    public int positionOf(Stop stop) {
+        Integer position = positions.get(stop);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Returns the distance travelled along this route between the stops at
+     * the two given positions (see {@link #getStop(int)}).
+     *
+     * <p>The distance is the sum of the Manhattan distances (see
+     * {@link Stop#distanceTo(Stop)}) between each pair of consecutive stops
+     * between the two positions, and is the same whichever order the
+     * positions are given in.
+     *
+     * @param from The position of the first stop.
+     * @param to The position of the second stop.
+     * @return The distance along the route between the positions, or -1 if
+     *          either position has no stop.
+     */
+    public long distanceAlong(int from, int to) {
+        if (getStop(from) == null || getStop(to) == null) {
+            return -1;
+        }
+        return Math.abs(distances[to] - distances[from]);
+    }
+
+    /**
+     * Returns the distance travelled along this route between the two given
+     * stops, using the first position of each stop on the route (see
+     * {@link #positionOf(Stop)} and {@link #distanceAlong(int, int)}).
+     *
+     * @param from The first stop.
+     * @param to The second stop.
+     * @return The distance along the route between the stops, or -1 if either
+     *          stop is not on the route.
+     */
+    public long distanceAlong(Stop from, Stop to) {
+        return distanceAlong(positionOf(from), positionOf(to));
+    }
+
     /**
      * Returns the first stop of the route (i.e. the first stop to be added to
      * the route).
@@ -122,7 +223,7 @@ public abstract class Route implements Writeable {
         }
 
         stop.addRoute(this);
-        route.add(stop);
+        appendStop(stop);
 
         // return if this was the first stop
         if (route.size() == 1) {
@@ -134,6 +235,72 @@ public abstract class Route implements Writeable {
         stop.addNeighbouringStop(previous);
     }
 
+    /**
+     * Adds a stop to the route without linking it to the previous stop.
+     *
+     * <p>The route is added as a route of the given stop, as by
+     * {@link #addStop(Stop)}, but the stops are not made neighbours of each
+     * other, so no routing tables are updated. This is intended for restoring
+     * a network whose neighbours and routing tables are restored separately
+     * (see {@link Stop#restoreNeighbouringStop(Stop)}).
+     *
+     * <p>If the given stop is null, it should not be added to the route.
+     *
+     * @param stop The stop to be added to this route.
+     */
+    public void addStopUnlinked(Stop stop) {
+        if (stop == null) {
+            return;
+        }
+        stop.addRoute(this);
+        appendStop(stop);
+    }
+
+    /*
+     * Records the given stop at the end of this route, without modifying the
+     * stop.
+     */
+    private void appendStop(Stop stop) {
+        int position = route.size();
+        positions.putIfAbsent(stop, position);
+        if (position == distances.length) {
+            distances = Arrays.copyOf(distances, position * 2);
+        }
+        distances[position] = position == 0 ? 0 : distances[position - 1]
+                + route.get(position - 1).distanceTo(stop);
+        route.add(stop);
+        if (fingerprint != null) {
+            if (position > 0) {
+                fingerprint.append('|');
+            }
+            fingerprint.append(stop.getName());
+        }
+    }
+
+    /**
+     * Returns a hash of this route's encoded representation (see
+     * {@link #encode()}), which is the same as
+     * {@code Fingerprint.of(route.encode())}.
+     *
+     * <p>Once calculated, the fingerprint is updated as each stop is added to
+     * the route, so it takes constant time to return.
+     *
+     * @return The fingerprint of this route.
+     * @see Fingerprint
+     */
+    public long fingerprint() {
+        if (fingerprint == null) {
+            fingerprint = new Fingerprint();
+            try {
+                encodeTo(fingerprint);
+            } catch (IOException e) {
+                // appending to a fingerprint never fails
+                throw new AssertionError(e);
+            }
+        }
+        return fingerprint.value();
+    }
+
     /**
      * Returns the public transport vehicles currently on this route.
      *
@@ -265,43 +432,71 @@ public abstract class Route implements Writeable {
         return this.toString();
     }
 
+    /**
+     * Writes this route to the given output in the same format as specified
+     * in {@link Route#toString()}.
+     *
+     * @param out The output to write this route to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(getType()).append(',');
+        out.append(name).append(',').append(String.valueOf(routeNumber));
+        out.append(':');
+
+        for (int i = 0; i < route.size(); i++) {
+            if (i > 0) {
+                out.append('|');
+            }
+            out.append(route.get(i).getName());
+        }
+    }
+
     /*
      * Returns a route object of the correct type (e.g. TrainRoute if the type
-     * is "train") with the given name and route number.
+     * given by routeString[from, to) is "train") with the given name and route
+     * number.
      *
-     * @require type != null && name != null
+     * @require routeString != null && name != null
      *
      * Throws a TransportFormatException if the given type is not valid.
      */
-    private static Route routeFromType(String type, String name,
-                                       int routeNumber)
-            throws TransportFormatException{
-        switch (type) {
-            case "train":
-                return new TrainRoute(name, routeNumber);
-            case "bus":
-                return new BusRoute(name, routeNumber);
-            case "ferry":
-                return new FerryRoute(name, routeNumber);
-            default:
-                throw new TransportFormatException();
+    private static Route routeFromType(CharSequence routeString, int from,
+                                       int to, String name, int routeNumber)
+            throws TransportFormatException {
+        if (Parsing.matches(routeString, from, to, "train")) {
+            return new TrainRoute(name, routeNumber);
+        } else if (Parsing.matches(routeString, from, to, "bus")) {
+            return new BusRoute(name, routeNumber);
+        } else if (Parsing.matches(routeString, from, to, "ferry")) {
+            return new FerryRoute(name, routeNumber);
         }
+        throw new TransportFormatException("route type '"
+                + Parsing.substring(routeString, from, to)
+                + "' is not train, bus or ferry");
     }
 
-    /*
-     * Returns the stop object associated with the given stop name if it is
-     * contained within the given list of stops, or null if it is not.
+    /**
+     * Maps the name of each of the given stops to the first stop in the list
+     * with that name. Null stops in the list are skipped.
+     *
+     * <p>The returned map can be passed to
+     * {@link #decodeIndexed(CharSequence, Map)} in place of the list of
+     * stops, so that decoding many routes against the same stops does not
+     * require a scan of the whole list for each stop name.
      *
-     * @requires stopName != null
-     * @requires stops != null
+     * @param stops The stops to index.
+     * @return A mapping from stop names to the first stop with that name.
      */
-    private static Stop findStop(String stopName, List<Stop> stops) {
+    public static Map<String, Stop> indexStops(List<Stop> stops) {
+        Map<String, Stop> index = new HashMap<>();
         for (Stop stop : stops) {
-            if (stopName.equals(stop.getName())) {
-                return stop;
+            if (stop != null) {
+                index.putIfAbsent(stop.getName(), stop);
             }
         }
-        return null;
+        return index;
     }
 
     /**
@@ -351,62 +546,143 @@ public abstract class Route implements Writeable {
      *                 is allowed by the Route constructor).</li>
      *             </ol>
      */
-    public static Route decode(String routeString, List<Stop> existingStops)
+    public static Route decode(CharSequence routeString,
+                               List<Stop> existingStops)
             throws TransportFormatException {
-        Route route;
-        try {
-            // if the last character is a colon, remove
-            if (routeString.endsWith(":")) {
-                routeString = routeString.substring(0,
-                        routeString.length() - 1);
-            }
-            String[] parts = routeString.split(":");
+        return decodeIndexed(routeString,
+                existingStops == null ? null : indexStops(existingStops));
+    }
+
+    /**
+     * Creates a new route object based on the given string representation,
+     * looking up the stops on the route by name in the given index.
+     *
+     * <p>Should meet the specification of
+     * {@link #decode(CharSequence, List)}, where the index maps each stop name
+     * to the first stop in the list of existing stops with that name (as
+     * returned by {@link #indexStops(List)}).
+     *
+     * @param routeString The string to decode.
+     * @param stopsByName The stops which currently exist in the transport
+     *                    network, indexed by name.
+     * @return The decoded route object (a BusRoute, TrainRoute, or FerryRoute,
+     *          depending on the type given in the string).
+     * @throws TransportFormatException If the given string or stopsByName
+     *          index is null, or the string is incorrectly formatted (see
+     *          {@link #decode(CharSequence, List)}).
+     */
+    public static Route decodeIndexed(CharSequence routeString,
+                                      Map<String, Stop> stopsByName)
+            throws TransportFormatException {
+        return decode(routeString, stopsByName, true);
+    }
 
-            // check that there are no extra delimiters
-            int count = routeString.length() -
-                    routeString.replace(":", "").length();
+    /**
+     * Creates a new route object based on the given string representation,
+     * as in {@link #decodeIndexed(CharSequence, Map)}, but without linking
+     * the route's stops.
+     *
+     * <p>The returned route lists its stops, but the stops themselves are not
+     * modified (the route is not added to them, and they are not made
+     * neighbours of each other, so no routing tables are updated). This is
+     * intended for checking that routes are valid (for example, when
+     * validating a network file), and the returned route should not be added
+     * to a network.
+     *
+     * @param routeString The string to decode.
+     * @param stopsByName The stops which currently exist in the transport
+     *                    network, indexed by name.
+     * @return The decoded route object, with unlinked stops.
+     * @throws TransportFormatException If the given string or stopsByName
+     *          index is null, or the string is incorrectly formatted (see
+     *          {@link #decode(CharSequence, List)}).
+     */
+    public static Route decodeUnlinked(CharSequence routeString,
+                                       Map<String, Stop> stopsByName)
+            throws TransportFormatException {
+        return decode(routeString, stopsByName, false);
+    }
 
-            if (count + 1 != parts.length){
-                throw new TransportFormatException();
-            }
+    /*
+     * Decodes the given route, adding its stops with addStop() if link is
+     * true, or otherwise only recording them on the route.
+     */
+    private static Route decode(CharSequence routeString,
+                                Map<String, Stop> stopsByName, boolean link)
+            throws TransportFormatException {
+        if (routeString == null) {
+            throw new TransportFormatException("route is null");
+        }
 
-            String[] identifiers = parts[0].split(",");
-            // should be three parts
-            final int NUM_PARTS = 3;
-            if (identifiers.length != NUM_PARTS){
-                throw new TransportFormatException();
-            }
+        // a single trailing colon marks a route with no stops
+        int end = routeString.length();
+        if (end > 0 && routeString.charAt(end - 1) == ':') {
+            end--;
+        }
+        // any other colon must be followed by a list of stops
+        if (end > 0 && routeString.charAt(end - 1) == ':') {
+            throw new TransportFormatException("route ends with '::'");
+        }
+        int headerEnd = Parsing.indexOf(routeString, ':', 0, end);
+
+        // the header should be three parts, separated by commas (any further
+        // parts must be empty)
+        int typeEnd = Parsing.indexOf(routeString, ',', 0, headerEnd);
+        int nameEnd = Parsing.indexOf(routeString, ',', typeEnd + 1,
+                headerEnd);
+        int numberEnd = Parsing.indexOf(routeString, ',', nameEnd + 1,
+                headerEnd);
+        if (nameEnd >= headerEnd || numberEnd == nameEnd + 1
+                || Parsing.count(routeString, ',', numberEnd, headerEnd)
+                != headerEnd - numberEnd) {
+            throw new TransportFormatException("route should start with "
+                    + "type,name,number with exactly two ','");
+        }
 
-            String type = identifiers[0];
-            String name = identifiers[1];
-            int routeNumber = Integer.parseInt(identifiers[2].trim());
-            route = routeFromType(type, name, routeNumber);
+        int routeNumber;
+        try {
+            routeNumber = Parsing.parseInt(routeString, nameEnd + 1,
+                    numberEnd);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException(
+                    "route number is not an integer");
+        }
+        Route route = routeFromType(routeString, 0, typeEnd,
+                Parsing.substring(routeString, typeEnd + 1, nameEnd),
+                routeNumber);
 
-            if (parts.length == 1) {
-                return route;
-            }
+        if (headerEnd == end) {
+            return route;
+        }
 
-            String[] stops = parts[1].split("\\|");
-            //check that there are no extra delimiters
-            count = parts[1].length() -
-                    parts[1].replace("|", "").length();
-            if (count + 1 != stops.length){
-                throw new TransportFormatException();
-            }
+        // the stops are the part up to the next colon, if there is one, and
+        // the last stop name should not be empty
+        int stopsStart = headerEnd + 1;
+        int stopsEnd = Parsing.indexOf(routeString, ':', stopsStart, end);
+        if (stopsEnd > stopsStart
+                && routeString.charAt(stopsEnd - 1) == '|') {
+            throw new TransportFormatException("route stops end with '|'");
+        }
 
-            // for each stop, check that it is valid
-            for (String stopName : stops) {
-                Stop stop = findStop(stopName, existingStops);
-                if (stop == null) {
-                    throw new TransportFormatException();
-                }
+        // for each stop, check that it is valid
+        int nameStart = stopsStart;
+        while (nameStart <= stopsEnd) {
+            int stopEnd = Parsing.indexOf(routeString, '|', nameStart,
+                    stopsEnd);
+            String stopName = Parsing.substring(routeString, nameStart,
+                    stopEnd);
+            Stop stop = stopsByName == null ? null
+                    : stopsByName.get(stopName);
+            if (stop == null) {
+                throw new TransportFormatException("route stop '" + stopName
+                        + "' does not exist");
+            }
+            if (link) {
                 route.addStop(stop);
+            } else {
+                route.appendStop(stop);
             }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            throw new TransportFormatException();
-        } catch (NumberFormatException | NullPointerException |
-                AssertionError e) {
-            throw new TransportFormatException();
+            nameStart = stopEnd + 1;
         }
 
         return route;
@@ -0,0 +1,473 @@
+package simulation;
+
+import network.Network;
+import stops.Router;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Routes passengers away from crowded vehicles, using the recent occupancy of
+ * the vehicles travelling between each pair of neighbouring stops.
+ *
+ * <p>The cost of travelling from a stop to a neighbour is the distance
+ * between them (as in a {@link stops.RoutingTable}), increased by a penalty
+ * for crowding:
+ *
+ * <p>{@code cost = distance * (1 + weight * load^4)}
+ *
+ * <p>rounded down, where the load is the recent occupancy of vehicles
+ * departing along that segment as a fraction of their capacity, and the
+ * weight is the crowding weight (see {@link #setCrowdingWeight(double)}). The
+ * penalty is small until vehicles are nearly full, and with the default
+ * weight of 4 a segment whose vehicles are full (so that passengers are left
+ * behind, see {@link Stop#transportDepart(PublicTransport, Stop)}) costs five
+ * times its distance. Segments with no recorded occupancy cost their
+ * distance, so an uncrowded network is routed along the same shortest paths
+ * as its routing tables.
+ *
+ * <p>Each occupancy recorded (see {@link #record(Stop, Stop, double)}) is
+ * combined with the segment's previous load as an exponentially weighted
+ * moving average, so recent departures count most. Recorded occupancy only
+ * changes routing when {@link #update()} is called, which recomputes only
+ * the routes it could change: for each destination, the shortest path tree
+ * towards it is recomputed only if a segment on the tree has become more
+ * expensive, or a segment off the tree has become cheap enough to shorten a
+ * path. Updates are usually made periodically, for example between steps of
+ * a simulation.
+ *
+ * <p>Once attached to its stops (see {@link #attach()}), the router chooses
+ * where each passenger arriving at a stop is routed to next. Every passenger
+ * gets off at every stop (see {@link Stop#transportArrive(PublicTransport)}),
+ * so passengers already travelling are steered around crowding at each stop
+ * they pass through.
+ *
+ * <p>Routes are read without locking, so passengers can be routed from any
+ * number of threads, including while an update is being made; occupancy can
+ * be recorded from any number of threads (for example, by a
+ * {@link ParallelSimulation}).
+ */
+public class CrowdingRouter implements Router, Simulation.Listener {
+    // the cost of an unreachable destination
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // the stops, and the index of each stop, by identity
+    private Stop[] stops;
+    private Map<Stop, Integer> indexes;
+
+    // the neighbours of each stop, and the distance to each neighbour
+    private int[][] neighbours;
+    private int[][] distances;
+
+    // the stops which have each stop as a neighbour, and the position of the
+    // stop in each of their lists of neighbours
+    private int[][] incoming;
+    private int[][] incomingPositions;
+
+    // the recent load of each segment, and the cost routed with
+    private double[][] loads;
+    private int[][] costs;
+
+    // the segments whose load has changed since the last update, each listed
+    // once
+    private List<int[]> changed;
+    private boolean[][] dirty;
+
+    // the weight of the crowding penalty, and of each new occupancy in the
+    // moving average of the load
+    private double crowdingWeight;
+    private double smoothing;
+
+    // the cost from each stop to each destination, and the next stop on the
+    // way (-1 if there is none), indexed by destination and then stop
+    private volatile Routes routes;
+
+    /*
+     * The routes to every destination at one time. The routes to a
+     * destination are replaced rather than changed, so routes can be read
+     * while they are being updated.
+     */
+    private static class Routes {
+        private final int[][] costs;
+        private final int[][] next;
+
+        Routes(int[][] costs, int[][] next) {
+            this.costs = costs;
+            this.next = next;
+        }
+    }
+
+    /**
+     * Creates a new router between the stops of the given network (see
+     * {@link #CrowdingRouter(List)}).
+     *
+     * @param network The network whose stops to route between.
+     */
+    public CrowdingRouter(Network network) {
+        this(network.getStops());
+    }
+
+    /**
+     * Creates a new router between the given stops, with no occupancy
+     * recorded, a crowding weight of 4, and a smoothing of 0.3.
+     *
+     * <p>Passengers are routed from each stop to its neighbours (see
+     * {@link Stop#getNeighbours()}) which are among the given stops, as they
+     * were when the router was created.
+     *
+     * @param stops The stops to route between.
+     */
+    public CrowdingRouter(List<Stop> stops) {
+        this.indexes = new IdentityHashMap<>();
+        List<Stop> unique = new ArrayList<>();
+        for (Stop stop : stops) {
+            if (stop != null && !indexes.containsKey(stop)) {
+                indexes.put(stop, unique.size());
+                unique.add(stop);
+            }
+        }
+        this.stops = unique.toArray(new Stop[0]);
+        int count = this.stops.length;
+        this.neighbours = new int[count][];
+        this.distances = new int[count][];
+        this.loads = new double[count][];
+        this.costs = new int[count][];
+        this.dirty = new boolean[count][];
+        int[] incomingCounts = new int[count];
+        for (int stop = 0; stop < count; stop++) {
+            List<Integer> known = new ArrayList<>();
+            for (Stop neighbour : this.stops[stop].getNeighbours()) {
+                Integer index = indexes.get(neighbour);
+                if (index != null && !known.contains(index)) {
+                    known.add(index);
+                    incomingCounts[index]++;
+                }
+            }
+            neighbours[stop] = new int[known.size()];
+            distances[stop] = new int[known.size()];
+            for (int i = 0; i < known.size(); i++) {
+                neighbours[stop][i] = known.get(i);
+                distances[stop][i] = this.stops[stop].distanceTo(
+                        this.stops[known.get(i)]);
+            }
+            loads[stop] = new double[known.size()];
+            costs[stop] = distances[stop].clone();
+            dirty[stop] = new boolean[known.size()];
+        }
+
+        this.incoming = new int[count][];
+        this.incomingPositions = new int[count][];
+        for (int stop = 0; stop < count; stop++) {
+            incoming[stop] = new int[incomingCounts[stop]];
+            incomingPositions[stop] = new int[incomingCounts[stop]];
+            incomingCounts[stop] = 0;
+        }
+        for (int stop = 0; stop < count; stop++) {
+            for (int i = 0; i < neighbours[stop].length; i++) {
+                int neighbour = neighbours[stop][i];
+                incoming[neighbour][incomingCounts[neighbour]] = stop;
+                incomingPositions[neighbour][incomingCounts[neighbour]++] = i;
+            }
+        }
+
+        this.changed = new ArrayList<>();
+        this.crowdingWeight = 4;
+        this.smoothing = 0.3;
+        int[][] routeCosts = new int[count][];
+        int[][] next = new int[count][];
+        for (int destination = 0; destination < count; destination++) {
+            route(destination, routeCosts, next);
+        }
+        this.routes = new Routes(routeCosts, next);
+    }
+
+    /**
+     * Sets the weight of the crowding penalty, from the next update. If the
+     * given weight is negative, 0 is used instead (so that crowding is
+     * ignored).
+     *
+     * @param crowdingWeight The weight of the crowding penalty.
+     */
+    public synchronized void setCrowdingWeight(double crowdingWeight) {
+        this.crowdingWeight = Math.max(0, crowdingWeight);
+        for (int stop = 0; stop < stops.length; stop++) {
+            for (int i = 0; i < neighbours[stop].length; i++) {
+                markChanged(stop, i);
+            }
+        }
+    }
+
+    /**
+     * Sets the weight of each newly recorded occupancy in the moving average
+     * of a segment's load, between 0 (exclusive) and 1, where 1 uses only the
+     * latest occupancy. Weights outside of that range are limited to it.
+     *
+     * @param smoothing The weight of new occupancy.
+     */
+    public synchronized void setSmoothing(double smoothing) {
+        this.smoothing = Math.max(Double.MIN_VALUE, Math.min(1, smoothing));
+    }
+
+    /**
+     * Records the occupancy of a vehicle travelling from the first stop to the
+     * second, as a fraction of its capacity. Fractions are limited to between
+     * 0 and 1, and occupancy between stops which are not neighbours of this
+     * router is ignored.
+     *
+     * <p>The occupancy does not change routing until the next update.
+     *
+     * @param from The stop the vehicle departed from.
+     * @param to The stop the vehicle is travelling to.
+     * @param load The occupancy of the vehicle.
+     */
+    public synchronized void record(Stop from, Stop to, double load) {
+        Integer stop = indexes.get(from);
+        Integer neighbour = indexes.get(to);
+        if (stop == null || neighbour == null || Double.isNaN(load)) {
+            return;
+        }
+        int position = positionOf(stop, neighbour);
+        if (position < 0) {
+            return;
+        }
+        double previous = loads[stop][position];
+        loads[stop][position] = previous + smoothing
+                * (Math.max(0, Math.min(1, load)) - previous);
+        markChanged(stop, position);
+    }
+
+    /**
+     * Records the occupancy of the vehicle as it departs (see
+     * {@link #record(Stop, Stop, double)}). Vehicles with no capacity are
+     * ignored.
+     */
+    @Override
+    public void departed(PublicTransport vehicle, Stop from, Stop to,
+                         long time) {
+        if (vehicle.getCapacity() > 0) {
+            record(from, to,
+                    (double) vehicle.passengerCount() / vehicle.getCapacity());
+        }
+    }
+
+    /**
+     * Returns the recent load of vehicles travelling from the first stop to
+     * the second, as a fraction of their capacity.
+     *
+     * @param from The stop the vehicles depart from.
+     * @param to The stop the vehicles travel to.
+     * @return The load, or 0 if the stops are not neighbours of this router
+     *          or no occupancy has been recorded.
+     */
+    public synchronized double getLoad(Stop from, Stop to) {
+        Integer stop = indexes.get(from);
+        Integer neighbour = indexes.get(to);
+        int position = stop == null || neighbour == null ? -1
+                : positionOf(stop, neighbour);
+        return position < 0 ? 0 : loads[stop][position];
+    }
+
+    /**
+     * Changes the cost of each segment whose load has changed since the last
+     * update, and recomputes the routes to each destination which that could
+     * change.
+     *
+     * @return The number of destinations whose routes were recomputed.
+     */
+    public synchronized int update() {
+        Routes current = routes;
+        BitSet affected = new BitSet(stops.length);
+        for (int[] segment : changed) {
+            int stop = segment[0];
+            int position = segment[1];
+            dirty[stop][position] = false;
+            int cost = cost(stop, position);
+            int previous = costs[stop][position];
+            if (cost == previous) {
+                continue;
+            }
+            costs[stop][position] = cost;
+            int neighbour = neighbours[stop][position];
+            for (int destination = 0; destination < stops.length;
+                    destination++) {
+                int[] routeCosts = current.costs[destination];
+                if (cost > previous) {
+                    // only paths along the segment become more expensive
+                    if (current.next[destination][stop] == neighbour) {
+                        affected.set(destination);
+                    }
+                } else if (routeCosts[neighbour] != UNREACHABLE
+                        && (long) cost + routeCosts[neighbour]
+                        < routeCosts[stop]) {
+                    // the segment now gives a cheaper path
+                    affected.set(destination);
+                }
+            }
+        }
+        changed.clear();
+        if (affected.isEmpty()) {
+            return 0;
+        }
+
+        int[][] routeCosts = current.costs.clone();
+        int[][] next = current.next.clone();
+        for (int destination = affected.nextSetBit(0); destination >= 0;
+                destination = affected.nextSetBit(destination + 1)) {
+            route(destination, routeCosts, next);
+        }
+        routes = new Routes(routeCosts, next);
+        return affected.cardinality();
+    }
+
+    /**
+     * Returns the neighbouring stop which passengers at the first stop should
+     * be routed to next to reach the second stop most cheaply, with the costs
+     * as of the last update.
+     *
+     * @param from The stop the passengers are at.
+     * @param destination The stop the passengers are travelling to.
+     * @return The next stop (the destination itself, if the passengers are
+     *          already there), or null if either stop is not one of this
+     *          router's stops, or the destination cannot be reached.
+     */
+    @Override
+    public Stop nextStop(Stop from, Stop destination) {
+        Integer stop = indexes.get(from);
+        Integer target = indexes.get(destination);
+        if (stop == null || target == null) {
+            return null;
+        }
+        int next = routes.next[target][stop];
+        return next < 0 ? null : stops[next];
+    }
+
+    /**
+     * Returns the cost of the cheapest way from the first stop to the second,
+     * with the costs as of the last update.
+     *
+     * @param from The stop to travel from.
+     * @param destination The stop to travel to.
+     * @return The cost, or Integer.MAX_VALUE if either stop is not one of
+     *          this router's stops, or the destination cannot be reached.
+     */
+    public int costTo(Stop from, Stop destination) {
+        Integer stop = indexes.get(from);
+        Integer target = indexes.get(destination);
+        if (stop == null || target == null) {
+            return UNREACHABLE;
+        }
+        return routes.costs[target][stop];
+    }
+
+    /**
+     * Makes this router choose where passengers arriving at each of its stops
+     * are routed to (see {@link Stop#setRouter(Router)}).
+     */
+    public void attach() {
+        for (Stop stop : stops) {
+            stop.setRouter(this);
+        }
+    }
+
+    /**
+     * Stops this router choosing where passengers arriving at its stops are
+     * routed to, if it is still the router of each stop, so the stops use
+     * their routing tables again.
+     */
+    public void detach() {
+        for (Stop stop : stops) {
+            if (stop.getRouter() == this) {
+                stop.setRouter(null);
+            }
+        }
+    }
+
+    /*
+     * Lists the segment from the given stop to its neighbour at the given
+     * position as changed, if it is not already.
+     */
+    private void markChanged(int stop, int position) {
+        if (!dirty[stop][position]) {
+            dirty[stop][position] = true;
+            changed.add(new int[] {stop, position});
+        }
+    }
+
+    /*
+     * Returns the position of the given neighbour in the given stop's list of
+     * neighbours, or -1 if it is not a neighbour.
+     */
+    private int positionOf(int stop, int neighbour) {
+        for (int i = 0; i < neighbours[stop].length; i++) {
+            if (neighbours[stop][i] == neighbour) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /*
+     * Returns the cost of the segment from the given stop to its neighbour at
+     * the given position, with its current load.
+     */
+    private int cost(int stop, int position) {
+        double load = loads[stop][position];
+        double cost = distances[stop][position]
+                * (1 + crowdingWeight * load * load * load * load);
+        return (int) Math.min(UNREACHABLE - 1, cost);
+    }
+
+    /*
+     * Computes the cheapest cost from every stop to the given destination,
+     * and the next stop on the way, by searching backwards from the
+     * destination along the current segment costs, storing new arrays for the
+     * destination in the given arrays.
+     */
+    private void route(int destination, int[][] routeCosts, int[][] next) {
+        int count = stops.length;
+        long[] best = new long[count];
+        Arrays.fill(best, Long.MAX_VALUE);
+        int[] nextStops = new int[count];
+        Arrays.fill(nextStops, -1);
+        best[destination] = 0;
+        nextStops[destination] = destination;
+
+        // stops are queued by cost and then index, so ties are broken the
+        // same way on every update
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) ->
+                a[0] != b[0] ? Long.compare(a[0], b[0])
+                        : Long.compare(a[1], b[1]));
+        queue.add(new long[] {0, destination});
+        while (!queue.isEmpty()) {
+            long[] head = queue.poll();
+            int stop = (int) head[1];
+            if (head[0] > best[stop]) {
+                continue;
+            }
+            for (int i = 0; i < incoming[stop].length; i++) {
+                int from = incoming[stop][i];
+                long cost = best[stop]
+                        + costs[from][incomingPositions[stop][i]];
+                if (cost < best[from]) {
+                    best[from] = cost;
+                    nextStops[from] = stop;
+                    queue.add(new long[] {cost, from});
+                }
+            }
+        }
+
+        int[] destinationCosts = new int[count];
+        for (int stop = 0; stop < count; stop++) {
+            destinationCosts[stop] = (int) Math.min(UNREACHABLE, best[stop]);
+        }
+        routeCosts[destination] = destinationCosts;
+        next[destination] = nextStops;
+    }
+}
@@ -0,0 +1,277 @@
+package simulation;
+
+import network.Network;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
+import stops.Stop;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Generates passengers arriving at stops, with rates given by an
+ * origin-destination demand matrix.
+ *
+ * <p>Passengers arrive at each origin stop as a Poisson process, with a rate
+ * equal to the total demand from that stop. Each arriving passenger's
+ * destination is chosen at random, in proportion to the demand from the
+ * origin to each destination, and a given fraction of the passengers are
+ * concession passengers with valid concession cards (see
+ * {@link ConcessionPassenger#isValid()}). Passengers are
+ * placed at their origin with {@link Stop#addPassenger(Passenger)}, and so are
+ * routed towards their destination.
+ *
+ * <p>Each origin has its own stream of random numbers, split from a single
+ * generator seeded with the given seed, so the passengers generated do not
+ * depend on how many threads generate them: generators with the same stops,
+ * demand, and seed always generate the same passengers, in the same order at
+ * each stop. Origins are generated in parallel, as each only adds passengers
+ * to its own stop.
+ *
+ * <p>Passengers are generated in steps (see {@link #addUntil(long)}), and so
+ * are usually generated alternately with running a simulation, for example
+ * calling {@code addUntil(t)} and then {@code runUntil(t)} for each time
+ * {@code t} in turn.
+ */
+public class DemandGenerator {
+    // the smallest concession id generated: ids are only valid with at least
+    // 6 digits, starting with "42" (see ConcessionPassenger.renew)
+    private static final int CONCESSION_ID_BASE = 42000000;
+
+    // the number of concession ids generated from, which keeps every id below
+    // 43000000 and so starting with "42"
+    private static final int CONCESSION_ID_RANGE = 1000000;
+
+    // the stops passengers arrive at and travel to
+    private Stop[] stops;
+
+    // the total arrival rate at each origin
+    private double[] rates;
+
+    // the cumulative demand from each origin to each destination, used to
+    // choose destinations (null for an origin with no demand)
+    private double[][] cumulative;
+
+    // the fraction of passengers who are concession passengers
+    private double concessionFraction;
+
+    // the random numbers of each origin
+    private SplittableRandom[] randoms;
+
+    // the time the next passenger will arrive at each origin
+    private double[] nextArrivals;
+
+    // the number of passengers generated at each origin so far
+    private long[] counts;
+
+    // told about each passenger generated, or null
+    private Listener listener;
+
+    // whether origins are generated in parallel
+    private boolean parallel = true;
+
+    /**
+     * Receives each passenger as it is generated.
+     *
+     * <p>Origins are generated in parallel, so methods may be called from
+     * several threads at once, but passengers generated at the same origin
+     * are reported in order, from one thread at a time.
+     */
+    public interface Listener {
+        /**
+         * Called when a passenger has been added to its origin stop.
+         *
+         * @param passenger The passenger generated.
+         * @param origin The stop the passenger was added to.
+         * @param time The time the passenger arrived at the stop.
+         */
+        default void generated(Passenger passenger, Stop origin,
+                               double time) {
+        }
+    }
+
+    /**
+     * Creates a new generator of passengers travelling between the stops of
+     * the given network (see {@link #DemandGenerator(List, double[][], double,
+     * long)}).
+     *
+     * @param network The network whose stops passengers travel between.
+     * @param demand The demand matrix, indexed as the network's stops.
+     * @param concessionFraction The fraction of passengers who are concession
+     *                           passengers.
+     * @param seed The seed of the random numbers.
+     */
+    public DemandGenerator(Network network, double[][] demand,
+                           double concessionFraction, long seed) {
+        this(network.getStops(), demand, concessionFraction, seed);
+    }
+
+    /**
+     * Creates a new generator of passengers travelling between the given
+     * stops, starting at time 0.
+     *
+     * <p>{@code demand[o][d]} is the expected number of passengers travelling
+     * from stop {@code o} to stop {@code d} per unit of time. Negative demand,
+     * demand from a stop to itself, and demand outside of the matrix (if it is
+     * smaller than the number of stops) is taken to be 0. The concession
+     * fraction is limited to between 0 and 1.
+     *
+     * @param stops The stops passengers travel between.
+     * @param demand The demand matrix, indexed as the given stops.
+     * @param concessionFraction The fraction of passengers who are concession
+     *                           passengers.
+     * @param seed The seed of the random numbers.
+     */
+    public DemandGenerator(List<Stop> stops, double[][] demand,
+                           double concessionFraction, long seed) {
+        int size = stops.size();
+        this.stops = stops.toArray(new Stop[0]);
+        this.rates = new double[size];
+        this.cumulative = new double[size][];
+        this.concessionFraction = Math.max(0,
+                Math.min(1, concessionFraction));
+        this.randoms = new SplittableRandom[size];
+        this.nextArrivals = new double[size];
+        this.counts = new long[size];
+
+        SplittableRandom root = new SplittableRandom(seed);
+        for (int origin = 0; origin < size; origin++) {
+            randoms[origin] = root.split();
+            double total = 0;
+            double[] row = origin < demand.length && demand[origin] != null
+                    ? demand[origin] : new double[0];
+            double[] sums = new double[size];
+            for (int destination = 0; destination < size; destination++) {
+                if (destination != origin && destination < row.length
+                        && row[destination] > 0) {
+                    total += row[destination];
+                }
+                sums[destination] = total;
+            }
+            rates[origin] = total;
+            if (total > 0) {
+                cumulative[origin] = sums;
+                nextArrivals[origin] = interval(origin);
+            } else {
+                nextArrivals[origin] = Double.POSITIVE_INFINITY;
+            }
+        }
+    }
+
+    /**
+     * Sets the listener told about each passenger generated, replacing any
+     * previous listener. If the given listener is null, passengers are no
+     * longer reported.
+     *
+     * @param listener The listener to report passengers to, or null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Sets whether origins are generated in parallel (as they are by
+     * default), which is not worthwhile when many generators are already
+     * being run in parallel.
+     */
+    void setParallel(boolean parallel) {
+        this.parallel = parallel;
+    }
+
+    /**
+     * Returns the expected number of passengers generated per unit of time,
+     * over all the stops.
+     *
+     * @return The total demand.
+     */
+    public double totalRate() {
+        double total = 0;
+        for (double rate : rates) {
+            total += rate;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the number of passengers generated so far.
+     *
+     * @return The number of passengers added to stops.
+     */
+    public long getPassengerCount() {
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Adds every passenger arriving at or before the given time to their
+     * origin stop, in order of arrival at each stop.
+     *
+     * @param time The time to generate passengers until.
+     * @return The number of passengers added.
+     */
+    public long addUntil(long time) {
+        long before = getPassengerCount();
+        IntStream origins = IntStream.range(0, stops.length);
+        (parallel ? origins.parallel() : origins)
+                .forEach(origin -> addUntil(origin, time));
+        return getPassengerCount() - before;
+    }
+
+    /*
+     * Adds every passenger arriving at the given origin at or before the
+     * given time.
+     */
+    private void addUntil(int origin, long time) {
+        SplittableRandom random = randoms[origin];
+        double[] sums = cumulative[origin];
+        while (nextArrivals[origin] <= time) {
+            int destination = choose(sums,
+                    random.nextDouble() * rates[origin]);
+            String name = "passenger" + origin + "-" + counts[origin];
+            Stop to = stops[destination];
+            Passenger passenger = random.nextDouble() < concessionFraction
+                    ? new ConcessionPassenger(name, to,
+                            CONCESSION_ID_BASE
+                                    + random.nextInt(CONCESSION_ID_RANGE))
+                    : new Passenger(name, to);
+            stops[origin].addPassenger(passenger);
+            if (listener != null) {
+                listener.generated(passenger, stops[origin],
+                        nextArrivals[origin]);
+            }
+            counts[origin]++;
+            nextArrivals[origin] += interval(origin);
+        }
+    }
+
+    /*
+     * Returns the first destination whose cumulative demand is greater than
+     * the given value, which is less than the total demand (so destinations
+     * with no demand are never chosen).
+     */
+    private static int choose(double[] sums, double value) {
+        int low = 0;
+        int high = sums.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sums[middle] > value) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Returns a random time between arrivals at the given origin, which is
+     * exponentially distributed with the origin's rate.
+     */
+    private double interval(int origin) {
+        return -Math.log(1 - randoms[origin].nextDouble()) / rates[origin];
+    }
+}
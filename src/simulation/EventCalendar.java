@@ -0,0 +1,200 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * The calendar of a simulation: a priority queue holding at most one pending
+ * event for each of a fixed number of vehicles, ordered by the time of the
+ * event and then by the index of the vehicle.
+ *
+ * <p>Events at the same time are therefore always taken in the same order,
+ * which makes a simulation deterministic. The queue is an indexed binary heap
+ * held in primitive arrays, so scheduling and taking events allocates no
+ * objects and takes time logarithmic in the number of vehicles.
+ */
+class EventCalendar {
+    // marks a vehicle with no pending event in positions
+    private static final int ABSENT = -1;
+
+    // the vehicle indexes in heap order (only the first size are used)
+    private int[] heap;
+
+    // the position of each vehicle in the heap, or ABSENT
+    private int[] positions;
+
+    // the time of each vehicle's pending event
+    private long[] times;
+
+    // the number of vehicles with a pending event
+    private int size;
+
+    /**
+     * Creates a new empty calendar for the given number of vehicles, which are
+     * indexed from 0.
+     *
+     * @param vehicles The number of vehicles.
+     */
+    EventCalendar(int vehicles) {
+        this.heap = new int[vehicles];
+        this.positions = new int[vehicles];
+        this.times = new long[vehicles];
+        Arrays.fill(positions, ABSENT);
+    }
+
+    /**
+     * Returns true if no vehicle has a pending event.
+     *
+     * @return True if the calendar is empty.
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of vehicles with a pending event.
+     *
+     * @return The number of pending events.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the given vehicle has a pending event.
+     *
+     * @param vehicle The index of the vehicle.
+     * @return True if the vehicle's event is in the calendar.
+     */
+    boolean contains(int vehicle) {
+        return positions[vehicle] != ABSENT;
+    }
+
+    /**
+     * Returns the time of the given vehicle's pending event.
+     *
+     * @param vehicle The index of the vehicle, which should have a pending
+     *                event.
+     * @return The time of the vehicle's event.
+     */
+    long timeOf(int vehicle) {
+        return times[vehicle];
+    }
+
+    /**
+     * Schedules the given vehicle's next event at the given time, replacing
+     * its pending event if it has one.
+     *
+     * @param vehicle The index of the vehicle.
+     * @param time The time of the event.
+     */
+    void schedule(int vehicle, long time) {
+        int position = positions[vehicle];
+        times[vehicle] = time;
+        if (position == ABSENT) {
+            position = size++;
+            heap[position] = vehicle;
+            positions[vehicle] = position;
+            siftUp(position);
+        } else {
+            siftDown(siftUp(position));
+        }
+    }
+
+    /**
+     * Returns the vehicle whose event is first, without removing the event.
+     *
+     * @return The index of the vehicle with the earliest event.
+     * @throws NoSuchElementException If the calendar is empty.
+     */
+    int peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return heap[0];
+    }
+
+    /**
+     * Removes the first event, returning the vehicle it was for. The time of
+     * the event is still available from {@link #timeOf(int)}.
+     *
+     * @return The index of the vehicle with the earliest event.
+     * @throws NoSuchElementException If the calendar is empty.
+     */
+    int poll() {
+        int first = peek();
+        remove(first);
+        return first;
+    }
+
+    /**
+     * Removes the given vehicle's pending event, if it has one.
+     *
+     * @param vehicle The index of the vehicle.
+     */
+    void remove(int vehicle) {
+        int position = positions[vehicle];
+        if (position == ABSENT) {
+            return;
+        }
+        positions[vehicle] = ABSENT;
+        int last = heap[--size];
+        if (position < size) {
+            heap[position] = last;
+            positions[last] = position;
+            siftDown(siftUp(position));
+        }
+    }
+
+    /*
+     * Returns true if the event of vehicle a comes before that of vehicle b.
+     */
+    private boolean before(int a, int b) {
+        return times[a] < times[b] || (times[a] == times[b] && a < b);
+    }
+
+    /*
+     * Moves the vehicle at the given heap position up until its parent comes
+     * before it, returning its new position.
+     */
+    private int siftUp(int position) {
+        int vehicle = heap[position];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (!before(vehicle, heap[parent])) {
+                break;
+            }
+            heap[position] = heap[parent];
+            positions[heap[position]] = position;
+            position = parent;
+        }
+        heap[position] = vehicle;
+        positions[vehicle] = position;
+        return position;
+    }
+
+    /*
+     * Moves the vehicle at the given heap position down until it comes before
+     * both of its children.
+     */
+    private void siftDown(int position) {
+        int vehicle = heap[position];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!before(heap[child], vehicle)) {
+                break;
+            }
+            heap[position] = heap[child];
+            positions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = vehicle;
+        positions[vehicle] = position;
+    }
+}
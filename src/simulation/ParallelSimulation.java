@@ -0,0 +1,505 @@
+package simulation;
+
+import network.Network;
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A simulation of public transport vehicles (see {@link Simulation}) which
+ * processes events on several threads, producing the same results as a
+ * sequential simulation of the same vehicles.
+ *
+ * <p>The vehicles are divided into partitions by route, so that all the
+ * vehicles on a route are in the same partition, and each partition is
+ * simulated separately. A stop on the routes of vehicles in more than one
+ * partition is an interchange, where passengers may be handed from a vehicle
+ * in one partition to a vehicle in another.
+ *
+ * <p>The times at which vehicles arrive at and depart from stops do not
+ * depend on their passengers, so the next time any vehicle in a partition
+ * will be at an interchange is known in advance. The simulation proceeds in
+ * windows: every event before the earliest time any vehicle will next be at an
+ * interchange is processed in parallel (as those events are at stops used by
+ * one partition only), and then the events at that time are processed on the
+ * calling thread in the same order as by a sequential simulation. Each stop
+ * therefore sees the same vehicles arrive and depart in the same order as in
+ * a sequential simulation, and ends with the same passengers.
+ *
+ * <p>How much faster this is than a sequential simulation depends on how
+ * rarely vehicles are at interchanges, and so on the number of partitions: the
+ * more partitions there are, the more stops are interchanges. Routes should
+ * not have stops added to them whilst they are being simulated.
+ */
+public class ParallelSimulation implements Closeable {
+    // the partitions of the vehicles, each simulated separately
+    private List<Partition> partitions;
+
+    // runs the partitions in parallel
+    private ExecutorService executor;
+
+    // the time of the end of the last run, or of the most recent event
+    private long time;
+
+    /**
+     * Creates a new parallel simulation of all the vehicles in the given
+     * network, with the default dwell time and travel time per unit of
+     * distance (see {@link Simulation#Simulation(Network)}).
+     *
+     * @param network The network to simulate.
+     * @param threads The number of threads (and partitions) to use.
+     */
+    public ParallelSimulation(Network network, int threads) {
+        this(network.getVehicles(), Simulation.DEFAULT_DWELL_TIME,
+                Simulation.DEFAULT_TIME_PER_DISTANCE, threads);
+    }
+
+    /**
+     * Creates a new parallel simulation of the given vehicles, which behaves
+     * as {@link Simulation#Simulation(List, long, long)} would with the same
+     * arguments.
+     *
+     * <p>The vehicles are divided into (at most) the given number of
+     * partitions by route, with each route's vehicles placed in the partition
+     * with the fewest vehicles so far. If the given number of threads is less
+     * than 1, a single thread is used.
+     *
+     * @param vehicles The vehicles to simulate, in the order events at the
+     *                 same time are processed.
+     * @param dwellTime How long each vehicle waits at each stop.
+     * @param timePerDistance How long vehicles take to travel each unit of
+     *                        distance between stops.
+     * @param threads The number of threads (and partitions) to use.
+     */
+    public ParallelSimulation(List<PublicTransport> vehicles, long dwellTime,
+                              long timePerDistance, int threads) {
+        threads = Math.max(1, threads);
+        List<List<Integer>> members = partition(vehicles, threads);
+
+        // find the stops used by more than one partition
+        Map<Stop, Integer> users = new IdentityHashMap<>();
+        Set<Stop> interchanges =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int p = 0; p < members.size(); p++) {
+            for (int index : members.get(p)) {
+                for (Stop stop : vehicles.get(index).getRoute()
+                        .getStopsOnRoute()) {
+                    Integer user = users.putIfAbsent(stop, p);
+                    if (user != null && user != p) {
+                        interchanges.add(stop);
+                    }
+                }
+            }
+        }
+
+        this.partitions = new ArrayList<>();
+        Map<Route, RouteTimes> routeTimes = new IdentityHashMap<>();
+        for (List<Integer> indexes : members) {
+            List<PublicTransport> partitionVehicles = new ArrayList<>();
+            for (int index : indexes) {
+                partitionVehicles.add(vehicles.get(index));
+            }
+            Simulation simulation = new Simulation(partitionVehicles,
+                    dwellTime, timePerDistance);
+            partitions.add(new Partition(simulation, indexes, interchanges,
+                    routeTimes));
+        }
+
+        this.executor = Executors.newFixedThreadPool(partitions.size(),
+                task -> {
+                    Thread thread = new Thread(task, "simulation-partition");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Sets the listener told about each event, replacing any previous
+     * listener. If the given listener is null, events are no longer reported.
+     *
+     * <p>The listener is called from several threads at once, and so should
+     * be thread safe. Events for the same vehicle are reported in order, but
+     * events for vehicles in different partitions may be reported in a
+     * different order to a sequential simulation.
+     *
+     * @param listener The listener to report events to, or null.
+     */
+    public void setListener(Simulation.Listener listener) {
+        for (Partition partition : partitions) {
+            partition.simulation.setListener(listener);
+        }
+    }
+
+    /**
+     * Returns the number of partitions the vehicles were divided into.
+     *
+     * @return The number of partitions.
+     */
+    public int partitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Returns the current time of the simulation (see
+     * {@link Simulation#getTime()}).
+     *
+     * @return The current simulation time.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of events processed so far, by all partitions.
+     *
+     * @return The number of arrivals and departures simulated.
+     */
+    public long getEventCount() {
+        long count = 0;
+        for (Partition partition : partitions) {
+            count += partition.simulation.getEventCount();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the time of the next event to be processed.
+     *
+     * @return The time of the next event, or {@link Long#MAX_VALUE} if there
+     *          are no more events.
+     */
+    public long nextEventTime() {
+        long next = Long.MAX_VALUE;
+        for (Partition partition : partitions) {
+            next = Math.min(next, partition.simulation.nextEventTime());
+        }
+        return next;
+    }
+
+    /**
+     * Processes every event up to and including the given time, and then
+     * advances the simulation time to the given time (if it is later than the
+     * current time), as {@link Simulation#runUntil(long)} does.
+     *
+     * @param endTime The time to run the simulation until.
+     * @return The number of events processed.
+     */
+    public long runUntil(long endTime) {
+        long start = getEventCount();
+        while (true) {
+            long interchange = Long.MAX_VALUE;
+            for (Partition partition : partitions) {
+                interchange = Math.min(interchange,
+                        partition.nextInterchangeTime());
+            }
+
+            // events before the next interchange time only involve one
+            // partition each
+            long bound = endTime == Long.MAX_VALUE
+                    ? interchange : Math.min(interchange, endTime + 1);
+            runInParallel(bound);
+            if (interchange > endTime || interchange == Long.MAX_VALUE) {
+                break;
+            }
+            runInOrder(interchange);
+        }
+        time = Math.max(time, endTime);
+        return getEventCount() - start;
+    }
+
+    /**
+     * Stops the threads used to run the partitions. The simulation should not
+     * be run afterwards.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Processes every event before the given time, running each partition
+     * with such events on its own thread.
+     */
+    private void runInParallel(long bound) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Partition partition : partitions) {
+            if (partition.simulation.nextEventTime() < bound) {
+                tasks.add(() -> {
+                    partition.runBefore(bound);
+                    return null;
+                });
+            }
+        }
+        if (tasks.isEmpty()) {
+            return;
+        }
+        try {
+            if (tasks.size() == 1) {
+                tasks.get(0).call();
+            } else {
+                for (Future<Void> result : executor.invokeAll(tasks)) {
+                    result.get();
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        for (Partition partition : partitions) {
+            time = Math.max(time, partition.simulation.getTime());
+        }
+    }
+
+    /*
+     * Processes every event at the given time on the calling thread, in the
+     * order a sequential simulation would (by the index of the vehicle among
+     * all the vehicles).
+     */
+    private void runInOrder(long at) {
+        while (true) {
+            Partition first = null;
+            int firstIndex = Integer.MAX_VALUE;
+            for (Partition partition : partitions) {
+                if (partition.simulation.nextEventTime() == at) {
+                    int index = partition.nextGlobalIndex();
+                    if (index < firstIndex) {
+                        first = partition;
+                        firstIndex = index;
+                    }
+                }
+            }
+            if (first == null) {
+                return;
+            }
+            first.step();
+            time = at;
+        }
+    }
+
+    /*
+     * Divides the given vehicles into at most the given number of partitions,
+     * keeping each route's vehicles together, and returns the indexes of the
+     * vehicles in each partition in increasing order.
+     */
+    private static List<List<Integer>> partition(
+            List<PublicTransport> vehicles, int count) {
+        // group the vehicles by route, in order of each route's first vehicle
+        Map<Route, List<Integer>> byRoute = new IdentityHashMap<>();
+        List<List<Integer>> groups = new ArrayList<>();
+        for (int i = 0; i < vehicles.size(); i++) {
+            List<Integer> group = byRoute.get(vehicles.get(i).getRoute());
+            if (group == null) {
+                group = new ArrayList<>();
+                byRoute.put(vehicles.get(i).getRoute(), group);
+                groups.add(group);
+            }
+            group.add(i);
+        }
+
+        List<List<Integer>> partitions = new ArrayList<>();
+        for (int p = 0; p < Math.min(count, Math.max(1, groups.size()));
+             p++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (List<Integer> group : groups) {
+            List<Integer> smallest = partitions.get(0);
+            for (List<Integer> partition : partitions) {
+                if (partition.size() < smallest.size()) {
+                    smallest = partition;
+                }
+            }
+            smallest.addAll(group);
+        }
+        for (List<Integer> partition : partitions) {
+            partition.sort(null);
+        }
+        return partitions;
+    }
+
+    /*
+     * The vehicles of some routes, simulated separately from the vehicles of
+     * other routes, with the next time each vehicle will be at an
+     * interchange.
+     */
+    private static class Partition {
+        // the simulation of the partition's vehicles
+        private Simulation simulation;
+
+        // the index among all the vehicles of each of the partition's
+        // vehicles
+        private int[] globalIndexes;
+
+        // the times of the route of each vehicle
+        private RouteTimes[] times;
+
+        // the next time each vehicle will be at an interchange
+        private EventCalendar interchanges;
+
+        Partition(Simulation simulation, List<Integer> globalIndexes,
+                  Set<Stop> interchangeStops,
+                  Map<Route, RouteTimes> routeTimes) {
+            this.simulation = simulation;
+            int size = simulation.vehicleCount();
+            this.globalIndexes = new int[size];
+            this.times = new RouteTimes[size];
+            this.interchanges = new EventCalendar(size);
+            for (int i = 0; i < size; i++) {
+                this.globalIndexes[i] = globalIndexes.get(i);
+                Route route = simulation.vehicle(i).getRoute();
+                RouteTimes routeTime = routeTimes.get(route);
+                if (routeTime == null) {
+                    routeTime = new RouteTimes(route, interchangeStops,
+                            simulation.dwellTime(),
+                            simulation.timePerDistance());
+                    routeTimes.put(route, routeTime);
+                }
+                this.times[i] = routeTime;
+                update(i);
+            }
+        }
+
+        /*
+         * Returns the earliest time any of the partition's vehicles will next
+         * be at an interchange, or Long.MAX_VALUE if none will.
+         */
+        long nextInterchangeTime() {
+            return interchanges.isEmpty() ? Long.MAX_VALUE
+                    : interchanges.timeOf(interchanges.peek());
+        }
+
+        /*
+         * Returns the index among all the vehicles of the vehicle whose event
+         * is next.
+         */
+        int nextGlobalIndex() {
+            return globalIndexes[simulation.nextVehicle()];
+        }
+
+        /*
+         * Processes every event before the given time.
+         */
+        void runBefore(long bound) {
+            while (simulation.nextEventTime() < bound) {
+                step();
+            }
+        }
+
+        /*
+         * Processes the next event, and updates when its vehicle will next be
+         * at an interchange.
+         */
+        void step() {
+            int vehicle = simulation.nextVehicle();
+            simulation.step();
+            update(vehicle);
+        }
+
+        /*
+         * Updates the next time the given vehicle will be at an interchange.
+         */
+        private void update(int vehicle) {
+            if (!simulation.isScheduled(vehicle)) {
+                interchanges.remove(vehicle);
+                return;
+            }
+            long next = times[vehicle].nextInterchangeTime(
+                    simulation.vehicle(vehicle).getPosition(),
+                    simulation.eventTime(vehicle),
+                    simulation.isDeparting(vehicle));
+            if (next == Long.MAX_VALUE) {
+                interchanges.remove(vehicle);
+            } else {
+                interchanges.schedule(vehicle, next);
+            }
+        }
+    }
+
+    /*
+     * The times taken to travel around a route, used to find when a vehicle on
+     * the route will next be at an interchange.
+     */
+    private static class RouteTimes {
+        // whether the stop at each position is an interchange
+        private boolean[] interchange;
+
+        // the time from arriving at each position to next arriving at an
+        // interchange at a later position (going round the route), or
+        // Long.MAX_VALUE if there are no interchanges on the route
+        private long[] toInterchange;
+
+        // how long each vehicle waits at each stop
+        private long dwellTime;
+
+        RouteTimes(Route route, Set<Stop> interchanges, long dwellTime,
+                   long timePerDistance) {
+            int size = route.stopCount();
+            this.dwellTime = dwellTime;
+            this.interchange = new boolean[size];
+            this.toInterchange = new long[size];
+            int last = -1;
+            for (int i = 0; i < size; i++) {
+                interchange[i] = interchanges.contains(route.getStop(i));
+                if (interchange[i]) {
+                    last = i;
+                }
+            }
+            if (last < 0) {
+                Arrays.fill(toInterchange, Long.MAX_VALUE);
+                return;
+            }
+
+            // go backwards round the route from the last interchange
+            long next = 0;
+            for (int step = 0; step < size; step++) {
+                int i = Math.floorMod(last - 1 - step, size);
+                int following = (i + 1) % size;
+                long leg = dwellTime + route.getStop(i).distanceTo(
+                        route.getStop(following)) * timePerDistance;
+                next = leg + (interchange[following] ? 0 : next);
+                toInterchange[i] = next;
+            }
+        }
+
+        /*
+         * Returns the next time a vehicle at the given position, whose next
+         * event is at the given time, will be at an interchange.
+         */
+        long nextInterchangeTime(int position, long eventTime,
+                                 boolean departing) {
+            if (position < 0 || position >= interchange.length) {
+                return Long.MAX_VALUE;
+            }
+            if (interchange[position]) {
+                return eventTime;
+            }
+            long arrival = departing ? eventTime - dwellTime : eventTime;
+            return toInterchange[position] == Long.MAX_VALUE ? Long.MAX_VALUE
+                    : arrival + toInterchange[position];
+        }
+    }
+}
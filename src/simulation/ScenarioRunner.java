@@ -0,0 +1,319 @@
+package simulation;
+
+import exceptions.TransportFormatException;
+import network.Network;
+import routes.Route;
+import stops.Stop;
+import utilities.Histogram;
+import vehicles.PublicTransport;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs many stochastic simulations of the same network, each with passengers
+ * generated from a different seed (see {@link DemandGenerator}), and combines
+ * their statistics (see {@link SimulationStatistics}).
+ *
+ * <p>The network is checkpointed once (see {@link Network#checkpoint()}), and
+ * each run restores its own copy from the checkpoint, so runs share nothing
+ * and no routing is recomputed. Runs are executed on a fixed number of
+ * threads, with no more runs started than there are threads, and each run's
+ * statistics are added to the combined results as soon as it finishes, so
+ * memory used does not grow with the number of runs.
+ *
+ * <p>The seed of each run is taken in turn from a generator seeded with the
+ * seed given to {@link #run(int, long, long)}, and adding histograms does not
+ * depend on the order they are added in, so the same runs always give the
+ * same results however many threads are used.
+ */
+public class ScenarioRunner implements Closeable {
+    // the checkpoint every run restores its network from
+    private byte[] checkpoint;
+
+    // the number of stops and routes in the network
+    private int stopCount;
+    private int routeCount;
+
+    // the passenger demand and the fraction of concession passengers
+    private double[][] demand;
+    private double concessionFraction;
+
+    // how long each vehicle waits at each stop, and how long vehicles take
+    // to travel each unit of distance
+    private long dwellTime;
+    private long timePerDistance;
+
+    // the number of runs executed at once
+    private int threads;
+
+    // executes the runs
+    private ExecutorService executor;
+
+    /**
+     * The combined statistics of a number of runs.
+     *
+     * <p>Stops and routes are identified by their position in the lists of
+     * the network given to the runner (see {@link Network#getStops()} and
+     * {@link Network#getRoutes()}).
+     */
+    public static class Results {
+        // the number of runs combined
+        private long runs;
+
+        // the wait times at each stop and the occupancy of each route's
+        // vehicles, over every run
+        private Histogram[] waitTimes;
+        private Histogram[] occupancy;
+
+        // the number of passengers generated in each run
+        private Histogram passengers;
+
+        private Results(int stopCount, int routeCount) {
+            this.waitTimes = new Histogram[stopCount];
+            this.occupancy = new Histogram[routeCount];
+            for (int i = 0; i < stopCount; i++) {
+                waitTimes[i] = new Histogram();
+            }
+            for (int i = 0; i < routeCount; i++) {
+                occupancy[i] = new Histogram();
+            }
+            this.passengers = new Histogram();
+        }
+
+        /**
+         * Returns the number of runs whose statistics have been combined.
+         *
+         * @return The number of runs.
+         */
+        public long getRunCount() {
+            return runs;
+        }
+
+        /**
+         * Returns the wait times of passengers at the given stop, over every
+         * run.
+         *
+         * @param stop The position of the stop in the network's stops.
+         * @return The wait times at the stop.
+         * @throws IndexOutOfBoundsException If there is no stop at the given
+         *         position.
+         */
+        public Histogram getWaitTimes(int stop) {
+            return copy(waitTimes[stop]);
+        }
+
+        /**
+         * Returns the wait times of passengers at every stop, over every run.
+         *
+         * @return The wait times at all stops.
+         */
+        public Histogram getWaitTimes() {
+            return total(waitTimes);
+        }
+
+        /**
+         * Returns the occupancy (as a percentage of capacity) of the vehicles
+         * on the given route at each departure, over every run.
+         *
+         * @param route The position of the route in the network's routes.
+         * @return The occupancy of the route's vehicles.
+         * @throws IndexOutOfBoundsException If there is no route at the given
+         *         position.
+         */
+        public Histogram getOccupancy(int route) {
+            return copy(occupancy[route]);
+        }
+
+        /**
+         * Returns the occupancy (as a percentage of capacity) of every vehicle
+         * at each departure, over every run.
+         *
+         * @return The occupancy of all vehicles.
+         */
+        public Histogram getOccupancy() {
+            return total(occupancy);
+        }
+
+        /**
+         * Returns the number of passengers generated in each run.
+         *
+         * @return The passenger counts of the runs.
+         */
+        public Histogram getPassengerCounts() {
+            return copy(passengers);
+        }
+
+        /*
+         * Adds the statistics of the given runs to these.
+         */
+        private void add(Results other) {
+            runs += other.runs;
+            for (int i = 0; i < waitTimes.length; i++) {
+                waitTimes[i].add(other.waitTimes[i]);
+            }
+            for (int i = 0; i < occupancy.length; i++) {
+                occupancy[i].add(other.occupancy[i]);
+            }
+            passengers.add(other.passengers);
+        }
+
+        private static Histogram copy(Histogram histogram) {
+            Histogram copy = new Histogram();
+            copy.add(histogram);
+            return copy;
+        }
+
+        private static Histogram total(Histogram[] histograms) {
+            Histogram total = new Histogram();
+            for (Histogram histogram : histograms) {
+                total.add(histogram);
+            }
+            return total;
+        }
+    }
+
+    /**
+     * Creates a new runner of simulations of the given network, in its
+     * current state.
+     *
+     * <p>Each run simulates a copy of the network, with passengers generated
+     * from the given demand matrix and concession fraction (see
+     * {@link DemandGenerator#DemandGenerator(List, double[][], double, long)})
+     * and vehicles simulated with the given dwell time and time per distance
+     * (see {@link Simulation#Simulation(List, long, long)}). Changing the
+     * network after the runner has been created does not change the runs. If
+     * the given number of threads is less than 1, a single thread is used.
+     *
+     * @param network The network to simulate.
+     * @param demand The demand matrix, indexed as the network's stops.
+     * @param concessionFraction The fraction of passengers who are concession
+     *                           passengers.
+     * @param dwellTime How long each vehicle waits at each stop.
+     * @param timePerDistance How long vehicles take to travel each unit of
+     *                        distance between stops.
+     * @param threads The number of runs to execute at once.
+     * @throws TransportFormatException If the network cannot be copied (see
+     *         {@link Network#copy()}).
+     */
+    public ScenarioRunner(Network network, double[][] demand,
+                          double concessionFraction, long dwellTime,
+                          long timePerDistance, int threads)
+            throws TransportFormatException {
+        this.checkpoint = network.checkpoint();
+        // a network which cannot be copied fails here, rather than in every
+        // run
+        Network.loadCheckpoint(checkpoint);
+        this.stopCount = network.getStops().size();
+        this.routeCount = network.getRoutes().size();
+        this.demand = demand;
+        this.concessionFraction = concessionFraction;
+        this.dwellTime = dwellTime;
+        this.timePerDistance = timePerDistance;
+        this.threads = Math.max(1, threads);
+        this.executor = Executors.newFixedThreadPool(this.threads, task -> {
+            Thread thread = new Thread(task, "scenario-run");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Executes the given number of runs, each simulating the network from time
+     * 0 until the given time, and returns their combined statistics.
+     *
+     * @param runs The number of runs to execute.
+     * @param duration The time to simulate each run until.
+     * @param seed The seed the seeds of the runs are taken from.
+     * @return The combined statistics of the runs.
+     */
+    public Results run(int runs, long duration, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        CompletionService<Results> completion =
+                new ExecutorCompletionService<>(executor);
+        Results total = new Results(stopCount, routeCount);
+        int started = 0;
+        try {
+            for (int finished = 0; finished < runs; finished++) {
+                // keep every thread busy, but hold no more runs than that
+                for (; started < runs && started - finished < threads;
+                        started++) {
+                    long runSeed = seeds.nextLong();
+                    completion.submit(() -> runOnce(duration, runSeed));
+                }
+                total.add(completion.take().get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        return total;
+    }
+
+    /**
+     * Stops the threads used to execute runs. The runner should not be used
+     * after it has been closed.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /*
+     * Simulates a copy of the network with passengers generated from the
+     * given seed, returning the statistics of the run.
+     */
+    private Results runOnce(long duration, long seed)
+            throws TransportFormatException {
+        Network network = Network.loadCheckpoint(checkpoint);
+        DemandGenerator generator = new DemandGenerator(network, demand,
+                concessionFraction, seed);
+        generator.setParallel(false);
+        SimulationStatistics statistics = new SimulationStatistics(network);
+        generator.setListener(statistics);
+        Simulation simulation = new Simulation(network.getVehicles(),
+                dwellTime, timePerDistance);
+        simulation.setListener(statistics);
+
+        // passengers arriving by the time of each event are generated before
+        // the event is processed
+        long next = simulation.nextEventTime();
+        while (next <= duration) {
+            generator.addUntil(next);
+            simulation.runUntil(next);
+            next = simulation.nextEventTime();
+        }
+        generator.addUntil(duration);
+        simulation.runUntil(duration);
+
+        Results results = new Results(stopCount, routeCount);
+        results.runs = 1;
+        List<Stop> stops = network.getStops();
+        for (int i = 0; i < stopCount; i++) {
+            results.waitTimes[i].add(statistics.getWaitTimes(stops.get(i)));
+        }
+        List<Route> routes = network.getRoutes();
+        for (int i = 0; i < routeCount; i++) {
+            for (PublicTransport vehicle : routes.get(i).getTransports()) {
+                results.occupancy[i].add(statistics.getOccupancy(vehicle));
+            }
+        }
+        results.passengers.record(generator.getPassengerCount());
+        return results;
+    }
+}
@@ -0,0 +1,433 @@
+package simulation;
+
+import exceptions.TransportFormatException;
+import network.Network;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A discrete-event simulation of public transport vehicles travelling along
+ * their routes.
+ *
+ * <p>Each vehicle repeatedly arrives at a stop (see
+ * {@link Stop#transportArrive(PublicTransport)}), waits there for the dwell
+ * time, and then departs for the next stop on its route (see
+ * {@link Stop#transportDepart(PublicTransport, Stop)}), which it arrives at
+ * after a travel time proportional to the distance between the stops (see
+ * {@link Stop#distanceTo(Stop)}). After the last stop on its route, a vehicle
+ * returns to the first stop and runs the route again. Vehicles start at the
+ * first stop of their route, arriving there at time 0, and vehicles on empty
+ * routes take no part in the simulation.
+ *
+ * <p>Each vehicle has at most one pending event (its next arrival or
+ * departure), and events are processed in order of time, with events at the
+ * same time processed in the order the vehicles were given to the simulation.
+ * A simulation of the same vehicles therefore always processes the same
+ * events in the same order.
+ *
+ * <p>A simulation changes the state of the vehicles and stops it is given, so
+ * a vehicle should only be in one simulation at a time.
+ *
+ * <p>A simulation can be paused and resumed later, or forked, by taking a
+ * checkpoint of its network (see {@link Network#checkpoint()}) together with
+ * a checkpoint of the simulation itself (see {@link #checkpoint()}), which
+ * holds the simulation time and each vehicle's pending event. A new
+ * simulation of the restored network then carries on from the same point
+ * once the simulation checkpoint is restored into it (see
+ * {@link #restore(byte[])}), including vehicles part way between stops.
+ */
+public class Simulation {
+    /**
+     * The dwell time used by {@link #Simulation(Network)}.
+     */
+    public static final long DEFAULT_DWELL_TIME = 1;
+
+    /**
+     * The travel time per unit of distance used by
+     * {@link #Simulation(Network)}.
+     */
+    public static final long DEFAULT_TIME_PER_DISTANCE = 1;
+
+    // the vehicles being simulated, indexed as in the calendar
+    private PublicTransport[] vehicles;
+
+    // the pending event of each vehicle
+    private EventCalendar calendar;
+
+    // true for each vehicle whose pending event is a departure, rather than
+    // an arrival
+    private boolean[] departing;
+
+    // how long each vehicle waits at a stop before departing
+    private long dwellTime;
+
+    // how long a vehicle takes to travel each unit of distance
+    private long timePerDistance;
+
+    // the time of the most recent event, or of the end of the last run
+    private long time;
+
+    // the number of events processed so far
+    private long eventCount;
+
+    // told about each event, or null
+    private Listener listener;
+
+    /**
+     * Receives each event as it is processed by a simulation.
+     *
+     * <p>Methods are called after the event has been applied to the vehicle
+     * and stop, and should not change the state of either.
+     */
+    public interface Listener {
+        /**
+         * Called when a vehicle arrives at a stop.
+         *
+         * @param vehicle The arriving vehicle.
+         * @param stop The stop the vehicle has arrived at.
+         * @param time The time of the arrival.
+         */
+        default void arrived(PublicTransport vehicle, Stop stop, long time) {
+        }
+
+        /**
+         * Called when a vehicle departs from a stop.
+         *
+         * @param vehicle The departing vehicle.
+         * @param from The stop the vehicle has departed from.
+         * @param to The stop the vehicle is travelling to.
+         * @param time The time of the departure.
+         */
+        default void departed(PublicTransport vehicle, Stop from, Stop to,
+                              long time) {
+        }
+    }
+
+    /**
+     * Creates a new simulation of all the vehicles in the given network, with
+     * the default dwell time and travel time per unit of distance.
+     *
+     * @param network The network to simulate.
+     */
+    public Simulation(Network network) {
+        this(network.getVehicles(), DEFAULT_DWELL_TIME,
+                DEFAULT_TIME_PER_DISTANCE);
+    }
+
+    /**
+     * Creates a new simulation of the given vehicles.
+     *
+     * <p>If the given dwell time is less than 1, 1 is used instead (so that
+     * time always passes as a vehicle runs its route), and if the given time
+     * per distance is negative, 0 is used instead.
+     *
+     * @param vehicles The vehicles to simulate, in the order events at the
+     *                 same time are processed.
+     * @param dwellTime How long each vehicle waits at each stop.
+     * @param timePerDistance How long vehicles take to travel each unit of
+     *                        distance between stops.
+     */
+    public Simulation(List<PublicTransport> vehicles, long dwellTime,
+                      long timePerDistance) {
+        this.vehicles = vehicles.toArray(new PublicTransport[0]);
+        this.calendar = new EventCalendar(this.vehicles.length);
+        this.departing = new boolean[this.vehicles.length];
+        this.dwellTime = Math.max(1, dwellTime);
+        this.timePerDistance = Math.max(0, timePerDistance);
+
+        for (int i = 0; i < this.vehicles.length; i++) {
+            if (this.vehicles[i].getCurrentStop() != null) {
+                calendar.schedule(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the vehicles in this simulation, in the order events at the same
+     * time are processed.
+     *
+     * @return The vehicles being simulated.
+     */
+    public List<PublicTransport> getVehicles() {
+        List<PublicTransport> list = new ArrayList<>(vehicles.length);
+        for (PublicTransport vehicle : vehicles) {
+            list.add(vehicle);
+        }
+        return list;
+    }
+
+    /**
+     * Sets the listener told about each event, replacing any previous
+     * listener. If the given listener is null, events are no longer reported.
+     *
+     * @param listener The listener to report events to, or null.
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Returns the current time of the simulation: the time of the most
+     * recently processed event, or the end time of the last call to
+     * {@link #runUntil(long)} if that is later.
+     *
+     * @return The current simulation time.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of events processed so far.
+     *
+     * @return The number of arrivals and departures simulated.
+     */
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * Returns the time of the next event to be processed.
+     *
+     * @return The time of the next event, or {@link Long#MAX_VALUE} if there
+     *          are no more events.
+     */
+    public long nextEventTime() {
+        return calendar.isEmpty() ? Long.MAX_VALUE
+                : calendar.timeOf(calendar.peek());
+    }
+
+    /**
+     * Processes the next event.
+     *
+     * @return True if an event was processed, or false if there are no more
+     *          events.
+     */
+    public boolean step() {
+        if (calendar.isEmpty()) {
+            return false;
+        }
+        int vehicle = calendar.poll();
+        time = calendar.timeOf(vehicle);
+        if (departing[vehicle]) {
+            depart(vehicle);
+        } else {
+            arrive(vehicle);
+        }
+        eventCount++;
+        return true;
+    }
+
+    /**
+     * Processes every event up to and including the given time, and then
+     * advances the simulation time to the given time (if it is later than the
+     * current time).
+     *
+     * @param endTime The time to run the simulation until.
+     * @return The number of events processed.
+     */
+    public long runUntil(long endTime) {
+        long start = eventCount;
+        while (!calendar.isEmpty()
+                && calendar.timeOf(calendar.peek()) <= endTime) {
+            step();
+        }
+        time = Math.max(time, endTime);
+        return eventCount - start;
+    }
+
+    /**
+     * Returns the state of this simulation as bytes: its time, the number of
+     * events processed, and the pending event of each vehicle (see
+     * {@link #restore(byte[])}).
+     *
+     * <p>The state of the vehicles and stops themselves is not included, and
+     * should be saved at the same time with a checkpoint of their network
+     * (see {@link Network#checkpoint()}).
+     *
+     * @return The checkpoint of this simulation.
+     */
+    public byte[] checkpoint() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(vehicles.length);
+            out.writeLong(time);
+            out.writeLong(eventCount);
+            for (int i = 0; i < vehicles.length; i++) {
+                out.writeBoolean(calendar.contains(i));
+                if (calendar.contains(i)) {
+                    out.writeLong(calendar.timeOf(i));
+                    out.writeBoolean(departing[i]);
+                }
+            }
+        } catch (IOException e) {
+            // writing to memory never fails
+            throw new AssertionError(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restores the time, the number of events processed, and the pending
+     * event of each vehicle from the given checkpoint of a simulation (see
+     * {@link #checkpoint()}), replacing those of this simulation.
+     *
+     * <p>This simulation should be of the same vehicles, in the same order,
+     * as the simulation the checkpoint was taken of, in the state they were
+     * in when it was taken. This is the case for a simulation of a network
+     * restored from a checkpoint taken at the same time (see
+     * {@link Network#loadCheckpoint(byte[])}), created with
+     * {@link #Simulation(Network)} or with the network's vehicles (see
+     * {@link Network#getVehicles()}) and the same times as the original
+     * simulation. The simulation then processes the same events as the
+     * original would have.
+     *
+     * @param checkpoint The checkpoint to restore the simulation from.
+     * @throws TransportFormatException If the checkpoint is null, is not a
+     *         valid checkpoint, or is of a different number of vehicles.
+     */
+    public void restore(byte[] checkpoint) throws TransportFormatException {
+        if (checkpoint == null) {
+            throw new TransportFormatException("checkpoint is null");
+        }
+        long restoredTime;
+        long restoredCount;
+        long[] times = new long[vehicles.length];
+        boolean[] scheduled = new boolean[vehicles.length];
+        boolean[] restoredDeparting = new boolean[vehicles.length];
+        try (DataInputStream in = new DataInputStream(
+                new ByteArrayInputStream(checkpoint))) {
+            if (in.readInt() != vehicles.length) {
+                throw new TransportFormatException(
+                        "checkpoint has a different number of vehicles");
+            }
+            restoredTime = in.readLong();
+            restoredCount = in.readLong();
+            for (int i = 0; i < vehicles.length; i++) {
+                scheduled[i] = in.readBoolean();
+                if (scheduled[i]) {
+                    times[i] = in.readLong();
+                    restoredDeparting[i] = in.readBoolean();
+                }
+            }
+            if (in.read() >= 0) {
+                throw new TransportFormatException(
+                        "trailing bytes after the last vehicle");
+            }
+        } catch (IOException e) {
+            throw new TransportFormatException("checkpoint is truncated");
+        }
+
+        // nothing is changed until the whole checkpoint has been read
+        time = restoredTime;
+        eventCount = restoredCount;
+        for (int i = 0; i < vehicles.length; i++) {
+            departing[i] = restoredDeparting[i];
+            if (scheduled[i]) {
+                calendar.schedule(i, times[i]);
+            } else {
+                calendar.remove(i);
+            }
+        }
+    }
+
+    /*
+     * Returns the number of vehicles in this simulation.
+     */
+    int vehicleCount() {
+        return vehicles.length;
+    }
+
+    /*
+     * Returns the vehicle at the given index.
+     */
+    PublicTransport vehicle(int index) {
+        return vehicles[index];
+    }
+
+    /*
+     * Returns the index of the vehicle whose event is next, which there
+     * should be.
+     */
+    int nextVehicle() {
+        return calendar.peek();
+    }
+
+    /*
+     * Returns true if the given vehicle has a pending event.
+     */
+    boolean isScheduled(int index) {
+        return calendar.contains(index);
+    }
+
+    /*
+     * Returns the time of the given vehicle's pending event.
+     */
+    long eventTime(int index) {
+        return calendar.timeOf(index);
+    }
+
+    /*
+     * Returns true if the given vehicle's pending event is a departure.
+     */
+    boolean isDeparting(int index) {
+        return departing[index];
+    }
+
+    /*
+     * Returns how long each vehicle waits at each stop.
+     */
+    long dwellTime() {
+        return dwellTime;
+    }
+
+    /*
+     * Returns how long vehicles take to travel each unit of distance.
+     */
+    long timePerDistance() {
+        return timePerDistance;
+    }
+
+    /*
+     * Applies the arrival of the given vehicle at its current stop, and
+     * schedules its departure.
+     */
+    private void arrive(int index) {
+        PublicTransport vehicle = vehicles[index];
+        Stop stop = vehicle.getCurrentStop();
+        stop.transportArrive(vehicle);
+        departing[index] = true;
+        calendar.schedule(index, time + dwellTime);
+        if (listener != null) {
+            listener.arrived(vehicle, stop, time);
+        }
+    }
+
+    /*
+     * Applies the departure of the given vehicle from its current stop to the
+     * next stop on its route (or the first stop, after the last), and
+     * schedules its arrival there.
+     */
+    private void depart(int index) {
+        PublicTransport vehicle = vehicles[index];
+        Stop from = vehicle.getCurrentStop();
+        Stop to = vehicle.getNextStop();
+        if (to == null) {
+            to = vehicle.getRoute().getStop(0);
+        }
+        from.transportDepart(vehicle, to);
+        departing[index] = false;
+        calendar.schedule(index, time + from.distanceTo(to) * timePerDistance);
+        if (listener != null) {
+            listener.departed(vehicle, from, to, time);
+        }
+    }
+}
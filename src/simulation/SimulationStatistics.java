@@ -0,0 +1,242 @@
+package simulation;
+
+import network.Network;
+import passengers.Passenger;
+import stops.Stop;
+import utilities.Histogram;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects histograms of how long passengers wait at each stop and how full
+ * each vehicle is when it departs, from the events of a simulation.
+ *
+ * <p>A passenger's wait is the time from when they arrive at a stop (when
+ * they are generated there, see {@link DemandGenerator.Listener}, or when
+ * they get off a vehicle there without having reached their destination) to
+ * when a vehicle they have boarded departs from the stop. Every passenger
+ * gets off at every stop (see {@link Stop#transportArrive(PublicTransport)}),
+ * so getting back on the same vehicle is not counted as a wait. Passengers
+ * already waiting when the statistics were created, or added to stops in
+ * other ways, are only counted if their arrival is reported with
+ * {@link #waiting(Passenger, Stop, long)}. A vehicle's occupancy is its
+ * number of passengers as a percentage of its capacity, rounded to the
+ * nearest whole percent, each time it departs from a stop.
+ *
+ * <p>Each stop and vehicle has its own histograms (see {@link Histogram}), so
+ * memory used does not grow with the number of events, and the state of a
+ * stop or vehicle is only changed by events for that stop or vehicle. The
+ * same statistics can therefore listen to a {@link ParallelSimulation} and a
+ * {@link DemandGenerator}, which never report events for the same stop or
+ * vehicle from two threads at once. Results should only be read once the
+ * simulation is not running.
+ */
+public class SimulationStatistics implements Simulation.Listener,
+        DemandGenerator.Listener {
+    // the statistics of each stop and vehicle, by identity (neither map is
+    // changed after construction, so they can be read by any thread)
+    private Map<Stop, StopStatistics> stops;
+    private Map<PublicTransport, VehicleStatistics> vehicles;
+
+    /**
+     * Creates new statistics of the stops and vehicles of the given network.
+     *
+     * @param network The network whose stops and vehicles to collect
+     *                statistics for.
+     */
+    public SimulationStatistics(Network network) {
+        this(network.getStops(), network.getVehicles());
+    }
+
+    /**
+     * Creates new statistics of the given stops and vehicles. Events for
+     * other stops and vehicles are ignored.
+     *
+     * @param stops The stops to collect wait times for.
+     * @param vehicles The vehicles to collect occupancy for.
+     */
+    public SimulationStatistics(List<Stop> stops,
+                                List<PublicTransport> vehicles) {
+        this.stops = new IdentityHashMap<>();
+        this.vehicles = new IdentityHashMap<>();
+        for (Stop stop : stops) {
+            this.stops.putIfAbsent(stop, new StopStatistics());
+        }
+        for (PublicTransport vehicle : vehicles) {
+            this.vehicles.putIfAbsent(vehicle, new VehicleStatistics());
+        }
+    }
+
+    /**
+     * Records that the given passenger started waiting at the given stop at
+     * the given time. If the passenger was already waiting at the stop, their
+     * wait is taken to start at the given time instead.
+     *
+     * @param passenger The waiting passenger.
+     * @param stop The stop the passenger is waiting at.
+     * @param time The time the passenger started waiting.
+     */
+    public void waiting(Passenger passenger, Stop stop, long time) {
+        StopStatistics statistics = stops.get(stop);
+        if (statistics != null && passenger != null) {
+            statistics.waiting.put(passenger, time);
+        }
+    }
+
+    /**
+     * Records that the generated passenger started waiting at their origin,
+     * from the first whole time at or after their arrival.
+     */
+    @Override
+    public void generated(Passenger passenger, Stop origin, double time) {
+        waiting(passenger, origin, (long) Math.ceil(time));
+    }
+
+    /**
+     * Records that each passenger who got off the vehicle, other than those
+     * who have reached their destination, started waiting at the stop.
+     */
+    @Override
+    public void arrived(PublicTransport vehicle, Stop stop, long time) {
+        VehicleStatistics statistics = vehicles.get(vehicle);
+        if (statistics == null) {
+            return;
+        }
+        statistics.alighted.clear();
+        for (Passenger passenger : statistics.onBoard) {
+            if (passenger.getDestination() != stop) {
+                waiting(passenger, stop, time);
+                statistics.alighted.add(passenger);
+            }
+        }
+        statistics.onBoard = new ArrayList<>();
+    }
+
+    /**
+     * Records the wait of each passenger who boarded the vehicle, and the
+     * occupancy of the vehicle.
+     */
+    @Override
+    public void departed(PublicTransport vehicle, Stop from, Stop to,
+                         long time) {
+        // all passengers got off when the vehicle arrived, so everyone on
+        // board has just boarded
+        List<Passenger> onBoard = vehicle.getPassengers();
+        VehicleStatistics statistics = vehicles.get(vehicle);
+        StopStatistics stop = stops.get(from);
+        if (stop != null) {
+            for (Passenger passenger : onBoard) {
+                Long since = stop.waiting.remove(passenger);
+                if (since != null && (statistics == null
+                        || !statistics.alighted.contains(passenger))) {
+                    stop.waitTimes.record(time - since);
+                }
+            }
+        }
+
+        if (statistics == null) {
+            return;
+        }
+        statistics.alighted.clear();
+        statistics.onBoard = onBoard;
+        if (vehicle.getCapacity() > 0) {
+            statistics.occupancy.record(Math.round(
+                    100.0 * onBoard.size() / vehicle.getCapacity()));
+        }
+    }
+
+    /**
+     * Returns the wait times of passengers who have boarded vehicles at the
+     * given stop.
+     *
+     * <p>Modifying the returned histogram should not result in changes to the
+     * internal state of the class.
+     *
+     * @param stop The stop to get wait times for.
+     * @return The wait times at the stop (empty if the stop is not one of
+     *          the stops statistics are collected for).
+     */
+    public Histogram getWaitTimes(Stop stop) {
+        Histogram copy = new Histogram();
+        StopStatistics statistics = stops.get(stop);
+        if (statistics != null) {
+            copy.add(statistics.waitTimes);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the wait times of passengers who have boarded vehicles at any
+     * stop.
+     *
+     * @return The wait times at all stops.
+     */
+    public Histogram getWaitTimes() {
+        Histogram total = new Histogram();
+        for (StopStatistics statistics : stops.values()) {
+            total.add(statistics.waitTimes);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the occupancy, as a percentage of capacity, of the given vehicle
+     * at each of its departures.
+     *
+     * <p>Modifying the returned histogram should not result in changes to the
+     * internal state of the class.
+     *
+     * @param vehicle The vehicle to get occupancy for.
+     * @return The occupancy of the vehicle (empty if the vehicle is not one
+     *          of the vehicles statistics are collected for).
+     */
+    public Histogram getOccupancy(PublicTransport vehicle) {
+        Histogram copy = new Histogram();
+        VehicleStatistics statistics = vehicles.get(vehicle);
+        if (statistics != null) {
+            copy.add(statistics.occupancy);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the occupancy, as a percentage of capacity, of every vehicle at
+     * each of its departures.
+     *
+     * @return The occupancy of all vehicles.
+     */
+    public Histogram getOccupancy() {
+        Histogram total = new Histogram();
+        for (VehicleStatistics statistics : vehicles.values()) {
+            total.add(statistics.occupancy);
+        }
+        return total;
+    }
+
+    /*
+     * The passengers waiting at a stop, and the wait times of those who have
+     * boarded.
+     */
+    private static class StopStatistics {
+        // the time each passenger whose arrival was seen started waiting
+        private final Map<Passenger, Long> waiting = new IdentityHashMap<>();
+        private final Histogram waitTimes = new Histogram();
+    }
+
+    /*
+     * The passengers on board a vehicle since it last departed, those who got
+     * off at the stop it is at, and its occupancy at each departure.
+     */
+    private static class VehicleStatistics {
+        private List<Passenger> onBoard = new ArrayList<>();
+        private final Set<Passenger> alighted =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Histogram occupancy = new Histogram();
+    }
+}
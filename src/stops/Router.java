@@ -0,0 +1,18 @@
+package stops;
+
+/**
+ * Chooses where passengers at a stop should be routed to next, in place of
+ * the stop's routing table (see {@link Stop#setRouter(Router)}).
+ */
+public interface Router {
+    /**
+     * Returns the neighbouring stop which passengers at the given stop should
+     * be routed to next, in order to reach the given destination.
+     *
+     * @param from The stop the passengers are at.
+     * @param destination The stop the passengers are travelling to.
+     * @return The next stop, or null if this router has no route to the
+     *          destination (in which case the stop's routing table is used).
+     */
+    Stop nextStop(Stop from, Stop destination);
+}
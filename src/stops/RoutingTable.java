@@ -1,6 +1,7 @@
 package stops;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
@@ -63,6 +64,19 @@ public class RoutingTable {
         return Integer.MAX_VALUE;
     }
 
+    /**
+     * Maps each destination stop in this table to the entry for getting to
+     * that destination (the next stop and the cost).
+     *
+     * <p>Modifying the returned map should not result in changes to the
+     * internal state of the class.
+     *
+     * @return A mapping from destination stops to their routing entries.
+     */
+    public Map<Stop, RoutingEntry> getEntries() {
+        return new HashMap<>(this.map);
+    }
+
     /**
      * Maps each destination stop in this table to the cost
      * associated with getting to that destination.
@@ -5,9 +5,11 @@ import exceptions.OverCapacityException;
 import exceptions.TransportFormatException;
 import passengers.Passenger;
 import routes.Route;
+import utilities.Parsing;
 import utilities.Writeable;
 import vehicles.PublicTransport;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -43,6 +45,10 @@ public class Stop implements Writeable {
     // a record of where each passenger waiting at the stop should be routed to
     private Map<Passenger, Stop> record;
 
+    // chooses where passengers are routed to in place of the routing table,
+    // or null
+    private volatile Router router;
+
     /**
      * Creates a new Stop object with the given name and coordinates.
      *
@@ -141,6 +147,23 @@ public class Stop implements Writeable {
         return new ArrayList<>(routes);
     }
 
+    /**
+     * Checks whether this stop is on any route of the given type, without
+     * copying the stop's routes (see {@link #getRoutes()}).
+     *
+     * @param type The type of route to look for (see {@link Route#getType()}).
+     * @return True if a route of the given type goes past the stop, false
+     *          otherwise (including if the type is null).
+     */
+    public boolean isOnRouteOfType(String type) {
+        for (Route route : routes) {
+            if (route.getType().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Records the given stop as being a neighbour of this stop.
      *
@@ -162,6 +185,49 @@ public class Stop implements Writeable {
         this.getRoutingTable().addNeighbour(neighbour);
     }
 
+    /**
+     * Records the given stop as being a neighbour of this stop, without
+     * updating the routing table.
+     *
+     * <p>This is intended for restoring a stop whose routing table entries
+     * are restored separately (see
+     * {@link RoutingTable#addOrUpdateEntry(Stop, int, Stop)}), so that the
+     * routing tables of the network are not recomputed. If the given stop is
+     * null, or is already recorded as a neighbour, it is not added.
+     *
+     * @param neighbour The stop to add as a neighbour.
+     */
+    public void restoreNeighbouringStop(Stop neighbour) {
+        if (neighbour == null || neighbours.contains(neighbour)) {
+            return;
+        }
+        neighbours.add(neighbour);
+    }
+
+    /**
+     * Sets the router which chooses where passengers arriving at this stop
+     * are routed to (see {@link #addPassenger(Passenger)}), replacing any
+     * previous router. If the given router is null, or has no route to a
+     * passenger's destination, the stop's routing table is used.
+     *
+     * <p>Passengers already waiting at the stop are not routed again.
+     *
+     * @param router The router to use, or null to use the routing table.
+     */
+    public void setRouter(Router router) {
+        this.router = router;
+    }
+
+    /**
+     * Returns the router which chooses where passengers arriving at this stop
+     * are routed to.
+     *
+     * @return The router, or null if the routing table is used.
+     */
+    public Router getRouter() {
+        return router;
+    }
+
     /**
      * Returns all of the stops adjacent to this one on any routes.
      *
@@ -190,6 +256,13 @@ public class Stop implements Writeable {
      * ({@link RoutingTable#nextStop(Stop)}). The stop should keep a record of
      * where each passenger waiting at it should be routed to next.</p>
      *
+     * <p>If the stop has a router (see {@link #setRouter(Router)}), the
+     * router chooses the next stop instead, unless it has no route to the
+     * destination.</p>
+     *
+     * <p>If the passenger's destination cannot be reached from this stop, the
+     * passenger is added to the stop but is not routed anywhere.</p>
+     *
      * @param passenger The passenger to add to the stop.
      */
     public void addPassenger(Passenger passenger) {
@@ -198,11 +271,53 @@ public class Stop implements Writeable {
         }
         this.passengers.add(passenger);
         if (!(passenger.getDestination() == null)) {
-            this.record.put(passenger, this.getRoutingTable().
-                    nextStop(passenger.getDestination()));
+            Router current = router;
+            Stop next = current == null ? null
+                    : current.nextStop(this, passenger.getDestination());
+            if (next == null) {
+                next = this.getRoutingTable().nextStop(
+                        passenger.getDestination());
+            }
+            if (next != null) {
+                this.record.put(passenger, next);
+            }
+        }
+    }
+
+    /**
+     * Places a passenger at this stop, to be routed to the given stop rather
+     * than the one given by the routing table.
+     *
+     * <p>This is intended for restoring a stop's waiting passengers exactly
+     * as they were recorded (see {@link #getRoutedStop(Passenger)}). If the
+     * given passenger is null, it is not added to the stop, and if the given
+     * stop is null, the passenger is added but not routed anywhere.
+     *
+     * @param passenger The passenger to add to the stop.
+     * @param next The stop to route the passenger to.
+     */
+    public void addPassenger(Passenger passenger, Stop next) {
+        if (passenger == null) {
+            return;
+        }
+        this.passengers.add(passenger);
+        if (next != null) {
+            this.record.put(passenger, next);
         }
     }
 
+    /**
+     * Returns the stop the given passenger waiting at this stop is being
+     * routed to, as recorded when the passenger was added to the stop.
+     *
+     * @param passenger The waiting passenger.
+     * @return The stop the passenger will next travel to, or null if the
+     *          passenger is not routed anywhere (or is not at this stop).
+     */
+    public Stop getRoutedStop(Passenger passenger) {
+        return passenger == null ? null : record.get(passenger);
+    }
+
     /**
      * Returns the passengers currently at this stop.
      *
@@ -300,18 +415,20 @@ public class Stop implements Writeable {
         if (!isAtStop(transport) || nextStop == null) {
             return;
         }
-        this.record.forEach((passenger, stop) -> {
-            if (stop == nextStop &&
-                    transport.passengerCount() < transport.getCapacity()) {
-                // Remove the passenger from the stop (not in Javadoc)
-                passengers.remove(passenger);
-                record.remove(passenger);
-                try {
-                    transport.addPassenger(passenger);
-                } catch (OverCapacityException e) {
-                    e.printStackTrace();
-                }
+        // board in the order the passengers arrived, in a single pass
+        this.passengers.removeIf(passenger -> {
+            if (record.get(passenger) != nextStop
+                    || transport.passengerCount() >= transport.getCapacity()) {
+                return false;
+            }
+            // Remove the passenger from the stop (not in Javadoc)
+            record.remove(passenger);
+            try {
+                transport.addPassenger(passenger);
+            } catch (OverCapacityException e) {
+                e.printStackTrace();
             }
+            return true;
         });
         transport.travelTo(nextStop);
         atStop.remove(transport);
@@ -407,6 +524,19 @@ public class Stop implements Writeable {
         return this.toString();
     }
 
+    /**
+     * Writes this stop to the given output in the same format as specified in
+     * {@link Stop#toString()}.
+     *
+     * @param out The output to write this stop to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(name).append(':').append(String.valueOf(xCoordinate))
+                .append(':').append(String.valueOf(yCoordinate));
+    }
+
     /**
      * Creates a new stop object based on the given string representation.
      *
@@ -435,34 +565,42 @@ public class Stop implements Writeable {
      *                 invalid according to the Stop constructor).</li>
      *             </ol>
      */
-    public static Stop decode(String stopString)
+    public static Stop decode(CharSequence stopString)
             throws TransportFormatException {
-        Stop stop;
-        try {
-            String[] parts = stopString.split(":");
-            // check for extra delimiters.
-            int count = stopString.length() -
-                    stopString.replace(":", "").length();
-
-            // there should be 3 parts
-            final int NUM_PARTS = 3;
-            if ((count + 1 != parts.length) || (parts.length != NUM_PARTS)){
-                throw new TransportFormatException();
-            }
-
-            // get the components
-            String name = parts[0];
-            int x = Integer.parseInt(parts[1].trim());
-            int y = Integer.parseInt(parts[2].trim());
+        if (stopString == null) {
+            throw new TransportFormatException("stop is null");
+        }
+        int length = stopString.length();
+
+        // there should be 3 parts, separated by exactly 2 delimiters
+        int nameEnd = Parsing.indexOf(stopString, ':', 0, length);
+        int xEnd = Parsing.indexOf(stopString, ':', nameEnd + 1, length);
+        if (xEnd == length
+                || Parsing.indexOf(stopString, ':', xEnd + 1, length)
+                != length) {
+            throw new TransportFormatException(
+                    "stop should be name:x:y with exactly two ':'");
+        }
 
-            stop = new Stop(name, x, y);
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException |
-                NullPointerException |NoNameException e) {
-            throw new TransportFormatException();
+        // get the components
+        int x;
+        int y;
+        try {
+            x = Parsing.parseInt(stopString, nameEnd + 1, xEnd);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException(
+                    "stop x-coordinate is not an integer");
+        }
+        try {
+            y = Parsing.parseInt(stopString, xEnd + 1, length);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException(
+                    "stop y-coordinate is not an integer");
+        }
+        try {
+            return new Stop(Parsing.substring(stopString, 0, nameEnd), x, y);
+        } catch (NoNameException e) {
+            throw new TransportFormatException("stop name is empty");
         }
-        return stop;
     }
-
-
-
 }
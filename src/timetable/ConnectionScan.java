@@ -0,0 +1,614 @@
+package timetable;
+
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Plans journeys between stops using the trips of a timetable, with the
+ * Connection Scan Algorithm.
+ *
+ * <p>Every trip is broken into elementary connections (see
+ * {@link Departure}), each from one stop to the next, which are held in a
+ * single array sorted by departure time. The earliest arrival at a stop is
+ * found by scanning the array once, from the first connection departing at or
+ * after the time of the query, and stopping as soon as no later connection
+ * can arrive any earlier. All the journeys worth taking over a period of
+ * time (for example, every departure in the next hour) are found by a single
+ * scan backwards through the array instead (see
+ * {@link #profile(Stop, Stop, long, long)}).
+ *
+ * <p>Passengers may change between trips at any stop, as long as the trip
+ * they change to departs no earlier than the trip they change from arrives.
+ * Connections which take no time and depart at the same time are ordered so
+ * that passengers can change between them, unless they lead round in a loop
+ * through more than one trip, in which case a change part way round the loop
+ * may be missed. Stops are compared by identity. A connection scan does not
+ * change once it has been created, and so can answer queries from any number
+ * of threads at once; changes to trips (see {@link RealtimeTimetable}) give a
+ * new scan.
+ */
+public class ConnectionScan {
+    // a time later than any journey arrives
+    private static final long NEVER = Long.MAX_VALUE;
+
+    // the order of connections: by departure time, and then connections
+    // which take no time before those which depart at the same time but take
+    // longer, so they can be changed to (connections which take no time are
+    // then ordered among themselves, see orderChanges())
+    private static final Comparator<Departure> ORDER =
+            Comparator.comparingLong(Departure::getTime)
+                    .thenComparingLong(Departure::getArrivalTime);
+
+    // the connections, in order
+    private Departure[] connections;
+
+    // the departure and arrival time, stops, trip, and position on the trip
+    // of each connection, so that scans do not dereference connections
+    private long[] departureTimes;
+    private long[] arrivalTimes;
+    private int[] fromStops;
+    private int[] toStops;
+    private int[] trips;
+    private int[] positions;
+
+    // the index of each stop, the trips (null for a trip which has been
+    // removed), and the index of each trip, by identity
+    private Map<Stop, Integer> stopIndexes;
+    private Trip[] tripList;
+    private Map<Trip, Integer> tripIndexes;
+
+    /**
+     * Creates a new connection scan over the trips of the given timetable.
+     *
+     * @param timetable The timetable to plan journeys with.
+     */
+    public ConnectionScan(Timetable timetable) {
+        this(timetable.getTrips());
+    }
+
+    /*
+     * Creates a new connection scan over the given trips.
+     */
+    ConnectionScan(List<Trip> tripsToScan) {
+        this(new IdentityHashMap<>(), tripsToScan.toArray(new Trip[0]),
+                new IdentityHashMap<>());
+        List<Departure> list = new ArrayList<>();
+        for (Trip trip : tripList) {
+            tripIndexes.put(trip, tripIndexes.size());
+            addConnections(trip, list);
+        }
+        list.sort(ORDER);
+        allocate(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            set(i, list.get(i));
+        }
+        orderChanges();
+    }
+
+    /*
+     * Creates a new connection scan with the given stops and trips, whose
+     * connections have not been allocated.
+     */
+    private ConnectionScan(Map<Stop, Integer> stopIndexes, Trip[] tripList,
+                           Map<Trip, Integer> tripIndexes) {
+        this.stopIndexes = stopIndexes;
+        this.tripList = tripList;
+        this.tripIndexes = tripIndexes;
+    }
+
+    /*
+     * Returns a new connection scan with each of the given trips replaced by
+     * the trip it maps to (or removed, if it maps to null). Trips which are
+     * not in this scan are ignored.
+     *
+     * This takes time linear in the number of connections, as only the
+     * connections of the replacement trips are sorted, and are then merged
+     * with the connections of the other trips, which are already in order.
+     */
+    ConnectionScan replace(Map<Trip, Trip> replacements) {
+        // the stops are only copied if a replacement visits a new one, as
+        // they are otherwise shared with this scan
+        Map<Stop, Integer> stops = stopIndexes;
+        for (Trip trip : replacements.values()) {
+            for (int position = 0; trip != null
+                    && position < trip.stopCount(); position++) {
+                if (stops == stopIndexes
+                        && !stops.containsKey(trip.getStop(position))) {
+                    stops = new IdentityHashMap<>(stopIndexes);
+                }
+            }
+        }
+        ConnectionScan result = new ConnectionScan(stops, tripList.clone(),
+                new IdentityHashMap<>(tripIndexes));
+        boolean[] replaced = new boolean[tripList.length];
+        List<Departure> added = new ArrayList<>();
+        for (Map.Entry<Trip, Trip> entry : replacements.entrySet()) {
+            Integer index = tripIndexes.get(entry.getKey());
+            if (index == null) {
+                continue;
+            }
+            replaced[index] = true;
+            result.tripIndexes.remove(entry.getKey());
+            Trip trip = entry.getValue();
+            result.tripList[index] = trip;
+            if (trip != null) {
+                result.tripIndexes.put(trip, index);
+                result.addConnections(trip, added);
+            }
+        }
+        added.sort(ORDER);
+
+        int kept = 0;
+        for (int trip : trips) {
+            if (!replaced[trip]) {
+                kept++;
+            }
+        }
+        result.allocate(kept + added.size());
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < result.connections.length; k++) {
+            while (i < connections.length && replaced[trips[i]]) {
+                i++;
+            }
+            if (j == added.size() || (i < connections.length
+                    && ORDER.compare(connections[i], added.get(j)) <= 0)) {
+                result.copy(k, this, i++);
+            } else {
+                result.set(k, added.get(j++));
+            }
+        }
+        result.orderChanges();
+        return result;
+    }
+
+    /**
+     * Returns the number of elementary connections planned with.
+     *
+     * @return The number of connections.
+     */
+    public int connectionCount() {
+        return connections.length;
+    }
+
+    /**
+     * Returns the journey from the first stop to the second, departing at or
+     * after the given time, which arrives earliest.
+     *
+     * <p>If more than one journey arrives at the same time, the one found
+     * first is returned. If the stops are the same, a journey with no
+     * connections is returned.
+     *
+     * @param from The stop to depart from.
+     * @param to The stop to arrive at.
+     * @param time The earliest time to depart.
+     * @return The journey arriving earliest, or null if there is no journey
+     *          between the stops after the given time.
+     */
+    public Journey earliestArrival(Stop from, Stop to, long time) {
+        if (from == to) {
+            return new Journey(new ArrayList<>(), time);
+        }
+        Integer source = stopIndexes.get(from);
+        Integer target = stopIndexes.get(to);
+        if (source == null || target == null) {
+            return null;
+        }
+
+        long[] arrivals = new long[stopIndexes.size()];
+        Arrays.fill(arrivals, NEVER);
+        arrivals[source] = time;
+        // the connection each trip was boarded at, and the connection each
+        // stop was reached by and the one its trip was boarded at
+        int[] boarded = new int[tripList.length];
+        Arrays.fill(boarded, -1);
+        int[] reachedBy = new int[arrivals.length];
+        int[] enteredAt = new int[arrivals.length];
+
+        for (int i = firstAtOrAfter(time); i < connections.length
+                && departureTimes[i] < arrivals[target]; i++) {
+            int trip = trips[i];
+            if (boarded[trip] < 0
+                    && arrivals[fromStops[i]] <= departureTimes[i]) {
+                boarded[trip] = i;
+            }
+            if (boarded[trip] >= 0 && arrivalTimes[i] < arrivals[toStops[i]]) {
+                arrivals[toStops[i]] = arrivalTimes[i];
+                reachedBy[toStops[i]] = i;
+                enteredAt[toStops[i]] = boarded[trip];
+            }
+        }
+        if (arrivals[target] == NEVER) {
+            return null;
+        }
+
+        List<Departure> journey = new ArrayList<>();
+        for (int stop = target; stop != source;
+                stop = fromStops[enteredAt[stop]]) {
+            List<Departure> leg = leg(enteredAt[stop], reachedBy[stop]);
+            Collections.reverse(leg);
+            journey.addAll(leg);
+        }
+        Collections.reverse(journey);
+        return new Journey(journey, time);
+    }
+
+    /**
+     * Returns every journey from the first stop to the second which departs
+     * at or after the first given time and before the second, and which
+     * arrives earlier than any journey departing later, in order of
+     * departure.
+     *
+     * <p>These are the only journeys worth taking in the period: a passenger
+     * ready to depart at any time in the period can arrive as early as
+     * possible by taking the first of them which departs at or after that
+     * time. If the stops are the same, or there are no journeys, the list is
+     * empty.
+     *
+     * @param from The stop to depart from.
+     * @param to The stop to arrive at.
+     * @param earliest The earliest time to depart.
+     * @param latest The time to depart before.
+     * @return The journeys worth taking in the given period.
+     */
+    public List<Journey> profile(Stop from, Stop to, long earliest,
+                                 long latest) {
+        List<Journey> journeys = new ArrayList<>();
+        Integer source = stopIndexes.get(from);
+        Integer target = stopIndexes.get(to);
+        if (from == to || source == null || target == null
+                || latest <= earliest) {
+            return journeys;
+        }
+
+        // the profile of each stop, or null if it has no entries
+        List<List<ProfileEntry>> profiles = new ArrayList<>(
+                Collections.nCopies(stopIndexes.size(), null));
+        // the earliest arrival at the target from each trip, staying on board
+        // until the connection it gets off at
+        long[] tripArrivals = new long[tripList.length];
+        Arrays.fill(tripArrivals, NEVER);
+        int[] tripExits = new int[tripList.length];
+
+        int first = firstAtOrAfter(earliest);
+        for (int i = connections.length - 1; i >= first; i--) {
+            int trip = trips[i];
+            long arrival = NEVER;
+            int exit = -1;
+            if (toStops[i] == target) {
+                arrival = arrivalTimes[i];
+                exit = i;
+            }
+            if (tripArrivals[trip] < arrival) {
+                arrival = tripArrivals[trip];
+                exit = tripExits[trip];
+            }
+            ProfileEntry transfer = ProfileEntry.after(profiles.get(toStops[i]),
+                    arrivalTimes[i]);
+            if (transfer != null && transfer.arrival < arrival) {
+                arrival = transfer.arrival;
+                exit = i;
+            }
+            if (arrival == NEVER) {
+                continue;
+            }
+            tripArrivals[trip] = arrival;
+            tripExits[trip] = exit;
+
+            int stop = fromStops[i];
+            if (profiles.get(stop) == null) {
+                profiles.set(stop, new ArrayList<>());
+            }
+            ProfileEntry.add(profiles.get(stop),
+                    new ProfileEntry(departureTimes[i], arrival, i, exit));
+        }
+        if (profiles.get(source) == null) {
+            return journeys;
+        }
+
+        for (ProfileEntry entry : profiles.get(source)) {
+            if (entry.departure < latest) {
+                journeys.add(journey(entry, profiles, target));
+            }
+        }
+        Collections.reverse(journeys);
+        return journeys;
+    }
+
+    /*
+     * Adds the connections of the given trip to the given list, indexing any
+     * stops it visits which have not been indexed.
+     */
+    private void addConnections(Trip trip, List<Departure> list) {
+        for (int position = 0; position < trip.stopCount(); position++) {
+            stopIndexes.putIfAbsent(trip.getStop(position),
+                    stopIndexes.size());
+            if (position < trip.stopCount() - 1) {
+                list.add(new Departure(trip, position));
+            }
+        }
+    }
+
+    /*
+     * Allocates the arrays of the given number of connections.
+     */
+    private void allocate(int count) {
+        this.connections = new Departure[count];
+        this.departureTimes = new long[count];
+        this.arrivalTimes = new long[count];
+        this.fromStops = new int[count];
+        this.toStops = new int[count];
+        this.trips = new int[count];
+        this.positions = new int[count];
+    }
+
+    /*
+     * Sets the connection at the given index.
+     */
+    private void set(int index, Departure connection) {
+        connections[index] = connection;
+        departureTimes[index] = connection.getTime();
+        arrivalTimes[index] = connection.getArrivalTime();
+        fromStops[index] = stopIndexes.get(connection.getStop());
+        toStops[index] = stopIndexes.get(connection.getNextStop());
+        trips[index] = tripIndexes.get(connection.getTrip());
+        positions[index] = connection.getPosition();
+    }
+
+    /*
+     * Sets the connection at the given index to the connection at the other
+     * index of the other scan, which has the same stop and trip indexes.
+     */
+    private void copy(int index, ConnectionScan other, int otherIndex) {
+        connections[index] = other.connections[otherIndex];
+        departureTimes[index] = other.departureTimes[otherIndex];
+        arrivalTimes[index] = other.arrivalTimes[otherIndex];
+        fromStops[index] = other.fromStops[otherIndex];
+        toStops[index] = other.toStops[otherIndex];
+        trips[index] = other.trips[otherIndex];
+        positions[index] = other.positions[otherIndex];
+    }
+
+    /*
+     * Orders each run of connections which depart at the same time and take
+     * no time, so that a connection arriving at a stop comes before those
+     * departing from it, and passengers can change from one to the next (in
+     * either scan direction).
+     */
+    private void orderChanges() {
+        int start = 0;
+        while (start < connections.length) {
+            long time = departureTimes[start];
+            int end = start;
+            while (end < connections.length && departureTimes[end] == time
+                    && arrivalTimes[end] == time) {
+                end++;
+            }
+            if (end - start > 1) {
+                orderChanges(start, end);
+            }
+            start = Math.max(end, start + 1);
+        }
+    }
+
+    /*
+     * Orders the connections between the given indexes (which depart at the
+     * same time and take no time), and otherwise by trip and position where
+     * they do not lead to each other.
+     *
+     * Connections which lead round in a loop (through more than one trip)
+     * cannot all be ordered this way. The loop is broken before a connection
+     * whose trip has already reached it (from an earlier stop), so that
+     * passengers staying on board are carried round the loop, but a change
+     * made part way round it may be missed.
+     */
+    private void orderChanges(int start, int end) {
+        int count = end - start;
+        // the run, by trip and position, so that it is ordered the same way
+        // however its connections were merged
+        Integer[] byTrip = new Integer[count];
+        for (int k = 0; k < count; k++) {
+            byTrip[k] = start + k;
+        }
+        Arrays.sort(byTrip, Comparator.<Integer>comparingInt(i -> trips[i])
+                .thenComparingInt(i -> positions[i]));
+        ConnectionScan run = new ConnectionScan(stopIndexes, tripList,
+                tripIndexes);
+        run.allocate(count);
+        for (int k = 0; k < count; k++) {
+            run.copy(k, this, byTrip[k]);
+        }
+
+        // the connections departing from each stop, the connection before
+        // each on its trip (or -1 if it is not in the run), and how many of
+        // the connections leading to each are yet to be ordered
+        Map<Integer, List<Integer>> departing = new HashMap<>();
+        int[] previous = new int[count];
+        for (int k = 0; k < count; k++) {
+            departing.computeIfAbsent(run.fromStops[k],
+                    stop -> new ArrayList<>()).add(k);
+            previous[k] = k > 0 && run.trips[k - 1] == run.trips[k]
+                    && run.positions[k - 1] == run.positions[k] - 1
+                    ? k - 1 : -1;
+        }
+        int[] waiting = new int[count];
+        for (int k = 0; k < count; k++) {
+            for (int next : departing.getOrDefault(run.toStops[k],
+                    Collections.emptyList())) {
+                if (run.leadsTo(k, next)) {
+                    waiting[next]++;
+                }
+            }
+        }
+
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int k = 0; k < count; k++) {
+            if (waiting[k] == 0) {
+                ready.add(k);
+            }
+        }
+        boolean[] done = new boolean[count];
+        for (int n = 0; n < count; n++) {
+            if (ready.isEmpty()) {
+                // every connection left is waiting on a loop
+                int loop = -1;
+                for (int k = 0; k < count; k++) {
+                    if (done[k]) {
+                        continue;
+                    }
+                    if (run.positions[k] > 0
+                            && (previous[k] < 0 || done[previous[k]])) {
+                        loop = k;
+                        break;
+                    }
+                    if (loop < 0) {
+                        loop = k;
+                    }
+                }
+                ready.add(loop);
+            }
+            int k = ready.poll();
+            done[k] = true;
+            copy(start + n, run, k);
+            for (int next : departing.getOrDefault(run.toStops[k],
+                    Collections.emptyList())) {
+                if (!done[next] && run.leadsTo(k, next)
+                        && --waiting[next] == 0) {
+                    ready.add(next);
+                }
+            }
+        }
+    }
+
+    /*
+     * Returns whether the connection at the second index departs from where
+     * the one at the first index arrives, and can be taken after it: on
+     * another trip, or further along the same trip.
+     */
+    private boolean leadsTo(int index, int nextIndex) {
+        return toStops[index] == fromStops[nextIndex]
+                && (trips[index] != trips[nextIndex]
+                || positions[index] < positions[nextIndex]);
+    }
+
+    /*
+     * Returns the index of the first connection departing at or after the
+     * given time, or the number of connections if there is none.
+     */
+    private int firstAtOrAfter(long time) {
+        int low = 0;
+        int high = departureTimes.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (departureTimes[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /*
+     * Returns the connections of a trip from the one at the first given index
+     * to the one at the second (inclusive), in order.
+     */
+    private List<Departure> leg(int enter, int exit) {
+        List<Departure> leg = new ArrayList<>();
+        Trip trip = tripList[trips[enter]];
+        for (int position = positions[enter]; position <= positions[exit];
+                position++) {
+            leg.add(new Departure(trip, position));
+        }
+        return leg;
+    }
+
+    /*
+     * Returns the journey starting with the given profile entry, changing at
+     * each stop it gets off at to the entry of that stop's profile which
+     * departs first.
+     */
+    private Journey journey(ProfileEntry entry,
+                            List<List<ProfileEntry>> profiles, int target) {
+        List<Departure> journey = new ArrayList<>();
+        while (entry != null) {
+            journey.addAll(leg(entry.enter, entry.exit));
+            int stop = toStops[entry.exit];
+            entry = stop == target ? null : ProfileEntry.after(
+                    profiles.get(stop), arrivalTimes[entry.exit]);
+        }
+        return new Journey(journey, 0);
+    }
+
+    /*
+     * A journey from a stop found by a backwards scan: departing with one
+     * connection, staying on its trip until another, and arriving at the
+     * target by a time.
+     */
+    private static class ProfileEntry {
+        private final long departure;
+        private final long arrival;
+        private final int enter;
+        private final int exit;
+
+        ProfileEntry(long departure, long arrival, int enter, int exit) {
+            this.departure = departure;
+            this.arrival = arrival;
+            this.enter = enter;
+            this.exit = exit;
+        }
+
+        /*
+         * Adds the given entry to a stop's profile, which is in order of
+         * decreasing departure (and so of decreasing arrival), unless a later
+         * departure arrives as early.
+         */
+        static void add(List<ProfileEntry> profile, ProfileEntry entry) {
+            if (profile.isEmpty()) {
+                profile.add(entry);
+                return;
+            }
+            ProfileEntry last = profile.get(profile.size() - 1);
+            if (entry.arrival >= last.arrival) {
+                return;
+            }
+            if (entry.departure == last.departure) {
+                profile.set(profile.size() - 1, entry);
+            } else {
+                profile.add(entry);
+            }
+        }
+
+        /*
+         * Returns the entry of a stop's profile which departs first at or
+         * after the given time (and so arrives earliest), or null if there is
+         * none.
+         */
+        static ProfileEntry after(List<ProfileEntry> profile, long time) {
+            if (profile == null) {
+                return null;
+            }
+            // the entries departing at or after the time are a prefix
+            int low = 0;
+            int high = profile.size();
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (profile.get(middle).departure >= time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low == 0 ? null : profile.get(low - 1);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package timetable;
+
+import stops.Stop;
+
+/**
+ * A departure of a trip from one of the stops on its route, which is also an
+ * elementary connection: the trip travelling from that stop to the next
+ * without stopping in between.
+ */
+public final class Departure {
+    // the trip departing
+    private final Trip trip;
+
+    // the position on the trip's route of the stop departed from
+    private final int position;
+
+    /*
+     * Creates a new departure of the given trip from the stop at the given
+     * position.
+     */
+    Departure(Trip trip, int position) {
+        this.trip = trip;
+        this.position = position;
+    }
+
+    /**
+     * Returns the trip departing.
+     *
+     * @return The trip.
+     */
+    public Trip getTrip() {
+        return trip;
+    }
+
+    /**
+     * Returns the position on the trip's route of the stop departed from.
+     *
+     * @return The position of the stop.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the stop departed from.
+     *
+     * @return The stop.
+     */
+    public Stop getStop() {
+        return trip.getStop(position);
+    }
+
+    /**
+     * Returns the time of the departure.
+     *
+     * @return The time the trip departs from the stop.
+     */
+    public long getTime() {
+        return trip.getDeparture(position);
+    }
+
+    /**
+     * Returns the stop the trip travels to after this departure.
+     *
+     * @return The next stop on the trip.
+     */
+    public Stop getNextStop() {
+        return trip.getStop(position + 1);
+    }
+
+    /**
+     * Returns the time the trip arrives at the next stop after this departure.
+     *
+     * @return The arrival time at the next stop.
+     */
+    public long getArrivalTime() {
+        return trip.getArrival(position + 1);
+    }
+
+    /**
+     * Creates a string representation of a departure in the format:
+     *
+     * <p>'{time} from {stop} to {next} by {vehicle}'
+     *
+     * <p>without the surrounding quotes, where {stop} and {next} are the
+     * names of the stop departed from and the next stop, and {vehicle} is the
+     * string representation of the trip's vehicle.
+     *
+     * @return A string representation of the departure.
+     */
+    @Override
+    public String toString() {
+        return getTime() + " from " + getStop().getName() + " to "
+                + getNextStop().getName() + " by " + trip.getVehicle();
+    }
+}
@@ -0,0 +1,203 @@
+package timetable;
+
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dispatches the vehicles on routes to run trips along them, either at the
+ * times given by a timetable or at a regular headway, and builds the
+ * resulting {@link Timetable}.
+ *
+ * <p>Each trip departs from the first stop of its route at its dispatch time,
+ * travels between stops at the speed of its route's mode (see
+ * {@link #setTimePerDistance(String, long)}), and waits at each stop other
+ * than the first and last for the dwell time. Once a vehicle has finished a
+ * trip, it returns to the first stop of its route (taking the time to travel
+ * there from the last stop) before it is free to make another.
+ *
+ * <p>Each departure is assigned to the route's vehicle which is free
+ * earliest (the first such vehicle in the route's list of vehicles, if more
+ * than one is free). If no vehicle is free at the time of a departure, the
+ * departure is delayed until one is, so a vehicle never makes two trips at
+ * once.
+ */
+public class Dispatcher {
+    // how long each vehicle waits at each stop along a trip
+    private long dwellTime;
+
+    // how long vehicles of each mode take to travel each unit of distance
+    private Map<String, Long> timesPerDistance;
+
+    // how long vehicles of modes without a time take to travel each unit of
+    // distance
+    private long defaultTimePerDistance;
+
+    // the time each vehicle which has made a trip is next free
+    private Map<PublicTransport, Long> freeTimes;
+
+    // the trips dispatched so far, in order
+    private List<Trip> trips;
+
+    /**
+     * Creates a new dispatcher with no trips, a dwell time of 1, and a time
+     * per distance of 1 for every mode.
+     */
+    public Dispatcher() {
+        this.dwellTime = 1;
+        this.timesPerDistance = new HashMap<>();
+        this.defaultTimePerDistance = 1;
+        this.freeTimes = new IdentityHashMap<>();
+        this.trips = new ArrayList<>();
+    }
+
+    /**
+     * Sets how long vehicles wait at each stop (other than the first and last)
+     * on trips dispatched from now on. If the given time is negative, 0 is
+     * used instead.
+     *
+     * @param dwellTime The time vehicles wait at stops.
+     */
+    public void setDwellTime(long dwellTime) {
+        this.dwellTime = Math.max(0, dwellTime);
+    }
+
+    /**
+     * Sets how long vehicles of the given mode (such as "bus", see
+     * {@link Route#getType()}) take to travel each unit of distance on trips
+     * dispatched from now on, so that faster modes have smaller times. If the
+     * given time is negative, 0 is used instead, and if the given mode is
+     * null, the time is used for every mode which has not been given a time.
+     *
+     * @param mode The type of route to set the speed of.
+     * @param timePerDistance The time taken to travel each unit of distance.
+     */
+    public void setTimePerDistance(String mode, long timePerDistance) {
+        timePerDistance = Math.max(0, timePerDistance);
+        if (mode == null) {
+            defaultTimePerDistance = timePerDistance;
+        } else {
+            timesPerDistance.put(mode, timePerDistance);
+        }
+    }
+
+    /**
+     * Returns how long vehicles of the given mode take to travel each unit of
+     * distance.
+     *
+     * @param mode The type of route.
+     * @return The time taken to travel each unit of distance.
+     */
+    public long getTimePerDistance(String mode) {
+        return timesPerDistance.getOrDefault(mode, defaultTimePerDistance);
+    }
+
+    /**
+     * Dispatches a trip along the given route at each of the given times,
+     * which may be in any order.
+     *
+     * <p>If the route has no stops or no vehicles, no trips are dispatched.
+     *
+     * @param route The route to dispatch trips along.
+     * @param departures The times trips should depart from the first stop.
+     * @return The trips dispatched, in order of departure.
+     */
+    public List<Trip> dispatch(Route route, long[] departures) {
+        List<Trip> dispatched = new ArrayList<>();
+        List<PublicTransport> vehicles = route.getTransports();
+        if (route.stopCount() == 0 || vehicles.isEmpty()) {
+            return dispatched;
+        }
+        long[] sorted = departures.clone();
+        Arrays.sort(sorted);
+        long timePerDistance = getTimePerDistance(route.getType());
+        for (long departure : sorted) {
+            PublicTransport vehicle = vehicles.get(0);
+            for (PublicTransport other : vehicles) {
+                if (freeTime(other) < freeTime(vehicle)) {
+                    vehicle = other;
+                }
+            }
+            Trip trip = schedule(vehicle, route,
+                    Math.max(departure, freeTime(vehicle)), timePerDistance);
+            freeTimes.put(vehicle, trip.getEndTime() + route.getStop(
+                    route.stopCount() - 1).distanceTo(route.getStop(0))
+                    * timePerDistance);
+            dispatched.add(trip);
+        }
+        trips.addAll(dispatched);
+        return dispatched;
+    }
+
+    /**
+     * Dispatches trips along the given route at a regular interval, from the
+     * first time to the last (inclusive).
+     *
+     * <p>If the headway is less than 1, 1 is used instead. If the route has
+     * no stops or no vehicles, or the last time is before the first, no trips
+     * are dispatched.
+     *
+     * @param route The route to dispatch trips along.
+     * @param first The time the first trip should depart.
+     * @param headway The time between departures.
+     * @param last The latest time a trip may depart.
+     * @return The trips dispatched, in order of departure.
+     */
+    public List<Trip> dispatch(Route route, long first, long headway,
+                               long last) {
+        headway = Math.max(1, headway);
+        int count = last < first ? 0 : (int) ((last - first) / headway + 1);
+        long[] departures = new long[count];
+        for (int i = 0; i < count; i++) {
+            departures[i] = first + i * headway;
+        }
+        return dispatch(route, departures);
+    }
+
+    /**
+     * Returns a timetable of every trip dispatched so far.
+     *
+     * @return The timetable of the dispatched trips.
+     */
+    public Timetable getTimetable() {
+        return new Timetable(trips);
+    }
+
+    /*
+     * Returns the time the given vehicle is next free (the start of time if
+     * it has not made a trip).
+     */
+    private long freeTime(PublicTransport vehicle) {
+        return freeTimes.getOrDefault(vehicle, Long.MIN_VALUE);
+    }
+
+    /*
+     * Returns a trip of the given vehicle along the given route, departing
+     * from the first stop at the given time.
+     */
+    private Trip schedule(PublicTransport vehicle, Route route,
+                          long departure, long timePerDistance) {
+        int count = route.stopCount();
+        long[] arrivals = new long[count];
+        long[] departures = new long[count];
+        arrivals[0] = departure;
+        departures[0] = departure;
+        Stop previous = route.getStop(0);
+        for (int position = 1; position < count; position++) {
+            Stop stop = route.getStop(position);
+            arrivals[position] = departures[position - 1]
+                    + previous.distanceTo(stop) * timePerDistance;
+            departures[position] = position == count - 1
+                    ? arrivals[position] : arrivals[position] + dwellTime;
+            previous = stop;
+        }
+        return new Trip(vehicle, route, arrivals, departures);
+    }
+}
@@ -0,0 +1,133 @@
+package timetable;
+
+import stops.Stop;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A way of travelling between two stops using a timetable, made up of the
+ * elementary connections (see {@link Departure}) travelled along, in order.
+ *
+ * <p>Consecutive connections of the same trip are travelled without getting
+ * off, and a passenger changes between trips at the stop where one trip's
+ * connection ends and the next trip's begins.
+ */
+public final class Journey {
+    // the connections travelled along, in order
+    private final List<Departure> connections;
+
+    // the time the journey departs and arrives
+    private final long departureTime;
+    private final long arrivalTime;
+
+    /*
+     * Creates a new journey along the given connections (which are not
+     * copied). A journey with no connections departs and arrives at the given
+     * time.
+     */
+    Journey(List<Departure> connections, long time) {
+        this.connections = connections;
+        if (connections.isEmpty()) {
+            this.departureTime = time;
+            this.arrivalTime = time;
+        } else {
+            this.departureTime = connections.get(0).getTime();
+            this.arrivalTime =
+                    connections.get(connections.size() - 1).getArrivalTime();
+        }
+    }
+
+    /**
+     * Returns the connections travelled along, in order.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * internal state of the class.
+     *
+     * @return The connections of the journey (empty if the journey starts
+     *          where it ends).
+     */
+    public List<Departure> getConnections() {
+        return new ArrayList<>(connections);
+    }
+
+    /**
+     * Returns the trips travelled on, in order, with each trip appearing once
+     * for each time it is boarded.
+     *
+     * @return The trips of the journey.
+     */
+    public List<Trip> getTrips() {
+        List<Trip> trips = new ArrayList<>();
+        for (Departure connection : connections) {
+            if (trips.isEmpty()
+                    || trips.get(trips.size() - 1) != connection.getTrip()) {
+                trips.add(connection.getTrip());
+            }
+        }
+        return trips;
+    }
+
+    /**
+     * Returns the number of times a passenger changes between trips on the
+     * journey.
+     *
+     * @return The number of transfers.
+     */
+    public int transferCount() {
+        return Math.max(0, getTrips().size() - 1);
+    }
+
+    /**
+     * Returns the time the journey departs from its first stop.
+     *
+     * @return The departure time.
+     */
+    public long getDepartureTime() {
+        return departureTime;
+    }
+
+    /**
+     * Returns the time the journey arrives at its last stop.
+     *
+     * @return The arrival time.
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * Returns the stop the journey ends at.
+     *
+     * @return The last stop, or null if the journey has no connections.
+     */
+    public Stop getDestination() {
+        return connections.isEmpty() ? null
+                : connections.get(connections.size() - 1).getNextStop();
+    }
+
+    /**
+     * Creates a string representation of a journey in the format:
+     *
+     * <p>'{departure}-{arrival} by {vehicle}, then {vehicle}, then ...'
+     *
+     * <p>without the surrounding quotes, where {departure} and {arrival} are
+     * the departure and arrival times of the journey, and each {vehicle} is
+     * the string representation of the vehicle of each trip travelled on, in
+     * order (see {@link PublicTransport#toString()}).
+     *
+     * @return A string representation of the journey.
+     */
+    @Override
+    public String toString() {
+        StringBuilder vehicles = new StringBuilder();
+        for (Trip trip : getTrips()) {
+            if (vehicles.length() > 0) {
+                vehicles.append(", then ");
+            }
+            vehicles.append(trip.getVehicle());
+        }
+        return departureTime + "-" + arrivalTime + " by " + vehicles;
+    }
+}
@@ -0,0 +1,348 @@
+package timetable;
+
+import exceptions.TransportFormatException;
+import stops.Stop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A timetable kept up to date with realtime delays and cancellations of its
+ * trips (see {@link TripUpdate}), which plans journeys with the trips as they
+ * are currently running.
+ *
+ * <p>Applying updates does not rebuild the timetable. Only the trips updated
+ * are changed: their connections are removed from the connection scan and
+ * their new connections merged back in (see {@link ConnectionScan}), and the
+ * other trips' connections are copied, already in order. Earliest arrival
+ * answers are cached, and an update only discards the cached answers it could
+ * change: those using an updated trip, and those which an updated trip might
+ * now give an earlier arrival than.
+ *
+ * <p>Updates are applied to the timetable's scheduled times, so each delay
+ * replaces any earlier delay reported for the same stops. Times along a trip
+ * never go backwards, so a trip running early never departs a stop before it
+ * has arrived there, nor arrives before it has departed the stop before.
+ * Cancelled trips stay cancelled, and updates to trips which are not in the
+ * timetable are ignored. If the timetable has more than one trip of the same
+ * route and vehicle with the same scheduled start time, an update for that
+ * trip is applied to each of them.
+ *
+ * <p>Queries may be made from any number of threads, including while updates
+ * are being applied: each query is answered with the trips as they were
+ * either before or after an update.
+ */
+public class RealtimeTimetable {
+    // the maximum number of earliest arrival answers cached
+    private static final int CACHE_SIZE = 4096;
+
+    // the scheduled trips, by route number, vehicle id and scheduled start
+    // time
+    private Map<String, List<Trip>> scheduled;
+
+    // the trip currently running for each scheduled trip which has been
+    // updated (null if it has been cancelled), and its delay at each position
+    private Map<Trip, Trip> current;
+    private Map<Trip, long[]> delays;
+
+    // plans journeys with the current trips
+    private volatile ConnectionScan scan;
+
+    // cached earliest arrival answers (null if there is no journey), least
+    // recently used first
+    private Map<Query, Journey> cache;
+
+    /**
+     * Creates a new realtime timetable, starting with the trips of the given
+     * timetable running as scheduled.
+     *
+     * @param timetable The scheduled trips.
+     */
+    public RealtimeTimetable(Timetable timetable) {
+        List<Trip> trips = timetable.getTrips();
+        this.scheduled = new LinkedHashMap<>();
+        for (Trip trip : trips) {
+            scheduled.computeIfAbsent(key(trip), k -> new ArrayList<>())
+                    .add(trip);
+        }
+        this.current = new IdentityHashMap<>();
+        this.delays = new IdentityHashMap<>();
+        this.scan = new ConnectionScan(trips);
+        this.cache = new LinkedHashMap<Query, Journey>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<Query, Journey> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Applies the given update (see {@link #apply(List)}).
+     *
+     * @param update The update to apply.
+     * @return True if the update was applied, false if it was ignored.
+     */
+    public boolean apply(TripUpdate update) {
+        return apply(Collections.singletonList(update)) == 1;
+    }
+
+    /**
+     * Applies the given updates, in order, changing the connection scan once
+     * for all of them.
+     *
+     * <p>An update is ignored if it is null, if no trip in the timetable has
+     * the route, vehicle and scheduled start time of the update, if its trip
+     * has been cancelled, or if it is a delay from a position past the end of
+     * its trip.
+     *
+     * @param updates The updates to apply.
+     * @return The number of updates applied.
+     */
+    public synchronized int apply(List<TripUpdate> updates) {
+        // the trip each updated scheduled trip was running as before these
+        // updates
+        Map<Trip, Trip> before = new IdentityHashMap<>();
+        int applied = 0;
+        for (TripUpdate update : updates) {
+            List<Trip> trips = update == null ? null : scheduled.get(
+                    key(update.getRouteNumber(), update.getVehicleId(),
+                            update.getScheduledStart()));
+            if (trips == null) {
+                continue;
+            }
+            boolean updated = false;
+            for (Trip trip : trips) {
+                if (getCurrentTrip(trip) == null
+                        || update.getPosition() >= trip.stopCount()) {
+                    continue;
+                }
+                before.putIfAbsent(trip, getCurrentTrip(trip));
+                current.put(trip, update.isCancellation() ? null
+                        : delay(trip, update.getPosition(),
+                                update.getDelay()));
+                updated = true;
+            }
+            if (updated) {
+                applied++;
+            }
+        }
+        if (before.isEmpty()) {
+            return applied;
+        }
+        Map<Trip, Trip> replacements = new IdentityHashMap<>();
+        for (Map.Entry<Trip, Trip> entry : before.entrySet()) {
+            replacements.put(entry.getValue(), current.get(entry.getKey()));
+        }
+        scan = scan.replace(replacements);
+        invalidate(replacements);
+        return applied;
+    }
+
+    /**
+     * Polls the given feed for updates reported at or before the given time,
+     * and applies them (see {@link #apply(List)}).
+     *
+     * @param feed The feed to poll.
+     * @param time The time to poll updates until.
+     * @return The number of updates applied.
+     * @throws IOException If any IO exceptions occur whilst polling the feed.
+     * @throws TransportFormatException If an update from the feed is
+     *         incorrectly formatted.
+     */
+    public int replay(TripUpdateFeed feed, long time)
+            throws IOException, TransportFormatException {
+        return apply(feed.poll(time));
+    }
+
+    /**
+     * Returns the trip currently running in place of the given scheduled
+     * trip.
+     *
+     * @param trip A trip of the timetable this was created from.
+     * @return The trip with its current times (the given trip if it has not
+     *          been updated), or null if it has been cancelled or is not in
+     *          the timetable.
+     */
+    public synchronized Trip getCurrentTrip(Trip trip) {
+        if (current.containsKey(trip)) {
+            return current.get(trip);
+        }
+        List<Trip> trips = trip == null ? null : scheduled.get(key(trip));
+        return trips != null && trips.contains(trip) ? trip : null;
+    }
+
+    /**
+     * Returns a connection scan of the trips as they are currently running,
+     * which does not change as further updates are applied.
+     *
+     * @return The current connection scan.
+     */
+    public ConnectionScan getConnectionScan() {
+        return scan;
+    }
+
+    /**
+     * Returns the journey from the first stop to the second, departing at or
+     * after the given time, which arrives earliest with the trips as they are
+     * currently running (see
+     * {@link ConnectionScan#earliestArrival(Stop, Stop, long)}).
+     *
+     * <p>The answer is cached until an update which could change it is
+     * applied.
+     *
+     * @param from The stop to depart from.
+     * @param to The stop to arrive at.
+     * @param time The earliest time to depart.
+     * @return The journey arriving earliest, or null if there is none.
+     */
+    public Journey earliestArrival(Stop from, Stop to, long time) {
+        Query query = new Query(from, to, time);
+        ConnectionScan planner;
+        synchronized (this) {
+            if (cache.containsKey(query)) {
+                return cache.get(query);
+            }
+            planner = scan;
+        }
+        // plan without holding the lock, so other queries are not blocked
+        Journey journey = planner.earliestArrival(from, to, time);
+        synchronized (this) {
+            // an answer planned before an update may already be out of date
+            if (planner == scan) {
+                cache.put(query, journey);
+            }
+        }
+        return journey;
+    }
+
+    /*
+     * Returns the number of earliest arrival answers cached.
+     */
+    synchronized int cachedAnswerCount() {
+        return cache.size();
+    }
+
+    /*
+     * Records a delay to the given scheduled trip from the given position
+     * onwards, returning the trip with its new times.
+     */
+    private Trip delay(Trip trip, int position, long delay) {
+        int count = trip.stopCount();
+        long[] tripDelays = delays.computeIfAbsent(trip, t -> new long[count]);
+        for (int i = position; i < count; i++) {
+            tripDelays[i] = delay;
+        }
+        long[] arrivals = new long[count];
+        long[] departures = new long[count];
+        for (int i = 0; i < count; i++) {
+            arrivals[i] = trip.getArrival(i) + tripDelays[i];
+            if (i > 0) {
+                arrivals[i] = Math.max(arrivals[i], departures[i - 1]);
+            }
+            departures[i] = Math.max(arrivals[i],
+                    trip.getDeparture(i) + tripDelays[i]);
+        }
+        return new Trip(trip.getVehicle(), trip.getRoute(), arrivals,
+                departures);
+    }
+
+    /*
+     * Discards the cached answers which the given replacements of trips could
+     * change: those using a replaced trip, and those which a replacement has
+     * a connection departing at or after the time of, and before the arrival
+     * of the cached journey (which is the only way it could be part of an
+     * earlier journey).
+     */
+    private void invalidate(Map<Trip, Trip> replacements) {
+        Set<Trip> replaced = replacements.keySet();
+        Iterator<Map.Entry<Query, Journey>> entries =
+                cache.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<Query, Journey> entry = entries.next();
+            Journey journey = entry.getValue();
+            long arrival = journey == null ? Long.MAX_VALUE
+                    : journey.getArrivalTime();
+            boolean stale = false;
+            if (journey != null) {
+                for (Trip trip : journey.getTrips()) {
+                    stale |= replaced.contains(trip);
+                }
+            }
+            for (Trip trip : replacements.values()) {
+                stale |= trip != null && departsBetween(trip,
+                        entry.getKey().time, arrival);
+            }
+            if (stale) {
+                entries.remove();
+            }
+        }
+    }
+
+    /*
+     * Returns whether the trip departs any stop at or after the first time
+     * and before the second.
+     */
+    private static boolean departsBetween(Trip trip, long from, long to) {
+        for (int position = 0; position < trip.stopCount() - 1; position++) {
+            long departure = trip.getDeparture(position);
+            if (departure >= from && departure < to) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * Returns the key of the trips of the given route and vehicle starting at
+     * the given time.
+     */
+    private static String key(int routeNumber, int vehicleId, long start) {
+        return routeNumber + "," + vehicleId + "," + start;
+    }
+
+    /*
+     * Returns the key of the given trip.
+     */
+    private static String key(Trip trip) {
+        return key(trip.getRoute().getRouteNumber(),
+                trip.getVehicle().getId(), trip.getStartTime());
+    }
+
+    /*
+     * An earliest arrival query, whose stops are compared by identity.
+     */
+    private static final class Query {
+        private final Stop from;
+        private final Stop to;
+        private final long time;
+
+        Query(Stop from, Stop to, long time) {
+            this.from = from;
+            this.to = to;
+            this.time = time;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Query)) {
+                return false;
+            }
+            Query query = (Query) other;
+            return from == query.from && to == query.to && time == query.time;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * System.identityHashCode(from)
+                    + System.identityHashCode(to)) + Long.hashCode(time);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package timetable;
+
+import exceptions.TransportFormatException;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A feed of trip updates read from a file, so that a recorded feed can be
+ * replayed in place of a live one (for example, for testing).
+ *
+ * <p>Each line of the file is one encoded update (see
+ * {@link TripUpdate#encode()}), in the order the updates were reported. Blank
+ * lines are ignored. The file is read a line at a time as the updates are
+ * polled, so a long recording is never held in memory at once.
+ */
+public class ReplayFeed implements TripUpdateFeed, Closeable {
+    // standardises newline characters
+    private static final String NEWLINE = System.lineSeparator();
+
+    // reads the updates from the file
+    private BufferedReader reader;
+
+    // the next update read but not yet returned, or null
+    private TripUpdate next;
+
+    /**
+     * Creates a new feed replaying the updates in the given file.
+     *
+     * @param filename The name of the file to read updates from.
+     * @throws IOException If the filename is null, or the file cannot be
+     *         opened.
+     */
+    public ReplayFeed(String filename) throws IOException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        this.reader = new BufferedReader(new FileReader(filename));
+    }
+
+    /**
+     * Writes the given updates to the given file, one per line, in a format
+     * which can be replayed by a feed.
+     *
+     * @param filename The name of the file to write updates to.
+     * @param updates The updates to write, in the order they were reported.
+     * @throws IOException If any IO exceptions occur whilst writing the file,
+     *         or the filename is null.
+     */
+    public static void record(String filename, List<TripUpdate> updates)
+            throws IOException {
+        if (filename == null) {
+            throw new IOException();
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(filename))) {
+            for (TripUpdate update : updates) {
+                update.encodeTo(writer);
+                writer.write(NEWLINE);
+            }
+        }
+    }
+
+    /**
+     * Returns the updates in the file reported at or before the given time
+     * which have not already been returned, in the order they appear in the
+     * file.
+     *
+     * <p>Updates are returned in file order, so an update reported later than
+     * the one after it is only returned once that one has been.
+     *
+     * @param time The time to return updates until.
+     * @return The new updates, which may be empty.
+     * @throws IOException If any IO exceptions occur whilst reading the file.
+     * @throws TransportFormatException If a line of the file is not a
+     *         correctly formatted update (see {@link TripUpdate#decode}).
+     */
+    @Override
+    public List<TripUpdate> poll(long time)
+            throws IOException, TransportFormatException {
+        List<TripUpdate> updates = new ArrayList<>();
+        while (true) {
+            if (next == null) {
+                next = readNext();
+                if (next == null) {
+                    return updates;
+                }
+            }
+            if (next.getTime() > time) {
+                return updates;
+            }
+            updates.add(next);
+            next = null;
+        }
+    }
+
+    /**
+     * Closes the file the updates are read from.
+     *
+     * @throws IOException If any IO exceptions occur whilst closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /*
+     * Reads the next update from the file, or returns null at the end of the
+     * file.
+     */
+    private TripUpdate readNext() throws IOException,
+            TransportFormatException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!line.trim().isEmpty()) {
+                return TripUpdate.decode(line);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,153 @@
+package timetable;
+
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The trips of vehicles along their routes (see {@link Trip}), indexed by the
+ * stops they depart from.
+ *
+ * <p>The departures from each stop are held in an array sorted by time, so
+ * finding the next departure from a stop after a given time is a binary
+ * search, taking time logarithmic in the number of departures from the stop.
+ * Departures at the same time are in the order their trips were dispatched.
+ * A timetable does not change once it has been created.
+ */
+public class Timetable {
+    // the trips, in the order they were dispatched
+    private List<Trip> trips;
+
+    // the departures from each stop, by identity
+    private Map<Stop, StopDepartures> departures;
+
+    /*
+     * Creates a new timetable of the given trips, indexing their departures.
+     */
+    Timetable(List<Trip> trips) {
+        this.trips = new ArrayList<>(trips);
+        Map<Stop, List<Departure>> byStop = new IdentityHashMap<>();
+        for (Trip trip : this.trips) {
+            for (int position = 0; position < trip.stopCount() - 1;
+                    position++) {
+                byStop.computeIfAbsent(trip.getStop(position),
+                        stop -> new ArrayList<>())
+                        .add(new Departure(trip, position));
+            }
+        }
+        this.departures = new IdentityHashMap<>();
+        for (Map.Entry<Stop, List<Departure>> entry : byStop.entrySet()) {
+            List<Departure> list = entry.getValue();
+            // the sort is stable, so ties stay in dispatch order
+            list.sort(Comparator.comparingLong(Departure::getTime));
+            departures.put(entry.getKey(), new StopDepartures(list));
+        }
+    }
+
+    /**
+     * Returns the trips in this timetable, in the order they were dispatched.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * internal state of the class.
+     *
+     * @return The trips.
+     */
+    public List<Trip> getTrips() {
+        return new ArrayList<>(trips);
+    }
+
+    /**
+     * Returns the number of departures from the given stop.
+     *
+     * @param stop The stop to count departures from.
+     * @return The number of departures, or 0 if no trip departs from the
+     *          stop.
+     */
+    public int departureCount(Stop stop) {
+        StopDepartures stopDepartures = departures.get(stop);
+        return stopDepartures == null ? 0 : stopDepartures.list.length;
+    }
+
+    /**
+     * Returns the first departure from the given stop at or after the given
+     * time.
+     *
+     * @param stop The stop to depart from.
+     * @param time The earliest time to depart.
+     * @return The next departure, or null if there are no more departures
+     *          from the stop.
+     */
+    public Departure nextDeparture(Stop stop, long time) {
+        StopDepartures stopDepartures = departures.get(stop);
+        if (stopDepartures == null) {
+            return null;
+        }
+        int index = stopDepartures.firstAtOrAfter(time);
+        return index == stopDepartures.list.length ? null
+                : stopDepartures.list[index];
+    }
+
+    /**
+     * Returns the departures from the given stop at or after the first given
+     * time and before the second, in order of time.
+     *
+     * <p>Modifying the returned list should not result in changes to the
+     * internal state of the class.
+     *
+     * @param stop The stop to depart from.
+     * @param from The earliest time to depart.
+     * @param to The time to depart before.
+     * @return The departures between the given times.
+     */
+    public List<Departure> getDepartures(Stop stop, long from, long to) {
+        StopDepartures stopDepartures = departures.get(stop);
+        if (stopDepartures == null || to <= from) {
+            return new ArrayList<>();
+        }
+        int start = stopDepartures.firstAtOrAfter(from);
+        int end = stopDepartures.firstAtOrAfter(to);
+        return new ArrayList<>(
+                Arrays.asList(stopDepartures.list).subList(start, end));
+    }
+
+    /*
+     * The departures from a stop, sorted by time, with their times in a
+     * separate array so that they can be searched without dereferencing each
+     * departure.
+     */
+    private static class StopDepartures {
+        private final Departure[] list;
+        private final long[] times;
+
+        StopDepartures(List<Departure> departures) {
+            this.list = departures.toArray(new Departure[0]);
+            this.times = new long[list.length];
+            for (int i = 0; i < list.length; i++) {
+                times[i] = list[i].getTime();
+            }
+        }
+
+        /*
+         * Returns the index of the first departure at or after the given
+         * time, or the number of departures if there is none.
+         */
+        int firstAtOrAfter(long time) {
+            int low = 0;
+            int high = times.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (times[middle] < time) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
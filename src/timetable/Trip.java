@@ -0,0 +1,137 @@
+package timetable;
+
+import routes.Route;
+import stops.Stop;
+import vehicles.PublicTransport;
+
+/**
+ * A single run of a vehicle along its route, from the first stop of the route
+ * to the last, with the time the vehicle arrives at and departs from each
+ * stop.
+ *
+ * <p>Stops are identified by their position on the route (see
+ * {@link Route#getStop(int)}), so a stop which appears on the route more than
+ * once has a time for each visit. A vehicle departs from the first stop at the
+ * same time as it arrives there, and does not depart from the last stop at
+ * all (its departure time there is its arrival time).
+ */
+public final class Trip {
+    // the vehicle making the trip
+    private final PublicTransport vehicle;
+
+    // the route the trip follows
+    private final Route route;
+
+    // the time the vehicle arrives at and departs from each position
+    private final long[] arrivals;
+    private final long[] departures;
+
+    /*
+     * Creates a new trip of the given vehicle along the given route, with the
+     * given times (which are not copied).
+     */
+    Trip(PublicTransport vehicle, Route route, long[] arrivals,
+         long[] departures) {
+        this.vehicle = vehicle;
+        this.route = route;
+        this.arrivals = arrivals;
+        this.departures = departures;
+    }
+
+    /**
+     * Returns the vehicle making this trip.
+     *
+     * @return The vehicle.
+     */
+    public PublicTransport getVehicle() {
+        return vehicle;
+    }
+
+    /**
+     * Returns the route this trip follows.
+     *
+     * @return The vehicle's route.
+     */
+    public Route getRoute() {
+        return route;
+    }
+
+    /**
+     * Returns the number of stops this trip visits, which is the number of
+     * stops on its route.
+     *
+     * @return The number of stops.
+     */
+    public int stopCount() {
+        return arrivals.length;
+    }
+
+    /**
+     * Returns the stop at the given position on this trip.
+     *
+     * @param position The position of the stop on the route.
+     * @return The stop at that position, or null if there is none.
+     */
+    public Stop getStop(int position) {
+        return route.getStop(position);
+    }
+
+    /**
+     * Returns the time the vehicle arrives at the stop at the given position.
+     *
+     * @param position The position of the stop on the route.
+     * @return The arrival time.
+     * @throws IndexOutOfBoundsException If there is no stop at the given
+     *         position.
+     */
+    public long getArrival(int position) {
+        return arrivals[position];
+    }
+
+    /**
+     * Returns the time the vehicle departs from the stop at the given
+     * position.
+     *
+     * @param position The position of the stop on the route.
+     * @return The departure time.
+     * @throws IndexOutOfBoundsException If there is no stop at the given
+     *         position.
+     */
+    public long getDeparture(int position) {
+        return departures[position];
+    }
+
+    /**
+     * Returns the time the vehicle departs from the first stop.
+     *
+     * @return The start time of the trip.
+     */
+    public long getStartTime() {
+        return departures[0];
+    }
+
+    /**
+     * Returns the time the vehicle arrives at the last stop.
+     *
+     * @return The end time of the trip.
+     */
+    public long getEndTime() {
+        return arrivals[arrivals.length - 1];
+    }
+
+    /**
+     * Creates a string representation of a trip in the format:
+     *
+     * <p>'{vehicle} at {start}-{end}'
+     *
+     * <p>without the surrounding quotes, where {vehicle} is the vehicle's
+     * string representation (see {@link PublicTransport#toString()}), and
+     * {start} and {end} are the start and end times of the trip.
+     *
+     * @return A string representation of the trip.
+     */
+    @Override
+    public String toString() {
+        return vehicle + " at " + getStartTime() + "-" + getEndTime();
+    }
+}
@@ -0,0 +1,229 @@
+package timetable;
+
+import exceptions.TransportFormatException;
+import utilities.Writeable;
+
+/**
+ * A realtime update to a single trip: either a delay to the trip from one of
+ * its stops onwards, or the cancellation of the whole trip.
+ *
+ * <p>A trip is identified by the number of its route (see
+ * {@link routes.Route#getRouteNumber()}), the id of its vehicle (see
+ * {@link vehicles.PublicTransport#getId()}) and the time it was scheduled to
+ * depart from its first stop. A delay is the time the trip runs late by
+ * (or early by, if it is negative) compared to its timetable, from the stop
+ * at the given position on its route onwards, and replaces any delay
+ * previously reported for those stops.
+ */
+public final class TripUpdate implements Writeable {
+    // the time the update was reported
+    private final long time;
+
+    // the route and vehicle of the trip, and the time the trip was scheduled
+    // to start
+    private final int routeNumber;
+    private final int vehicleId;
+    private final long scheduledStart;
+
+    // the position the delay applies from, and the delay
+    private final int position;
+    private final long delay;
+
+    // whether the trip is cancelled
+    private final boolean cancelled;
+
+    /*
+     * Creates a new update with the given parts.
+     */
+    private TripUpdate(long time, int routeNumber, int vehicleId,
+                       long scheduledStart, int position, long delay,
+                       boolean cancelled) {
+        this.time = time;
+        this.routeNumber = routeNumber;
+        this.vehicleId = vehicleId;
+        this.scheduledStart = scheduledStart;
+        this.position = position;
+        this.delay = delay;
+        this.cancelled = cancelled;
+    }
+
+    /**
+     * Creates an update reporting that a trip is delayed from the stop at the
+     * given position onwards. If the position is negative, 0 is used instead.
+     *
+     * @param time The time the update was reported.
+     * @param routeNumber The number of the trip's route.
+     * @param vehicleId The id of the trip's vehicle.
+     * @param scheduledStart The time the trip was scheduled to start.
+     * @param position The position of the first stop the delay applies to.
+     * @param delay The time the trip is late by.
+     * @return The delay update.
+     */
+    public static TripUpdate delay(long time, int routeNumber, int vehicleId,
+                                   long scheduledStart, int position,
+                                   long delay) {
+        return new TripUpdate(time, routeNumber, vehicleId, scheduledStart,
+                Math.max(0, position), delay, false);
+    }
+
+    /**
+     * Creates an update reporting that a trip is cancelled.
+     *
+     * @param time The time the update was reported.
+     * @param routeNumber The number of the trip's route.
+     * @param vehicleId The id of the trip's vehicle.
+     * @param scheduledStart The time the trip was scheduled to start.
+     * @return The cancellation update.
+     */
+    public static TripUpdate cancellation(long time, int routeNumber,
+                                          int vehicleId,
+                                          long scheduledStart) {
+        return new TripUpdate(time, routeNumber, vehicleId, scheduledStart,
+                0, 0, true);
+    }
+
+    /**
+     * Returns the time the update was reported.
+     *
+     * @return The time of the update.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Returns the number of the route of the trip updated.
+     *
+     * @return The route's number.
+     */
+    public int getRouteNumber() {
+        return routeNumber;
+    }
+
+    /**
+     * Returns the id of the vehicle of the trip updated.
+     *
+     * @return The vehicle's id.
+     */
+    public int getVehicleId() {
+        return vehicleId;
+    }
+
+    /**
+     * Returns the time the trip updated was scheduled to depart from its
+     * first stop.
+     *
+     * @return The scheduled start time of the trip.
+     */
+    public long getScheduledStart() {
+        return scheduledStart;
+    }
+
+    /**
+     * Returns the position on the trip's route of the first stop the delay
+     * applies to.
+     *
+     * @return The position of the stop, or 0 for a cancellation.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the time the trip is late by.
+     *
+     * @return The delay, or 0 for a cancellation.
+     */
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Returns whether the update cancels the trip.
+     *
+     * @return True if the trip is cancelled, false if it is delayed.
+     */
+    public boolean isCancellation() {
+        return cancelled;
+    }
+
+    /**
+     * Encodes this update as a string in the format:
+     *
+     * <p>'{time},{route},{vehicle},{start},{position},{delay}'
+     *
+     * <p>for a delay, or:
+     *
+     * <p>'{time},{route},{vehicle},{start},cancelled'
+     *
+     * <p>for a cancellation, without the surrounding quotes, where {time} is
+     * the time of the update, {route} is the number of the trip's route,
+     * {vehicle} is the id of the trip's vehicle,
+     * {start} is the scheduled start time of the trip, {position} is the
+     * position the delay applies from, and {delay} is the delay.
+     *
+     * @return This update encoded as a string.
+     */
+    @Override
+    public String encode() {
+        return time + "," + routeNumber + "," + vehicleId + ","
+                + scheduledStart + ","
+                + (cancelled ? "cancelled" : position + "," + delay);
+    }
+
+    /**
+     * Creates a new update based on the given string representation.
+     *
+     * <p>The format of the string should match that returned by the
+     * {@link #encode()} method. Spaces before or after each part are
+     * trimmed.
+     *
+     * @param updateString The string to decode.
+     * @return The decoded update.
+     * @throws TransportFormatException If the given string is null, or the
+     *          string is incorrectly formatted (according to the
+     *          {@link #encode()} representation), including if it has the
+     *          wrong number of parts, or any number is not an integer.
+     */
+    public static TripUpdate decode(String updateString)
+            throws TransportFormatException {
+        if (updateString == null) {
+            throw new TransportFormatException("trip update is null");
+        }
+        String[] parts = updateString.split(",", -1);
+        boolean cancelled = parts.length == 5
+                && parts[4].trim().equals("cancelled");
+        if (!cancelled && parts.length != 6) {
+            throw new TransportFormatException("trip update should be "
+                    + "time,route,vehicle,start,position,delay or "
+                    + "time,route,vehicle,start,cancelled");
+        }
+        try {
+            long time = Long.parseLong(parts[0].trim());
+            int routeNumber = Integer.parseInt(parts[1].trim());
+            int vehicleId = Integer.parseInt(parts[2].trim());
+            long scheduledStart = Long.parseLong(parts[3].trim());
+            if (cancelled) {
+                return cancellation(time, routeNumber, vehicleId,
+                        scheduledStart);
+            }
+            return delay(time, routeNumber, vehicleId, scheduledStart,
+                    Integer.parseInt(parts[4].trim()),
+                    Long.parseLong(parts[5].trim()));
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException(
+                    "trip update part is not an integer");
+        }
+    }
+
+    /**
+     * Creates a string representation of this update, which is the same as
+     * its encoded representation (see {@link #encode()}).
+     *
+     * @return A string representation of the update.
+     */
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
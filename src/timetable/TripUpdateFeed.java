@@ -0,0 +1,25 @@
+package timetable;
+
+import exceptions.TransportFormatException;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * A source of realtime updates to trips (see {@link TripUpdate}), such as a
+ * live feed from vehicles or a recording of one (see {@link ReplayFeed}).
+ */
+public interface TripUpdateFeed {
+    /**
+     * Returns the updates reported at or before the given time which have not
+     * already been returned, in the order they were reported.
+     *
+     * @param time The time to return updates until.
+     * @return The new updates, which may be empty.
+     * @throws IOException If any IO exceptions occur whilst reading the
+     *         updates.
+     * @throws TransportFormatException If an update is incorrectly formatted.
+     */
+    List<TripUpdate> poll(long time)
+            throws IOException, TransportFormatException;
+}
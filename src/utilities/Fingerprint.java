@@ -0,0 +1,111 @@
+package utilities;
+
+import java.io.IOException;
+
+/**
+ * Accumulates a 64-bit FNV-1a hash of the characters appended to it, so that
+ * the encoded representation of an object can be hashed as it is written
+ * (see {@link Writeable#encodeTo(Appendable)}) without building a string.
+ *
+ * <p>The hash depends on the order of the characters, and more characters
+ * can be appended at any time: the value after appending "ab" and then "c"
+ * is the same as the value after appending "abc". Each character is hashed as
+ * its two bytes (high byte first), so the value does not depend on the
+ * platform's charset.
+ *
+ * <p>Hashes are stable between runs, unlike {@link Object#hashCode()}, but
+ * are not cryptographic: equal fingerprints mean the inputs are equal only
+ * with high probability.
+ */
+public final class Fingerprint implements Appendable {
+    // the FNV-1a 64-bit offset basis and prime
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    // the hash of everything appended so far
+    private long hash;
+
+    /**
+     * Creates a new fingerprint of nothing.
+     */
+    public Fingerprint() {
+        this.hash = OFFSET_BASIS;
+    }
+
+    /**
+     * Returns the fingerprint of the given object's encoded representation.
+     *
+     * @param writeable The object to fingerprint.
+     * @return The hash of the characters written by
+     *          {@link Writeable#encodeTo(Appendable)}.
+     */
+    public static long of(Writeable writeable) {
+        Fingerprint fingerprint = new Fingerprint();
+        try {
+            writeable.encodeTo(fingerprint);
+        } catch (IOException e) {
+            // appending to a fingerprint never fails
+            throw new AssertionError(e);
+        }
+        return fingerprint.value();
+    }
+
+    /**
+     * Returns the fingerprint of the given characters.
+     *
+     * @param sequence The characters to fingerprint.
+     * @return The hash of the characters.
+     */
+    public static long of(CharSequence sequence) {
+        return new Fingerprint().append(sequence).value();
+    }
+
+    /**
+     * Returns the hash of everything appended so far.
+     *
+     * @return The current value of the fingerprint.
+     */
+    public long value() {
+        return hash;
+    }
+
+    /**
+     * Appends the eight bytes of the given value (most significant first),
+     * such as the fingerprint of a part of a larger object.
+     *
+     * @param value The value to append.
+     * @return This fingerprint.
+     */
+    public Fingerprint add(long value) {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            hash = (hash ^ ((value >>> shift) & 0xff)) * PRIME;
+        }
+        return this;
+    }
+
+    @Override
+    public Fingerprint append(CharSequence sequence) {
+        if (sequence == null) {
+            sequence = "null";
+        }
+        return append(sequence, 0, sequence.length());
+    }
+
+    @Override
+    public Fingerprint append(CharSequence sequence, int start, int end) {
+        if (sequence == null) {
+            sequence = "null";
+        }
+        for (int i = start; i < end; i++) {
+            append(sequence.charAt(i));
+        }
+        return this;
+    }
+
+    @Override
+    public Fingerprint append(char character) {
+        hash = (hash ^ (character >>> 8)) * PRIME;
+        hash = (hash ^ (character & 0xff)) * PRIME;
+        return this;
+    }
+}
@@ -0,0 +1,199 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * Counts non-negative values in logarithmically sized buckets, so that
+ * percentiles of a very large number of values can be found in a small,
+ * bounded amount of memory.
+ *
+ * <p>Values below {@value #SUB_BUCKETS} are counted exactly. Larger values are
+ * counted in buckets which divide each power of two into
+ * {@value #SUB_BUCKETS} equal parts, so a value is known to within about 3% of
+ * itself. A histogram never holds more than a couple of thousand counts,
+ * however many values are recorded, and only allocates the buckets up to the
+ * largest value recorded so far.
+ *
+ * <p>Histograms are not thread safe. Values recorded in different threads
+ * should be recorded in separate histograms, which can then be combined with
+ * {@link #add(Histogram)}: adding histograms gives exactly the histogram of
+ * all of their values.
+ */
+public final class Histogram {
+    /**
+     * The number of equal parts each power of two is divided into.
+     */
+    public static final int SUB_BUCKETS = 32;
+
+    // log2 of the number of sub-buckets
+    private static final int SUB_BUCKET_BITS = 5;
+
+    // the number of values recorded in each bucket (buckets past the end of
+    // the array have no values)
+    private long[] counts;
+
+    // the number of values recorded, their total, and the smallest and
+    // largest values
+    private long count;
+    private long total;
+    private long min;
+    private long max;
+
+    /**
+     * Creates a new histogram with no values.
+     */
+    public Histogram() {
+        this.counts = new long[SUB_BUCKETS];
+        this.min = Long.MAX_VALUE;
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0.
+     *
+     * @param value The value to record.
+     */
+    public void record(long value) {
+        value = Math.max(0, value);
+        int bucket = bucketOf(value);
+        if (bucket >= counts.length) {
+            counts = Arrays.copyOf(counts,
+                    Math.max(bucket + 1, counts.length * 2));
+        }
+        counts[bucket]++;
+        count++;
+        total += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Adds all the values recorded in the given histogram to this one.
+     *
+     * <p>If the given histogram is null, nothing is added.
+     *
+     * @param other The histogram whose values to add.
+     */
+    public void add(Histogram other) {
+        if (other == null || other.count == 0) {
+            return;
+        }
+        if (other.counts.length > counts.length) {
+            counts = Arrays.copyOf(counts, other.counts.length);
+        }
+        for (int i = 0; i < other.counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return The number of values.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the smallest value recorded.
+     *
+     * @return The smallest value, or 0 if no values have been recorded.
+     */
+    public long getMin() {
+        return count == 0 ? 0 : min;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return The largest value, or 0 if no values have been recorded.
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the mean of the values recorded, which is exact rather than
+     * calculated from the buckets.
+     *
+     * @return The mean value, or 0 if no values have been recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) total / count;
+    }
+
+    /**
+     * Returns the value which the given percentage of the recorded values are
+     * less than or equal to (for example, the median if the percentage is 50).
+     *
+     * <p>The value returned is the largest value in the bucket of the
+     * percentile (but no more than the largest value recorded), so it is at
+     * least the exact percentile, and at most about 3% more than it.
+     * Percentages are limited to between 0 and 100.
+     *
+     * @param percentage The percentage of values.
+     * @return The value at the given percentile, or 0 if no values have been
+     *          recorded.
+     */
+    public long percentile(double percentage) {
+        if (count == 0) {
+            return 0;
+        }
+        double fraction = Math.max(0, Math.min(100, percentage)) / 100;
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(max, highestIn(bucket));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns a summary of the values recorded, in the format:
+     *
+     * <p>'count={count} mean={mean} p50={p50} p95={p95} p99={p99} max={max}'
+     *
+     * <p>where the mean has two decimal places.
+     *
+     * @return A string summarising the histogram.
+     */
+    @Override
+    public String toString() {
+        return "count=" + count + " mean=" + String.format("%.2f", getMean())
+                + " p50=" + percentile(50) + " p95=" + percentile(95)
+                + " p99=" + percentile(99) + " max=" + max;
+    }
+
+    /*
+     * Returns the bucket the given non-negative value is counted in. Values
+     * below SUB_BUCKETS have a bucket each, and after them each power of two
+     * from SUB_BUCKETS upwards has SUB_BUCKETS buckets.
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS
+                + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /*
+     * Returns the largest value counted in the given bucket.
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,153 @@
+package utilities;
+
+/**
+ * Helper methods for decoding the encoded representations of objects in
+ * place, by scanning ranges of a character sequence rather than splitting it
+ * into new strings.
+ *
+ * <p>Ranges are given as a start index (inclusive) and an end index
+ * (exclusive), as in {@link String#substring(int, int)}.
+ */
+public final class Parsing {
+    /*
+     * Parsing only has static helper methods, and should not be instantiated.
+     */
+    private Parsing() {
+    }
+
+    /**
+     * Returns the index of the first occurrence of the given character in the
+     * given range of the sequence.
+     *
+     * @param sequence The sequence to search.
+     * @param character The character to find.
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * @return The index of the character, or the end of the range if the
+     *          character does not occur in the range.
+     */
+    public static int indexOf(CharSequence sequence, char character, int from,
+                              int to) {
+        for (int i = from; i < to; i++) {
+            if (sequence.charAt(i) == character) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Returns the number of times the given character occurs in the given
+     * range of the sequence.
+     *
+     * @param sequence The sequence to search.
+     * @param character The character to count.
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * @return The number of occurrences of the character in the range.
+     */
+    public static int count(CharSequence sequence, char character, int from,
+                            int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (sequence.charAt(i) == character) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if and only if the given range of the sequence contains
+     * exactly the characters of the given string.
+     *
+     * @param sequence The sequence to compare.
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * @param string The string to compare the range to.
+     * @return True if the range matches the string, false otherwise.
+     */
+    public static boolean matches(CharSequence sequence, int from, int to,
+                                  String string) {
+        if (to - from != string.length()) {
+            return false;
+        }
+        for (int i = from; i < to; i++) {
+            if (sequence.charAt(i) != string.charAt(i - from)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the given range of the sequence as a string.
+     *
+     * @param sequence The sequence to copy from.
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * @return The characters in the range.
+     */
+    public static String substring(CharSequence sequence, int from, int to) {
+        return sequence.subSequence(from, to).toString();
+    }
+
+    /**
+     * Parses the given range of the sequence as a signed decimal integer.
+     *
+     * <p>The result is the same as calling {@link Integer#parseInt(String)}
+     * on the range after it has been trimmed with {@link String#trim()}, but
+     * neither of those intermediate strings is created for ASCII input.
+     *
+     * @param sequence The sequence to parse.
+     * @param from The start of the range (inclusive).
+     * @param to The end of the range (exclusive).
+     * @return The integer value of the range.
+     * @throws NumberFormatException If the trimmed range is not a valid
+     *          integer (including if it is empty or out of range).
+     */
+    public static int parseInt(CharSequence sequence, int from, int to) {
+        // trim the same characters as String.trim()
+        while (from < to && sequence.charAt(from) <= ' ') {
+            from++;
+        }
+        while (to > from && sequence.charAt(to - 1) <= ' ') {
+            to--;
+        }
+        if (from == to) {
+            throw new NumberFormatException();
+        }
+
+        int i = from;
+        boolean negative = false;
+        char first = sequence.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++i == to) {
+                throw new NumberFormatException();
+            }
+        }
+
+        // accumulate negatively, as the negative range is the larger one
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multiplyLimit = limit / 10;
+        int result = 0;
+        for (; i < to; i++) {
+            char character = sequence.charAt(i);
+            if (character > 0x7f) {
+                // leave other Unicode digits to the standard parser
+                return Integer.parseInt(substring(sequence, from, to));
+            }
+            int digit = character - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw new NumberFormatException();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw new NumberFormatException();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+}
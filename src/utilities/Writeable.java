@@ -1,5 +1,7 @@
 package utilities;
 
+import java.io.IOException;
+
 /**
  * Defines the interface for classes which are able to be encoded for writing
  * into files.
@@ -13,4 +15,20 @@ public interface Writeable {
      * @return A string representation of the object.
      */
     String encode();
+
+    /**
+     * Writes the same string representation of the object as
+     * {@link #encode()} to the given output.
+     *
+     * <p>Implementing classes should override this to append each part of
+     * their representation directly, so that writing many objects (for
+     * example, when saving a network) does not require a string to be built
+     * for each one.
+     *
+     * @param out The output to write the representation to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    default void encodeTo(Appendable out) throws IOException {
+        out.append(encode());
+    }
 }
@@ -2,6 +2,8 @@ package vehicles;
 
 import routes.Route;
 
+import java.io.IOException;
+
 /**
  * Represents a bus in the transportation network.
  */
@@ -64,4 +66,17 @@ public class Bus extends PublicTransport {
     public String encode() {
         return super.encode() + "," + registrationNumber;
     }
+
+    /**
+     * Writes this bus to the given output in the same format as specified in
+     * {@link #encode()}.
+     *
+     * @param out The output to write this bus to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        super.encodeTo(out);
+        out.append(',').append(registrationNumber);
+    }
 }
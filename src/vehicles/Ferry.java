@@ -2,6 +2,8 @@ package vehicles;
 
 import routes.Route;
 
+import java.io.IOException;
+
 /**
  * Represents a ferry in the transportation network.
  */
@@ -62,4 +64,17 @@ public class Ferry extends PublicTransport {
     public String encode() {
         return super.encode() + "," + ferryType;
     }
+
+    /**
+     * Writes this ferry to the given output in the same format as specified in
+     * {@link #encode()}.
+     *
+     * @param out The output to write this ferry to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        super.encodeTo(out);
+        out.append(',').append(ferryType);
+    }
 }
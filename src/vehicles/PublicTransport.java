@@ -7,10 +7,14 @@ import exceptions.TransportFormatException;
 import passengers.Passenger;
 import routes.Route;
 import stops.Stop;
+import utilities.Parsing;
 import utilities.Writeable;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * A base public transport vehicle in the transportation network.
@@ -22,6 +26,10 @@ public abstract class PublicTransport implements Writeable {
     // the place the vehicle is currently stopped
     private Stop currentLocation;
 
+    // the position of the current location along the route, or -1 if the
+    // vehicle is not at a stop
+    private int position;
+
     // the maximum passengers allowed on board the vehicle
     private int capacity;
 
@@ -56,8 +64,10 @@ public abstract class PublicTransport implements Writeable {
         this.route = route;
         try {
             this.currentLocation = route.getStartStop();
+            this.position = 0;
         } catch (EmptyRouteException e) {
             this.currentLocation = null;
+            this.position = -1;
         }
     }
 
@@ -89,6 +99,31 @@ public abstract class PublicTransport implements Writeable {
         return currentLocation;
     }
 
+    /**
+     * Returns the position of this vehicle's current location along its route
+     * (see {@link Route#getStop(int)}).
+     *
+     * <p>If the current stop appears on the route more than once, this is the
+     * position the vehicle most recently travelled to.
+     *
+     * @return The position of the vehicle on its route, or -1 if it is not
+     *          currently located at a stop.
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    /**
+     * Returns the stop following this vehicle's current location along its
+     * route.
+     *
+     * @return The next stop on the route, or null if the vehicle is at the
+     *          last stop of the route or is not currently located at a stop.
+     */
+    public Stop getNextStop() {
+        return position < 0 ? null : route.getStop(position + 1);
+    }
+
     /**
      * Returns the number of passengers currently on board this vehicle.
      *
@@ -195,20 +230,52 @@ public abstract class PublicTransport implements Writeable {
         return leaving;
     }
 
+    /**
+     * Updates the current location of the vehicle to be the stop at the given
+     * position along its route.
+     *
+     * <p>Unlike {@link #travelTo(Stop)}, this distinguishes between visits to
+     * a stop which appears on the route more than once. If the given position
+     * is not a position on the route, the current location should remain
+     * unchanged.
+     *
+     * @param position The position along the route of the stop the vehicle
+     *                 has travelled to.
+     */
+    public void travelToPosition(int position) {
+        Stop stop = route.getStop(position);
+        if (stop == null) {
+            return;
+        }
+        this.position = position;
+        currentLocation = stop;
+    }
+
     /**
      * Updates the current location of the vehicle to be the given stop.
      *
      * <p>If the given stop is null, or is not on this public transport's route
      * the current location should remain unchanged.
      *
+     * <p>If the given stop is the next stop on the route (see
+     * {@link #getNextStop()}), the vehicle moves forward to it. Otherwise the
+     * vehicle moves to the first position of the stop on the route.
+     *
      * @param stop The stop the vehicle has travelled to.
      */
     public void travelTo(Stop stop) {
-        if (!route.getStopsOnRoute().contains(stop)) {
+        if (stop == null) {
+            return;
+        }
+
+        int next = getNextStop() == stop ? position + 1
+                : route.positionOf(stop);
+        if (next < 0) {
             return;
         }
 
-        currentLocation = stop == null ? currentLocation : stop;
+        position = next;
+        currentLocation = stop;
     }
 
     /**
@@ -254,43 +321,92 @@ public abstract class PublicTransport implements Writeable {
                 + route.getRouteNumber();
     }
 
-    /*
-     * Returns the route object associated with the given route number if it is
-     * in the given list of routes, or null if it is not.
+    /**
+     * Writes this vehicle to the given output in the same format as specified
+     * in {@link #encode()}.
+     *
+     * <p>Subclasses which add components to {@link #encode()} should also add
+     * them here, after calling this method.
+     *
+     * @param out The output to write this vehicle to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
      */
-    private static Route routeFromNumber(int routeNumber, List<Route> routes) {
-        for (Route route : routes) {
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append(getType()).append(',').append(String.valueOf(id))
+                .append(',').append(String.valueOf(capacity)).append(',')
+                .append(String.valueOf(route.getRouteNumber()));
+    }
 
-            if (routeNumber == route.getRouteNumber()) {
-                return route;
-            }
+    /**
+     * Maps the number of each of the given routes to the first route in the
+     * list with that number.
+     *
+     * <p>The returned map can be passed to
+     * {@link #decodeIndexed(CharSequence, Map)} in place of the list of
+     * routes, so that decoding many vehicles against the same routes does not
+     * require a scan of the whole list for each vehicle.
+     *
+     * @param routes The routes to index.
+     * @return A mapping from route numbers to the first route with that
+     *         number.
+     */
+    public static Map<Integer, Route> indexRoutes(List<Route> routes) {
+        Map<Integer, Route> index = new HashMap<>();
+        for (Route route : routes) {
+            index.putIfAbsent(route.getRouteNumber(), route);
         }
-        return null;
+        return index;
     }
 
     /*
      * Returns a public transport object of the correct type (e.g. a Train
-     * object if the type is "train") with the given id, capacity, and route.
+     * object if the type given by transportString[0, typeEnd) is "train") with
+     * the given id, capacity, and route, and the extra part given by
+     * transportString[extraStart, end).
      *
      * Throws a TransportFormatException if the given type is not valid.
      */
-    private static PublicTransport vehicleFromType(String type, int id,
-                                                   int capacity, Route route,
-                                                   String extra)
+    private static PublicTransport vehicleFromType(
+            CharSequence transportString, int typeEnd, int id, int capacity,
+            Route route, int extraStart)
             throws TransportFormatException {
-        if (!type.equals(route.getType())) {
-            throw new TransportFormatException();
+        String type = route.getType();
+        if (!Parsing.matches(transportString, 0, typeEnd, type)) {
+            throw new TransportFormatException("vehicle type '"
+                    + Parsing.substring(transportString, 0, typeEnd)
+                    + "' does not match type '" + type + "' of route "
+                    + route.getRouteNumber());
         }
+        int end = transportString.length();
         switch (type) {
             case "train":
-                return new Train(id, capacity, route,
-                        Integer.parseInt(extra.trim()));
+                return new Train(id, capacity, route, parseField(
+                        transportString, extraStart, end, "carriage count"));
             case "bus":
-                return new Bus(id, capacity, route, extra);
+                return new Bus(id, capacity, route,
+                        Parsing.substring(transportString, extraStart, end));
             case "ferry":
-                return new Ferry(id, capacity, route, extra);
+                return new Ferry(id, capacity, route,
+                        Parsing.substring(transportString, extraStart, end));
             default:
-                throw new TransportFormatException();
+                throw new TransportFormatException("vehicle type '" + type
+                        + "' is not train, bus or ferry");
+        }
+    }
+
+    /*
+     * Parses transportString[from, to) as an integer, throwing a
+     * TransportFormatException naming the given field if it is not one.
+     */
+    private static int parseField(CharSequence transportString, int from,
+                                  int to, String field)
+            throws TransportFormatException {
+        try {
+            return Parsing.parseInt(transportString, from, to);
+        } catch (NumberFormatException e) {
+            throw new TransportFormatException("vehicle " + field
+                    + " is not an integer");
         }
     }
 
@@ -357,47 +473,112 @@ public abstract class PublicTransport implements Writeable {
      *                 <li>Any of the parts of the string being missing.</li>
      *             </ol>
      */
-    public static PublicTransport decode(String transportString, List<Route>
-            existingRoutes)
+    public static PublicTransport decode(CharSequence transportString,
+            List<Route> existingRoutes)
             throws TransportFormatException {
 
         // parameters can't be null
-        if (transportString == null || existingRoutes == null) {
-            throw new TransportFormatException();
+        if (existingRoutes == null) {
+            throw new TransportFormatException("routes are null");
         }
+        return decodeIndexed(transportString, indexRoutes(existingRoutes));
+    }
 
-        PublicTransport vehicle;
+    /**
+     * Creates a new public transport object based on the given string
+     * representation, looking up its route by number in the given index.
+     *
+     * <p>Should meet the specification of
+     * {@link #decode(CharSequence, List)}, where the index maps each route
+     * number to the first route in the list of existing routes with that
+     * number (as returned by {@link #indexRoutes(List)}).
+     *
+     * @param transportString The string to decode.
+     * @param routesByNumber The routes which currently exist in the transport
+     *                       network, indexed by route number.
+     * @return The decoded public transport object (a Bus, Train, or Ferry,
+     *          depending on the type given in the string).
+     * @throws TransportFormatException If the given string or routesByNumber
+     *          index is null, or the string is otherwise incorrectly formatted
+     *          (see {@link #decode(CharSequence, List)}).
+     */
+    public static PublicTransport decodeIndexed(
+            CharSequence transportString, Map<Integer, Route> routesByNumber)
+            throws TransportFormatException {
+        PublicTransport vehicle = decodeDetached(transportString,
+                routesByNumber);
         try {
-            String[] parts = transportString.split(",");
-            // Check for extra delimiters
-            int count = transportString.length() -
-                    transportString.replace(",", "").length();
-            // there should be 5 parts to the transportString
-            final int NUM_PARTS = 5;
-            if ((count + 1 != parts.length) || (parts.length != NUM_PARTS)){
-                throw new TransportFormatException();
-            }
-
-            // get the components, trimming if required
-            String type = parts[0];
-            int id = Integer.parseInt(parts[1].trim());
-            int capacity = Integer.parseInt(parts[2].trim());
-            int routeNumber = Integer.parseInt(parts[3].trim());
-            // Check if route is valid
-            Route route = routeFromNumber(routeNumber, existingRoutes);
-            if (route == null) {
-                throw new TransportFormatException();
-            }
-            String extra = parts[4];
-
-            vehicle = vehicleFromType(type, id, capacity, route, extra);
-            route.addTransport(vehicle);
-
-        } catch (NumberFormatException | ArrayIndexOutOfBoundsException
-                | TransportException e) {
-            throw new TransportFormatException();
+            vehicle.getRoute().addTransport(vehicle);
+        } catch (EmptyRouteException e) {
+            throw new TransportFormatException("vehicle's route "
+                    + vehicle.getRoute().getRouteNumber() + " has no stops");
+        } catch (TransportException e) {
+            throw new TransportFormatException("vehicle cannot be added to "
+                    + "route " + vehicle.getRoute().getRouteNumber());
         }
-
         return vehicle;
     }
+
+    /**
+     * Creates a new public transport object based on the given string
+     * representation, as in {@link #decodeIndexed(CharSequence, Map)}, but
+     * without adding the vehicle to its route.
+     *
+     * <p>The vehicle's route is not modified, so many vehicles may be decoded
+     * against the same routes at once (for example, by several threads). The
+     * caller should then add each vehicle to its route with
+     * {@link Route#addTransport(PublicTransport)}, in the order the vehicles
+     * should have on the route.
+     *
+     * @param transportString The string to decode.
+     * @param routesByNumber The routes which currently exist in the transport
+     *                       network, indexed by route number.
+     * @return The decoded public transport object (a Bus, Train, or Ferry,
+     *          depending on the type given in the string).
+     * @throws TransportFormatException If the given string or routesByNumber
+     *          index is null, or the string is otherwise incorrectly formatted
+     *          (see {@link #decode(CharSequence, List)}), other than errors
+     *          encountered whilst adding the vehicle to its route.
+     */
+    public static PublicTransport decodeDetached(
+            CharSequence transportString, Map<Integer, Route> routesByNumber)
+            throws TransportFormatException {
+
+        // parameters can't be null
+        if (transportString == null || routesByNumber == null) {
+            throw new TransportFormatException("vehicle or routes are null");
+        }
+
+        // there should be 5 parts to the transportString, separated by exactly
+        // 4 delimiters, and the last part should not be empty
+        int length = transportString.length();
+        int typeEnd = Parsing.indexOf(transportString, ',', 0, length);
+        int idEnd = Parsing.indexOf(transportString, ',', typeEnd + 1, length);
+        int capacityEnd = Parsing.indexOf(transportString, ',', idEnd + 1,
+                length);
+        int routeEnd = Parsing.indexOf(transportString, ',', capacityEnd + 1,
+                length);
+        if (routeEnd >= length - 1 || Parsing.indexOf(transportString, ',',
+                routeEnd + 1, length) != length) {
+            throw new TransportFormatException("vehicle should be "
+                    + "type,id,capacity,route,extra with exactly four ',' "
+                    + "and a non-empty extra part");
+        }
+
+        // get the components, trimming if required
+        int id = parseField(transportString, typeEnd + 1, idEnd, "id");
+        int capacity = parseField(transportString, idEnd + 1, capacityEnd,
+                "capacity");
+        int routeNumber = parseField(transportString, capacityEnd + 1,
+                routeEnd, "route number");
+        // Check if route is valid
+        Route route = routesByNumber.get(routeNumber);
+        if (route == null) {
+            throw new TransportFormatException("vehicle route " + routeNumber
+                    + " does not exist");
+        }
+
+        return vehicleFromType(transportString, typeEnd, id, capacity,
+                route, routeEnd + 1);
+    }
 }
@@ -2,6 +2,8 @@ package vehicles;
 
 import routes.Route;
 
+import java.io.IOException;
+
 /**
  * Represents a train in the transportation network.
  */
@@ -60,4 +62,17 @@ public class Train extends PublicTransport {
     public String encode() {
         return super.encode() + "," + carriageCount;
     }
+
+    /**
+     * Writes this train to the given output in the same format as specified in
+     * {@link #encode()}.
+     *
+     * @param out The output to write this train to.
+     * @throws IOException If an IO error occurs whilst writing to the output.
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        super.encodeTo(out);
+        out.append(',').append(String.valueOf(carriageCount));
+    }
 }
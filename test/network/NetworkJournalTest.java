@@ -0,0 +1,223 @@
+package network;
+
+import exceptions.DuplicateStopException;
+import exceptions.TransportFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class NetworkJournalTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private File snapshot;
+    private File journalFile;
+    private NetworkJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        snapshot = File.createTempFile("snapshot", ".txt");
+        journalFile = File.createTempFile("journal", ".txt");
+        snapshot.delete();
+        journalFile.delete();
+        snapshot.deleteOnExit();
+        journalFile.deleteOnExit();
+        journal = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        journal.close();
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void recoverEmpty() throws IOException, TransportFormatException {
+        Network network = journal.recover();
+        assertTrue(network.getStops().isEmpty());
+        assertTrue(network.getRoutes().isEmpty());
+        assertTrue(network.getVehicles().isEmpty());
+    }
+
+    @Test
+    public void recoverReplaysChanges()
+            throws IOException, TransportFormatException,
+            DuplicateStopException {
+        Network network = journal.recover();
+        addChanges(network);
+        journal.close();
+
+        Network recovered = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath()).recover();
+        assertEquals(network.getStops(), recovered.getStops());
+        assertEquals(network.getRoutes(), recovered.getRoutes());
+        assertEquals("bus,red,1:UQ Lakes|City|Valley",
+                recovered.getRoutes().get(0).encode());
+        assertEquals("bus,7,30,1,ABC123",
+                recovered.getVehicles().get(0).encode());
+        assertEquals(1, recovered.getRoutes().get(0).getTransports().size());
+        assertFalse(snapshot.exists());
+    }
+
+    @Test
+    public void recoverIgnoresTornLine()
+            throws IOException, TransportFormatException,
+            DuplicateStopException {
+        Network network = journal.recover();
+        addChanges(network);
+        journal.close();
+        try (FileWriter writer = new FileWriter(journalFile, true)) {
+            writer.write("S:Half");
+        }
+
+        NetworkJournal reopened = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath());
+        Network recovered = reopened.recover();
+        assertEquals(3, recovered.getStops().size());
+
+        // the next change should start a new line
+        recovered.addStop(new Stop("South Bank", 5, 5));
+        reopened.close();
+        Network again = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath()).recover();
+        assertEquals("South Bank", again.getStops().get(3).getName());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void recoverInvalidLine()
+            throws IOException, TransportFormatException {
+        try (FileWriter writer = new FileWriter(journalFile)) {
+            writer.write("X:nonsense\n");
+        }
+        journal.recover();
+    }
+
+    @Test
+    public void compact() throws IOException, TransportFormatException,
+            DuplicateStopException {
+        Network network = journal.recover();
+        addChanges(network);
+        journal.compact(network);
+        String newline = System.lineSeparator();
+        assertEquals("G:" + network.fingerprint() + newline,
+                new String(Files.readAllBytes(journalFile.toPath())));
+
+        long compacted = journalFile.length();
+        network.addStop(new Stop("South Bank", 5, 5));
+        assertTrue(journalFile.length() > compacted);
+        journal.close();
+
+        Network recovered = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath()).recover();
+        assertEquals(4, recovered.getStops().size());
+        assertEquals(network.getRoutes(), recovered.getRoutes());
+        assertEquals("3" + newline + "UQ Lakes:0:0" + newline + "City:0:5"
+                + newline + "Valley:3:2" + newline + "1" + newline
+                + "bus,red,1:UQ Lakes|City|Valley" + newline + "1" + newline
+                + "bus,7,30,1,ABC123" + newline,
+                new String(Files.readAllBytes(snapshot.toPath())));
+    }
+
+    @Test
+    public void compactStoppedBeforeJournalEmptied()
+            throws IOException, TransportFormatException,
+            DuplicateStopException {
+        Network network = journal.recover();
+        addChanges(network);
+        journal.close();
+
+        // the snapshot is replaced, but the program stops before the journal
+        // is emptied
+        network.save(snapshot.getPath());
+        assertTrue(journalFile.length() > 0);
+
+        NetworkJournal reopened = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath());
+        Network recovered = reopened.recover();
+        assertEquals(network.getStops(), recovered.getStops());
+        assertEquals(network.getRoutes(), recovered.getRoutes());
+        assertEquals(1, recovered.getVehicles().size());
+        assertEquals(1, recovered.getRoutes().get(0).getTransports().size());
+
+        // the stale journal is emptied, and later changes are kept
+        recovered.addStop(new Stop("South Bank", 5, 5));
+        reopened.close();
+        Network again = new NetworkJournal(snapshot.getPath(),
+                journalFile.getPath()).recover();
+        assertEquals(4, again.getStops().size());
+        assertEquals(1, again.getVehicles().size());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void recoverWithoutFingerprint()
+            throws IOException, TransportFormatException {
+        try (FileWriter writer = new FileWriter(journalFile)) {
+            writer.write("S:South Bank:5:5\n");
+        }
+        journal.recover();
+    }
+
+    @Test
+    public void compactGzipSnapshot() throws IOException,
+            TransportFormatException, DuplicateStopException {
+        File compressed = new File(snapshot.getPath() + ".gz");
+        compressed.deleteOnExit();
+        journal = new NetworkJournal(compressed.getPath(),
+                journalFile.getPath());
+        Network network = journal.recover();
+        addChanges(network);
+        journal.compact(network);
+
+        assertEquals(0x1f, Files.readAllBytes(compressed.toPath())[0] & 0xff);
+        assertEquals(network.fingerprint(),
+                new Network(compressed.getPath()).fingerprint());
+    }
+
+    @Test
+    public void addStopToRouteNotInNetwork()
+            throws IOException, TransportFormatException {
+        Network network = journal.recover();
+        long recovered = journalFile.length();
+        Route route = new BusRoute("blue", 2);
+        network.addStopToRoute(route, new Stop("City", 0, 5));
+        assertTrue(route.getStopsOnRoute().isEmpty());
+        assertEquals(recovered, journalFile.length());
+    }
+
+    @Test (expected = IOException.class)
+    public void nullFilename() throws IOException {
+        new NetworkJournal(null, journalFile.getPath());
+    }
+
+    private void addChanges(Network network) throws DuplicateStopException {
+        Stop lakes = new Stop("UQ Lakes", 0, 0);
+        network.addStop(lakes);
+        Stop city = new Stop("City", 0, 5);
+        Stop valley = new Stop("Valley", 3, 2);
+        network.addStops(Arrays.asList(city, valley));
+
+        Route route = new BusRoute("red", 1);
+        route.addStop(lakes);
+        network.addRoute(route);
+        network.addStopToRoute(route, city);
+        network.addStopToRoute(route, valley);
+
+        network.addVehicle(new Bus(7, 30, route, "ABC123"));
+    }
+}
@@ -0,0 +1,170 @@
+package network;
+
+import exceptions.TransportFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class NetworkReloaderTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private File directory;
+    private File file;
+    private NetworkReloader reloader;
+
+    @Before
+    public void setUp() throws IOException, TransportFormatException {
+        directory = Files.createTempDirectory("reloader").toFile();
+        file = new File(directory, "network.txt");
+        write(file, "1\nstop0:0:0\n0\n0\n");
+        reloader = new NetworkReloader(file.getPath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        reloader.close();
+        for (File child : directory.listFiles()) {
+            child.delete();
+        }
+        directory.delete();
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void loadsInitialNetwork() {
+        assertEquals(1, reloader.getNetwork().getStops().size());
+    }
+
+    @Test
+    public void reloadReplacesNetwork() throws IOException {
+        Network before = reloader.getNetwork();
+        write(file, "2\nstop0:0:0\nstop1:1:1\n0\n0\n");
+        long[] duration = {-1};
+        reloader.setListener(new NetworkReloader.Listener() {
+            @Override
+            public void reloaded(Network network, long nanos) {
+                duration[0] = nanos;
+            }
+
+            @Override
+            public void reloadFailed(Exception cause, long nanos) {
+                fail();
+            }
+        });
+
+        assertTrue(reloader.reload());
+        assertNotSame(before, reloader.getNetwork());
+        assertEquals(2, reloader.getNetwork().getStops().size());
+        assertEquals(1, before.getStops().size());
+        assertTrue(duration[0] >= 0);
+    }
+
+    @Test
+    public void failedReloadKeepsNetwork() throws IOException {
+        Network before = reloader.getNetwork();
+        write(file, "2\nstop0:0:0\n");
+        Exception[] failure = {null};
+        reloader.setListener(new NetworkReloader.Listener() {
+            @Override
+            public void reloaded(Network network, long nanos) {
+                fail();
+            }
+
+            @Override
+            public void reloadFailed(Exception cause, long nanos) {
+                failure[0] = cause;
+            }
+        });
+
+        assertFalse(reloader.reload());
+        assertSame(before, reloader.getNetwork());
+        assertTrue(failure[0] instanceof TransportFormatException);
+    }
+
+    @Test
+    public void reloadsWhenFileReplaced() throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        reloader.setListener(new NetworkReloader.Listener() {
+            @Override
+            public void reloaded(Network network, long nanos) {
+                if (network.getStops().size() == 3) {
+                    loaded.countDown();
+                }
+            }
+
+            @Override
+            public void reloadFailed(Exception cause, long nanos) {
+            }
+        });
+        reloader.start();
+
+        File replacement = new File(directory, "network.txt.new");
+        write(replacement, "3\nstop0:0:0\nstop1:1:1\nstop2:2:2\n0\n0\n");
+        Files.move(replacement.toPath(), Paths.get(file.getPath()),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        assertTrue(loaded.await(30, TimeUnit.SECONDS));
+        assertEquals(3, reloader.getNetwork().getStops().size());
+    }
+
+    @Test
+    public void unchangedFileNotReloaded() throws IOException {
+        Network before = reloader.getNetwork();
+        write(file, "1\nstop0:0:0\n0\n0\n");
+        boolean[] unchanged = {false};
+        reloader.setListener(new NetworkReloader.Listener() {
+            @Override
+            public void reloaded(Network network, long nanos) {
+                fail();
+            }
+
+            @Override
+            public void reloadFailed(Exception cause, long nanos) {
+                fail();
+            }
+
+            @Override
+            public void unchanged(Network network, long nanos) {
+                unchanged[0] = true;
+            }
+        });
+
+        assertTrue(reloader.reload());
+        assertSame(before, reloader.getNetwork());
+        assertTrue(unchanged[0]);
+
+        // the same network written differently is also unchanged
+        unchanged[0] = false;
+        write(file, "1\nstop0:00:-0\n0\n0\n");
+        assertTrue(reloader.reload());
+        assertSame(before, reloader.getNetwork());
+        assertTrue(unchanged[0]);
+    }
+
+    @Test (expected = IOException.class)
+    public void nullFilename() throws IOException, TransportFormatException {
+        new NetworkReloader(null);
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(contents);
+        }
+    }
+}
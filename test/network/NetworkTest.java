@@ -7,7 +7,11 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
 import routes.Route;
+import simulation.DemandGenerator;
+import simulation.Simulation;
 import stops.Stop;
 import vehicles.Bus;
 import vehicles.PublicTransport;
@@ -15,7 +19,15 @@ import vehicles.PublicTransport;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -660,4 +672,519 @@ public class NetworkTest {
         assertEquals(betaNetwork.getVehicles().get(1).getRoute(),
                 betaNetworkTest.getVehicles().get(1).getRoute());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void findStopsByPrefix() throws DuplicateStopException {
+        assertEquals(alphaStops, alphaNetwork.findStopsByPrefix("stop", 10));
+        assertEquals(alphaStops.subList(0, 2),
+                alphaNetwork.findStopsByPrefix("STOP", 2));
+        assertEquals(alphaStops.subList(2, 3),
+                alphaNetwork.findStopsByPrefix("stop2", 10));
+        assertTrue(alphaNetwork.findStopsByPrefix("city", 10).isEmpty());
+        assertTrue(alphaNetwork.findStopsByPrefix(null, 10).isEmpty());
+
+        alphaNetwork.addStop(betaStop);
+        assertEquals(betaStop,
+                alphaNetwork.findStopsByPrefix("ci", 10).get(0));
+    }
+
+    @Test
+    public void loadFromReader() throws IOException, TransportFormatException {
+        Network network = Network.load(new StringReader(
+                "2\nstop0:0:1\nstop1:-1:0\n1\nbus,blue,2:stop1|stop0\n"
+                        + "1\nbus,412,20,2,ABC123\n"));
+        assertEquals(2, network.getStops().size());
+        assertEquals("blue", network.getVehicles().get(0).getRoute()
+                .getName());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void loadFromReaderMissingLines()
+            throws IOException, TransportFormatException {
+        Network.load(new StringReader("2\nstop0:0:1\n"));
+    }
+
+    @Test (expected = IOException.class)
+    public void loadFromNullReader()
+            throws IOException, TransportFormatException {
+        Network.load(null);
+    }
+
+    @Test
+    public void loadMappedMatchesConstructor() throws IOException {
+        File[] files = new File("networks").listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            String expected;
+            try {
+                expected = describe(new Network(file.getPath()));
+            } catch (TransportFormatException e) {
+                expected = "invalid";
+            }
+            String actual;
+            try {
+                actual = describe(Network.loadMapped(file.getPath()));
+            } catch (TransportFormatException e) {
+                actual = "invalid";
+            }
+            assertEquals(file.getName(), expected, actual);
+        }
+    }
+
+    @Test
+    public void loadMappedLargeFile()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("largeNetwork", ".txt");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("5000\r\n");
+            for (int i = 0; i < 5000; i++) {
+                writer.write("stop" + i + ":" + i + ":" + -i + "\r\n");
+            }
+            writer.write("1\r\nbus,long,7:stop0|stop2500|stop4999\r\n");
+            writer.write("3000\r\n");
+            for (int i = 0; i < 3000; i++) {
+                writer.write("bus," + i + ",20,7,REG" + i + "\r");
+            }
+        }
+
+        Network network = Network.loadMapped(file.getPath());
+        assertEquals(describe(new Network(file.getPath())),
+                describe(network));
+        assertEquals(3000, network.getRoutes().get(0).getTransports().size());
+        assertEquals(2999, network.getRoutes().get(0).getTransports()
+                .get(2999).getId());
+    }
+
+    @Test (expected = IOException.class)
+    public void loadMappedNullFilename()
+            throws IOException, TransportFormatException {
+        Network.loadMapped(null);
+    }
+
+    @Test
+    public void binaryRoundTrip()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("binaryNetwork", ".bin");
+        file.deleteOnExit();
+        File[] files = new File("networks").listFiles();
+        assertNotNull(files);
+        for (File text : files) {
+            Network network;
+            try {
+                network = new Network(text.getPath());
+            } catch (TransportFormatException e) {
+                continue;
+            }
+            network.saveBinary(file.getPath());
+            assertEquals(text.getName(), describe(network),
+                    describe(Network.loadBinary(file.getPath())));
+        }
+    }
+
+    @Test
+    public void binarySmallerThanText()
+            throws IOException, TransportFormatException {
+        File text = File.createTempFile("textNetwork", ".txt");
+        File binary = File.createTempFile("binaryNetwork", ".bin");
+        text.deleteOnExit();
+        binary.deleteOnExit();
+        alphaNetwork.save(text.getPath());
+        alphaNetwork.saveBinary(binary.getPath());
+        assertTrue(binary.length() < text.length());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void loadBinaryTextFile()
+            throws IOException, TransportFormatException {
+        Network.loadBinary("networks/validFromSpec.txt");
+    }
+
+    @Test
+    public void loadBinaryTruncated() throws IOException {
+        File file = File.createTempFile("binaryNetwork", ".bin");
+        file.deleteOnExit();
+        alphaNetwork.saveBinary(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length = 0; length < bytes.length; length++) {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(bytes, 0, length);
+            }
+            try {
+                Network.loadBinary(file.getPath());
+                fail("loaded a file truncated to " + length + " bytes");
+            } catch (TransportFormatException expected) {
+                // every truncated file should be rejected, saying why
+                assertNotNull(expected.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void loadBinaryErrorMessages() throws IOException {
+        File file = File.createTempFile("binaryNetwork", ".bin");
+        file.deleteOnExit();
+        try {
+            Network.loadBinary("networks/validFromSpec.txt");
+            fail("loaded a text file");
+        } catch (TransportFormatException expected) {
+            assertEquals("bad magic", expected.getMessage());
+        }
+
+        alphaNetwork.saveBinary(file.getPath());
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(0);
+        }
+        try {
+            Network.loadBinary(file.getPath());
+            fail("loaded a file with trailing bytes");
+        } catch (TransportFormatException expected) {
+            assertEquals("trailing bytes", expected.getMessage());
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void loadBinaryNullFilename()
+            throws IOException, TransportFormatException {
+        Network.loadBinary(null);
+    }
+
+    @Test
+    public void checkpointRoundTrip()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        File[] files = new File("networks").listFiles();
+        assertNotNull(files);
+        for (File text : files) {
+            Network network;
+            try {
+                network = new Network(text.getPath());
+            } catch (TransportFormatException e) {
+                continue;
+            }
+            simulate(network, 1, 40);
+            network.saveCheckpoint(file.getPath());
+            Network restored = Network.loadCheckpoint(file.getPath());
+            assertEquals(text.getName(), describe(network),
+                    describe(restored));
+            assertEquals(text.getName(), describeState(network),
+                    describeState(restored));
+        }
+    }
+
+    @Test
+    public void checkpointForksMatch()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("checkpoint", ".bin.gz");
+        file.deleteOnExit();
+        simulate(alphaNetwork, 1, 25);
+        alphaNetwork.saveCheckpoint(file.getPath());
+        Network first = Network.loadCheckpoint(file.getPath());
+        Network second = Network.loadCheckpoint(file.getPath());
+        assertNotSame(first.getStops().get(0), second.getStops().get(0));
+
+        // the restored networks continue exactly as the original does
+        simulate(alphaNetwork, 2, 60);
+        simulate(first, 2, 60);
+        simulate(second, 2, 60);
+        assertEquals(describeState(alphaNetwork), describeState(first));
+        assertEquals(describeState(alphaNetwork), describeState(second));
+    }
+
+    @Test
+    public void checkpointKeepsRoutedStop()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        Stop stop = alphaNetwork.getStops().get(0);
+        Stop neighbour = alphaNetwork.getStops().get(1);
+        stop.addPassenger(new Passenger("rerouted"), neighbour);
+        alphaNetwork.saveCheckpoint(file.getPath());
+
+        Stop restored = Network.loadCheckpoint(file.getPath())
+                .getStops().get(0);
+        Passenger passenger = restored.getWaitingPassengers().get(0);
+        assertEquals("rerouted", passenger.getName());
+        assertNull(passenger.getDestination());
+        assertEquals("stop1", restored.getRoutedStop(passenger).getName());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void loadCheckpointBinaryFile()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("binaryNetwork", ".bin");
+        file.deleteOnExit();
+        alphaNetwork.saveBinary(file.getPath());
+        Network.loadCheckpoint(file.getPath());
+    }
+
+    @Test
+    public void loadCheckpointTruncated()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        simulate(alphaNetwork, 1, 10);
+        alphaNetwork.saveCheckpoint(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        for (int length = 0; length < bytes.length; length++) {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(bytes, 0, length);
+            }
+            try {
+                Network.loadCheckpoint(file.getPath());
+                fail("loaded a file truncated to " + length + " bytes");
+            } catch (TransportFormatException expected) {
+                // every truncated file should be rejected, saying why
+                assertNotNull(expected.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void copyIsIndependent() throws TransportFormatException {
+        simulate(alphaNetwork, 3, 20);
+        Network copy = alphaNetwork.copy();
+        assertEquals(describe(alphaNetwork), describe(copy));
+        assertEquals(describeState(alphaNetwork), describeState(copy));
+        assertNotSame(alphaNetwork.getVehicles().get(0),
+                copy.getVehicles().get(0));
+
+        // simulating the copy does not change the original
+        String before = describeState(alphaNetwork);
+        simulate(copy, 4, 20);
+        assertEquals(before, describeState(alphaNetwork));
+        assertNotEquals(before, describeState(copy));
+    }
+
+    @Test
+    public void checkpointBytesMatchFile()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("checkpoint", ".bin");
+        file.deleteOnExit();
+        simulate(alphaNetwork, 1, 15);
+        alphaNetwork.saveCheckpoint(file.getPath());
+        byte[] checkpoint = alphaNetwork.checkpoint();
+        assertArrayEquals(Files.readAllBytes(file.toPath()), checkpoint);
+        assertEquals(describeState(alphaNetwork),
+                describeState(Network.loadCheckpoint(checkpoint)));
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void loadCheckpointNullBytes() throws TransportFormatException {
+        Network.loadCheckpoint((byte[]) null);
+    }
+
+    @Test (expected = IOException.class)
+    public void saveCheckpointNullFilename() throws IOException {
+        alphaNetwork.saveCheckpoint(null);
+    }
+
+    @Test
+    public void fingerprintMatchesSavedFile()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("network", ".txt");
+        file.deleteOnExit();
+        File[] files = new File("networks").listFiles();
+        assertNotNull(files);
+        for (File text : files) {
+            Network network;
+            try {
+                network = new Network(text.getPath());
+            } catch (TransportFormatException e) {
+                continue;
+            }
+            network.save(file.getPath());
+            assertEquals(text.getName(), network.fingerprint(),
+                    Network.fingerprint(file.getPath()));
+            assertEquals(text.getName(), network.fingerprint(),
+                    new Network(file.getPath()).fingerprint());
+            assertEquals(text.getName(), network.fingerprint(),
+                    Network.loadMapped(file.getPath()).fingerprint());
+        }
+    }
+
+    @Test
+    public void fingerprintUpdatedAsComponentsAdded()
+            throws IOException, TransportFormatException,
+            DuplicateStopException {
+        Network network = new Network();
+        long empty = network.fingerprint();
+        assertEquals(empty, new Network().fingerprint());
+
+        for (Stop stop : alphaNetwork.getStops()) {
+            network.addStop(new Stop(stop.getName(), stop.getX(),
+                    stop.getY()));
+        }
+        assertNotEquals(empty, network.fingerprint());
+        File file = File.createTempFile("network", ".txt");
+        file.deleteOnExit();
+        alphaNetwork.save(file.getPath());
+        assertNotEquals(alphaNetwork.fingerprint(), network.fingerprint());
+
+        // rebuild the rest of the network in the same order
+        Network loaded = new Network(file.getPath());
+        for (Route route : loaded.getRoutes()) {
+            network.addRoute(route);
+        }
+        for (PublicTransport vehicle : loaded.getVehicles()) {
+            network.addVehicle(vehicle);
+        }
+        assertEquals(Network.fingerprint(file.getPath()),
+                network.fingerprint());
+
+        // adding a stop to a route changes the fingerprint
+        Route route = network.getRoutes().get(0);
+        network.addStopToRoute(route, network.getStops().get(0));
+        assertNotEquals(alphaNetwork.fingerprint(), network.fingerprint());
+    }
+
+    @Test
+    public void fingerprintOrderSensitive() throws DuplicateStopException {
+        Network forwards = new Network();
+        forwards.addStop(alphaStop);
+        forwards.addStop(betaStop);
+        Network backwards = new Network();
+        backwards.addStop(betaStop);
+        backwards.addStop(alphaStop);
+        assertNotEquals(forwards.fingerprint(), backwards.fingerprint());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void fingerprintExtraLine()
+            throws IOException, TransportFormatException {
+        Network.fingerprint("networks/invalidBlankLines.txt");
+    }
+
+    @Test (expected = IOException.class)
+    public void fingerprintNullFilename()
+            throws IOException, TransportFormatException {
+        Network.fingerprint(null);
+    }
+
+    @Test
+    public void gzipRoundTrip() throws IOException, TransportFormatException {
+        File file = File.createTempFile("network", ".txt.gz");
+        file.deleteOnExit();
+        alphaNetwork.save(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertEquals(0x1f, bytes[0] & 0xff);
+        assertEquals(0x8b, bytes[1] & 0xff);
+
+        assertEquals(describe(alphaNetwork),
+                describe(new Network(file.getPath())));
+        assertEquals(describe(alphaNetwork),
+                describe(Network.loadMapped(file.getPath())));
+        assertEquals(alphaNetwork.fingerprint(),
+                Network.fingerprint(file.getPath()));
+        assertTrue(NetworkValidator.validate(file.getPath()).isEmpty());
+    }
+
+    @Test
+    public void gzipDetectedByContents()
+            throws IOException, TransportFormatException {
+        File compressed = File.createTempFile("network", ".gz");
+        File renamed = File.createTempFile("network", ".txt");
+        compressed.deleteOnExit();
+        renamed.deleteOnExit();
+        alphaNetwork.save(compressed.getPath());
+        Files.copy(compressed.toPath(), renamed.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        assertEquals(describe(alphaNetwork),
+                describe(new Network(renamed.getPath())));
+    }
+
+    @Test
+    public void gzipBinaryRoundTrip()
+            throws IOException, TransportFormatException {
+        File file = File.createTempFile("binaryNetwork", ".bin.gz");
+        file.deleteOnExit();
+        alphaNetwork.saveBinary(file.getPath());
+        assertEquals(0x1f, Files.readAllBytes(file.toPath())[0] & 0xff);
+        assertEquals(describe(alphaNetwork),
+                describe(Network.loadBinary(file.getPath())));
+    }
+
+    @Test (expected = IOException.class)
+    public void gzipTruncated() throws IOException, TransportFormatException {
+        File file = File.createTempFile("network", ".txt.gz");
+        file.deleteOnExit();
+        alphaNetwork.save(file.getPath());
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(bytes, 0, bytes.length / 2);
+        }
+        new Network(file.getPath());
+    }
+
+    /*
+     * Simulates the given network from time 0 until the given time, with
+     * passengers generated from the given seed.
+     */
+    private static void simulate(Network network, long seed, long endTime) {
+        int size = network.getStops().size();
+        double[][] demand = new double[size][size];
+        for (double[] row : demand) {
+            Arrays.fill(row, 0.5);
+        }
+        DemandGenerator generator =
+                new DemandGenerator(network, demand, 0.2, seed);
+        Simulation simulation = new Simulation(network);
+        for (long time = 1; time <= endTime; time++) {
+            generator.addUntil(time);
+            simulation.runUntil(time);
+        }
+    }
+
+    /*
+     * Describes the runtime state of the given network: its routing tables,
+     * waiting passengers, and vehicles.
+     */
+    private static String describeState(Network network) {
+        StringBuilder builder = new StringBuilder();
+        for (Stop stop : network.getStops()) {
+            List<String> entries = new ArrayList<>();
+            stop.getRoutingTable().getEntries().forEach((destination, entry)
+                    -> entries.add(destination + ">" + entry.getNext() + "="
+                    + entry.getCost()));
+            Collections.sort(entries);
+            builder.append(stop).append(entries).append('\n');
+            for (Passenger passenger : stop.getWaitingPassengers()) {
+                builder.append(' ').append(describe(passenger)).append('>')
+                        .append(stop.getRoutedStop(passenger)).append('\n');
+            }
+            builder.append(stop.getVehicles().size()).append('\n');
+        }
+        for (PublicTransport vehicle : network.getVehicles()) {
+            builder.append(vehicle).append('@').append(vehicle.getPosition())
+                    .append(vehicle.getCurrentStop().isAtStop(vehicle));
+            for (Passenger passenger : vehicle.getPassengers()) {
+                builder.append(' ').append(describe(passenger));
+            }
+            builder.append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String describe(Passenger passenger) {
+        return passenger.getName() + ":" + passenger.getDestination()
+                + (passenger instanceof ConcessionPassenger ? ":"
+                + ((ConcessionPassenger) passenger).getConcessionId() : "");
+    }
+
+    private String describe(Network network) {
+        StringBuilder builder = new StringBuilder();
+        for (Stop stop : network.getStops()) {
+            builder.append(stop.encode()).append(stop.getNeighbours())
+                    .append('\n');
+        }
+        for (Route route : network.getRoutes()) {
+            builder.append(route.encode()).append(route.getTransports())
+                    .append('\n');
+        }
+        for (PublicTransport vehicle : network.getVehicles()) {
+            builder.append(vehicle.encode()).append('\n');
+        }
+        return builder.toString();
+    }
+}
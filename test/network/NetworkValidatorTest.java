@@ -0,0 +1,134 @@
+package network;
+
+import exceptions.TransportFormatException;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class NetworkValidatorTest {
+    @Rule
+    public TestName name = new TestName();
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void validFile() throws IOException {
+        assertTrue(NetworkValidator.validate("networks/validFromSpec.txt")
+                .isEmpty());
+    }
+
+    @Test
+    public void agreesWithNetwork() throws IOException {
+        File[] files = new File("networks").listFiles();
+        assertNotNull(files);
+        for (File file : files) {
+            boolean loads;
+            try {
+                new Network(file.getPath());
+                loads = true;
+            } catch (TransportFormatException e) {
+                loads = false;
+            }
+            assertEquals(file.getName(), loads,
+                    NetworkValidator.validate(file.getPath()).isEmpty());
+        }
+
+        // negative counts are read as no items
+        String[] contents = {"-1\n0\n0", "0\n-3\n-1\n",
+                "-1\nstop0:0:1\n0\n0"};
+        for (String content : contents) {
+            boolean loads;
+            try {
+                Network.load(new StringReader(content));
+                loads = true;
+            } catch (TransportFormatException e) {
+                loads = false;
+            }
+            assertEquals(content, loads, NetworkValidator.validate(
+                    new StringReader(content)).isEmpty());
+        }
+        assertTrue(NetworkValidator.validate(new StringReader("-1\n0\n0"))
+                .isEmpty());
+    }
+
+    @Test
+    public void collectsAllErrors() throws IOException {
+        List<ValidationError> errors = NetworkValidator.validate(
+                new StringReader("3\n"
+                        + "stop0:0:1\n"
+                        + "stop1:x:0\n"
+                        + "1\n"
+                        + "ferry,blue,2:stop0|stop2\n"
+                        + "bus,red,3:stop0\n"
+                        + "2\n"
+                        + "bus,412,20,3,ABC123\n"
+                        + "bus,413,twenty,3,ABC124\n"
+                        + "train,1,20,3,4\n"));
+
+        assertEquals(6, errors.size());
+        assertError(errors.get(0), 1, ValidationError.Section.STOPS,
+                "stop count is 3, but there are 2 stops");
+        assertError(errors.get(1), 3, ValidationError.Section.STOPS,
+                "stop x-coordinate is not an integer");
+        assertError(errors.get(2), 4, ValidationError.Section.ROUTES,
+                "route count is 1, but there are 2 routes");
+        assertError(errors.get(3), 5, ValidationError.Section.ROUTES,
+                "route stop 'stop2' does not exist");
+        assertError(errors.get(4), 9, ValidationError.Section.VEHICLES,
+                "vehicle capacity is not an integer");
+        assertError(errors.get(5), 10, ValidationError.Section.VEHICLES,
+                "extra line after the last vehicle");
+        assertEquals("line 1 (stops): stop count is 3, but there are 2 stops",
+                errors.get(0).toString());
+    }
+
+    @Test
+    public void missingSections() throws IOException {
+        List<ValidationError> errors = NetworkValidator.validate(
+                new StringReader("1\nstop0:0:0\n"));
+        assertEquals(1, errors.size());
+        assertEquals("file ends before the route count",
+                errors.get(0).getReason());
+
+        errors = NetworkValidator.validate(new StringReader(""));
+        assertEquals(1, errors.size());
+        assertEquals("file is empty", errors.get(0).getReason());
+    }
+
+    @Test
+    public void networkReportsLine() throws IOException {
+        try {
+            new Network("networks/stopNotIntegerX.txt");
+            fail();
+        } catch (TransportFormatException e) {
+            assertEquals(NetworkValidator.validate(
+                    "networks/stopNotIntegerX.txt").get(0).getLineNumber(),
+                    Integer.parseInt(e.getMessage().replaceAll(
+                            "^line (\\d+):.*$", "$1")));
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void validateNullFilename() throws IOException {
+        NetworkValidator.validate((String) null);
+    }
+
+    private void assertError(ValidationError error, int lineNumber,
+                             ValidationError.Section section, String reason) {
+        assertEquals(lineNumber, error.getLineNumber());
+        assertEquals(section, error.getSection());
+        assertEquals(reason, error.getReason());
+    }
+}
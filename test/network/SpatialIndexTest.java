@@ -0,0 +1,189 @@
+package network;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.TrainRoute;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class SpatialIndexTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private SpatialIndex emptyIndex;
+    private SpatialIndex alphaIndex;
+    private SpatialIndex randomIndex;
+
+    private Stop alphaStop;
+    private Stop betaStop;
+    private Stop gammaStop;
+    private Stop deltaStop;
+
+    private List<Stop> randomStops;
+
+    @Before
+    public void setUp() {
+        emptyIndex = new SpatialIndex();
+        alphaIndex = new SpatialIndex();
+        randomIndex = new SpatialIndex();
+
+        alphaStop = new Stop("UQ Lakes", 0, 0);
+        betaStop = new Stop("City", 0, 5);
+        gammaStop = new Stop("Valley", 3, 2);
+        deltaStop = new Stop("South Bank", -5, 0);
+
+        new TrainRoute("gold", 1).addStop(betaStop);
+        BusRoute busRoute = new BusRoute("red", 2);
+        busRoute.addStop(alphaStop);
+        busRoute.addStop(gammaStop);
+
+        alphaIndex.add(alphaStop);
+        alphaIndex.add(betaStop);
+        alphaIndex.add(gammaStop);
+        alphaIndex.add(deltaStop);
+        alphaIndex.add(null);
+
+        Random random = new Random(42);
+        randomStops = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            Stop stop = new Stop("stop" + i, random.nextInt(200) - 100,
+                    random.nextInt(200) - 100);
+            randomStops.add(stop);
+            randomIndex.add(stop);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void emptyIndex() {
+        assertEquals(0, emptyIndex.size());
+        assertTrue(emptyIndex.nearest(0, 0, 3, null).isEmpty());
+        assertTrue(emptyIndex.within(0, 0, 10, null).isEmpty());
+    }
+
+    @Test
+    public void nullStopNotAdded() {
+        assertEquals(4, alphaIndex.size());
+    }
+
+    @Test
+    public void nearest() {
+        List<Stop> expected = new ArrayList<>();
+        expected.add(alphaStop);
+        expected.add(gammaStop);
+        assertEquals(expected, alphaIndex.nearest(1, 0, 2, null));
+    }
+
+    @Test
+    public void nearestTiesInOrderAdded() {
+        List<Stop> expected = new ArrayList<>();
+        expected.add(betaStop);
+        expected.add(deltaStop);
+        assertEquals(expected, alphaIndex.nearest(-5, 5, 2, null));
+    }
+
+    @Test
+    public void nearestRouteType() {
+        List<Stop> expected = new ArrayList<>();
+        expected.add(betaStop);
+        assertEquals(expected, alphaIndex.nearest(0, 0, 3, "train"));
+    }
+
+    @Test
+    public void within() {
+        List<Stop> expected = new ArrayList<>();
+        expected.add(alphaStop);
+        expected.add(betaStop);
+        expected.add(gammaStop);
+        expected.add(deltaStop);
+        assertEquals(expected, alphaIndex.within(0, 0, 5, null));
+        assertEquals(expected.subList(0, 1), alphaIndex.within(0, 0, 4,
+                null));
+        assertEquals(2, alphaIndex.within(0, 0, 5, "bus").size());
+        assertTrue(alphaIndex.within(0, 0, -1, null).isEmpty());
+    }
+
+    @Test
+    public void nearestMatchesScan() {
+        for (int i = 0; i < 50; i++) {
+            int x = i * 7 - 150;
+            int y = 150 - i * 5;
+            assertEquals(scan(x, y).subList(0, 10),
+                    randomIndex.nearest(x, y, 10, null));
+        }
+    }
+
+    @Test
+    public void withinMatchesScan() {
+        for (int i = 0; i < 50; i++) {
+            int x = i * 7 - 150;
+            int y = 150 - i * 5;
+            int radius = i * 3;
+            List<Stop> expected = scan(x, y).stream()
+                    .filter(stop -> distance(stop, x, y) <= radius)
+                    .collect(Collectors.toList());
+            assertEquals(expected, randomIndex.within(x, y, radius, null));
+        }
+    }
+
+    @Test
+    public void addedAfterAddAllMatchesScan() {
+        SpatialIndex index = new SpatialIndex();
+        index.addAll(randomStops.subList(0, 300));
+        for (Stop stop : randomStops.subList(300, 450)) {
+            index.add(stop);
+        }
+        index.addAll(randomStops.subList(450, 500));
+        for (int i = 0; i < 50; i++) {
+            int x = i * 7 - 150;
+            int y = 150 - i * 5;
+            int radius = i * 3;
+            assertEquals(scan(x, y).subList(0, 10),
+                    index.nearest(x, y, 10, null));
+            List<Stop> expected = scan(x, y).stream()
+                    .filter(stop -> distance(stop, x, y) <= radius)
+                    .collect(Collectors.toList());
+            assertEquals(expected, index.within(x, y, radius, null));
+        }
+    }
+
+    @Test
+    public void networkNearestStops() throws Exception {
+        Network network = new Network("networks/validFromSpec.txt");
+        List<Stop> stops = network.getStops();
+        assertEquals(stops.subList(1, 2), network.nearestStops(-1, 0, 1));
+        assertEquals(stops.get(3), network.nearestStops(0, 0, 3, "bus").get(2));
+        assertTrue(network.nearestStops(0, 0, 3, "ferry").isEmpty());
+        assertEquals(2, network.stopsWithin(0, 0, 1).size());
+
+        Network empty = new Network();
+        empty.addStop(alphaStop);
+        assertEquals(alphaStop, empty.nearestStops(5, 5, 1).get(0));
+    }
+
+    private List<Stop> scan(int x, int y) {
+        List<Stop> sorted = new ArrayList<>(randomStops);
+        sorted.sort(Comparator.comparingInt(stop -> distance(stop, x, y)));
+        return sorted;
+    }
+
+    private int distance(Stop stop, int x, int y) {
+        return Math.abs(stop.getX() - x) + Math.abs(stop.getY() - y);
+    }
+}
@@ -7,7 +7,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 import stops.Stop;
+import utilities.Fingerprint;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -114,6 +116,28 @@ public class RouteTest {
                 alphaRoute.encode());
     }
 
+    @Test
+    public void encodeTo() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        alphaRoute.encodeTo(builder);
+        assertEquals(alphaRoute.encode(), builder.toString());
+
+        builder.setLength(0);
+        new BusRoute("empty", 7).encodeTo(builder);
+        assertEquals("bus,empty,7:", builder.toString());
+    }
+
+    @Test
+    public void fingerprint() {
+        Route route = new BusRoute("red", 7);
+        assertEquals(Fingerprint.of("bus,red,7:"), route.fingerprint());
+        route.addStop(new Stop("a", 0, 0));
+        route.addStop(new Stop("b", 1, 1));
+        assertEquals(Fingerprint.of(route.encode()), route.fingerprint());
+        assertEquals(Fingerprint.of(alphaRoute.encode()),
+                alphaRoute.fingerprint());
+    }
+
     @Test
     public void decode() throws TransportFormatException {
         Route alphaDecoded = Route.decode(alphaString, alphaStops);
@@ -178,6 +202,40 @@ public class RouteTest {
         assertEquals(initStops, iotaDecoded.getStopsOnRoute());
     }
 
+    @Test
+    public void decodeIndexedFirstOccurrenceIfDuplicates()
+            throws TransportFormatException {
+        initStops.add(alphaStop);
+        initStops.add(betaStop);
+        initStops.add(gammaStop);
+        initStops.add(alphaStop);
+        Route iotaDecoded = Route.decodeIndexed(iotaString,
+                Route.indexStops(gammaStops));
+        assertEquals(initStops, iotaDecoded.getStopsOnRoute());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeIndexedStopNameNotMatch()
+            throws TransportFormatException {
+        Route.decodeIndexed(thetaString, Route.indexStops(alphaStops));
+    }
+
+    @Test
+    public void decodeNullExistingStop() throws TransportFormatException {
+        List<Stop> stops = new ArrayList<>(alphaStops);
+        stops.add(0, null);
+        assertEquals(alphaStops,
+                Route.decode(alphaString, stops).getStopsOnRoute());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeNullExistingStopNameNotMatch()
+            throws TransportFormatException {
+        List<Stop> stops = new ArrayList<>(alphaStops);
+        stops.add(null);
+        Route.decode(thetaString, stops);
+    }
+
     @Test
     public void decodeEmptyRouteName() throws TransportFormatException {
         Route kappaDecoded = Route.decode(kappaString, alphaStops);
@@ -186,4 +244,35 @@ public class RouteTest {
         assertEquals(gammaRoute, lambdaDecoded);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void stopPositions() {
+        alphaRoute.addStop(alphaStop);
+        assertEquals(4, alphaRoute.stopCount());
+        assertEquals(betaStop, alphaRoute.getStop(1));
+        assertNull(alphaRoute.getStop(4));
+        assertNull(alphaRoute.getStop(-1));
+        assertEquals(0, alphaRoute.positionOf(alphaStop));
+        assertEquals(2, alphaRoute.positionOf(gammaStop));
+        assertEquals(-1, alphaRoute.positionOf(deltaStop));
+        assertEquals(-1, alphaRoute.positionOf(null));
+    }
+
+    @Test
+    public void distanceAlong() {
+        assertEquals(0, alphaRoute.distanceAlong(1, 1));
+        assertEquals(3, alphaRoute.distanceAlong(0, 2));
+        assertEquals(2, alphaRoute.distanceAlong(2, 1));
+        assertEquals(3, alphaRoute.distanceAlong(alphaStop, gammaStop));
+        assertEquals(-1, alphaRoute.distanceAlong(0, 3));
+        assertEquals(-1, alphaRoute.distanceAlong(alphaStop, deltaStop));
+    }
+
+    @Test
+    public void distanceAlongManyStops() {
+        for (int i = 0; i < 20; i++) {
+            betaRoute.addStop(new Stop("stop" + i, i, -i));
+        }
+        assertEquals(38, betaRoute.distanceAlong(0, 19));
+        assertEquals(10, betaRoute.distanceAlong(12, 7));
+    }
+}
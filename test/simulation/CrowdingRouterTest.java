@@ -0,0 +1,239 @@
+package simulation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CrowdingRouterTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop start;
+    private Stop north;
+    private Stop east;
+    private Stop end;
+    private Route northRoute;
+    private CrowdingRouter router;
+
+    @Before
+    public void setUp() {
+        // start to end costs 8 via north, or 10 via east
+        start = new Stop("start", 0, 0);
+        north = new Stop("north", 0, 4);
+        east = new Stop("east", 5, 0);
+        end = new Stop("end", 4, 4);
+        northRoute = new BusRoute("north", 1);
+        northRoute.addStop(start);
+        northRoute.addStop(north);
+        northRoute.addStop(end);
+        Route eastRoute = new BusRoute("east", 2);
+        eastRoute.addStop(start);
+        eastRoute.addStop(east);
+        eastRoute.addStop(end);
+        router = new CrowdingRouter(Arrays.asList(start, north, east, end));
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void uncrowded() {
+        assertSame(north, router.nextStop(start, end));
+        assertEquals(8, router.costTo(start, end));
+        assertSame(end, router.nextStop(end, end));
+        assertEquals(0, router.costTo(end, end));
+        assertEquals(0, router.update());
+    }
+
+    @Test
+    public void crowdedSegmentAvoided() {
+        router.setSmoothing(1);
+        router.record(start, north, 1);
+        assertEquals(1, router.getLoad(start, north), 0);
+        // nothing changes until the update
+        assertSame(north, router.nextStop(start, end));
+
+        assertTrue(router.update() > 0);
+        assertSame(east, router.nextStop(start, end));
+        assertEquals(10, router.costTo(start, end));
+        // start to north now costs 20, more than going round via east
+        assertEquals(14, router.costTo(start, north));
+        assertSame(east, router.nextStop(start, north));
+        // the other direction is not crowded
+        assertEquals(4, router.costTo(north, start));
+
+        router.record(start, north, 0.4);
+        router.update();
+        assertEquals(8, router.costTo(start, end));
+        assertSame(north, router.nextStop(start, end));
+    }
+
+    @Test
+    public void smoothing() {
+        router.record(start, north, 1);
+        assertEquals(0.3, router.getLoad(start, north), 1e-9);
+        router.record(start, north, 1);
+        assertEquals(0.51, router.getLoad(start, north), 1e-9);
+        router.record(start, north, 7);
+        assertEquals(0.657, router.getLoad(start, north), 1e-9);
+        router.record(start, north, Double.NaN);
+        assertEquals(0.657, router.getLoad(start, north), 1e-9);
+    }
+
+    @Test
+    public void crowdingWeight() {
+        router.setSmoothing(1);
+        router.record(start, north, 1);
+        router.setCrowdingWeight(0);
+        router.update();
+        assertSame(north, router.nextStop(start, end));
+
+        router.setCrowdingWeight(1);
+        router.update();
+        // 8 to north and 4 to end, against 10 via east
+        assertEquals(10, router.costTo(start, end));
+        assertEquals(8, router.costTo(start, north));
+    }
+
+    @Test
+    public void onlyAffectedRoutesRecomputed() {
+        router.setSmoothing(1);
+        // too little to change the cost
+        router.record(start, east, 0.1);
+        assertEquals(0, router.update());
+
+        // start to east is only on the cheapest path to east
+        router.record(start, east, 1);
+        assertEquals(1, router.update());
+        assertEquals(13, router.costTo(start, east));
+        assertSame(north, router.nextStop(start, east));
+
+        // and becomes part of it again when it is no longer crowded
+        router.record(start, east, 0);
+        assertEquals(1, router.update());
+        assertEquals(5, router.costTo(start, east));
+    }
+
+    @Test
+    public void unknownStops() {
+        Stop other = new Stop("other", 9, 9);
+        assertNull(router.nextStop(other, end));
+        assertNull(router.nextStop(start, other));
+        assertEquals(Integer.MAX_VALUE, router.costTo(start, other));
+        router.record(other, end, 1);
+        router.record(start, end, 1);
+        assertEquals(0, router.getLoad(other, end), 0);
+        assertEquals(0, router.getLoad(start, end), 0);
+        assertEquals(0, router.update());
+    }
+
+    @Test
+    public void departed() throws Exception {
+        PublicTransport bus = new Bus(1, 4, northRoute, "ABC");
+        bus.addPassenger(new Passenger("a", end));
+        bus.addPassenger(new Passenger("b", end));
+        router.departed(bus, start, north, 0);
+        assertEquals(0.15, router.getLoad(start, north), 1e-9);
+
+        PublicTransport empty = new Bus(2, 0, northRoute, "DEF");
+        router.departed(empty, north, end, 0);
+        assertEquals(0, router.getLoad(north, end), 0);
+    }
+
+    @Test
+    public void steersPassengers() {
+        router.attach();
+        Passenger before = new Passenger("before", end);
+        start.addPassenger(before);
+        assertSame(north, start.getRoutedStop(before));
+
+        router.setSmoothing(1);
+        router.record(start, north, 1);
+        router.update();
+        Passenger after = new Passenger("after", end);
+        start.addPassenger(after);
+        assertSame(east, start.getRoutedStop(after));
+        assertSame(north, start.getRoutedStop(before));
+
+        router.detach();
+        assertNull(start.getRouter());
+        Passenger detached = new Passenger("detached", end);
+        start.addPassenger(detached);
+        assertSame(north, start.getRoutedStop(detached));
+    }
+
+    @Test
+    public void matchesRoutingTables() {
+        Random random = new Random(50);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            stops.add(new Stop("stop" + i, random.nextInt(30),
+                    random.nextInt(30)));
+        }
+        for (int number = 1; number <= 5; number++) {
+            Route route = new BusRoute("r" + number, number);
+            for (int i = 0; i < 2 + random.nextInt(4); i++) {
+                route.addStop(stops.get(random.nextInt(stops.size())));
+            }
+        }
+        CrowdingRouter large = new CrowdingRouter(stops);
+        for (Stop from : stops) {
+            for (Stop to : stops) {
+                assertEquals(from.getRoutingTable().costTo(to),
+                        large.costTo(from, to));
+            }
+        }
+
+        // after crowding, the incrementally updated routes match routes
+        // computed from scratch, and following them reaches the destination
+        large.setSmoothing(1);
+        for (int i = 0; i < 30; i++) {
+            Stop from = stops.get(random.nextInt(stops.size()));
+            List<Stop> neighbours = from.getNeighbours();
+            if (!neighbours.isEmpty()) {
+                large.record(from, neighbours.get(random.nextInt(
+                        neighbours.size())), random.nextDouble());
+            }
+            large.update();
+        }
+        CrowdingRouter rebuilt = new CrowdingRouter(stops);
+        rebuilt.setSmoothing(1);
+        for (Stop from : stops) {
+            for (Stop to : from.getNeighbours()) {
+                rebuilt.record(from, to, large.getLoad(from, to));
+            }
+        }
+        rebuilt.update();
+        for (Stop from : stops) {
+            for (Stop to : stops) {
+                assertEquals(rebuilt.costTo(from, to), large.costTo(from, to));
+                Stop at = from;
+                for (int hops = 0; at != to && at != null
+                        && hops < stops.size(); hops++) {
+                    at = large.nextStop(at, to);
+                }
+                if (large.costTo(from, to) != Integer.MAX_VALUE) {
+                    assertSame(to, at);
+                }
+            }
+        }
+    }
+}
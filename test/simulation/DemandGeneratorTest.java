@@ -0,0 +1,129 @@
+package simulation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import passengers.ConcessionPassenger;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DemandGeneratorTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private List<Stop> stops;
+
+    @Before
+    public void setUp() {
+        stops = build();
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void reproducibleFromSeed() {
+        double[][] demand = {{0, 1, 2}, {0.5, 0, 0.5}, {3, 0, 0}};
+        DemandGenerator first = new DemandGenerator(stops, demand, 0.3, 42);
+        List<Stop> otherStops = build();
+        DemandGenerator second =
+                new DemandGenerator(otherStops, demand, 0.3, 42);
+
+        // generating in different steps gives the same passengers
+        first.addUntil(100);
+        for (int time = 10; time <= 100; time += 10) {
+            second.addUntil(time);
+        }
+        assertEquals(first.getPassengerCount(), second.getPassengerCount());
+        assertEquals(describe(stops), describe(otherStops));
+
+        List<Stop> seeded = build();
+        new DemandGenerator(seeded, demand, 0.3, 43).addUntil(100);
+        assertNotEquals(describe(stops), describe(seeded));
+    }
+
+    @Test
+    public void ratesAndDestinations() {
+        double[][] demand = {{5, 1, 3}, {0, 0, 0}, {0, 0, 0}};
+        DemandGenerator generator = new DemandGenerator(stops, demand, 0, 7);
+        assertEquals(4.0, generator.totalRate(), 0);
+        long added = generator.addUntil(10000);
+
+        // about 40000 passengers, all at the first stop
+        assertEquals(40000, added, 1000);
+        assertEquals(added, stops.get(0).getWaitingPassengers().size());
+        assertTrue(stops.get(1).getWaitingPassengers().isEmpty());
+        int toLast = 0;
+        for (Passenger passenger : stops.get(0).getWaitingPassengers()) {
+            assertNotSame(stops.get(0), passenger.getDestination());
+            assertFalse(passenger instanceof ConcessionPassenger);
+            if (passenger.getDestination() == stops.get(2)) {
+                toLast++;
+            }
+        }
+        assertEquals(0.75, (double) toLast / added, 0.02);
+    }
+
+    @Test
+    public void concessionFraction() {
+        double[][] demand = {{0, 10}, {10, 0}};
+        DemandGenerator generator =
+                new DemandGenerator(stops, demand, 0.25, 1);
+        generator.addUntil(1000);
+        int concessions = 0;
+        List<Passenger> passengers = new ArrayList<>();
+        passengers.addAll(stops.get(0).getWaitingPassengers());
+        passengers.addAll(stops.get(1).getWaitingPassengers());
+        for (Passenger passenger : passengers) {
+            if (passenger instanceof ConcessionPassenger) {
+                assertTrue(((ConcessionPassenger) passenger).isValid());
+                concessions++;
+            }
+        }
+        assertEquals(0.25, (double) concessions / passengers.size(), 0.02);
+    }
+
+    @Test
+    public void noDemand() {
+        DemandGenerator generator =
+                new DemandGenerator(stops, new double[0][], 0.5, 1);
+        assertEquals(0, generator.addUntil(1000));
+        assertEquals(0.0, generator.totalRate(), 0);
+    }
+
+    private static List<Stop> build() {
+        List<Stop> stops = Arrays.asList(new Stop("a", 0, 0),
+                new Stop("b", 0, 3), new Stop("c", 4, 3));
+        Route route = new BusRoute("red", 1);
+        for (Stop stop : stops) {
+            route.addStop(stop);
+        }
+        return stops;
+    }
+
+    private static String describe(List<Stop> stops) {
+        StringBuilder builder = new StringBuilder();
+        for (Stop stop : stops) {
+            for (Passenger passenger : stop.getWaitingPassengers()) {
+                builder.append(passenger.getName()).append(' ')
+                        .append(passenger.getDestination().getName())
+                        .append(' ').append(passenger.getClass()
+                        .getSimpleName()).append('\n');
+            }
+        }
+        return builder.toString();
+    }
+}
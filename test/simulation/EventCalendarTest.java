@@ -0,0 +1,85 @@
+package simulation;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.*;
+
+public class EventCalendarTest {
+    @Rule
+    public TestName name = new TestName();
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void orderedByTimeThenVehicle() {
+        EventCalendar calendar = new EventCalendar(4);
+        calendar.schedule(3, 5);
+        calendar.schedule(1, 5);
+        calendar.schedule(2, 1);
+        calendar.schedule(0, 9);
+        assertEquals(2, calendar.poll());
+        assertEquals(1, calendar.poll());
+        assertEquals(3, calendar.poll());
+        assertEquals(0, calendar.poll());
+        assertTrue(calendar.isEmpty());
+    }
+
+    @Test
+    public void rescheduleAndRemove() {
+        EventCalendar calendar = new EventCalendar(3);
+        calendar.schedule(0, 1);
+        calendar.schedule(1, 2);
+        calendar.schedule(2, 3);
+        calendar.schedule(0, 10);
+        calendar.remove(1);
+        calendar.remove(1);
+        assertEquals(2, calendar.size());
+        assertFalse(calendar.contains(1));
+        assertEquals(2, calendar.poll());
+        assertEquals(0, calendar.peek());
+        assertEquals(10, calendar.timeOf(0));
+    }
+
+    @Test
+    public void matchesSortedSet() {
+        Random random = new Random(7);
+        int vehicles = 50;
+        EventCalendar calendar = new EventCalendar(vehicles);
+        long[] times = new long[vehicles];
+        // events as time * vehicles + vehicle, ordered as in the calendar
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 20000; i++) {
+            int vehicle = random.nextInt(vehicles);
+            int action = random.nextInt(3);
+            if (action == 0 && !expected.isEmpty()) {
+                long first = expected.pollFirst();
+                assertEquals((int) (first % vehicles), calendar.poll());
+            } else if (action == 1) {
+                expected.remove(times[vehicle] * vehicles + vehicle);
+                calendar.remove(vehicle);
+            } else {
+                expected.remove(times[vehicle] * vehicles + vehicle);
+                times[vehicle] = random.nextInt(100);
+                expected.add(times[vehicle] * vehicles + vehicle);
+                calendar.schedule(vehicle, times[vehicle]);
+            }
+            assertEquals(expected.size(), calendar.size());
+        }
+    }
+
+    @Test (expected = NoSuchElementException.class)
+    public void pollEmpty() {
+        new EventCalendar(1).poll();
+    }
+}
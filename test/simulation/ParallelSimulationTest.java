@@ -0,0 +1,144 @@
+package simulation;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ParallelSimulationTest {
+    @Rule
+    public TestName name = new TestName();
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void matchesSequential() {
+        for (long seed = 0; seed < 10; seed++) {
+            for (int threads = 1; threads <= 4; threads++) {
+                List<Stop> sequentialStops = new ArrayList<>();
+                List<PublicTransport> sequentialVehicles =
+                        build(seed, sequentialStops);
+                Simulation sequential = new Simulation(sequentialVehicles,
+                        2, (int) (seed % 3));
+                List<String> sequentialEvents = record(sequential);
+                sequential.runUntil(300);
+
+                List<Stop> parallelStops = new ArrayList<>();
+                List<PublicTransport> parallelVehicles =
+                        build(seed, parallelStops);
+                try (ParallelSimulation parallel = new ParallelSimulation(
+                        parallelVehicles, 2, (int) (seed % 3), threads)) {
+                    List<String> parallelEvents = new ArrayList<>();
+                    parallel.setListener(record(parallelEvents));
+                    assertEquals(sequential.getEventCount(),
+                            parallel.runUntil(300));
+                    assertEquals(300, parallel.getTime());
+                    assertEquals(sequential.nextEventTime(),
+                            parallel.nextEventTime());
+
+                    Collections.sort(sequentialEvents);
+                    Collections.sort(parallelEvents);
+                    assertEquals(sequentialEvents, parallelEvents);
+                }
+                assertEquals(describe(sequentialStops, sequentialVehicles),
+                        describe(parallelStops, parallelVehicles));
+            }
+        }
+    }
+
+    @Test
+    public void partitionsByRoute() {
+        List<PublicTransport> vehicles = build(1, new ArrayList<>());
+        try (ParallelSimulation parallel =
+                     new ParallelSimulation(vehicles, 1, 1, 3)) {
+            assertEquals(3, parallel.partitionCount());
+        }
+        try (ParallelSimulation parallel =
+                     new ParallelSimulation(vehicles, 1, 1, 100)) {
+            assertEquals(6, parallel.partitionCount());
+        }
+    }
+
+    /*
+     * Builds six routes over a grid of stops, with two buses on each route and
+     * passengers waiting at every stop.
+     */
+    private static List<PublicTransport> build(long seed, List<Stop> stops) {
+        Random random = new Random(seed);
+        for (int i = 0; i < 16; i++) {
+            stops.add(new Stop("stop" + i, i % 4 * 3, i / 4 * 2));
+        }
+        List<PublicTransport> vehicles = new ArrayList<>();
+        for (int r = 0; r < 6; r++) {
+            Route route = new BusRoute("route" + r, r);
+            for (int i = 0; i < 5; i++) {
+                route.addStop(stops.get(random.nextInt(stops.size())));
+            }
+            vehicles.add(new Bus(2 * r, 3, route, "A" + r));
+            vehicles.add(new Bus(2 * r + 1, 3, route, "B" + r));
+        }
+        Collections.shuffle(vehicles, random);
+        for (int i = 0; i < 60; i++) {
+            stops.get(random.nextInt(stops.size())).addPassenger(
+                    new Passenger("passenger" + i,
+                            stops.get(random.nextInt(stops.size()))));
+        }
+        return vehicles;
+    }
+
+    private static String describe(List<Stop> stops,
+                                   List<PublicTransport> vehicles) {
+        StringBuilder builder = new StringBuilder();
+        for (Stop stop : stops) {
+            builder.append(stop.getName()).append(':')
+                    .append(stop.getWaitingPassengers()).append('\n');
+        }
+        for (PublicTransport vehicle : vehicles) {
+            builder.append(vehicle.getId()).append('@')
+                    .append(vehicle.getPosition()).append(':')
+                    .append(vehicle.getPassengers()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static List<String> record(Simulation simulation) {
+        List<String> events = new ArrayList<>();
+        simulation.setListener(record(events));
+        return events;
+    }
+
+    private static Simulation.Listener record(List<String> events) {
+        return new Simulation.Listener() {
+            @Override
+            public synchronized void arrived(PublicTransport vehicle,
+                                             Stop stop, long time) {
+                events.add(time + " arrive " + vehicle.getId() + " "
+                        + stop.getName());
+            }
+
+            @Override
+            public synchronized void departed(PublicTransport vehicle,
+                                              Stop from, Stop to, long time) {
+                events.add(time + " depart " + vehicle.getId() + " "
+                        + from.getName() + " " + to.getName());
+            }
+        };
+    }
+}
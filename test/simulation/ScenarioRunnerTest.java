@@ -0,0 +1,142 @@
+package simulation;
+
+import network.Network;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ScenarioRunnerTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Network network;
+    private double[][] demand;
+
+    @Before
+    public void setUp() throws Exception {
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            stops.add(new Stop("stop" + i, i * 2, i % 2));
+        }
+        network = new Network();
+        network.addStops(stops);
+        int[][] routeStops = {{0, 1, 2, 3}, {3, 4, 5}, {5, 2, 0}};
+        for (int r = 0; r < routeStops.length; r++) {
+            Route route = new BusRoute("route" + r, r);
+            for (int stop : routeStops[r]) {
+                route.addStop(stops.get(stop));
+            }
+            network.addRoute(route);
+            for (int v = 0; v < 2; v++) {
+                PublicTransport bus = new Bus(2 * r + v, 5, route, "R" + r);
+                route.addTransport(bus);
+                network.addVehicle(bus);
+            }
+        }
+        demand = new double[6][6];
+        for (double[] row : demand) {
+            Arrays.fill(row, 0.05);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void sameResultsForAnyThreads() throws Exception {
+        ScenarioRunner.Results sequential;
+        try (ScenarioRunner runner =
+                     new ScenarioRunner(network, demand, 0.1, 1, 1, 1)) {
+            sequential = runner.run(7, 300, 42);
+        }
+        try (ScenarioRunner runner =
+                     new ScenarioRunner(network, demand, 0.1, 1, 1, 3)) {
+            ScenarioRunner.Results parallel = runner.run(7, 300, 42);
+            assertEquals(7, parallel.getRunCount());
+            assertEquals(describe(sequential), describe(parallel));
+
+            ScenarioRunner.Results other = runner.run(7, 300, 43);
+            assertNotEquals(describe(sequential), describe(other));
+        }
+    }
+
+    @Test
+    public void combinesRuns() throws Exception {
+        try (ScenarioRunner runner =
+                     new ScenarioRunner(network, demand, 0, 1, 1, 2)) {
+            ScenarioRunner.Results results = runner.run(10, 400, 1);
+            assertEquals(10, results.getRunCount());
+            assertEquals(10, results.getPassengerCounts().getCount());
+            // 6 stops, each with 5 destinations at 0.05, for 400
+            assertEquals(600, results.getPassengerCounts().getMean(), 30);
+
+            long waits = 0;
+            for (int stop = 0; stop < 6; stop++) {
+                waits += results.getWaitTimes(stop).getCount();
+            }
+            assertEquals(results.getWaitTimes().getCount(), waits);
+            assertTrue(waits > 0);
+            long departures = 0;
+            for (int route = 0; route < 3; route++) {
+                departures += results.getOccupancy(route).getCount();
+            }
+            assertEquals(results.getOccupancy().getCount(), departures);
+            assertTrue(results.getOccupancy().getMax() <= 100);
+
+            assertEquals(0, runner.run(0, 400, 1).getRunCount());
+        }
+    }
+
+    @Test
+    public void networkUnchanged() throws Exception {
+        String before = describe(network);
+        try (ScenarioRunner runner =
+                     new ScenarioRunner(network, demand, 0.5, 2, 1, 2)) {
+            runner.run(3, 200, 5);
+        }
+        assertEquals(before, describe(network));
+    }
+
+    private static String describe(ScenarioRunner.Results results) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(results.getWaitTimes()).append('\n')
+                .append(results.getOccupancy()).append('\n')
+                .append(results.getPassengerCounts()).append('\n');
+        for (int stop = 0; stop < 6; stop++) {
+            builder.append(results.getWaitTimes(stop)).append('\n');
+        }
+        for (int route = 0; route < 3; route++) {
+            builder.append(results.getOccupancy(route)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static String describe(Network network) {
+        StringBuilder builder = new StringBuilder();
+        for (Stop stop : network.getStops()) {
+            builder.append(stop).append(stop.getWaitingPassengers())
+                    .append(stop.getVehicles().size()).append('\n');
+        }
+        for (PublicTransport vehicle : network.getVehicles()) {
+            builder.append(vehicle).append(vehicle.getPosition())
+                    .append(vehicle.getPassengers()).append('\n');
+        }
+        return builder.toString();
+    }
+}
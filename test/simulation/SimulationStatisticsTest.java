@@ -0,0 +1,218 @@
+package simulation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import utilities.Histogram;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulationStatisticsTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop first;
+    private Stop second;
+    private Stop third;
+    private PublicTransport bus;
+    private Simulation simulation;
+    private SimulationStatistics statistics;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Stop("first", 0, 0);
+        second = new Stop("second", 0, 3);
+        third = new Stop("third", 0, 5);
+        Route route = new BusRoute("red", 1);
+        route.addStop(first);
+        route.addStop(second);
+        route.addStop(third);
+        bus = new Bus(1, 2, route, "ABC");
+        route.addTransport(bus);
+
+        simulation = new Simulation(Collections.singletonList(bus), 1, 1);
+        statistics = new SimulationStatistics(
+                Arrays.asList(first, second, third),
+                Collections.singletonList(bus));
+        simulation.setListener(statistics);
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void waitTimesAndOccupancy() {
+        // the bus departs first at times 1 and 14, second at 5, and third at
+        // 8, and can only take two of the three passengers at first
+        for (int i = 0; i < 3; i++) {
+            Passenger passenger = new Passenger("passenger" + i, third);
+            first.addPassenger(passenger);
+            statistics.waiting(passenger, first, 0);
+        }
+        simulation.runUntil(14);
+
+        Histogram waits = statistics.getWaitTimes(first);
+        assertEquals(3, waits.getCount());
+        assertEquals(1, waits.getMin());
+        assertEquals(14, waits.getMax());
+        // staying on the bus at second is not a wait
+        assertEquals(0, statistics.getWaitTimes(second).getCount());
+        assertEquals(3, statistics.getWaitTimes().getCount());
+
+        // 2/2 at 1, 2/2 at 5, 0/2 at 8, 1/2 at 14
+        Histogram occupancy = statistics.getOccupancy(bus);
+        assertEquals(4, occupancy.getCount());
+        assertEquals(0, occupancy.getMin());
+        assertEquals(50, occupancy.percentile(50));
+        assertEquals(100, occupancy.percentile(75));
+        assertEquals(62.5, occupancy.getMean(), 1e-9);
+        assertEquals(4, statistics.getOccupancy().getCount());
+    }
+
+    @Test
+    public void onlyWaitsAtStopsCounted() {
+        // riding passes through second, where waiting boards the bus when it
+        // departs at 5
+        Passenger riding = new Passenger("riding", third);
+        first.addPassenger(riding);
+        statistics.waiting(riding, first, 1);
+        Passenger waiting = new Passenger("waiting", third);
+        second.addPassenger(waiting);
+        statistics.waiting(waiting, second, 2);
+        simulation.runUntil(20);
+
+        assertEquals(1, statistics.getWaitTimes(first).getCount());
+        assertEquals(0, statistics.getWaitTimes(first).getMax());
+        Histogram waits = statistics.getWaitTimes(second);
+        assertEquals(1, waits.getCount());
+        assertEquals(3, waits.getMax());
+        assertEquals(0, statistics.getWaitTimes(third).getCount());
+    }
+
+    @Test
+    public void unknownStopsAndVehicles() {
+        Stop other = new Stop("other", 1, 1);
+        statistics.waiting(new Passenger("passenger", first), other, 0);
+        assertEquals(0, statistics.getWaitTimes(other).getCount());
+        assertEquals(0, statistics.getOccupancy(null).getCount());
+
+        // returned histograms are copies
+        statistics.getWaitTimes(first).record(4);
+        assertEquals(0, statistics.getWaitTimes(first).getCount());
+    }
+
+    @Test
+    public void generatedPassengers() {
+        List<Stop> stops = Arrays.asList(first, second, third);
+        double[][] demand = {{0, 0.03, 0.03}, {0, 0, 0.03}};
+        DemandGenerator generator = new DemandGenerator(stops, demand, 0, 5);
+        generator.setListener(statistics);
+        for (long time = 1; time <= 1000; time++) {
+            generator.addUntil(time);
+            simulation.runUntil(time);
+        }
+
+        // nearly every passenger has boarded, after waiting for the bus to
+        // come round (every 13)
+        Histogram waits = statistics.getWaitTimes();
+        assertTrue(waits.getCount() <= generator.getPassengerCount());
+        assertTrue(waits.getCount() > generator.getPassengerCount() * 0.9);
+        assertEquals(0, statistics.getWaitTimes(third).getCount());
+        assertEquals(6.5, waits.getMean(), 1.5);
+        assertTrue(waits.percentile(50) <= waits.percentile(99));
+        assertTrue(waits.percentile(99) <= 13 * 3);
+    }
+
+    @Test
+    public void parallelMatchesSequential() {
+        List<Stop> stops = new ArrayList<>();
+        List<PublicTransport> vehicles = build(stops);
+        SimulationStatistics sequential =
+                run(stops, new Simulation(vehicles, 1, 1));
+
+        List<Stop> parallelStops = new ArrayList<>();
+        List<PublicTransport> parallelVehicles = build(parallelStops);
+        try (ParallelSimulation parallel =
+                     new ParallelSimulation(parallelVehicles, 1, 1, 3)) {
+            SimulationStatistics statistics = new SimulationStatistics(
+                    parallelStops, parallelVehicles);
+            parallel.setListener(statistics);
+            DemandGenerator generator = generator(parallelStops);
+            generator.setListener(statistics);
+            for (long time = 1; time <= 300; time++) {
+                generator.addUntil(time);
+                parallel.runUntil(time);
+            }
+
+            assertEquals(sequential.getWaitTimes().toString(),
+                    statistics.getWaitTimes().toString());
+            assertEquals(sequential.getOccupancy().toString(),
+                    statistics.getOccupancy().toString());
+            for (int i = 0; i < stops.size(); i++) {
+                assertEquals(
+                        sequential.getWaitTimes(stops.get(i)).toString(),
+                        statistics.getWaitTimes(parallelStops.get(i))
+                                .toString());
+            }
+        }
+    }
+
+    private static SimulationStatistics run(List<Stop> stops,
+                                            Simulation simulation) {
+        SimulationStatistics statistics =
+                new SimulationStatistics(stops, simulation.getVehicles());
+        simulation.setListener(statistics);
+        DemandGenerator generator = generator(stops);
+        generator.setListener(statistics);
+        for (long time = 1; time <= 300; time++) {
+            generator.addUntil(time);
+            simulation.runUntil(time);
+        }
+        return statistics;
+    }
+
+    private static DemandGenerator generator(List<Stop> stops) {
+        double[][] demand = new double[stops.size()][stops.size()];
+        for (double[] row : demand) {
+            Arrays.fill(row, 0.02);
+        }
+        return new DemandGenerator(stops, demand, 0, 11);
+    }
+
+    /*
+     * Builds three routes through a row of stops, which share the middle
+     * stop, with two buses on each.
+     */
+    private static List<PublicTransport> build(List<Stop> stops) {
+        for (int i = 0; i < 7; i++) {
+            stops.add(new Stop("stop" + i, i * 2, 0));
+        }
+        List<PublicTransport> vehicles = new ArrayList<>();
+        int[][] routes = {{0, 1, 3}, {3, 4, 5}, {2, 3, 6}};
+        for (int r = 0; r < routes.length; r++) {
+            Route route = new BusRoute("route" + r, r);
+            for (int stop : routes[r]) {
+                route.addStop(stops.get(stop));
+            }
+            vehicles.add(new Bus(2 * r, 4, route, "A" + r));
+            vehicles.add(new Bus(2 * r + 1, 4, route, "B" + r));
+        }
+        return vehicles;
+    }
+}
@@ -0,0 +1,188 @@
+package simulation;
+
+import exceptions.TransportFormatException;
+import network.Network;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import passengers.Passenger;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulationTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop lakes;
+    private Stop city;
+    private Stop valley;
+    private Route route;
+    private Bus bus;
+
+    @Before
+    public void setUp() {
+        lakes = new Stop("UQ Lakes", 0, 0);
+        city = new Stop("City", 0, 3);
+        valley = new Stop("Valley", 4, 3);
+        route = new BusRoute("red", 1);
+        route.addStop(lakes);
+        route.addStop(city);
+        route.addStop(valley);
+        bus = new Bus(1, 10, route, "ABC123");
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void travelTimesFromDistances() {
+        Simulation simulation = new Simulation(
+                Collections.singletonList(bus), 1, 2);
+        List<String> events = record(simulation);
+
+        assertEquals(7, simulation.runUntil(31));
+        assertEquals(Arrays.asList("0 arrive 1 UQ Lakes",
+                "1 depart 1 UQ Lakes City", "7 arrive 1 City",
+                "8 depart 1 City Valley", "16 arrive 1 Valley",
+                "17 depart 1 Valley UQ Lakes", "31 arrive 1 UQ Lakes"),
+                events);
+        assertEquals(lakes, bus.getCurrentStop());
+        assertEquals(0, bus.getPosition());
+        assertTrue(lakes.isAtStop(bus));
+        assertEquals(31, simulation.getTime());
+        assertEquals(32, simulation.nextEventTime());
+    }
+
+    @Test
+    public void runUntilAdvancesTime() {
+        Simulation simulation = new Simulation(
+                Collections.singletonList(bus), 1, 2);
+        assertEquals(2, simulation.runUntil(5));
+        assertEquals(5, simulation.getTime());
+        assertEquals(7, simulation.nextEventTime());
+        assertFalse(lakes.isAtStop(bus));
+        assertEquals(city, bus.getCurrentStop());
+    }
+
+    @Test
+    public void sameTimeInVehicleOrder() {
+        Bus other = new Bus(2, 10, route, "DEF456");
+        Simulation simulation = new Simulation(Arrays.asList(other, bus),
+                1, 1);
+        List<String> events = record(simulation);
+        simulation.runUntil(1);
+        assertEquals(Arrays.asList("0 arrive 2 UQ Lakes",
+                "0 arrive 1 UQ Lakes", "1 depart 2 UQ Lakes City",
+                "1 depart 1 UQ Lakes City"), events);
+    }
+
+    @Test
+    public void carriesPassengers() {
+        Passenger passenger = new Passenger("Alice", valley);
+        lakes.addPassenger(passenger);
+        Simulation simulation = new Simulation(
+                Collections.singletonList(bus), 1, 1);
+        simulation.runUntil(8);
+        assertEquals(Collections.singletonList(passenger),
+                bus.getPassengers());
+        simulation.runUntil(9);
+        assertTrue(valley.getWaitingPassengers().contains(passenger));
+    }
+
+    @Test
+    public void emptyRouteIgnored() {
+        Bus idle = new Bus(3, 10, new BusRoute("empty", 2), "GHI789");
+        Simulation simulation = new Simulation(
+                Collections.singletonList(idle), 1, 1);
+        assertEquals(Long.MAX_VALUE, simulation.nextEventTime());
+        assertFalse(simulation.step());
+        assertEquals(0, simulation.runUntil(100));
+    }
+
+    @Test
+    public void deterministic() throws IOException, TransportFormatException {
+        List<String> first = runNetwork();
+        List<String> second = runNetwork();
+        assertFalse(first.isEmpty());
+        assertEquals(first, second);
+    }
+
+    @Test
+    public void checkpointResumes()
+            throws IOException, TransportFormatException {
+        Network network = new Network("networks/validFromSpec.txt");
+        Simulation simulation = new Simulation(network);
+        simulation.runUntil(37);
+        byte[] networkCheckpoint = network.checkpoint();
+        byte[] checkpoint = simulation.checkpoint();
+
+        Network restoredNetwork = Network.loadCheckpoint(networkCheckpoint);
+        Simulation restored = new Simulation(restoredNetwork);
+        restored.restore(checkpoint);
+        assertEquals(simulation.getTime(), restored.getTime());
+        assertEquals(simulation.getEventCount(), restored.getEventCount());
+        assertEquals(simulation.nextEventTime(), restored.nextEventTime());
+
+        List<String> expected = record(simulation);
+        List<String> actual = record(restored);
+        simulation.runUntil(200);
+        restored.runUntil(200);
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, actual);
+        assertEquals(simulation.getEventCount(), restored.getEventCount());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void restoreDifferentVehicles() throws TransportFormatException {
+        Simulation simulation = new Simulation(
+                Collections.singletonList(bus), 1, 2);
+        new Simulation(Collections.emptyList(), 1, 2)
+                .restore(simulation.checkpoint());
+    }
+
+    private List<String> runNetwork()
+            throws IOException, TransportFormatException {
+        Network network = new Network("networks/validFromSpec.txt");
+        Simulation simulation = new Simulation(network);
+        List<String> events = record(simulation);
+        simulation.runUntil(200);
+        assertEquals(events.size(), simulation.getEventCount());
+        return events;
+    }
+
+    private static List<String> record(Simulation simulation) {
+        List<String> events = new ArrayList<>();
+        simulation.setListener(new Simulation.Listener() {
+            @Override
+            public void arrived(PublicTransport vehicle, Stop stop,
+                                long time) {
+                events.add(time + " arrive " + vehicle.getId() + " "
+                        + stop.getName());
+            }
+
+            @Override
+            public void departed(PublicTransport vehicle, Stop from, Stop to,
+                                 long time) {
+                events.add(time + " depart " + vehicle.getId() + " "
+                        + from.getName() + " " + to.getName());
+            }
+        });
+        return events;
+    }
+}
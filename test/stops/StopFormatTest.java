@@ -7,6 +7,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestName;
 
+import java.io.IOException;
+
 import static org.junit.Assert.*;
 
 public class StopFormatTest {
@@ -45,6 +47,14 @@ public class StopFormatTest {
         assertEquals("Alpha:1:2", alphaStop.encode());
     }
 
+    @Test
+    public void encodeTo() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        alphaStop.encodeTo(builder);
+        new Stop("Beta", -3, 0).encodeTo(builder.append('|'));
+        assertEquals("Alpha:1:2|Beta:-3:0", builder.toString());
+    }
+
     @Test
     public void decode() throws TransportFormatException {
         assertEquals("Alpha", Stop.decode(alphaString).getName());
@@ -77,4 +87,16 @@ public class StopFormatTest {
         Stop.decode(epsilonString);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void decodeCharSequence() throws TransportFormatException {
+        Stop decoded = Stop.decode(new StringBuilder(" Alpha : -1 :+2 "));
+        assertEquals(" Alpha ", decoded.getName());
+        assertEquals(-1, decoded.getX());
+        assertEquals(2, decoded.getY());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeIntegerOverflow() throws TransportFormatException {
+        Stop.decode("Alpha:1:2147483648");
+    }
+}
@@ -213,6 +213,17 @@ public class StopTest {
                 initRoutes, alphaStop.getRoutes());
     }
 
+    @Test
+    public void isOnRouteOfType() {
+        assertFalse(alphaStop.isOnRouteOfType("bus"));
+        alphaStop.addRoute(busRoute);
+        alphaStop.addRoute(ferryRoute);
+        assertTrue(alphaStop.isOnRouteOfType("bus"));
+        assertTrue(alphaStop.isOnRouteOfType("ferry"));
+        assertFalse(alphaStop.isOnRouteOfType("train"));
+        assertFalse(alphaStop.isOnRouteOfType(null));
+    }
+
     @Test
     public void addPassenger() {
         alphaStop.addPassenger(null);
@@ -221,6 +232,36 @@ public class StopTest {
                 initPassengers, alphaStop.getWaitingPassengers());
     }
 
+    @Test
+    public void addPassengerUnreachable() {
+        Passenger passenger = new Passenger("Alice", betaStop);
+        alphaStop.addPassenger(passenger);
+        assertEquals(Collections.singletonList(passenger),
+                alphaStop.getWaitingPassengers());
+    }
+
+    @Test
+    public void addPassengerRouter() {
+        alphaStop.addNeighbouringStop(gammaStop);
+        alphaStop.addNeighbouringStop(deltaStop);
+        alphaStop.setRouter((from, destination) ->
+                destination == gammaStop ? deltaStop : null);
+        Passenger routed = new Passenger("Alice", gammaStop);
+        Passenger unrouted = new Passenger("Bob", deltaStop);
+        alphaStop.addPassenger(routed);
+        alphaStop.addPassenger(unrouted);
+        assertSame(deltaStop, alphaStop.getRoutedStop(routed));
+        // the routing table is used when the router has no route
+        assertSame(deltaStop, alphaStop.getRoutedStop(unrouted));
+
+        alphaStop.setRouter(null);
+        assertNull(alphaStop.getRouter());
+        Passenger table = new Passenger("Carol", gammaStop);
+        alphaStop.addPassenger(table);
+        assertSame(gammaStop, alphaStop.getRoutedStop(table));
+        assertSame(deltaStop, alphaStop.getRoutedStop(routed));
+    }
+
     @Test
     public void transportArriveNull() {
         alphaStop.transportArrive(null);
@@ -295,6 +336,25 @@ public class StopTest {
                 initVehicles, alphaStop.getVehicles());
     }
 
+    @Test
+    public void transportDepartBoardsInArrivalOrder() {
+        busRoute.addStop(alphaStop);
+        busRoute.addStop(betaStop);
+        PublicTransport small = new Bus(12, 3, busRoute, "YY");
+        Passenger[] waiting = new Passenger[5];
+        for (int i = 0; i < waiting.length; i++) {
+            waiting[i] = new Passenger("passenger" + i, betaStop);
+            alphaStop.addPassenger(waiting[i]);
+        }
+        alphaStop.transportArrive(small);
+        alphaStop.transportDepart(small, betaStop);
+
+        assertEquals(Arrays.asList(waiting[0], waiting[1], waiting[2]),
+                small.getPassengers());
+        assertEquals(Arrays.asList(waiting[3], waiting[4]),
+                alphaStop.getWaitingPassengers());
+    }
+
     @Test
     public void transportDepartNotContain() {
         alphaStop.transportDepart(bus, betaStop);
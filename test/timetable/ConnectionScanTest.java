@@ -0,0 +1,319 @@
+package timetable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ConnectionScanTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop first;
+    private Stop second;
+    private Stop third;
+    private Stop fourth;
+    private PublicTransport train;
+    private ConnectionScan scan;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Stop("first", 0, 0);
+        second = new Stop("second", 0, 4);
+        third = new Stop("third", 3, 4);
+        fourth = new Stop("fourth", 3, 8);
+
+        // buses leave first every 10 from 0, reaching second 4 later and
+        // third 8 later
+        Route busRoute = new BusRoute("bus", 1);
+        busRoute.addStop(first);
+        busRoute.addStop(second);
+        busRoute.addStop(third);
+        busRoute.addTransport(new Bus(1, 20, busRoute, "ABC"));
+        busRoute.addTransport(new Bus(2, 20, busRoute, "DEF"));
+
+        // trains leave second every 15 from 0, reaching fourth 7 later
+        Route trainRoute = new TrainRoute("train", 2);
+        trainRoute.addStop(second);
+        trainRoute.addStop(fourth);
+        train = new Train(3, 100, trainRoute, 4);
+        trainRoute.addTransport(train);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.dispatch(busRoute, 0, 10, 50);
+        dispatcher.dispatch(trainRoute, 0, 15, 60);
+        scan = new ConnectionScan(dispatcher.getTimetable());
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void connections() {
+        assertEquals(6 * 2 + 5, scan.connectionCount());
+    }
+
+    @Test
+    public void earliestArrivalOnOneTrip() {
+        Journey journey = scan.earliestArrival(first, third, 3);
+        assertEquals(10, journey.getDepartureTime());
+        assertEquals(18, journey.getArrivalTime());
+        assertEquals(2, journey.getConnections().size());
+        assertEquals(1, journey.getTrips().size());
+        assertEquals(0, journey.transferCount());
+        assertSame(third, journey.getDestination());
+        assertSame(second, journey.getConnections().get(1).getStop());
+    }
+
+    @Test
+    public void earliestArrivalWithTransfer() {
+        Journey journey = scan.earliestArrival(first, fourth, 0);
+        // either bus reaches second in time for the train at 15
+        assertEquals(22, journey.getArrivalTime());
+        assertEquals(1, journey.transferCount());
+        List<Departure> connections = journey.getConnections();
+        assertEquals(2, connections.size());
+        assertSame(first, connections.get(0).getStop());
+        assertSame(second, connections.get(1).getStop());
+        assertEquals(15, connections.get(1).getTime());
+        assertSame(train, connections.get(1).getTrip().getVehicle());
+        assertTrue(journey.toString().startsWith(
+                journey.getDepartureTime() + "-22 by "));
+        assertTrue(journey.toString().endsWith(", then " + train));
+
+        journey = scan.earliestArrival(first, fourth, 11);
+        assertEquals(20, journey.getDepartureTime());
+        assertEquals(37, journey.getArrivalTime());
+    }
+
+    @Test
+    public void noJourney() {
+        // no trip leaves first after 50, or goes back from third
+        assertNull(scan.earliestArrival(first, fourth, 51));
+        assertNull(scan.earliestArrival(third, first, 0));
+        assertNull(scan.earliestArrival(first, new Stop("other", 1, 1), 0));
+
+        Journey journey = scan.earliestArrival(third, third, 7);
+        assertTrue(journey.getConnections().isEmpty());
+        assertEquals(7, journey.getDepartureTime());
+        assertEquals(7, journey.getArrivalTime());
+        assertNull(journey.getDestination());
+        assertEquals("7-7 by ", journey.toString());
+    }
+
+    @Test
+    public void profile() {
+        List<Journey> journeys = scan.profile(first, fourth, 0, 30);
+        // the bus at 0 arrives no earlier than the bus at 10
+        assertEquals(2, journeys.size());
+        assertEquals(10, journeys.get(0).getDepartureTime());
+        assertEquals(22, journeys.get(0).getArrivalTime());
+        assertEquals(20, journeys.get(1).getDepartureTime());
+        assertEquals(37, journeys.get(1).getArrivalTime());
+        assertSame(fourth, journeys.get(1).getDestination());
+        assertEquals(1, journeys.get(1).transferCount());
+
+        assertEquals(1, scan.profile(first, fourth, 0, 20).size());
+        assertTrue(scan.profile(first, fourth, 51, 100).isEmpty());
+        assertTrue(scan.profile(first, fourth, 30, 0).isEmpty());
+        assertTrue(scan.profile(first, first, 0, 30).isEmpty());
+        assertTrue(scan.profile(third, first, 0, 30).isEmpty());
+    }
+
+    @Test
+    public void matchesRelaxation() throws Exception {
+        Random random = new Random(12);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            stops.add(new Stop("stop" + i, random.nextInt(20),
+                    random.nextInt(20)));
+        }
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setTimePerDistance("train", 0);
+        dispatcher.setDwellTime(2);
+        for (int number = 1; number <= 8; number++) {
+            Route route = number % 3 == 0
+                    ? new TrainRoute("r" + number, number)
+                    : new BusRoute("r" + number, number);
+            for (int i = 0; i < 2 + random.nextInt(4); i++) {
+                route.addStop(stops.get(random.nextInt(stops.size())));
+            }
+            for (int i = 0; i < 1 + random.nextInt(3); i++) {
+                route.addTransport(number % 3 == 0
+                        ? new Train(number * 10 + i, 50, route, 2)
+                        : new Bus(number * 10 + i, 20, route, "R" + i));
+            }
+            dispatcher.dispatch(route, random.nextInt(20),
+                    5 + random.nextInt(20), 300);
+        }
+        Timetable timetable = dispatcher.getTimetable();
+        ConnectionScan large = new ConnectionScan(timetable);
+
+        for (Stop from : stops) {
+            for (Stop to : stops) {
+                if (from == to) {
+                    continue;
+                }
+                // the journeys worth taking at any time after 40
+                List<Journey> profile =
+                        large.profile(from, to, 40, Long.MAX_VALUE);
+                int next = 0;
+                for (long time = 40; time < 200; time += 7) {
+                    long expected = relax(timetable.getTrips(), from, to,
+                            time);
+                    Journey journey = large.earliestArrival(from, to, time);
+                    if (expected == Long.MAX_VALUE) {
+                        assertNull(journey);
+                    } else {
+                        assertEquals(expected, journey.getArrivalTime());
+                        assertValid(journey, from, to, time);
+                    }
+
+                    while (next < profile.size()
+                            && profile.get(next).getDepartureTime() < time) {
+                        next++;
+                    }
+                    if (next < profile.size()) {
+                        assertEquals(expected,
+                                profile.get(next).getArrivalTime());
+                    } else {
+                        assertNull(journey);
+                    }
+                }
+                for (Journey journey : profile) {
+                    assertValid(journey, from, to, 40);
+                }
+            }
+        }
+
+        // connections taking no time, departing at the same time, and
+        // dispatched in the opposite order to which they are changed between
+        Stop a = new Stop("a", 0, 0);
+        Stop b = new Stop("b", 0, 0);
+        Stop d = new Stop("d", 0, 0);
+        Route later = new BusRoute("later", 21);
+        later.addStop(b);
+        later.addStop(d);
+        later.addTransport(new Bus(21, 20, later, "L"));
+        Route earlier = new BusRoute("earlier", 22);
+        earlier.addStop(a);
+        earlier.addStop(b);
+        earlier.addTransport(new Bus(22, 20, earlier, "E"));
+        Dispatcher same = new Dispatcher();
+        same.dispatch(later, new long[] {5});
+        same.dispatch(earlier, new long[] {5});
+        Timetable zero = same.getTimetable();
+        ConnectionScan chained = new ConnectionScan(zero);
+
+        assertEquals(5, relax(zero.getTrips(), a, d, 0));
+        Journey journey = chained.earliestArrival(a, d, 0);
+        assertEquals(5, journey.getArrivalTime());
+        assertEquals(1, journey.transferCount());
+        assertValid(journey, a, d, 0);
+        List<Journey> profile = chained.profile(a, d, 0, 10);
+        assertEquals(1, profile.size());
+        assertEquals(5, profile.get(0).getArrivalTime());
+        assertValid(profile.get(0), a, d, 0);
+    }
+
+    /*
+     * Checks that each connection of the journey departs from where and
+     * after the previous one arrives.
+     */
+    private static void assertValid(Journey journey, Stop from, Stop to,
+                                    long time) {
+        Stop at = from;
+        for (Departure connection : journey.getConnections()) {
+            assertSame(at, connection.getStop());
+            assertTrue(connection.getTime() >= time);
+            at = connection.getNextStop();
+            time = connection.getArrivalTime();
+        }
+        assertSame(to, at);
+        assertEquals(time, journey.getArrivalTime());
+    }
+
+    /*
+     * Finds the earliest arrival by relaxing every trip until no arrival
+     * improves. A trip may be boarded at a stop reached by another trip, or
+     * by the same trip at the same or an earlier position, but not by
+     * getting back on at an earlier position after riding it further.
+     */
+    static long relax(List<Trip> trips, Stop from, Stop to, long time) {
+        List<Stop> stops = new ArrayList<>();
+        for (Trip trip : trips) {
+            for (int i = 0; i < trip.stopCount(); i++) {
+                if (!stops.contains(trip.getStop(i))) {
+                    stops.add(trip.getStop(i));
+                }
+            }
+        }
+        if (!stops.contains(from) || !stops.contains(to)) {
+            return Long.MAX_VALUE;
+        }
+        // the earliest arrival at each stop, the trip and position it is
+        // reached by, and the earliest arrival by any other trip
+        long[] arrivals = new long[stops.size()];
+        int[] reachedTrips = new int[stops.size()];
+        int[] reachedPositions = new int[stops.size()];
+        long[] otherArrivals = new long[stops.size()];
+        Arrays.fill(arrivals, Long.MAX_VALUE);
+        Arrays.fill(reachedTrips, -1);
+        Arrays.fill(otherArrivals, Long.MAX_VALUE);
+        arrivals[stops.indexOf(from)] = time;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int t = 0; t < trips.size(); t++) {
+                Trip trip = trips.get(t);
+                boolean aboard = false;
+                for (int i = 0; i < trip.stopCount(); i++) {
+                    int stop = stops.indexOf(trip.getStop(i));
+                    long arrival = trip.getArrival(i);
+                    if (aboard && (arrival < arrivals[stop]
+                            || (arrival == arrivals[stop]
+                            && reachedTrips[stop] == t
+                            && i < reachedPositions[stop]))) {
+                        if (reachedTrips[stop] != t) {
+                            otherArrivals[stop] = arrivals[stop];
+                        }
+                        arrivals[stop] = arrival;
+                        reachedTrips[stop] = t;
+                        reachedPositions[stop] = i;
+                        changed = true;
+                    } else if (aboard && reachedTrips[stop] != t
+                            && arrival < otherArrivals[stop]) {
+                        otherArrivals[stop] = arrival;
+                        changed = true;
+                    }
+                    long ready = reachedTrips[stop] != t
+                            || reachedPositions[stop] <= i
+                            ? arrivals[stop] : otherArrivals[stop];
+                    if (ready <= trip.getDeparture(i)
+                            && i < trip.stopCount() - 1) {
+                        aboard = true;
+                    }
+                }
+            }
+        }
+        return arrivals[stops.indexOf(to)];
+    }
+}
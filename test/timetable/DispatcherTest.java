@@ -0,0 +1,136 @@
+package timetable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+import vehicles.Train;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DispatcherTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop first;
+    private Stop second;
+    private Stop third;
+    private Route busRoute;
+    private Route trainRoute;
+    private PublicTransport bus;
+    private PublicTransport train;
+    private Dispatcher dispatcher;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Stop("first", 0, 0);
+        second = new Stop("second", 0, 4);
+        third = new Stop("third", 3, 4);
+
+        busRoute = new BusRoute("bus", 1);
+        busRoute.addStop(first);
+        busRoute.addStop(second);
+        busRoute.addStop(third);
+        bus = new Bus(1, 20, busRoute, "ABC");
+        busRoute.addTransport(bus);
+
+        trainRoute = new TrainRoute("train", 2);
+        trainRoute.addStop(third);
+        trainRoute.addStop(first);
+        train = new Train(2, 100, trainRoute, 4);
+        trainRoute.addTransport(train);
+
+        dispatcher = new Dispatcher();
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void scheduleThroughStops() {
+        dispatcher.setDwellTime(2);
+        dispatcher.setTimePerDistance("bus", 3);
+        List<Trip> trips = dispatcher.dispatch(busRoute, new long[] {10});
+        assertEquals(1, trips.size());
+        Trip trip = trips.get(0);
+        assertSame(bus, trip.getVehicle());
+        assertSame(busRoute, trip.getRoute());
+        assertEquals(3, trip.stopCount());
+        // 4 to second at 3 per unit, wait 2, then 3 to third
+        assertEquals(10, trip.getArrival(0));
+        assertEquals(10, trip.getDeparture(0));
+        assertEquals(22, trip.getArrival(1));
+        assertEquals(24, trip.getDeparture(1));
+        assertEquals(33, trip.getArrival(2));
+        assertEquals(33, trip.getDeparture(2));
+        assertEquals(10, trip.getStartTime());
+        assertEquals(33, trip.getEndTime());
+        assertEquals(bus + " at 10-33", trip.toString());
+    }
+
+    @Test
+    public void perModeSpeeds() {
+        dispatcher.setTimePerDistance(null, 5);
+        dispatcher.setTimePerDistance("train", 1);
+        assertEquals(5, dispatcher.getTimePerDistance("bus"));
+        assertEquals(1, dispatcher.getTimePerDistance("train"));
+        dispatcher.setTimePerDistance("ferry", -2);
+        assertEquals(0, dispatcher.getTimePerDistance("ferry"));
+
+        Trip busTrip = dispatcher.dispatch(busRoute, new long[] {0}).get(0);
+        Trip trainTrip =
+                dispatcher.dispatch(trainRoute, new long[] {0}).get(0);
+        assertEquals(5 * 4 + 1 + 5 * 3, busTrip.getEndTime());
+        assertEquals(7, trainTrip.getEndTime());
+    }
+
+    @Test
+    public void headway() throws Exception {
+        PublicTransport other = new Bus(3, 20, busRoute, "DEF");
+        busRoute.addTransport(other);
+        // a trip takes 8 and the return to first 7, so each bus is free 15
+        // after it departs
+        List<Trip> trips = dispatcher.dispatch(busRoute, 0, 5, 22);
+        assertEquals(5, trips.size());
+        long[] expected = {0, 5, 15, 20, 30};
+        for (int i = 0; i < trips.size(); i++) {
+            assertEquals(expected[i], trips.get(i).getStartTime());
+            assertSame(i % 2 == 0 ? bus : other,
+                    trips.get(i).getVehicle());
+        }
+    }
+
+    @Test
+    public void timetableInAnyOrder() {
+        List<Trip> trips =
+                dispatcher.dispatch(busRoute, new long[] {40, 0, 20});
+        assertEquals(0, trips.get(0).getStartTime());
+        assertEquals(20, trips.get(1).getStartTime());
+        assertEquals(40, trips.get(2).getStartTime());
+        assertEquals(3, dispatcher.getTimetable().getTrips().size());
+    }
+
+    @Test
+    public void nothingToDispatch() {
+        assertTrue(dispatcher.dispatch(busRoute, 10, 5, 9).isEmpty());
+        assertTrue(dispatcher.dispatch(new BusRoute("empty", 3), 0, 5, 20)
+                .isEmpty());
+        Route noVehicles = new BusRoute("none", 4);
+        noVehicles.addStop(first);
+        assertTrue(dispatcher.dispatch(noVehicles, new long[] {1})
+                .isEmpty());
+        assertTrue(dispatcher.getTimetable().getTrips().isEmpty());
+    }
+}
@@ -0,0 +1,307 @@
+package timetable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import routes.TrainRoute;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.Train;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RealtimeTimetableTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop first;
+    private Stop second;
+    private Stop third;
+    private Stop fourth;
+    private Timetable timetable;
+    private RealtimeTimetable realtime;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Stop("first", 0, 0);
+        second = new Stop("second", 0, 4);
+        third = new Stop("third", 3, 4);
+        fourth = new Stop("fourth", 3, 8);
+
+        // buses 1 and 2 take turns to leave first every 10 from 0, reaching
+        // second 4 later and third 8 later
+        Route busRoute = new BusRoute("bus", 1);
+        busRoute.addStop(first);
+        busRoute.addStop(second);
+        busRoute.addStop(third);
+        busRoute.addTransport(new Bus(1, 20, busRoute, "ABC"));
+        busRoute.addTransport(new Bus(2, 20, busRoute, "DEF"));
+
+        // train 3 leaves second every 15 from 0, reaching fourth 7 later
+        Route trainRoute = new TrainRoute("train", 2);
+        trainRoute.addStop(second);
+        trainRoute.addStop(fourth);
+        trainRoute.addTransport(new Train(3, 100, trainRoute, 4));
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.dispatch(busRoute, 0, 10, 50);
+        dispatcher.dispatch(trainRoute, 0, 15, 60);
+        timetable = dispatcher.getTimetable();
+        realtime = new RealtimeTimetable(timetable);
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void delay() {
+        assertEquals(22, realtime.earliestArrival(first, fourth, 0)
+                .getArrivalTime());
+        assertTrue(realtime.apply(TripUpdate.delay(12, 2, 3, 15, 0, 10)));
+
+        Trip scheduled = trip(3, 15);
+        Trip delayed = realtime.getCurrentTrip(scheduled);
+        assertEquals(25, delayed.getDeparture(0));
+        assertEquals(32, delayed.getArrival(1));
+        assertEquals(15, scheduled.getDeparture(0));
+        assertSame(scheduled.getVehicle(), delayed.getVehicle());
+
+        Journey journey = realtime.earliestArrival(first, fourth, 0);
+        assertEquals(32, journey.getArrivalTime());
+        assertSame(delayed, journey.getTrips().get(1));
+        assertEquals(17,
+                realtime.getConnectionScan().connectionCount());
+
+        // a later delay replaces the earlier one
+        realtime.apply(TripUpdate.delay(14, 2, 3, 15, 0, 2));
+        assertEquals(24, realtime.earliestArrival(first, fourth, 0)
+                .getArrivalTime());
+    }
+
+    @Test
+    public void delayFromStop() {
+        Trip scheduled = trip(1, 0);
+        realtime.apply(TripUpdate.delay(5, 1, 1, 0, 1, 6));
+        Trip delayed = realtime.getCurrentTrip(scheduled);
+        assertEquals(0, delayed.getDeparture(0));
+        assertEquals(10, delayed.getArrival(1));
+        assertEquals(11, delayed.getDeparture(1));
+        assertEquals(14, delayed.getEndTime());
+
+        // running early never goes back in time along the trip
+        realtime.apply(TripUpdate.delay(6, 1, 1, 0, 1, -10));
+        delayed = realtime.getCurrentTrip(scheduled);
+        assertEquals(0, delayed.getArrival(1));
+        assertEquals(0, delayed.getDeparture(1));
+        assertEquals(0, delayed.getEndTime());
+    }
+
+    @Test
+    public void cancellation() {
+        assertEquals(22, realtime.earliestArrival(first, fourth, 0)
+                .getArrivalTime());
+        assertTrue(realtime.apply(TripUpdate.cancellation(12, 2, 3, 15)));
+        assertNull(realtime.getCurrentTrip(trip(3, 15)));
+        assertEquals(37, realtime.earliestArrival(first, fourth, 0)
+                .getArrivalTime());
+        assertEquals(16, realtime.getConnectionScan().connectionCount());
+
+        // cancelled trips stay cancelled
+        assertFalse(realtime.apply(TripUpdate.delay(13, 2, 3, 15, 0, 1)));
+        assertFalse(realtime.apply(TripUpdate.cancellation(13, 2, 3, 15)));
+        assertNull(realtime.getCurrentTrip(trip(3, 15)));
+    }
+
+    @Test
+    public void ignoredUpdates() {
+        ConnectionScan scan = realtime.getConnectionScan();
+        assertEquals(0, realtime.apply(Arrays.asList(
+                TripUpdate.delay(1, 2, 9, 0, 0, 5),
+                TripUpdate.delay(1, 2, 3, 14, 0, 5),
+                TripUpdate.delay(1, 2, 3, 15, 2, 5),
+                TripUpdate.delay(1, 1, 3, 15, 0, 5),
+                null)));
+        assertSame(scan, realtime.getConnectionScan());
+        assertSame(trip(3, 15), realtime.getCurrentTrip(trip(3, 15)));
+        assertNull(realtime.getCurrentTrip(null));
+    }
+
+    @Test
+    public void duplicateVehicleIds() throws Exception {
+        // bus 1 of another route, and bus 1 of the bus route dispatched
+        // twice, all starting at 0
+        Route otherRoute = new BusRoute("other", 3);
+        otherRoute.addStop(first);
+        otherRoute.addStop(fourth);
+        otherRoute.addTransport(new Bus(1, 20, otherRoute, "GHI"));
+        Route busRoute = trip(1, 0).getRoute();
+        Trip other = new Dispatcher().dispatch(otherRoute, new long[] {0})
+                .get(0);
+        Trip bus = new Dispatcher().dispatch(busRoute, new long[] {0}).get(0);
+        Trip twice = new Dispatcher().dispatch(busRoute, new long[] {0})
+                .get(0);
+        RealtimeTimetable duplicates = new RealtimeTimetable(
+                new Timetable(Arrays.asList(other, bus, twice)));
+        assertSame(other, duplicates.getCurrentTrip(other));
+        assertSame(bus, duplicates.getCurrentTrip(bus));
+        assertSame(twice, duplicates.getCurrentTrip(twice));
+
+        assertTrue(duplicates.apply(TripUpdate.delay(1, 3, 1, 0, 0, 5)));
+        assertEquals(5, duplicates.getCurrentTrip(other).getDeparture(0));
+        assertSame(bus, duplicates.getCurrentTrip(bus));
+
+        assertTrue(duplicates.apply(TripUpdate.delay(2, 1, 1, 0, 1, 3)));
+        assertEquals(0, duplicates.getCurrentTrip(bus).getDeparture(0));
+        assertEquals(7, duplicates.getCurrentTrip(bus).getArrival(1));
+        assertEquals(7, duplicates.getCurrentTrip(twice).getArrival(1));
+        assertEquals(5, duplicates.getCurrentTrip(other).getDeparture(0));
+        assertEquals(5, duplicates.getConnectionScan().connectionCount());
+    }
+
+    @Test
+    public void onlyAffectedAnswersDiscarded() {
+        assertEquals(8, realtime.earliestArrival(first, third, 0)
+                .getArrivalTime());
+        assertEquals(37, realtime.earliestArrival(first, fourth, 11)
+                .getArrivalTime());
+        assertEquals(2, realtime.cachedAnswerCount());
+
+        // neither journey uses these trips, and both depart too late
+        assertEquals(2, realtime.apply(Arrays.asList(
+                TripUpdate.delay(20, 2, 3, 60, 0, 5),
+                TripUpdate.delay(20, 1, 2, 50, 0, 100))));
+        assertEquals(2, realtime.cachedAnswerCount());
+
+        // only the first journey uses the bus at 0, which still departs
+        // before the second journey
+        realtime.apply(TripUpdate.delay(21, 1, 1, 0, 0, 3));
+        assertEquals(1, realtime.cachedAnswerCount());
+        assertEquals(11, realtime.earliestArrival(first, third, 0)
+                .getArrivalTime());
+        assertEquals(2, realtime.cachedAnswerCount());
+    }
+
+    @Test
+    public void replay() throws Exception {
+        File file = File.createTempFile("updates", ".txt");
+        file.deleteOnExit();
+        ReplayFeed.record(file.getPath(), Arrays.asList(
+                TripUpdate.delay(5, 2, 3, 15, 0, 10),
+                TripUpdate.cancellation(8, 2, 3, 30),
+                TripUpdate.delay(40, 2, 3, 45, 0, 1)));
+        try (ReplayFeed feed = new ReplayFeed(file.getPath())) {
+            assertEquals(2, realtime.replay(feed, 10));
+            assertEquals(32, realtime.earliestArrival(first, fourth, 11)
+                    .getArrivalTime());
+            assertEquals(52, realtime.earliestArrival(first, fourth, 21)
+                    .getArrivalTime());
+            assertEquals(1, realtime.replay(feed, 40));
+            assertEquals(53, realtime.earliestArrival(first, fourth, 21)
+                    .getArrivalTime());
+            assertEquals(0, realtime.replay(feed, 100));
+        }
+    }
+
+    @Test
+    public void matchesRebuiltTimetable() throws Exception {
+        Random random = new Random(10);
+        List<Stop> stops = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            stops.add(new Stop("stop" + i, random.nextInt(3),
+                    random.nextInt(3)));
+        }
+        Dispatcher dispatcher = new Dispatcher();
+        for (int number = 1; number <= 6; number++) {
+            Route route = new BusRoute("r" + number, number);
+            for (int i = 0; i < 2 + random.nextInt(4); i++) {
+                route.addStop(stops.get(random.nextInt(stops.size())));
+            }
+            for (int i = 0; i < 1 + random.nextInt(3); i++) {
+                route.addTransport(new Bus(number * 10 + i, 20, route,
+                        "R" + i));
+            }
+            dispatcher.dispatch(route, random.nextInt(20),
+                    5 + random.nextInt(20), 200);
+        }
+        Timetable large = dispatcher.getTimetable();
+        RealtimeTimetable updated = new RealtimeTimetable(large);
+        List<Trip> trips = large.getTrips();
+
+        for (int round = 0; round < 20; round++) {
+            List<TripUpdate> updates = new ArrayList<>();
+            for (int i = 0; i < 1 + random.nextInt(4); i++) {
+                Trip trip = trips.get(random.nextInt(trips.size()));
+                int number = trip.getRoute().getRouteNumber();
+                int vehicle = trip.getVehicle().getId();
+                updates.add(random.nextInt(10) == 0
+                        ? TripUpdate.cancellation(round, number, vehicle,
+                                trip.getStartTime())
+                        : TripUpdate.delay(round, number, vehicle,
+                                trip.getStartTime(),
+                                random.nextInt(trip.stopCount()),
+                                random.nextInt(80) - 60));
+            }
+            updated.apply(updates);
+
+            List<Trip> running = new ArrayList<>();
+            for (Trip trip : trips) {
+                if (updated.getCurrentTrip(trip) != null) {
+                    running.add(updated.getCurrentTrip(trip));
+                }
+            }
+            ConnectionScan rebuilt = new ConnectionScan(running);
+            assertEquals(rebuilt.connectionCount(),
+                    updated.getConnectionScan().connectionCount());
+            for (int i = 0; i < 40; i++) {
+                Stop from = stops.get(random.nextInt(4));
+                Stop to = stops.get(random.nextInt(stops.size()));
+                long time = 10 * random.nextInt(15);
+                Journey expected = rebuilt.earliestArrival(from, to, time);
+                Journey actual = updated.earliestArrival(from, to, time);
+                long relaxed = from == to ? time
+                        : ConnectionScanTest.relax(running, from, to, time);
+                if (expected == null) {
+                    assertNull(actual);
+                    assertEquals(Long.MAX_VALUE, relaxed);
+                } else {
+                    assertEquals(relaxed, expected.getArrivalTime());
+                    assertEquals(expected.getArrivalTime(),
+                            actual.getArrivalTime());
+                    for (Trip trip : actual.getTrips()) {
+                        assertTrue(running.contains(trip));
+                    }
+                }
+                assertEquals(rebuilt.profile(from, to, time, 250).size(),
+                        updated.getConnectionScan().profile(from, to, time,
+                                250).size());
+            }
+        }
+    }
+
+    /*
+     * Returns the scheduled trip of the given vehicle starting at the given
+     * time.
+     */
+    private Trip trip(int vehicle, long start) {
+        for (Trip trip : timetable.getTrips()) {
+            if (trip.getVehicle().getId() == vehicle
+                    && trip.getStartTime() == start) {
+                return trip;
+            }
+        }
+        return null;
+    }
+}
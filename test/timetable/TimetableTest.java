@@ -0,0 +1,116 @@
+package timetable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import routes.BusRoute;
+import routes.Route;
+import stops.Stop;
+import vehicles.Bus;
+import vehicles.PublicTransport;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TimetableTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private Stop first;
+    private Stop second;
+    private Stop third;
+    private Route route;
+    private PublicTransport bus;
+    private Timetable timetable;
+
+    @Before
+    public void setUp() throws Exception {
+        first = new Stop("first", 0, 0);
+        second = new Stop("second", 0, 4);
+        third = new Stop("third", 3, 4);
+        route = new BusRoute("bus", 1);
+        route.addStop(first);
+        route.addStop(second);
+        route.addStop(third);
+        bus = new Bus(1, 20, route, "ABC");
+        route.addTransport(bus);
+
+        // trips depart first at 0, 20, 40, ..., 100 and second 5 later
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.dispatch(route, 0, 20, 100);
+        timetable = dispatcher.getTimetable();
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void nextDeparture() {
+        Departure departure = timetable.nextDeparture(second, 26);
+        assertEquals(45, departure.getTime());
+        assertSame(second, departure.getStop());
+        assertSame(third, departure.getNextStop());
+        assertEquals(1, departure.getPosition());
+        assertEquals(40, departure.getTrip().getStartTime());
+        assertEquals("45 from second to third by " + bus,
+                departure.toString());
+
+        assertEquals(45, timetable.nextDeparture(second, 45).getTime());
+        assertEquals(5, timetable.nextDeparture(second, -100).getTime());
+        assertNull(timetable.nextDeparture(second, 106));
+        // no trip departs from the last stop
+        assertNull(timetable.nextDeparture(third, 0));
+        assertNull(timetable.nextDeparture(new Stop("other", 1, 1), 0));
+    }
+
+    @Test
+    public void departuresBetween() {
+        assertEquals(6, timetable.departureCount(first));
+        assertEquals(0, timetable.departureCount(third));
+        List<Departure> departures = timetable.getDepartures(first, 20, 80);
+        assertEquals(3, departures.size());
+        assertEquals(20, departures.get(0).getTime());
+        assertEquals(60, departures.get(2).getTime());
+        assertTrue(timetable.getDepartures(first, 80, 20).isEmpty());
+        assertTrue(timetable.getDepartures(third, 0, 100).isEmpty());
+    }
+
+    @Test
+    public void matchesLinearSearch() throws Exception {
+        Random random = new Random(4);
+        Dispatcher dispatcher = new Dispatcher();
+        long[] times = new long[200];
+        for (int i = 0; i < times.length; i++) {
+            times[i] = random.nextInt(1000);
+        }
+        dispatcher.dispatch(route, times);
+        PublicTransport other = new Bus(2, 20, route, "DEF");
+        route.addTransport(other);
+        dispatcher.dispatch(route, 3, 7, 1500);
+        Timetable large = dispatcher.getTimetable();
+
+        for (long time = -5; time < 4000; time += 13) {
+            Departure expected = null;
+            for (Trip trip : large.getTrips()) {
+                long departure = trip.getDeparture(1);
+                if (departure >= time && (expected == null
+                        || departure < expected.getTime())) {
+                    expected = new Departure(trip, 1);
+                }
+            }
+            Departure actual = large.nextDeparture(second, time);
+            if (expected == null) {
+                assertNull(actual);
+            } else {
+                assertEquals(expected.getTime(), actual.getTime());
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package timetable;
+
+import exceptions.TransportFormatException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TripUpdateTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("updates", ".txt");
+        file.deleteOnExit();
+    }
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void delay() {
+        TripUpdate update = TripUpdate.delay(30, 7, 4, 10, 2, 5);
+        assertEquals(30, update.getTime());
+        assertEquals(7, update.getRouteNumber());
+        assertEquals(4, update.getVehicleId());
+        assertEquals(10, update.getScheduledStart());
+        assertEquals(2, update.getPosition());
+        assertEquals(5, update.getDelay());
+        assertFalse(update.isCancellation());
+        assertEquals("30,7,4,10,2,5", update.encode());
+        assertEquals(0, TripUpdate.delay(30, 7, 4, 10, -3, 5).getPosition());
+    }
+
+    @Test
+    public void cancellation() {
+        TripUpdate update = TripUpdate.cancellation(30, 7, 4, 10);
+        assertTrue(update.isCancellation());
+        assertEquals("30,7,4,10,cancelled", update.encode());
+        assertEquals("30,7,4,10,cancelled", update.toString());
+    }
+
+    @Test
+    public void decode() throws TransportFormatException {
+        TripUpdate update = TripUpdate.decode(" 30, 7, 4 ,10,2, -5 ");
+        assertEquals("30,7,4,10,2,-5", update.encode());
+        assertTrue(TripUpdate.decode("30,7,4,10, cancelled").isCancellation());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeNull() throws TransportFormatException {
+        TripUpdate.decode(null);
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeMissingPart() throws TransportFormatException {
+        TripUpdate.decode("30,7,4,10,2");
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeNotInteger() throws TransportFormatException {
+        TripUpdate.decode("30,7,4,ten,2,5");
+    }
+
+    @Test
+    public void replay() throws Exception {
+        String filename = file.getPath();
+        List<TripUpdate> updates = Arrays.asList(
+                TripUpdate.delay(5, 7, 1, 0, 1, 3),
+                TripUpdate.cancellation(5, 7, 2, 10),
+                TripUpdate.delay(12, 7, 1, 0, 2, 4));
+        ReplayFeed.record(filename, updates);
+
+        try (ReplayFeed feed = new ReplayFeed(filename)) {
+            assertTrue(feed.poll(4).isEmpty());
+            List<TripUpdate> polled = feed.poll(11);
+            assertEquals(2, polled.size());
+            assertEquals("5,7,1,0,1,3", polled.get(0).encode());
+            assertTrue(polled.get(1).isCancellation());
+            assertTrue(feed.poll(11).isEmpty());
+            assertEquals("12,7,1,0,2,4", feed.poll(100).get(0).encode());
+            assertTrue(feed.poll(1000).isEmpty());
+        }
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void replayBadLine() throws Exception {
+        String filename = file.getPath();
+        Files.write(file.toPath(), Arrays.asList("5,7,1,0,1,3", "", "bad"));
+        try (ReplayFeed feed = new ReplayFeed(filename)) {
+            assertEquals(1, feed.poll(5).size());
+            feed.poll(6);
+        }
+    }
+
+    @Test (expected = IOException.class)
+    public void replayNullFilename() throws IOException {
+        new ReplayFeed(null);
+    }
+}
@@ -0,0 +1,47 @@
+package utilities;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+import stops.Stop;
+
+import static org.junit.Assert.*;
+
+public class FingerprintTest {
+    @Rule
+    public TestName name = new TestName();
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void emptyIsOffsetBasis() {
+        assertEquals(0xcbf29ce484222325L, new Fingerprint().value());
+    }
+
+    @Test
+    public void incremental() {
+        Fingerprint fingerprint = new Fingerprint().append("ab").append('c');
+        assertEquals(Fingerprint.of("abc"), fingerprint.value());
+        assertEquals(Fingerprint.of("abc"),
+                new Fingerprint().append("xabcx", 1, 4).value());
+    }
+
+    @Test
+    public void orderSensitive() {
+        assertNotEquals(Fingerprint.of("ab"), Fingerprint.of("ba"));
+        assertNotEquals(new Fingerprint().add(1).add(2).value(),
+                new Fingerprint().add(2).add(1).value());
+        assertNotEquals(Fingerprint.of("\u0100"), Fingerprint.of("\u0001"));
+    }
+
+    @Test
+    public void ofWriteable() {
+        Stop stop = new Stop("UQ Lakes", 0, 1);
+        assertEquals(Fingerprint.of(stop.encode()), Fingerprint.of(stop));
+    }
+}
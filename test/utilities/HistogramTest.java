@@ -0,0 +1,105 @@
+package utilities;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+    @Rule
+    public TestName name = new TestName();
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void emptyHistogram() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.percentile(50));
+    }
+
+    @Test
+    public void smallValuesExact() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 20; value++) {
+            histogram.record(value);
+        }
+        histogram.record(-5);
+        assertEquals(21, histogram.getCount());
+        assertEquals(0, histogram.getMin());
+        assertEquals(20, histogram.getMax());
+        assertEquals(10, histogram.getMean(), 1e-9);
+        assertEquals(10, histogram.percentile(50));
+        assertEquals(19, histogram.percentile(95));
+        assertEquals(20, histogram.percentile(100));
+        assertEquals(0, histogram.percentile(0));
+        assertEquals("count=21 mean=10.00 p50=10 p95=19 p99=20 max=20",
+                histogram.toString());
+    }
+
+    @Test
+    public void largeValuesWithinPrecision() {
+        Random random = new Random(3);
+        Histogram histogram = new Histogram();
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) Math.exp(random.nextDouble() * 40);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        for (double percentage : new double[] {1, 50, 95, 99, 99.9}) {
+            long exact = values[(int) Math.ceil(percentage / 100
+                    * values.length) - 1];
+            long estimate = histogram.percentile(percentage);
+            assertTrue(percentage + "%", estimate >= exact);
+            assertTrue(percentage + "%", estimate <= exact * 1.032 + 1);
+        }
+        assertEquals(values[values.length - 1], histogram.percentile(100));
+        assertEquals(values[values.length - 1], histogram.getMax());
+    }
+
+    @Test
+    public void extremeValues() {
+        Histogram histogram = new Histogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(Long.MAX_VALUE - 1);
+        assertEquals(Long.MAX_VALUE, histogram.percentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMax());
+    }
+
+    @Test
+    public void addCombinesValues() {
+        Random random = new Random(8);
+        Histogram first = new Histogram();
+        Histogram second = new Histogram();
+        Histogram both = new Histogram();
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextInt(1 << 20);
+            (i % 3 == 0 ? first : second).record(value);
+            both.record(value);
+        }
+        first.add(second);
+        first.add(null);
+        first.add(new Histogram());
+        assertEquals(both.toString(), first.toString());
+        assertEquals(both.getMin(), first.getMin());
+        for (int percentage = 0; percentage <= 100; percentage++) {
+            assertEquals(both.percentile(percentage),
+                    first.percentile(percentage));
+        }
+        // adding does not change the added histogram
+        assertEquals(1000 - 334, second.getCount());
+    }
+}
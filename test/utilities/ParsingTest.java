@@ -0,0 +1,69 @@
+package utilities;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TestName;
+
+import static org.junit.Assert.*;
+
+public class ParsingTest {
+    @Rule
+    public TestName name = new TestName();
+
+    private static final String[] INTEGERS = {"0", "42", " 42 ", "\t-7\t",
+            "+13", "-0", "2147483647", "-2147483648", "007", "\u0661\u0662"};
+
+    private static final String[] NOT_INTEGERS = {"", " ", "-", "+", "4 2",
+            "2147483648", "-2147483649", "99999999999", "1a", "--1", "0x10"};
+
+    @After
+    public void tearDown() {
+        System.out.println("Test method '" + name.getMethodName() +
+                "' has been run");
+    }
+
+    @Test
+    public void parseIntMatchesStandardParser() {
+        for (String integer : INTEGERS) {
+            String padded = "a:" + integer + ":b";
+            assertEquals(Integer.parseInt(integer.trim()),
+                    Parsing.parseInt(padded, 2, padded.length() - 2));
+        }
+    }
+
+    @Test
+    public void parseIntRejectsInvalid() {
+        for (String integer : NOT_INTEGERS) {
+            try {
+                Parsing.parseInt(integer, 0, integer.length());
+                fail("Parsed '" + integer + "'");
+            } catch (NumberFormatException expected) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void indexOf() {
+        assertEquals(1, Parsing.indexOf("a:b:c", ':', 0, 5));
+        assertEquals(3, Parsing.indexOf("a:b:c", ':', 2, 5));
+        assertEquals(3, Parsing.indexOf("a:b:c", ':', 2, 3));
+        assertEquals(5, Parsing.indexOf("a:b:c", '|', 0, 5));
+    }
+
+    @Test
+    public void count() {
+        assertEquals(2, Parsing.count("a:b:c", ':', 0, 5));
+        assertEquals(1, Parsing.count("a:b:c", ':', 2, 5));
+        assertEquals(0, Parsing.count("a:b:c", ',', 0, 5));
+    }
+
+    @Test
+    public void matches() {
+        assertTrue(Parsing.matches("bus,red", 0, 3, "bus"));
+        assertFalse(Parsing.matches("bus,red", 0, 4, "bus"));
+        assertFalse(Parsing.matches("bus,red", 4, 7, "rex"));
+        assertEquals("red", Parsing.substring("bus,red", 4, 7));
+    }
+}
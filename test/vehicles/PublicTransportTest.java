@@ -12,6 +12,7 @@ import routes.Route;
 import routes.TrainRoute;
 import stops.Stop;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -117,6 +118,18 @@ public class PublicTransportTest {
         assertEquals("train,3,100,3,5", alphaTrain.encode());
     }
 
+    @Test
+    public void encodeTo() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        alphaBus.encodeTo(builder);
+        builder.append('\n');
+        alphaFerry.encodeTo(builder);
+        builder.append('\n');
+        alphaTrain.encodeTo(builder);
+        assertEquals("bus,1,30,1,ABC123\nferry,2,50,2,CityCat\n"
+                + "train,3,100,3,5", builder.toString());
+    }
+
     @Test
     public void decode() throws TransportFormatException {
         assertEquals(3, PublicTransport
@@ -210,6 +223,18 @@ public class PublicTransportTest {
         .decode(nuString, gammaRoutes).getRoute());
     }
 
+    @Test
+    public void decodeIndexedUseFirstOccurrenceIfDuplicates()
+            throws TransportFormatException {
+        assertEquals(ferryAlphaRoute, PublicTransport.decodeIndexed(nuString,
+                PublicTransport.indexRoutes(gammaRoutes)).getRoute());
+    }
+
+    @Test (expected = TransportFormatException.class)
+    public void decodeIndexedRoutesNull() throws TransportFormatException {
+        PublicTransport.decodeIndexed(alphaString, null);
+    }
+
     @Test
     public void decodeAddTransport() throws TransportFormatException {
         busRoute.addStop(alphaStop);
@@ -218,4 +243,34 @@ public class PublicTransportTest {
         assertEquals(initTransports, busRoute.getTransports());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void travelTo() {
+        Stop betaStop = new Stop("Beta", 0, 1);
+        Stop gammaStop = new Stop("Gamma", 1, 1);
+        trainAlphaRoute.addStop(betaStop);
+        trainAlphaRoute.addStop(alphaStop);
+        PublicTransport train = new Train(4, 100, trainAlphaRoute, 2);
+
+        assertEquals(0, train.getPosition());
+        assertEquals(betaStop, train.getNextStop());
+
+        train.travelTo(betaStop);
+        assertEquals(betaStop, train.getCurrentStop());
+        assertEquals(alphaStop, train.getNextStop());
+
+        train.travelTo(alphaStop);
+        assertEquals(2, train.getPosition());
+        assertNull(train.getNextStop());
+
+        train.travelTo(gammaStop);
+        train.travelTo(null);
+        assertEquals(alphaStop, train.getCurrentStop());
+        assertEquals(2, train.getPosition());
+    }
+
+    @Test
+    public void noPositionOnEmptyRoute() {
+        assertEquals(-1, alphaBus.getPosition());
+        assertNull(alphaBus.getNextStop());
+    }
+}